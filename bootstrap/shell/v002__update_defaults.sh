@@ -247,6 +247,24 @@ function add_udfs {
         echo "  - sum"
         curl -i --negotiate -u:anyUser  -b /tmp/cookiejar.txt -c /tmp/cookiejar.txt -s -X POST "${CATALOG_ROOT_URL}/streams/udfs" -F udfJarFile=@${jarFile} -F udfConfig='{"name":"SUM_FN", "displayName": "SUM","description": "Sum", "type":"AGGREGATE", "className":"com.hortonworks.streamline.streams.udaf.NumberSum", "builtin":true};type=application/json'
 
+        echo "  - approx_count_distinct"
+        curl -i --negotiate -u:anyUser  -b /tmp/cookiejar.txt -c /tmp/cookiejar.txt -s -X POST "${CATALOG_ROOT_URL}/streams/udfs" -F udfJarFile=@${jarFile} -F udfConfig='{"name":"APPROX_COUNT_DISTINCT_FN", "displayName": "APPROX_COUNT_DISTINCT", "description": "Approximate count of distinct values", "type":"AGGREGATE", "className":"com.hortonworks.streamline.streams.udaf.ApproxCountDistinct", "builtin":true};type=application/json'
+
+        echo "  - approx_count_distinct"
+        curl -i --negotiate -u:anyUser  -b /tmp/cookiejar.txt -c /tmp/cookiejar.txt -s -X POST "${CATALOG_ROOT_URL}/streams/udfs" -F udfJarFile=@${jarFile} -F udfConfig='{"name":"APPROX_COUNT_DISTINCT_FN", "displayName": "APPROX_COUNT_DISTINCT", "description": "Approximate count of distinct values, with a precision between 4 and 18", "type":"AGGREGATE", "className":"com.hortonworks.streamline.streams.udaf.ApproxCountDistinct2", "builtin":true};type=application/json'
+
+        echo "  - approx_percentile"
+        curl -i --negotiate -u:anyUser  -b /tmp/cookiejar.txt -c /tmp/cookiejar.txt -s -X POST "${CATALOG_ROOT_URL}/streams/udfs" -F udfJarFile=@${jarFile} -F udfConfig='{"name":"APPROX_PERCENTILE_FN", "displayName": "APPROX_PERCENTILE", "description": "Approximate percentile, between 0 and 1, of the values", "type":"AGGREGATE", "className":"com.hortonworks.streamline.streams.udaf.ApproxPercentile", "builtin":true};type=application/json'
+
+        echo "  - approx_topk"
+        curl -i --negotiate -u:anyUser  -b /tmp/cookiejar.txt -c /tmp/cookiejar.txt -s -X POST "${CATALOG_ROOT_URL}/streams/udfs" -F udfJarFile=@${jarFile} -F udfConfig='{"name":"APPROX_TOPK_FN", "displayName": "APPROX_TOPK", "description": "Approximate top k most frequent values", "type":"AGGREGATE", "className":"com.hortonworks.streamline.streams.udaf.ApproxTopk", "builtin":true};type=application/json'
+
+        echo "  - topn"
+        curl -i --negotiate -u:anyUser  -b /tmp/cookiejar.txt -c /tmp/cookiejar.txt -s -X POST "${CATALOG_ROOT_URL}/streams/udfs" -F udfJarFile=@${jarFile} -F udfConfig='{"name":"TOPN_FN", "displayName": "TOPN", "description": "Top n integral values", "type":"AGGREGATE", "className":"com.hortonworks.streamline.streams.udaf.TopnLong", "builtin":true};type=application/json'
+
+        echo "  - topn_double"
+        curl -i --negotiate -u:anyUser  -b /tmp/cookiejar.txt -c /tmp/cookiejar.txt -s -X POST "${CATALOG_ROOT_URL}/streams/udfs" -F udfJarFile=@${jarFile} -F udfConfig='{"name":"TOPN_DOUBLE_FN", "displayName": "TOPN_DOUBLE", "description": "Top n floating point values", "type":"AGGREGATE", "className":"com.hortonworks.streamline.streams.udaf.TopnDouble", "builtin":true};type=application/json'
+
         # Dummy entries for built in functions so that it shows up in the UI
         curl -i --negotiate -u:anyUser  -b /tmp/cookiejar.txt -c /tmp/cookiejar.txt -s -X POST "${CATALOG_ROOT_URL}/streams/udfs" -F udfConfig='{"name":"POWER", "displayName": "POWER", "description": "First argument raised to the power of the second argument", "type":"FUNCTION", "argTypes":["BYTE|SHORT|INTEGER|LONG|FLOAT|DOUBLE", "BYTE|SHORT|INTEGER|LONG|FLOAT|DOUBLE"], "returnType": "DOUBLE", "className":"builtin", "builtin":true};type=application/json' -F builtin=true
         curl -i --negotiate -u:anyUser  -b /tmp/cookiejar.txt -c /tmp/cookiejar.txt -s -X POST "${CATALOG_ROOT_URL}/streams/udfs" -F udfConfig='{"name":"ABS", "displayName": "ABS", "description": "Returns the absolute value", "type":"FUNCTION", "argTypes":["BYTE|SHORT|INTEGER|LONG|FLOAT|DOUBLE"], "className":"builtin", "builtin":true};type=application/json' -F builtin=true
@@ -0,0 +1,180 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.catalog.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory inverted index from the tokens of the text fields of entities to the entity ids.
+ * <p>
+ * Each query token matches the indexed tokens it is a prefix of, and an entity matches a query when it matches all
+ * the query tokens. Matching entities are ordered by relevance: the sum, over the query tokens, of the weight of the
+ * best matching field, doubled when the token is matched exactly.
+ */
+public class SearchIndex {
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // token -> entity id -> weight of the heaviest field of the entity containing the token
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private final Map<Long, Set<String>> tokensById = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public static final class Field {
+        private final String text;
+        private final int weight;
+
+        private Field(String text, int weight) {
+            this.text = text;
+            this.weight = weight;
+        }
+    }
+
+    public static Field field(String text, int weight) {
+        return new Field(text, weight);
+    }
+
+    public static List<String> tokenize(String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    /**
+     * Indexes the fields of the entity, replacing what was indexed for it before.
+     */
+    public void put(Long id, Field... fields) {
+        lock.writeLock().lock();
+        try {
+            removeTokens(id);
+            Set<String> tokens = new LinkedHashSet<>();
+            for (Field field : fields) {
+                for (String token : tokenize(field.text)) {
+                    postings.computeIfAbsent(token, t -> new HashMap<>()).merge(id, field.weight, Math::max);
+                    tokens.add(token);
+                }
+            }
+            tokensById.put(id, tokens);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removeTokens(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            tokensById.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return tokensById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the entities matching all the tokens of the query, the most relevant first.
+     */
+    public List<Long> search(String query) {
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, Integer> scores = null;
+        lock.readLock().lock();
+        try {
+            for (String queryToken : queryTokens) {
+                Map<Long, Integer> tokenScores = new HashMap<>();
+                for (Map.Entry<String, Map<Long, Integer>> posting :
+                        postings.subMap(queryToken, true, queryToken + Character.MAX_VALUE, true).entrySet()) {
+                    int factor = posting.getKey().equals(queryToken) ? 2 : 1;
+                    for (Map.Entry<Long, Integer> entry : posting.getValue().entrySet()) {
+                        tokenScores.merge(entry.getKey(), entry.getValue() * factor, Math::max);
+                    }
+                }
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    scores.keySet().retainAll(tokenScores.keySet());
+                    for (Map.Entry<Long, Integer> entry : scores.entrySet()) {
+                        entry.setValue(entry.getValue() + tokenScores.get(entry.getKey()));
+                    }
+                }
+                if (scores.isEmpty()) {
+                    return Collections.emptyList();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Map.Entry<Long, Integer>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<Long, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        List<Long> ids = new ArrayList<>(ranked.size());
+        for (Map.Entry<Long, Integer> entry : ranked) {
+            ids.add(entry.getKey());
+        }
+        return ids;
+    }
+
+    private void removeTokens(Long id) {
+        Set<String> tokens = tokensById.remove(id);
+        if (tokens != null) {
+            for (String token : tokens) {
+                Map<Long, Integer> ids = postings.get(token);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        postings.remove(token);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -31,6 +31,7 @@ import com.google.common.collect.Sets;
 import com.hortonworks.registries.common.QueryParam;
 import com.hortonworks.registries.common.Schema;
 import com.hortonworks.registries.common.util.FileStorage;
+import com.hortonworks.registries.storage.Storable;
 import com.hortonworks.registries.storage.StorableKey;
 import com.hortonworks.registries.storage.StorageManager;
 import com.hortonworks.registries.storage.exception.StorageException;
@@ -71,8 +72,11 @@ import com.hortonworks.streamline.streams.catalog.TopologyWindow;
 import com.hortonworks.streamline.streams.catalog.UDF;
 import com.hortonworks.streamline.streams.catalog.processor.CustomProcessorInfo;
 import com.hortonworks.streamline.streams.catalog.rule.RuleParser;
+import com.hortonworks.streamline.streams.catalog.storage.ListenableTransactionManager;
 import com.hortonworks.streamline.streams.catalog.topology.TopologyComponentBundle;
 import com.hortonworks.streamline.streams.catalog.topology.TopologyData;
+import com.hortonworks.streamline.streams.catalog.topology.TopologyDataReader;
+import com.hortonworks.streamline.streams.catalog.topology.TopologyDataWriter;
 import com.hortonworks.streamline.streams.catalog.topology.component.TopologyDagBuilder;
 import com.hortonworks.streamline.streams.catalog.topology.component.TopologyExportVisitor;
 import com.hortonworks.streamline.streams.catalog.topology.state.TopologyState;
@@ -100,9 +104,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -112,6 +119,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -119,6 +127,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -162,15 +171,30 @@ public class StreamCatalogService {
                                                                               UDF3.class, UDF4.class, UDF5.class, UDF6.class, UDF7.class);
     public static final long PLACEHOLDER_ID = -1L;
     private static final String CLONE_SUFFIX = "-clone";
+    private static final int SEARCH_WEIGHT_TOPOLOGY_NAME = 2;
+    private static final int SEARCH_WEIGHT_TOPOLOGY_DESCRIPTION = 1;
 
     private final StorageManager dao;
     private final FileStorage fileStorage;
     private final TopologyDagBuilder topologyDagBuilder;
+    // null when the transactions are not known, the changes of the search index being applied right away
+    private final ListenableTransactionManager transactionManager;
+    // the 'CURRENT' version of the topologies, updated once the changes of the topologies are committed and loaded
+    // on the first search
+    private final SearchIndex topologySearchIndex = new SearchIndex();
+    private final Map<Long, Long> indexedTopologyVersionIds = new ConcurrentHashMap<>();
+    private volatile boolean topologySearchIndexBuilt;
 
     public StreamCatalogService(StorageManager dao, FileStorage fileStorage, MLModelRegistryClient modelRegistryClient) {
+        this(dao, fileStorage, modelRegistryClient, null);
+    }
+
+    public StreamCatalogService(StorageManager dao, FileStorage fileStorage, MLModelRegistryClient modelRegistryClient,
+                                ListenableTransactionManager transactionManager) {
         this.dao = dao;
         this.fileStorage = fileStorage;
         this.topologyDagBuilder = new TopologyDagBuilder(this, modelRegistryClient);
+        this.transactionManager = transactionManager;
     }
 
     public Notifier addNotifierInfo(Notifier notifier) {
@@ -294,6 +318,38 @@ public class StreamCatalogService {
         return topologyVersion;
     }
 
+    /**
+     * Adds the storables namespace by namespace, in the order the namespaces first appear. Unlike adding the
+     * entities one at a time, neither validates them nor updates the version timestamp.
+     */
+    private void addAll(Collection<? extends Storable> storables) {
+        for (List<Storable> namespaceStorables : groupByNamespace(storables).values()) {
+            for (Storable storable : namespaceStorables) {
+                dao.add(storable);
+            }
+        }
+    }
+
+    /**
+     * Removes the storables namespace by namespace, in the order the namespaces first appear. Unlike removing the
+     * entities one at a time, neither reconfigures the remaining components nor updates the version timestamp.
+     */
+    private void removeAll(Collection<? extends Storable> storables) {
+        for (List<Storable> namespaceStorables : groupByNamespace(storables).values()) {
+            for (Storable storable : namespaceStorables) {
+                dao.remove(storable.getStorableKey());
+            }
+        }
+    }
+
+    private static Map<String, List<Storable>> groupByNamespace(Collection<? extends Storable> storables) {
+        Map<String, List<Storable>> storablesByNamespace = new LinkedHashMap<>();
+        for (Storable storable : storables) {
+            storablesByNamespace.computeIfAbsent(storable.getNameSpace(), namespace -> new ArrayList<>()).add(storable);
+        }
+        return storablesByNamespace;
+    }
+
     public TopologyVersion removeTopologyVersionInfo(Long versionId) {
         TopologyVersion topologyVersion = new TopologyVersion();
         topologyVersion.setId(versionId);
@@ -376,6 +432,7 @@ public class StreamCatalogService {
 
         this.dao.addOrUpdate(topology);
         LOG.debug("Added topology {}", topology);
+        indexTopology(topology);
         return topology;
     }
 
@@ -417,86 +474,48 @@ public class StreamCatalogService {
         }
         Topology removedTopology = dao.remove(topology.getStorableKey());
         removeTopologyVersionInfo(versionId);
+        unindexTopology(topologyId, versionId);
         return removedTopology;
     }
 
     private void removeTopologyDependencies(Long topologyId, Long versionId) throws Exception {
         List<QueryParam> topologyIdVersionIdQueryParams = WSUtils.buildTopologyIdAndVersionIdAwareQueryParams(
                 topologyId, versionId, null);
+        List<QueryParam> versionIdQueryParams = QueryParam.params(
+                TopologySourceStreamMap.FIELD_VERSION_ID, String.valueOf(versionId));
+        // the whole version goes away, so the entities are removed without the checks and the reconfiguration
+        // of the other components done when removing them one at a time, the referring ones first
+        List<Storable> dependencies = new ArrayList<>();
 
-        // remove topology test histories
-        Collection<TopologyTestRunHistory> runHistories = listTopologyTestRunHistory(topologyId, versionId);
-        runHistories.forEach(history -> removeTopologyTestRunHistory(history.getId()));
+        // topology test histories
+        dependencies.addAll(listTopologyTestRunHistory(topologyId, versionId));
 
-        // remove topology test run case
+        // topology test run cases with their sources and sinks
         Collection<TopologyTestRunCase> runCases = listTopologyTestRunCase(topologyIdVersionIdQueryParams);
         for (TopologyTestRunCase runCase : runCases) {
-            Collection<TopologyTestRunCaseSource> runCaseSources = listTopologyTestRunCaseSource(runCase.getId());
-            Collection<TopologyTestRunCaseSink> runCaseSinks = listTopologyTestRunCaseSink(runCase.getId());
-
-            // remove topology test run case source
-            for (TopologyTestRunCaseSource runCaseSource : runCaseSources) {
-                removeTopologyTestRunCaseSource(runCaseSource.getId());
-            }
-
-            // remove topology test run case sink
-            for (TopologyTestRunCaseSink runCaseSink : runCaseSinks) {
-                removeTopologyTestRunCaseSink(runCaseSink.getId());
-            }
-
-            removeTestRunCase(topologyId, runCase.getId());
-        }
-
-        // remove edges
-        Collection<TopologyEdge> edges = listTopologyEdges(topologyIdVersionIdQueryParams);
-        for (TopologyEdge edge: edges) {
-            removeTopologyEdge(topologyId, edge.getId(), versionId);
-        }
-
-        // remove rules
-        Collection<TopologyRule> topologyRules = listRules(topologyIdVersionIdQueryParams);
-        for (TopologyRule topologyRule : topologyRules) {
-            removeRule(topologyId, topologyRule.getId(), versionId);
-        }
-
-        // remove windowed rules
-        Collection<TopologyWindow> topologyWindows = listWindows(topologyIdVersionIdQueryParams);
-        for (TopologyWindow topologyWindow : topologyWindows) {
-            removeWindow(topologyId, topologyWindow.getId(), versionId);
-        }
-
-        // remove branch rules
-        Collection<TopologyBranchRule> topologyBranchRules = listBranchRules(topologyIdVersionIdQueryParams);
-        for (TopologyBranchRule topologyBranchRule : topologyBranchRules) {
-            removeBranchRule(topologyId, topologyBranchRule.getId(), versionId);
-        }
-
-        // remove sinks
-        Collection<TopologySink> sinks = listTopologySinks(topologyIdVersionIdQueryParams);
-        for (TopologySink sink : sinks) {
-            removeTopologySink(topologyId, sink.getId(), versionId, false);
-        }
-
-        // remove processors
-        Collection<TopologyProcessor> processors = listTopologyProcessors(topologyIdVersionIdQueryParams);
-        for (TopologyProcessor processor: processors) {
-            removeTopologyProcessor(topologyId, processor.getId(), versionId, false);
-        }
+            dependencies.addAll(listTopologyTestRunCaseSource(runCase.getId()));
+            dependencies.addAll(listTopologyTestRunCaseSink(runCase.getId()));
+        }
+        dependencies.addAll(runCases);
+
+        dependencies.addAll(dao.<TopologyEdge>find(TOPOLOGY_EDGE_NAMESPACE, topologyIdVersionIdQueryParams));
+        dependencies.addAll(dao.<TopologyRule>find(TOPOLOGY_RULEINFO_NAMESPACE, topologyIdVersionIdQueryParams));
+        dependencies.addAll(dao.<TopologyWindow>find(TOPOLOGY_WINDOWINFO_NAMESPACE, topologyIdVersionIdQueryParams));
+        dependencies.addAll(dao.<TopologyBranchRule>find(TOPOLOGY_BRANCHRULEINFO_NAMESPACE, topologyIdVersionIdQueryParams));
+        dependencies.addAll(dao.<TopologySink>find(TOPOLOGY_SINK_NAMESPACE, topologyIdVersionIdQueryParams));
+        dependencies.addAll(dao.<TopologyProcessorStreamMap>find(TOPOLOGY_PROCESSOR_STREAM_MAPPING_NAMESPACE, versionIdQueryParams));
+        dependencies.addAll(dao.<TopologyProcessor>find(TOPOLOGY_PROCESSOR_NAMESPACE, topologyIdVersionIdQueryParams));
+        dependencies.addAll(dao.<TopologySourceStreamMap>find(TOPOLOGY_SOURCE_STREAM_MAPPING_NAMESPACE, versionIdQueryParams));
+        dependencies.addAll(dao.<TopologySource>find(TOPOLOGY_SOURCE_NAMESPACE, topologyIdVersionIdQueryParams));
+        dependencies.addAll(dao.<TopologyStream>find(STREAMINFO_NAMESPACE, topologyIdVersionIdQueryParams));
 
-        // remove sources
-        Collection<TopologySource> sources = listTopologySources(topologyIdVersionIdQueryParams);
-        for (TopologySource source : sources) {
-            removeTopologySource(topologyId, source.getId(), versionId, false);
-        }
-
-        // remove output streams
-        Collection<TopologyStream> topologyStreams = listStreamInfos(topologyIdVersionIdQueryParams);
-        for (TopologyStream topologyStream : topologyStreams) {
-            removeStreamInfo(topologyId, topologyStream.getId(), versionId);
+        // topology editor metadata
+        TopologyEditorMetadata metadata = getTopologyEditorMetadata(topologyId, versionId);
+        if (metadata != null) {
+            dependencies.add(metadata);
         }
 
-        // remove topology editor metadata
-        removeTopologyEditorMetadata(topologyId, versionId);
+        removeAll(dependencies);
     }
 
     /**
@@ -521,55 +540,90 @@ public class StreamCatalogService {
     private void copyTopologyDependencies(Long topologyId, Long oldVersionId, Long newVersionId) throws Exception {
         List<QueryParam> topologyIdVersionIdQueryParams = WSUtils.buildTopologyIdAndVersionIdAwareQueryParams(
                 topologyId, oldVersionId, null);
+        List<QueryParam> versionIdQueryParams = QueryParam.params(
+                TopologySourceStreamMap.FIELD_VERSION_ID, String.valueOf(oldVersionId));
+        // the entities of the old version are consistent, so they are copied as they are, without the validations
+        // and the rule parsing done when adding them one at a time, the referred ones first
+        long timestamp = System.currentTimeMillis();
+        List<Storable> dependencies = new ArrayList<>();
 
         // topology editor metadata
         TopologyEditorMetadata metadata = getTopologyEditorMetadata(topologyId, oldVersionId);
         if (metadata != null) {
-            addTopologyEditorMetadata(topologyId, newVersionId, new TopologyEditorMetadata(metadata));
+            TopologyEditorMetadata copy = new TopologyEditorMetadata(metadata);
+            copy.setVersionId(newVersionId);
+            copy.setTimestamp(timestamp);
+            dependencies.add(copy);
+        }
+
+        // output streams
+        for (TopologyStream stream : dao.<TopologyStream>find(STREAMINFO_NAMESPACE, topologyIdVersionIdQueryParams)) {
+            TopologyStream copy = new TopologyStream(stream);
+            copy.setVersionId(newVersionId);
+            dependencies.add(copy);
         }
 
-        // sources, output streams
-        Collection<TopologySource> sources = listTopologySources(topologyIdVersionIdQueryParams);
-        for (TopologySource source : sources) {
-            addTopologySource(topologyId, newVersionId, new TopologySource(source));
+        // sources
+        for (TopologySource source : dao.<TopologySource>find(TOPOLOGY_SOURCE_NAMESPACE, topologyIdVersionIdQueryParams)) {
+            TopologySource copy = new TopologySource(source);
+            copy.setVersionId(newVersionId);
+            dependencies.add(copy);
+        }
+        for (TopologySourceStreamMap mapping : dao.<TopologySourceStreamMap>find(TOPOLOGY_SOURCE_STREAM_MAPPING_NAMESPACE,
+                versionIdQueryParams)) {
+            dependencies.add(new TopologySourceStreamMap(mapping.getSourceId(), newVersionId, mapping.getStreamId()));
         }
 
-        // processors, output streams
-        Collection<TopologyProcessor> processors = listTopologyProcessors(topologyIdVersionIdQueryParams);
-        for (TopologyProcessor processor: processors) {
-            addTopologyProcessor(topologyId, newVersionId, new TopologyProcessor(processor));
+        // processors
+        for (TopologyProcessor processor : dao.<TopologyProcessor>find(TOPOLOGY_PROCESSOR_NAMESPACE, topologyIdVersionIdQueryParams)) {
+            TopologyProcessor copy = new TopologyProcessor(processor);
+            copy.setVersionId(newVersionId);
+            dependencies.add(copy);
+        }
+        for (TopologyProcessorStreamMap mapping : dao.<TopologyProcessorStreamMap>find(TOPOLOGY_PROCESSOR_STREAM_MAPPING_NAMESPACE,
+                versionIdQueryParams)) {
+            dependencies.add(new TopologyProcessorStreamMap(mapping.getProcessorId(), newVersionId, mapping.getStreamId()));
         }
 
-        // add sinks
-        Collection<TopologySink> sinks = listTopologySinks(topologyIdVersionIdQueryParams);
-        for (TopologySink sink : sinks) {
-            addTopologySink(topologyId, newVersionId, new TopologySink(sink));
+        // sinks
+        for (TopologySink sink : dao.<TopologySink>find(TOPOLOGY_SINK_NAMESPACE, topologyIdVersionIdQueryParams)) {
+            TopologySink copy = new TopologySink(sink);
+            copy.setVersionId(newVersionId);
+            dependencies.add(copy);
         }
 
         // branch rules
-        Collection<TopologyBranchRule> topologyBranchRules = listBranchRules(topologyIdVersionIdQueryParams);
-        for (TopologyBranchRule topologyBranchRule : topologyBranchRules) {
-            addBranchRule(topologyId, newVersionId, new TopologyBranchRule(topologyBranchRule));
+        for (TopologyBranchRule branchRule : dao.<TopologyBranchRule>find(TOPOLOGY_BRANCHRULEINFO_NAMESPACE,
+                topologyIdVersionIdQueryParams)) {
+            TopologyBranchRule copy = new TopologyBranchRule(branchRule);
+            copy.setVersionId(newVersionId);
+            dependencies.add(copy);
         }
 
         // windowed rules
-        Collection<TopologyWindow> topologyWindows = listWindows(topologyIdVersionIdQueryParams);
-        for (TopologyWindow topologyWindow : topologyWindows) {
-            addWindow(topologyId, newVersionId, new TopologyWindow(topologyWindow));
+        for (TopologyWindow window : dao.<TopologyWindow>find(TOPOLOGY_WINDOWINFO_NAMESPACE, topologyIdVersionIdQueryParams)) {
+            TopologyWindow copy = new TopologyWindow(window);
+            copy.setVersionId(newVersionId);
+            dependencies.add(copy);
         }
 
         // rules
-        Collection<TopologyRule> topologyRules = listRules(topologyIdVersionIdQueryParams);
-        for (TopologyRule topologyRule : topologyRules) {
-            addRule(topologyId, newVersionId, new TopologyRule(topologyRule));
+        for (TopologyRule rule : dao.<TopologyRule>find(TOPOLOGY_RULEINFO_NAMESPACE, topologyIdVersionIdQueryParams)) {
+            TopologyRule copy = new TopologyRule(rule);
+            copy.setVersionId(newVersionId);
+            dependencies.add(copy);
         }
 
-        // add edges
-        Collection<TopologyEdge> edges = listTopologyEdges(topologyIdVersionIdQueryParams);
-        for (TopologyEdge edge: edges) {
-            addTopologyEdge(topologyId, newVersionId, new TopologyEdge(edge));
+        // edges
+        for (TopologyEdge edge : dao.<TopologyEdge>find(TOPOLOGY_EDGE_NAMESPACE, topologyIdVersionIdQueryParams)) {
+            TopologyEdge copy = new TopologyEdge(edge);
+            copy.setVersionId(newVersionId);
+            dependencies.add(copy);
         }
 
+        addAll(dependencies);
+        updateVersionTimestamp(newVersionId, timestamp);
+
         // add topology test run case
         Collection<TopologyTestRunCase> runCases = listTopologyTestRunCase(topologyIdVersionIdQueryParams);
         for (TopologyTestRunCase runCase : runCases) {
@@ -602,9 +656,94 @@ public class StreamCatalogService {
         validateTopology(topology);
         this.dao.addOrUpdate(topology);
         updateVersionTimestamp(versionId, timestamp);
+        reindexTopology(topology);
         return topology;
     }
 
+    /**
+     * Searches the 'CURRENT' version of the topologies by name and description. Each word of the query matches the
+     * words starting with it, and the topologies matching all the words are returned, the most relevant first.
+     */
+    public List<Topology> searchTopologies(String query) {
+        ensureTopologySearchIndex();
+        List<Topology> topologies = new ArrayList<>();
+        for (Long topologyId : topologySearchIndex.search(query)) {
+            Long versionId = indexedTopologyVersionIds.get(topologyId);
+            Topology topology = versionId != null ? getTopology(topologyId, versionId) : null;
+            // removed since it was looked up
+            if (topology != null) {
+                topologies.add(topology);
+            }
+        }
+        return topologies;
+    }
+
+    private void ensureTopologySearchIndex() {
+        if (!topologySearchIndexBuilt) {
+            synchronized (topologySearchIndex) {
+                if (!topologySearchIndexBuilt) {
+                    for (Topology topology : listTopologies()) {
+                        putInIndex(topology.getId(), topology.getVersionId(), topology.getName(),
+                                topology.getDescription(), false);
+                    }
+                    topologySearchIndexBuilt = true;
+                    LOG.info("Built topology search index with {} topologies", topologySearchIndex.size());
+                }
+            }
+        }
+    }
+
+    // The search index is changed once the transaction changing the topology commits, so that neither the changes
+    // rolled back nor the ones not committed yet are searched. The fields are read right away, as the topology may
+    // be modified until then.
+    private void indexTopology(Topology topology) {
+        Long topologyId = topology.getId();
+        Long versionId = topology.getVersionId();
+        String name = topology.getName();
+        String description = topology.getDescription();
+        afterCommit(() -> putInIndex(topologyId, versionId, name, description, false));
+    }
+
+    // updates the topology if its version is the indexed one
+    private void reindexTopology(Topology topology) {
+        Long topologyId = topology.getId();
+        Long versionId = topology.getVersionId();
+        String name = topology.getName();
+        String description = topology.getDescription();
+        afterCommit(() -> putInIndex(topologyId, versionId, name, description, true));
+    }
+
+    private void unindexTopology(Long topologyId, Long versionId) {
+        afterCommit(() -> {
+            synchronized (topologySearchIndex) {
+                // removing an old version doesn't remove the current one
+                if (indexedTopologyVersionIds.remove(topologyId, versionId)) {
+                    topologySearchIndex.remove(topologyId);
+                }
+            }
+        });
+    }
+
+    private void putInIndex(Long topologyId, Long versionId, String name, String description, boolean onlyIndexed) {
+        synchronized (topologySearchIndex) {
+            if (onlyIndexed && !versionId.equals(indexedTopologyVersionIds.get(topologyId))) {
+                return;
+            }
+            topologySearchIndex.put(topologyId,
+                    SearchIndex.field(name, SEARCH_WEIGHT_TOPOLOGY_NAME),
+                    SearchIndex.field(description, SEARCH_WEIGHT_TOPOLOGY_DESCRIPTION));
+            indexedTopologyVersionIds.put(topologyId, versionId);
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (transactionManager != null) {
+            transactionManager.afterCommit(action);
+        } else {
+            action.run();
+        }
+    }
+
     public TopologyComponent getTopologyComponent(Long topologyId, Long topologyComponentId) {
         TopologyComponent topologyComponent = getTopologySource(topologyId, topologyComponentId);
         if (topologyComponent == null) {
@@ -616,42 +755,61 @@ public class StreamCatalogService {
         return topologyComponent;
     }
 
-    public String exportTopology(Topology topology) throws Exception {
+    /**
+     * Writes the topology as the JSON of a {@link TopologyData}, fetching and writing its entities one at a time.
+     */
+    public void exportTopology(Topology topology, OutputStream out) throws Exception {
         Preconditions.checkNotNull(topology);
-        TopologyData topologyData = doExportTopology(topology);
-        ObjectMapper mapper = new ObjectMapper();
-        return mapper.writeValueAsString(topologyData);
-    }
-
-    private TopologyData doExportTopology(Topology topology) throws Exception {
         TopologyDag dag = topologyDagBuilder.getDag(topology);
         topology.setTopologyDag(dag);
-        TopologyData topologyData = new TopologyData();
-        TopologyExportVisitor exportVisitor = new TopologyExportVisitor(topology.getId(), topologyData, this);
-        topologyData.setTopologyName(topology.getName());
-        topologyData.setConfig(topology.getConfig());
+        TopologyExportVisitor exportVisitor = new TopologyExportVisitor(this);
         TopologyDag topologyDag = topology.getTopologyDag();
         if (topologyDag != null) {
             topologyDag.traverse(exportVisitor);
         }
-        topologyData.setMetadata(getTopologyEditorMetadata(topology.getId()));
-        return topologyData;
-    }
-
-    private List<Long> importOutputStreams(Long newTopologyId, Map<Long, Long> oldToNewStreamIds, List<TopologyStream> streams) {
-        List<Long> importedOutputStreamIds = new ArrayList<>();
-        for (TopologyStream stream : streams) {
-            Long oldId = stream.getId();
-            Long newId = oldToNewStreamIds.get(oldId);
-            if (newId == null) {
-                stream.setId(null);
-                TopologyStream addedTopologyStream = addStreamInfo(newTopologyId, stream);
-                newId = addedTopologyStream.getId();
-                oldToNewStreamIds.put(oldId, newId);
+        Long topologyId = topology.getId();
+        Long versionId = topology.getVersionId();
+        try (TopologyDataWriter writer = new TopologyDataWriter(out)) {
+            writer.writeField(TopologyData.TOPOLOGY_NAME, topology.getName());
+            writer.writeField(TopologyData.CONFIG, topology.getConfig());
+            writer.writeField(TopologyData.BUNDLE_ID_TO_TYPE, exportVisitor.getBundleIdToType());
+            writer.startArray(TopologyData.SOURCES);
+            for (Long sourceId : exportVisitor.getSourceIds()) {
+                writer.write(getTopologySource(topologyId, sourceId, versionId));
+            }
+            writer.endArray();
+            writer.startArray(TopologyData.PROCESSORS);
+            for (Long processorId : exportVisitor.getProcessorIds()) {
+                writer.write(getTopologyProcessor(topologyId, processorId, versionId));
+            }
+            writer.endArray();
+            writer.startArray(TopologyData.SINKS);
+            for (Long sinkId : exportVisitor.getSinkIds()) {
+                writer.write(getTopologySink(topologyId, sinkId, versionId));
+            }
+            writer.endArray();
+            writer.startArray(TopologyData.RULES);
+            for (Long ruleId : exportVisitor.getRuleIds()) {
+                writer.write(getRule(topologyId, ruleId, versionId));
             }
-            importedOutputStreamIds.add(newId);
+            writer.endArray();
+            writer.startArray(TopologyData.WINDOWS);
+            for (Long windowId : exportVisitor.getWindowIds()) {
+                writer.write(getWindow(topologyId, windowId, versionId));
+            }
+            writer.endArray();
+            writer.startArray(TopologyData.BRANCH_RULES);
+            for (Long branchRuleId : exportVisitor.getBranchRuleIds()) {
+                writer.write(getBranchRule(topologyId, branchRuleId, versionId));
+            }
+            writer.endArray();
+            writer.startArray(TopologyData.EDGES);
+            for (Long edgeId : exportVisitor.getEdgeIds()) {
+                writer.write(getTopologyEdge(topologyId, edgeId, versionId));
+            }
+            writer.endArray();
+            writer.writeField(TopologyData.TOPOLOGY_EDITOR_METADATA, getTopologyEditorMetadata(topologyId, versionId));
         }
-        return importedOutputStreamIds;
     }
 
     private TopologyComponentBundle getCurrentTopologyComponentBundle(TopologyComponentBundle.TopologyComponentType type, String subType) {
@@ -665,72 +823,67 @@ public class StreamCatalogService {
         return bundles.iterator().next();
     }
 
-    private Topology doImportTopology(Topology newTopology, TopologyData topologyData) throws Exception {
-        List<TopologySource> topologySources = topologyData.getSources();
-        Map<Long, Long> oldToNewComponentIds = new HashMap<>();
-        Map<Long, Long> oldToNewRuleIds = new HashMap<>();
-        Map<Long, Long> oldToNewWindowIds = new HashMap<>();
-        Map<Long, Long> oldToNewBranchRuleIds = new HashMap<>();
-        Map<Long, Long> oldToNewStreamIds = new HashMap<>();
-
-        // import source streams
-        for (TopologySource topologySource : topologySources) {
-            topologySource.setOutputStreamIds(importOutputStreams(newTopology.getId(),
-                    oldToNewStreamIds, topologySource.getOutputStreams()));
-            topologySource.setOutputStreams(null);
-        }
-
-        // import processor streams
-        for (TopologyProcessor topologyProcessor : topologyData.getProcessors()) {
-            topologyProcessor.setOutputStreamIds(importOutputStreams(newTopology.getId(),
-                    oldToNewStreamIds, topologyProcessor.getOutputStreams()));
-            topologyProcessor.setOutputStreams(null);
-        }
-
-        // import rules
-        for (TopologyRule rule : topologyData.getRules()) {
-            Long currentId = rule.getId();
-            rule.setId(null);
-            TopologyRule addedRule = addRule(newTopology.getId(), rule);
-            oldToNewRuleIds.put(currentId, addedRule.getId());
-        }
-
-        // import windowed rules
-        for (TopologyWindow window : topologyData.getWindows()) {
-            Long currentId = window.getId();
-            window.setId(null);
-            TopologyWindow addedWindow = addWindow(newTopology.getId(), window);
-            oldToNewWindowIds.put(currentId, addedWindow.getId());
-        }
-
-        // import branch rules
-        for (TopologyBranchRule branchRule : topologyData.getBranchRules()) {
-            Long currentId = branchRule.getId();
-            branchRule.setId(null);
-            TopologyBranchRule addedBranchRule = addBranchRule(newTopology.getId(), branchRule);
-            oldToNewBranchRuleIds.put(currentId, addedBranchRule.getId());
+    /**
+     * Imports the entities of an exported topology as they are read, mapping the ids they refer to onto the ids of
+     * the imported entities. The rules processors are added after the rules, which need the output streams of the
+     * processors to be imported first.
+     */
+    private class TopologyImporter implements TopologyDataReader.Handler {
+        private final Long namespaceId;
+        private final String topologyName;
+        private Topology newTopology;
+        private Map<String, String> bundleIdToType = Collections.emptyMap();
+        private final Map<Long, Long> oldToNewComponentIds = new HashMap<>();
+        private final Map<Long, Long> oldToNewRuleIds = new HashMap<>();
+        private final Map<Long, Long> oldToNewWindowIds = new HashMap<>();
+        private final Map<Long, Long> oldToNewBranchRuleIds = new HashMap<>();
+        private final Map<Long, Long> oldToNewStreamIds = new HashMap<>();
+        // old id -> rules processor, added once the rules are imported
+        private final Map<Long, TopologyProcessor> rulesProcessors = new LinkedHashMap<>();
+
+        TopologyImporter(Long namespaceId, String topologyName) {
+            this.namespaceId = namespaceId;
+            this.topologyName = topologyName;
+        }
+
+        @Override
+        public void onTopology(String exportedTopologyName, String config) {
+            Topology topology = new Topology();
+            topology.setName(StringUtils.isEmpty(topologyName) ? exportedTopologyName : topologyName);
+            topology.setConfig(config);
+            topology.setNamespaceId(namespaceId);
+            newTopology = addTopology(topology);
+        }
+
+        @Override
+        public void onBundleIdToType(Map<String, String> bundleIdToType) {
+            if (bundleIdToType != null) {
+                this.bundleIdToType = bundleIdToType;
+            }
         }
 
-        // import sources
-        for (TopologySource topologySource : topologySources) {
+        @Override
+        public void onSource(TopologySource topologySource) {
             Long oldComponentId = topologySource.getId();
+            topologySource.setOutputStreamIds(importOutputStreams(topologySource.getOutputStreams()));
+            topologySource.setOutputStreams(null);
             topologySource.setId(null);
-            topologySource.setTopologyId(newTopology.getId());
             TopologyComponentBundle bundle = getCurrentTopologyComponentBundle(
                     TopologyComponentBundle.TopologyComponentType.SOURCE,
-                    topologyData.getBundleIdToType().get(topologySource.getTopologyComponentBundleId().toString()));
+                    bundleIdToType.get(topologySource.getTopologyComponentBundleId().toString()));
             topologySource.setTopologyComponentBundleId(bundle.getId());
-            addTopologySource(newTopology.getId(), topologySource);
+            addTopologySource(newTopology.getId(), newTopology.getVersionId(), topologySource);
             oldToNewComponentIds.put(oldComponentId, topologySource.getId());
         }
 
-        // import processors
-        for (TopologyProcessor topologyProcessor : topologyData.getProcessors()) {
+        @Override
+        public void onProcessor(TopologyProcessor topologyProcessor) throws Exception {
             Long oldComponentId = topologyProcessor.getId();
+            topologyProcessor.setOutputStreamIds(importOutputStreams(topologyProcessor.getOutputStreams()));
+            topologyProcessor.setOutputStreams(null);
             topologyProcessor.setId(null);
-            topologyProcessor.setTopologyId(newTopology.getId());
             TopologyComponentBundle bundle;
-            String subType = topologyData.getBundleIdToType().get(topologyProcessor.getTopologyComponentBundleId().toString());
+            String subType = bundleIdToType.get(topologyProcessor.getTopologyComponentBundleId().toString());
             if (TopologyLayoutConstants.JSON_KEY_CUSTOM_PROCESSOR_SUB_TYPE.equals(subType)) {
                 QueryParam queryParam = new QueryParam(CustomProcessorInfo.NAME, topologyProcessor.getConfig().get(CustomProcessorInfo.NAME));
                 Collection<TopologyComponentBundle> result = listCustomProcessorBundlesWithFilter(Collections.singletonList(queryParam));
@@ -743,68 +896,130 @@ public class StreamCatalogService {
                 bundle = getCurrentTopologyComponentBundle(TopologyComponentBundle.TopologyComponentType.PROCESSOR, subType);
             }
             topologyProcessor.setTopologyComponentBundleId(bundle.getId());
-            Optional<Object> ruleListObj = topologyProcessor.getConfig().getAnyOptional(RulesProcessor.CONFIG_KEY_RULES);
-            ruleListObj.ifPresent(ruleList -> {
-                List<Long> ruleIds = new ObjectMapper().convertValue(ruleList, new TypeReference<List<Long>>() {});
-                List<Long> updatedRuleIds = new ArrayList<>();
-                if (ComponentTypes.RULE.equals(bundle.getSubType())
-                        || ComponentTypes.PROJECTION.equals(bundle.getSubType())) {
-                    ruleIds.forEach(ruleId -> updatedRuleIds.add(oldToNewRuleIds.get(ruleId)));
-                } else if (bundle.getSubType().equals(ComponentTypes.BRANCH)) {
-                    ruleIds.forEach(ruleId -> updatedRuleIds.add(oldToNewBranchRuleIds.get(ruleId)));
-                } else if (bundle.getSubType().equals(ComponentTypes.WINDOW)) {
-                    ruleIds.forEach(ruleId -> updatedRuleIds.add(oldToNewWindowIds.get(ruleId)));
-                }
-                topologyProcessor.getConfig().setAny(RulesProcessor.CONFIG_KEY_RULES, updatedRuleIds);
-            });
-            addTopologyProcessor(newTopology.getId(), topologyProcessor);
-            oldToNewComponentIds.put(oldComponentId, topologyProcessor.getId());
+            if (topologyProcessor.getConfig().getAnyOptional(RulesProcessor.CONFIG_KEY_RULES).isPresent()) {
+                rulesProcessors.put(oldComponentId, topologyProcessor);
+            } else {
+                addTopologyProcessor(newTopology.getId(), newTopology.getVersionId(), topologyProcessor);
+                oldToNewComponentIds.put(oldComponentId, topologyProcessor.getId());
+            }
         }
 
-        // import sinks
-        for (TopologySink topologySink : topologyData.getSinks()) {
-            topologySink.setTopologyId(newTopology.getId());
+        @Override
+        public void onSink(TopologySink topologySink) {
             Long currentId = topologySink.getId();
             topologySink.setId(null);
             TopologyComponentBundle bundle = getCurrentTopologyComponentBundle(
                     TopologyComponentBundle.TopologyComponentType.SINK,
-                    topologyData.getBundleIdToType().get(topologySink.getTopologyComponentBundleId().toString()));
+                    bundleIdToType.get(topologySink.getTopologyComponentBundleId().toString()));
             topologySink.setTopologyComponentBundleId(bundle.getId());
             if (bundle.getSubType().equals(NOTIFICATION)) {
                 updateNotifierJarFileName(topologySink);
             }
-            addTopologySink(newTopology.getId(), topologySink);
+            addTopologySink(newTopology.getId(), newTopology.getVersionId(), topologySink);
             oldToNewComponentIds.put(currentId, topologySink.getId());
         }
 
-        // import edges
-        for (TopologyEdge topologyEdge : topologyData.getEdges()) {
+        @Override
+        public void onRule(TopologyRule rule) throws Exception {
+            Long currentId = rule.getId();
+            rule.setId(null);
+            TopologyRule addedRule = addRule(newTopology.getId(), newTopology.getVersionId(), rule);
+            oldToNewRuleIds.put(currentId, addedRule.getId());
+        }
+
+        @Override
+        public void onWindow(TopologyWindow window) throws Exception {
+            Long currentId = window.getId();
+            window.setId(null);
+            TopologyWindow addedWindow = addWindow(newTopology.getId(), newTopology.getVersionId(), window);
+            oldToNewWindowIds.put(currentId, addedWindow.getId());
+        }
+
+        @Override
+        public void onBranchRule(TopologyBranchRule branchRule) throws Exception {
+            Long currentId = branchRule.getId();
+            branchRule.setId(null);
+            TopologyBranchRule addedBranchRule = addBranchRule(newTopology.getId(), newTopology.getVersionId(), branchRule);
+            oldToNewBranchRuleIds.put(currentId, addedBranchRule.getId());
+        }
+
+        @Override
+        public void onEdge(TopologyEdge topologyEdge) {
+            addRulesProcessors();
             List<StreamGrouping> streamGroupings = topologyEdge.getStreamGroupings();
             for (StreamGrouping streamGrouping : streamGroupings) {
                 Long newStreamId = oldToNewStreamIds.get(streamGrouping.getStreamId());
                 streamGrouping.setStreamId(newStreamId);
             }
             topologyEdge.setId(null);
-            topologyEdge.setTopologyId(newTopology.getId());
             topologyEdge.setFromId(oldToNewComponentIds.get(topologyEdge.getFromId()));
             topologyEdge.setToId(oldToNewComponentIds.get(topologyEdge.getToId()));
-            addTopologyEdge(newTopology.getId(), topologyEdge);
-        }
-
-        // import topology editor metadata
-        TopologyEditorMetadata topologyEditorMetadata = topologyData.getTopologyEditorMetadata();
-        topologyEditorMetadata.setTopologyId(newTopology.getId());
-        if (topologyEditorMetadata.getData() != null) {
-            TopologyUIData topologyUIData = new ObjectMapper().readValue(topologyEditorMetadata.getData(), TopologyUIData.class);
-            topologyUIData.getSources().forEach(c -> c.setId(oldToNewComponentIds.get(c.getId())));
-            topologyUIData.getProcessors().forEach(c -> c.setId(oldToNewComponentIds.get(c.getId())));
-            topologyUIData.getSinks().forEach(c -> c.setId(oldToNewComponentIds.get(c.getId())));
-            topologyEditorMetadata.setData(new ObjectMapper().writeValueAsString(topologyUIData));
-        } else {
-            topologyEditorMetadata.setData(StringUtils.EMPTY);
+            addTopologyEdge(newTopology.getId(), newTopology.getVersionId(), topologyEdge);
+        }
+
+        @Override
+        public void onTopologyEditorMetadata(TopologyEditorMetadata topologyEditorMetadata) throws Exception {
+            addRulesProcessors();
+            if (topologyEditorMetadata == null) {
+                return;
+            }
+            topologyEditorMetadata.setTopologyId(newTopology.getId());
+            if (topologyEditorMetadata.getData() != null) {
+                TopologyUIData topologyUIData = new ObjectMapper().readValue(topologyEditorMetadata.getData(), TopologyUIData.class);
+                topologyUIData.getSources().forEach(c -> c.setId(oldToNewComponentIds.get(c.getId())));
+                topologyUIData.getProcessors().forEach(c -> c.setId(oldToNewComponentIds.get(c.getId())));
+                topologyUIData.getSinks().forEach(c -> c.setId(oldToNewComponentIds.get(c.getId())));
+                topologyEditorMetadata.setData(new ObjectMapper().writeValueAsString(topologyUIData));
+            } else {
+                topologyEditorMetadata.setData(StringUtils.EMPTY);
+            }
+            addTopologyEditorMetadata(newTopology.getId(), newTopology.getVersionId(), topologyEditorMetadata);
+        }
+
+        void finish() {
+            addRulesProcessors();
+        }
+
+        Topology getTopology() {
+            return newTopology;
+        }
+
+        private List<Long> importOutputStreams(List<TopologyStream> streams) {
+            List<Long> importedOutputStreamIds = new ArrayList<>();
+            for (TopologyStream stream : streams) {
+                Long oldId = stream.getId();
+                Long newId = oldToNewStreamIds.get(oldId);
+                if (newId == null) {
+                    stream.setId(null);
+                    TopologyStream addedTopologyStream = addStreamInfo(newTopology.getId(), newTopology.getVersionId(), stream);
+                    newId = addedTopologyStream.getId();
+                    oldToNewStreamIds.put(oldId, newId);
+                }
+                importedOutputStreamIds.add(newId);
+            }
+            return importedOutputStreamIds;
+        }
+
+        private void addRulesProcessors() {
+            for (Map.Entry<Long, TopologyProcessor> entry : rulesProcessors.entrySet()) {
+                TopologyProcessor topologyProcessor = entry.getValue();
+                String subType = getTopologyComponentBundle(topologyProcessor.getTopologyComponentBundleId()).getSubType();
+                Object ruleList = topologyProcessor.getConfig().getAny(RulesProcessor.CONFIG_KEY_RULES);
+                List<Long> ruleIds = new ObjectMapper().convertValue(ruleList, new TypeReference<List<Long>>() {});
+                List<Long> updatedRuleIds = new ArrayList<>();
+                if (ComponentTypes.RULE.equals(subType) || ComponentTypes.PROJECTION.equals(subType)) {
+                    ruleIds.forEach(ruleId -> updatedRuleIds.add(oldToNewRuleIds.get(ruleId)));
+                } else if (ComponentTypes.BRANCH.equals(subType)) {
+                    ruleIds.forEach(ruleId -> updatedRuleIds.add(oldToNewBranchRuleIds.get(ruleId)));
+                } else if (ComponentTypes.WINDOW.equals(subType)) {
+                    ruleIds.forEach(ruleId -> updatedRuleIds.add(oldToNewWindowIds.get(ruleId)));
+                }
+                topologyProcessor.getConfig().setAny(RulesProcessor.CONFIG_KEY_RULES, updatedRuleIds);
+                addTopologyProcessor(newTopology.getId(), newTopology.getVersionId(), topologyProcessor);
+                oldToNewComponentIds.put(entry.getKey(), topologyProcessor.getId());
+            }
+            rulesProcessors.clear();
         }
-        addTopologyEditorMetadata(newTopology.getId(), topologyData.getTopologyEditorMetadata());
-        return newTopology;
     }
 
     private void updateNotifierJarFileName(TopologySink sink) {
@@ -819,38 +1034,76 @@ public class StreamCatalogService {
         }
     }
 
+    private interface TopologyImport {
+        void run(TopologyImporter importer) throws Exception;
+    }
+
+    /**
+     * Imports the exported topology read from the stream, creating the entities as they are read.
+     *
+     * @param topologyName the name of the imported topology, the exported name if null
+     */
+    public Topology importTopology(Long namespaceId, InputStream exportedTopology, String topologyName) throws Exception {
+        Preconditions.checkNotNull(exportedTopology);
+        return importTopology(namespaceId, topologyName,
+                importer -> new TopologyDataReader(importer).read(exportedTopology));
+    }
+
     public Topology importTopology(Long namespaceId, TopologyData topologyData) throws Exception {
         Preconditions.checkNotNull(topologyData);
-        Topology newTopology = new Topology();
-        try {
-            newTopology.setName(topologyData.getTopologyName());
-            newTopology.setConfig(topologyData.getConfig());
-            newTopology.setNamespaceId(namespaceId);
-            addTopology(newTopology);
-        } catch (Exception ex) {
-            LOG.error("Got exception while importing the topology", ex);
-            throw ex;
-        }
+        return importTopology(namespaceId, null, importer -> {
+            importer.onTopology(topologyData.getTopologyName(), topologyData.getConfig());
+            importer.onBundleIdToType(topologyData.getBundleIdToType());
+            for (TopologySource topologySource : topologyData.getSources()) {
+                importer.onSource(topologySource);
+            }
+            for (TopologyProcessor topologyProcessor : topologyData.getProcessors()) {
+                importer.onProcessor(topologyProcessor);
+            }
+            for (TopologySink topologySink : topologyData.getSinks()) {
+                importer.onSink(topologySink);
+            }
+            for (TopologyRule rule : topologyData.getRules()) {
+                importer.onRule(rule);
+            }
+            for (TopologyWindow window : topologyData.getWindows()) {
+                importer.onWindow(window);
+            }
+            for (TopologyBranchRule branchRule : topologyData.getBranchRules()) {
+                importer.onBranchRule(branchRule);
+            }
+            for (TopologyEdge topologyEdge : topologyData.getEdges()) {
+                importer.onEdge(topologyEdge);
+            }
+            importer.onTopologyEditorMetadata(topologyData.getTopologyEditorMetadata());
+        });
+    }
 
+    private Topology importTopology(Long namespaceId, String topologyName, TopologyImport topologyImport) throws Exception {
+        TopologyImporter importer = new TopologyImporter(namespaceId, topologyName);
         try {
-            doImportTopology(newTopology, topologyData);
+            topologyImport.run(importer);
+            importer.finish();
         } catch (Exception ex) {
             LOG.error("Got exception while importing the topology", ex);
-            removeTopology(newTopology.getId(), true);
+            if (importer.getTopology() != null) {
+                removeTopology(importer.getTopology().getId(), true);
+            }
             throw ex;
         }
-        return newTopology;
+        return importer.getTopology();
     }
 
     public Topology cloneTopology(Long namespaceId, Topology topology) throws Exception {
         Preconditions.checkNotNull(topology, "Topology does not exist");
-        TopologyData exported = new TopologyData(doExportTopology(topology));
-        Optional<String> latest = getLatestCloneName(exported.getTopologyName(), listTopologies());
-        exported.setTopologyName(getNextCloneName(latest.orElse(topology.getName())));
+        ByteArrayOutputStream exported = new ByteArrayOutputStream();
+        exportTopology(topology, exported);
+        Optional<String> latest = getLatestCloneName(topology.getName(), listTopologies());
         if (namespaceId == null) {
             namespaceId = topology.getNamespaceId();
         }
-        return importTopology(namespaceId, exported);
+        return importTopology(namespaceId, new ByteArrayInputStream(exported.toByteArray()),
+                getNextCloneName(latest.orElse(topology.getName())));
     }
 
     Optional<String> getLatestCloneName(String topologyName, Collection<Topology> topologies) {
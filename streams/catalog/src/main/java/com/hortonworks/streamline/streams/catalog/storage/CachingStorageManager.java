@@ -0,0 +1,348 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.catalog.storage;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.hortonworks.registries.common.QueryParam;
+import com.hortonworks.registries.common.transaction.TransactionIsolation;
+import com.hortonworks.registries.storage.OrderByField;
+import com.hortonworks.registries.storage.Storable;
+import com.hortonworks.registries.storage.StorableKey;
+import com.hortonworks.registries.storage.StorageManager;
+import com.hortonworks.registries.storage.TransactionManager;
+import com.hortonworks.registries.storage.exception.StorageException;
+import com.hortonworks.registries.storage.search.SearchQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link StorageManager} decorator caching the entities and the list/find results of the configured namespaces.
+ * <p>
+ * Any write to a namespace (add, addOrUpdate, update, remove) invalidates everything cached for the namespace. Within
+ * a transaction the namespaces written by the transaction are read from the underlying storage, and are invalidated
+ * again when the transaction commits or rolls back, so that neither uncommitted entities nor entities read before the
+ * commit by other threads are served afterwards. A load racing with a write is not cached.
+ * <p>
+ * The cached entities are copied (through {@link Storable#toMap()} and {@link Storable#fromMap(Map)}, the same way
+ * they are read from the storage) when they are cached and when they are returned, since callers modify them.
+ */
+public class CachingStorageManager implements StorageManager, TransactionManager {
+    private static final Logger LOG = LoggerFactory.getLogger(CachingStorageManager.class);
+
+    private static final String LIST_ALL = "list";
+
+    private final StorageManager delegate;
+    private final Map<String, Region> regions = new HashMap<>();
+    // namespaces written by the transaction of the current thread, null when there is no transaction
+    private final ThreadLocal<Set<String>> transactionWrites = new ThreadLocal<>();
+
+    /**
+     * Cache settings of a namespace.
+     */
+    public static class NamespaceCacheConfig {
+        private long expiryMs;
+        private long maxSize;
+
+        public NamespaceCacheConfig() {
+        }
+
+        public NamespaceCacheConfig(long expiryMs, long maxSize) {
+            this.expiryMs = expiryMs;
+            this.maxSize = maxSize;
+        }
+
+        public long getExpiryMs() {
+            return expiryMs;
+        }
+
+        public void setExpiryMs(long expiryMs) {
+            this.expiryMs = expiryMs;
+        }
+
+        public long getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(long maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    private static class Region {
+        private final Cache<StorableKey, Storable> entities;
+        private final Cache<Object, List<Storable>> queries;
+        private final AtomicLong generation = new AtomicLong();
+
+        Region(NamespaceCacheConfig config) {
+            entities = CacheBuilder.newBuilder()
+                    .expireAfterWrite(config.getExpiryMs(), TimeUnit.MILLISECONDS)
+                    .maximumSize(config.getMaxSize())
+                    .build();
+            queries = CacheBuilder.newBuilder()
+                    .expireAfterWrite(config.getExpiryMs(), TimeUnit.MILLISECONDS)
+                    .maximumSize(config.getMaxSize())
+                    .build();
+        }
+
+        void invalidate() {
+            generation.incrementAndGet();
+            entities.invalidateAll();
+            queries.invalidateAll();
+        }
+    }
+
+    /**
+     * @param delegate         the underlying storage, already initialized
+     * @param namespaceConfigs the cache settings per namespace, the other namespaces are not cached
+     */
+    public CachingStorageManager(StorageManager delegate, Map<String, NamespaceCacheConfig> namespaceConfigs) {
+        this.delegate = delegate;
+        for (Map.Entry<String, NamespaceCacheConfig> entry : namespaceConfigs.entrySet()) {
+            regions.put(entry.getKey(), new Region(entry.getValue()));
+        }
+        LOG.info("Caching storage entities of namespaces {}", regions.keySet());
+    }
+
+    public StorageManager getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void init(Map<String, Object> properties) {
+        delegate.init(properties);
+    }
+
+    @Override
+    public void add(Storable storable) throws StorageException {
+        try {
+            delegate.add(storable);
+        } finally {
+            written(storable.getNameSpace());
+        }
+    }
+
+    @Override
+    public <T extends Storable> T remove(StorableKey key) throws StorageException {
+        try {
+            return delegate.remove(key);
+        } finally {
+            written(key.getNameSpace());
+        }
+    }
+
+    @Override
+    public void addOrUpdate(Storable storable) throws StorageException {
+        try {
+            delegate.addOrUpdate(storable);
+        } finally {
+            written(storable.getNameSpace());
+        }
+    }
+
+    @Override
+    public void update(Storable storable) {
+        try {
+            delegate.update(storable);
+        } finally {
+            written(storable.getNameSpace());
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends Storable> T get(StorableKey key) throws StorageException {
+        Region region = readableRegion(key.getNameSpace());
+        if (region == null) {
+            return delegate.get(key);
+        }
+        Storable cached = region.entities.getIfPresent(key);
+        if (cached != null) {
+            return (T) copy(cached);
+        }
+        long generation = region.generation.get();
+        T result = delegate.get(key);
+        if (result != null && result.isCacheable()) {
+            Storable copy = copy(result);
+            if (region.generation.get() == generation) {
+                region.entities.put(key, copy);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public <T extends Storable> Collection<T> find(String namespace, List<QueryParam> queryParams)
+            throws StorageException {
+        return query(namespace, queryKey(queryParams, null), () -> delegate.find(namespace, queryParams));
+    }
+
+    @Override
+    public <T extends Storable> Collection<T> find(String namespace, List<QueryParam> queryParams,
+                                                   List<OrderByField> orderByFields) throws StorageException {
+        return query(namespace, queryKey(queryParams, orderByFields),
+                () -> delegate.find(namespace, queryParams, orderByFields));
+    }
+
+    @Override
+    public <T extends Storable> Collection<T> list(String namespace) throws StorageException {
+        return query(namespace, LIST_ALL, () -> delegate.list(namespace));
+    }
+
+    @Override
+    public <T extends Storable> Collection<T> search(SearchQuery searchQuery) {
+        return delegate.search(searchQuery);
+    }
+
+    @Override
+    public void cleanup() throws StorageException {
+        for (Region region : regions.values()) {
+            region.invalidate();
+        }
+        delegate.cleanup();
+    }
+
+    @Override
+    public Long nextId(String namespace) throws StorageException {
+        return delegate.nextId(namespace);
+    }
+
+    @Override
+    public void registerStorables(Collection<Class<? extends Storable>> classes) throws StorageException {
+        delegate.registerStorables(classes);
+    }
+
+    @Override
+    public void beginTransaction(TransactionIsolation transactionIsolationLevel) {
+        if (delegate instanceof TransactionManager) {
+            ((TransactionManager) delegate).beginTransaction(transactionIsolationLevel);
+        }
+        transactionWrites.set(new HashSet<>());
+    }
+
+    @Override
+    public void rollbackTransaction() {
+        try {
+            if (delegate instanceof TransactionManager) {
+                ((TransactionManager) delegate).rollbackTransaction();
+            }
+        } finally {
+            endTransaction();
+        }
+    }
+
+    @Override
+    public void commitTransaction() {
+        try {
+            if (delegate instanceof TransactionManager) {
+                ((TransactionManager) delegate).commitTransaction();
+            }
+        } finally {
+            endTransaction();
+        }
+    }
+
+    private void endTransaction() {
+        Set<String> written = transactionWrites.get();
+        transactionWrites.remove();
+        if (written != null) {
+            for (String namespace : written) {
+                regions.get(namespace).invalidate();
+            }
+        }
+    }
+
+    private void written(String namespace) {
+        Region region = regions.get(namespace);
+        if (region != null) {
+            region.invalidate();
+            Set<String> written = transactionWrites.get();
+            if (written != null) {
+                written.add(namespace);
+            }
+        }
+    }
+
+    // the cache region of the namespace, if it can be read by the current thread
+    private Region readableRegion(String namespace) {
+        Region region = regions.get(namespace);
+        if (region != null) {
+            Set<String> written = transactionWrites.get();
+            if (written != null && written.contains(namespace)) {
+                return null;
+            }
+        }
+        return region;
+    }
+
+    private static Object queryKey(List<QueryParam> queryParams, List<OrderByField> orderByFields) {
+        return Arrays.asList(queryParams != null ? new ArrayList<>(queryParams) : null,
+                orderByFields != null ? new ArrayList<>(orderByFields) : null);
+    }
+
+    private interface Query<T extends Storable> {
+        Collection<T> execute();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Storable> Collection<T> query(String namespace, Object queryKey, Query<T> query) {
+        Region region = readableRegion(namespace);
+        if (region == null) {
+            return query.execute();
+        }
+        List<Storable> cached = region.queries.getIfPresent(queryKey);
+        if (cached != null) {
+            return (Collection<T>) copyAll(cached);
+        }
+        long generation = region.generation.get();
+        Collection<T> result = query.execute();
+        if (result != null && result.stream().allMatch(Storable::isCacheable)) {
+            List<Storable> copy = copyAll(result);
+            if (region.generation.get() == generation) {
+                region.queries.put(queryKey, Collections.unmodifiableList(copy));
+            }
+        }
+        return result;
+    }
+
+    private static List<Storable> copyAll(Collection<? extends Storable> storables) {
+        List<Storable> copies = new ArrayList<>(storables.size());
+        for (Storable storable : storables) {
+            copies.add(copy(storable));
+        }
+        return copies;
+    }
+
+    private static Storable copy(Storable storable) {
+        try {
+            return storable.getClass().newInstance().fromMap(storable.toMap());
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new StorageException("Cannot copy storable of class " + storable.getClass(), e);
+        }
+    }
+}
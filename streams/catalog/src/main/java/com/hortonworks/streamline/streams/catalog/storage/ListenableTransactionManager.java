@@ -0,0 +1,115 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.catalog.storage;
+
+import com.hortonworks.registries.common.transaction.TransactionIsolation;
+import com.hortonworks.registries.storage.TransactionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link TransactionManager} decorator running actions once the transaction of the current thread commits, such as
+ * the updates of in-memory state derived from the storage, which must not see the writes of a transaction rolled back.
+ * <p>
+ * Nested transactions are part of the outermost one: the actions run when the outermost transaction commits, and are
+ * dropped if any of the nested transactions rolls back.
+ */
+public class ListenableTransactionManager implements TransactionManager {
+    private static final Logger LOG = LoggerFactory.getLogger(ListenableTransactionManager.class);
+
+    private final TransactionManager delegate;
+    // the transaction of the current thread, null when there is no transaction
+    private final ThreadLocal<Transaction> transaction = new ThreadLocal<>();
+
+    private static class Transaction {
+        private final List<Runnable> afterCommit = new ArrayList<>();
+        private int depth;
+        private boolean rolledBack;
+    }
+
+    public ListenableTransactionManager(TransactionManager delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Runs the action once the transaction of the current thread commits, or right away without a transaction. The
+     * action is dropped if the transaction rolls back.
+     */
+    public void afterCommit(Runnable action) {
+        Transaction current = transaction.get();
+        if (current == null) {
+            action.run();
+        } else {
+            current.afterCommit.add(action);
+        }
+    }
+
+    @Override
+    public void beginTransaction(TransactionIsolation transactionIsolationLevel) {
+        delegate.beginTransaction(transactionIsolationLevel);
+        Transaction current = transaction.get();
+        if (current == null) {
+            current = new Transaction();
+            transaction.set(current);
+        }
+        current.depth++;
+    }
+
+    @Override
+    public void rollbackTransaction() {
+        try {
+            delegate.rollbackTransaction();
+        } finally {
+            endTransaction(false);
+        }
+    }
+
+    @Override
+    public void commitTransaction() {
+        boolean committed = false;
+        try {
+            delegate.commitTransaction();
+            committed = true;
+        } finally {
+            endTransaction(committed);
+        }
+    }
+
+    private void endTransaction(boolean committed) {
+        Transaction current = transaction.get();
+        if (current == null) {
+            return;
+        }
+        current.rolledBack |= !committed;
+        if (--current.depth > 0) {
+            return;
+        }
+        transaction.remove();
+        if (current.rolledBack) {
+            return;
+        }
+        for (Runnable action : current.afterCommit) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                LOG.error("Failed to run action after the commit of the transaction", e);
+            }
+        }
+    }
+}
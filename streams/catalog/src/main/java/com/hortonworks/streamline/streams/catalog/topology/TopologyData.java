@@ -28,6 +28,8 @@ import com.hortonworks.streamline.streams.catalog.TopologySink;
 import com.hortonworks.streamline.streams.catalog.TopologyWindow;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -35,6 +37,26 @@ import java.util.stream.Collectors;
  * Wrapper class holding the various topology entities for export/import.
  */
 public final class TopologyData {
+    public static final String TOPOLOGY_NAME = "topologyName";
+    public static final String CONFIG = "config";
+    public static final String SOURCES = "sources";
+    public static final String SINKS = "sinks";
+    public static final String PROCESSORS = "processors";
+    public static final String EDGES = "edges";
+    public static final String RULES = "rules";
+    public static final String WINDOWS = "windows";
+    public static final String BRANCH_RULES = "branchRules";
+    public static final String BUNDLE_ID_TO_TYPE = "bundleIdToType";
+    public static final String TOPOLOGY_EDITOR_METADATA = "topologyEditorMetadata";
+
+    /**
+     * The order in which the entities can be imported, each one referring only to the entities before it
+     * (except for the rules processors referring to the rules).
+     */
+    public static final List<String> IMPORT_ORDER = Collections.unmodifiableList(Arrays.asList(
+            TOPOLOGY_NAME, CONFIG, BUNDLE_ID_TO_TYPE, SOURCES, PROCESSORS, SINKS, RULES, WINDOWS, BRANCH_RULES,
+            EDGES, TOPOLOGY_EDITOR_METADATA));
+
     private String topologyName;
     private String config;
     private List<TopologySource> sources = new ArrayList<>();
@@ -0,0 +1,200 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.catalog.topology;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hortonworks.streamline.streams.catalog.TopologyBranchRule;
+import com.hortonworks.streamline.streams.catalog.TopologyEdge;
+import com.hortonworks.streamline.streams.catalog.TopologyEditorMetadata;
+import com.hortonworks.streamline.streams.catalog.TopologyProcessor;
+import com.hortonworks.streamline.streams.catalog.TopologyRule;
+import com.hortonworks.streamline.streams.catalog.TopologySink;
+import com.hortonworks.streamline.streams.catalog.TopologySource;
+import com.hortonworks.streamline.streams.catalog.TopologyWindow;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.hortonworks.streamline.streams.catalog.topology.TopologyData.IMPORT_ORDER;
+
+/**
+ * Reads the JSON of a {@link TopologyData} incrementally, handing the entities one at a time to a {@link Handler} in
+ * the {@link TopologyData#IMPORT_ORDER}.
+ * <p>
+ * The sections found before the ones they depend on (as in the exports written by the older versions) are buffered
+ * until they can be handled.
+ */
+public final class TopologyDataReader {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Handler handler;
+
+    private final Map<String, JsonNode> buffered = new HashMap<>();
+    private int next;
+    private String topologyName;
+    private String config;
+    private boolean topologyHandled;
+
+    public interface Handler {
+        void onTopology(String topologyName, String config) throws Exception;
+
+        void onBundleIdToType(Map<String, String> bundleIdToType) throws Exception;
+
+        void onSource(TopologySource source) throws Exception;
+
+        void onProcessor(TopologyProcessor processor) throws Exception;
+
+        void onSink(TopologySink sink) throws Exception;
+
+        void onRule(TopologyRule rule) throws Exception;
+
+        void onWindow(TopologyWindow window) throws Exception;
+
+        void onBranchRule(TopologyBranchRule branchRule) throws Exception;
+
+        void onEdge(TopologyEdge edge) throws Exception;
+
+        void onTopologyEditorMetadata(TopologyEditorMetadata metadata) throws Exception;
+    }
+
+    public TopologyDataReader(Handler handler) {
+        this.handler = handler;
+    }
+
+    public void read(InputStream in) throws Exception {
+        try (JsonParser parser = mapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Exported topology should be a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String section = parser.getCurrentName();
+                parser.nextToken();
+                int index = IMPORT_ORDER.indexOf(section);
+                if (index < 0) {
+                    throw new IllegalArgumentException("Unknown field '" + section + "' in exported topology");
+                } else if (index < next || buffered.containsKey(section)) {
+                    throw new IllegalArgumentException("Duplicate field '" + section + "' in exported topology");
+                } else if (index == next) {
+                    read(section, parser);
+                    next++;
+                    readBuffered();
+                } else {
+                    buffered.put(section, parser.readValueAsTree());
+                }
+            }
+        }
+        // the sections missing from the export are empty
+        while (next < IMPORT_ORDER.size()) {
+            next++;
+            readBuffered();
+        }
+        ensureTopologyHandled();
+    }
+
+    private void readBuffered() throws Exception {
+        while (next < IMPORT_ORDER.size() && buffered.containsKey(IMPORT_ORDER.get(next))) {
+            String section = IMPORT_ORDER.get(next);
+            try (JsonParser parser = mapper.treeAsTokens(buffered.remove(section))) {
+                parser.nextToken();
+                read(section, parser);
+            }
+            next++;
+        }
+    }
+
+    // reads the value of the section the parser is positioned at
+    private void read(String section, JsonParser parser) throws Exception {
+        if (TopologyData.TOPOLOGY_NAME.equals(section)) {
+            topologyName = parser.getValueAsString();
+            return;
+        } else if (TopologyData.CONFIG.equals(section)) {
+            config = parser.getValueAsString();
+            return;
+        }
+        ensureTopologyHandled();
+        switch (section) {
+            case TopologyData.BUNDLE_ID_TO_TYPE:
+                handler.onBundleIdToType(parser.readValueAs(new TypeReference<Map<String, String>>() { }));
+                break;
+            case TopologyData.SOURCES:
+                while (nextElement(parser)) {
+                    handler.onSource(parser.readValueAs(TopologySource.class));
+                }
+                break;
+            case TopologyData.PROCESSORS:
+                while (nextElement(parser)) {
+                    handler.onProcessor(parser.readValueAs(TopologyProcessor.class));
+                }
+                break;
+            case TopologyData.SINKS:
+                while (nextElement(parser)) {
+                    handler.onSink(parser.readValueAs(TopologySink.class));
+                }
+                break;
+            case TopologyData.RULES:
+                while (nextElement(parser)) {
+                    handler.onRule(parser.readValueAs(TopologyRule.class));
+                }
+                break;
+            case TopologyData.WINDOWS:
+                while (nextElement(parser)) {
+                    handler.onWindow(parser.readValueAs(TopologyWindow.class));
+                }
+                break;
+            case TopologyData.BRANCH_RULES:
+                while (nextElement(parser)) {
+                    handler.onBranchRule(parser.readValueAs(TopologyBranchRule.class));
+                }
+                break;
+            case TopologyData.EDGES:
+                while (nextElement(parser)) {
+                    handler.onEdge(parser.readValueAs(TopologyEdge.class));
+                }
+                break;
+            case TopologyData.TOPOLOGY_EDITOR_METADATA:
+                handler.onTopologyEditorMetadata(parser.readValueAs(TopologyEditorMetadata.class));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown section " + section);
+        }
+    }
+
+    private void ensureTopologyHandled() throws Exception {
+        if (!topologyHandled) {
+            topologyHandled = true;
+            handler.onTopology(topologyName, config);
+        }
+    }
+
+    // moves to the next element of the array the parser is in, a null array being empty
+    private static boolean nextElement(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return false;
+        }
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        } else if (token == null) {
+            throw new IllegalArgumentException("Unexpected end of exported topology");
+        }
+        return true;
+    }
+}
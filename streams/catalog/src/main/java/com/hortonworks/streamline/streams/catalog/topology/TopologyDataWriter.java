@@ -0,0 +1,63 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.catalog.topology;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes an exported topology as the JSON of a {@link TopologyData}, one entity at a time.
+ * <p>
+ * The sections should be written in the {@link TopologyData#IMPORT_ORDER} so that the export can be imported without
+ * buffering. The output stream is flushed but not closed by {@link #close()}.
+ */
+public final class TopologyDataWriter implements Closeable {
+    private final JsonGenerator generator;
+
+    public TopologyDataWriter(OutputStream out) throws IOException {
+        generator = new ObjectMapper().getFactory().createGenerator(out, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartObject();
+    }
+
+    public void writeField(String name, Object value) throws IOException {
+        generator.writeFieldName(name);
+        generator.writeObject(value);
+    }
+
+    public void startArray(String name) throws IOException {
+        generator.writeArrayFieldStart(name);
+    }
+
+    public void write(Object entity) throws IOException {
+        generator.writeObject(entity);
+    }
+
+    public void endArray() throws IOException {
+        generator.writeEndArray();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.writeEndObject();
+        generator.close();
+    }
+}
@@ -18,16 +18,8 @@ package com.hortonworks.streamline.streams.catalog.topology.component;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import com.hortonworks.streamline.common.ComponentTypes;
-import com.hortonworks.streamline.streams.catalog.TopologyBranchRule;
-import com.hortonworks.streamline.streams.catalog.TopologyRule;
-import com.hortonworks.streamline.streams.catalog.TopologyEdge;
-import com.hortonworks.streamline.streams.catalog.TopologyProcessor;
-import com.hortonworks.streamline.streams.catalog.TopologySink;
-import com.hortonworks.streamline.streams.catalog.TopologySource;
-import com.hortonworks.streamline.streams.catalog.TopologyWindow;
 import com.hortonworks.streamline.streams.catalog.service.StreamCatalogService;
 import com.hortonworks.streamline.streams.catalog.topology.TopologyComponentBundle;
-import com.hortonworks.streamline.streams.catalog.topology.TopologyData;
 import com.hortonworks.streamline.streams.layout.component.Edge;
 import com.hortonworks.streamline.streams.layout.component.StreamlineComponent;
 import com.hortonworks.streamline.streams.layout.component.StreamlineProcessor;
@@ -37,119 +29,109 @@ import com.hortonworks.streamline.streams.layout.component.TopologyDagVisitor;
 import com.hortonworks.streamline.streams.layout.component.impl.RulesProcessor;
 import com.hortonworks.streamline.streams.layout.component.rule.Rule;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
- * Visitor that fills the topology entities into a {@link TopologyData} object for exporting the topology
+ * Visitor that collects the ids of the topology entities for exporting the topology, so that the entities can be
+ * fetched and written one at a time.
  */
 public final class TopologyExportVisitor extends TopologyDagVisitor {
-    private final Long topologyId;
-    private final TopologyData topologyData;
     private final StreamCatalogService streamCatalogService;
-    private final Map<String, RulesHandler> rulesHandlerMap;
-
-    public TopologyExportVisitor(Long topologyId, TopologyData topologyData, StreamCatalogService streamCatalogService) {
-        this.topologyId = topologyId;
-        this.topologyData = topologyData;
+    private final List<Long> sourceIds = new ArrayList<>();
+    private final List<Long> processorIds = new ArrayList<>();
+    private final List<Long> sinkIds = new ArrayList<>();
+    private final List<Long> edgeIds = new ArrayList<>();
+    private final List<Long> ruleIds = new ArrayList<>();
+    private final List<Long> windowIds = new ArrayList<>();
+    private final List<Long> branchRuleIds = new ArrayList<>();
+    private final Map<String, String> bundleIdToType = new HashMap<>();
+    private final Map<String, List<Long>> ruleIdsBySubType;
+
+    public TopologyExportVisitor(StreamCatalogService streamCatalogService) {
         this.streamCatalogService = streamCatalogService;
-        rulesHandlerMap = createRuleHandlerMap();
-    }
-
-    private interface RulesHandler {
-        void handle(Rule rule) throws Exception;
-    }
-
-    private Map<String, RulesHandler> createRuleHandlerMap() {
-        ImmutableMap.Builder<String, RulesHandler> rulesHandlerBuilder = ImmutableMap.builder();
-
-        RulesHandler rulesHandler = new RulesHandler() {
-            @Override
-            public void handle(Rule rule) throws Exception {
-                TopologyRule topologyRule = streamCatalogService.getRule(topologyId, rule.getId());
-                topologyData.addRule(topologyRule);
-            }
-        };
-
-        rulesHandlerBuilder.put(ComponentTypes.RULE, rulesHandler);
-        rulesHandlerBuilder.put(ComponentTypes.PROJECTION, rulesHandler);
-
-        rulesHandlerBuilder.put(ComponentTypes.BRANCH, new RulesHandler() {
-            @Override
-            public void handle(Rule rule) throws Exception {
-                TopologyBranchRule topologyBranchRule = streamCatalogService.getBranchRule(topologyId, rule.getId());
-                topologyData.addBranch(topologyBranchRule);
-            }
-        });
-
-        rulesHandlerBuilder.put(ComponentTypes.WINDOW, new RulesHandler() {
-            @Override
-            public void handle(Rule rule) throws Exception {
-                TopologyWindow topologyWindow = streamCatalogService.getWindow(topologyId, rule.getId());
-                topologyData.addWindow(topologyWindow);
-            }
-        });
-
-        return rulesHandlerBuilder.build();
+        ruleIdsBySubType = ImmutableMap.of(
+                ComponentTypes.RULE, ruleIds,
+                ComponentTypes.PROJECTION, ruleIds,
+                ComponentTypes.BRANCH, branchRuleIds,
+                ComponentTypes.WINDOW, windowIds);
     }
 
     public void visit(RulesProcessor rulesProcessor) {
-        try {
-            TopologyComponentBundle componentBundle = streamCatalogService.getTopologyComponentBundle(
-                    Long.parseLong(rulesProcessor.getTopologyComponentBundleId()));
-            String subType = componentBundle.getSubType();
-            RulesHandler rulesHandler = rulesHandlerMap.get(subType);
-            for (Rule rule : rulesProcessor.getRules()) {
-                rulesHandler.handle(rule);
-            }
-        } catch (Exception e) {
+        TopologyComponentBundle componentBundle = streamCatalogService.getTopologyComponentBundle(
+                Long.parseLong(rulesProcessor.getTopologyComponentBundleId()));
+        List<Long> ids = ruleIdsBySubType.get(componentBundle.getSubType());
+        if (ids == null) {
             throw new RuntimeException(
-                    String.format("Unexpected exception thrown while trying to add the rule %s",
-                            rulesProcessor.getId()),
-                    e);
+                    String.format("Unexpected rules processor type %s of %s",
+                            componentBundle.getSubType(), rulesProcessor.getId()));
+        }
+        for (Rule rule : rulesProcessor.getRules()) {
+            ids.add(rule.getId());
         }
 
-        TopologyProcessor topologyProcessor = streamCatalogService.getTopologyProcessor(
-                topologyId,
-                Long.parseLong(rulesProcessor.getId()));
-        topologyData.addProcessor(topologyProcessor);
+        processorIds.add(Long.parseLong(rulesProcessor.getId()));
         storeBundleIdToType(rulesProcessor);
     }
 
     public void visit(StreamlineSource source) {
-        TopologySource topologySource = streamCatalogService.getTopologySource(
-                topologyId,
-                Long.parseLong(source.getId()));
-        topologyData.addSource(topologySource);
+        sourceIds.add(Long.parseLong(source.getId()));
         storeBundleIdToType(source);
     }
 
     public void visit(StreamlineSink sink) {
-        TopologySink topologySink = streamCatalogService.getTopologySink(
-                topologyId,
-                Long.parseLong(sink.getId()));
-
-        topologyData.addSink(topologySink);
+        sinkIds.add(Long.parseLong(sink.getId()));
         storeBundleIdToType(sink);
     }
 
     public void visit(StreamlineProcessor processor) {
-        TopologyProcessor topologyProcessor = streamCatalogService.getTopologyProcessor(
-                topologyId,
-                Long.parseLong(processor.getId()));
-        topologyData.addProcessor(topologyProcessor);
+        processorIds.add(Long.parseLong(processor.getId()));
         storeBundleIdToType(processor);
     }
 
 
     public void visit(Edge edge) {
-        TopologyEdge topologyEdge = streamCatalogService.getTopologyEdge(topologyId, Long.parseLong(edge.getId()));
-        topologyData.addEdge(topologyEdge);
+        edgeIds.add(Long.parseLong(edge.getId()));
+    }
+
+    public List<Long> getSourceIds() {
+        return sourceIds;
+    }
+
+    public List<Long> getProcessorIds() {
+        return processorIds;
+    }
+
+    public List<Long> getSinkIds() {
+        return sinkIds;
+    }
+
+    public List<Long> getEdgeIds() {
+        return edgeIds;
+    }
+
+    public List<Long> getRuleIds() {
+        return ruleIds;
+    }
+
+    public List<Long> getWindowIds() {
+        return windowIds;
+    }
+
+    public List<Long> getBranchRuleIds() {
+        return branchRuleIds;
+    }
+
+    public Map<String, String> getBundleIdToType() {
+        return bundleIdToType;
     }
 
     private void storeBundleIdToType(StreamlineComponent component) {
         TopologyComponentBundle bundle = streamCatalogService.getTopologyComponentBundle(
                 Long.parseLong(component.getTopologyComponentBundleId()));
         Preconditions.checkNotNull(bundle, "No bundle with id: " + component.getTopologyComponentBundleId());
-        topologyData.addBundleIdToType(component.getTopologyComponentBundleId(), bundle.getSubType());
+        bundleIdToType.put(component.getTopologyComponentBundleId(), bundle.getSubType());
     }
 }
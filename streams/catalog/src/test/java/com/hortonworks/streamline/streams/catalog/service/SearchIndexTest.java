@@ -0,0 +1,72 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.catalog.service;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.hortonworks.streamline.streams.catalog.service.SearchIndex.field;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SearchIndexTest {
+    private SearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new SearchIndex();
+        index.put(1L, field("kafka-to-hdfs", 2), field("Moves truck events to HDFS", 1));
+        index.put(2L, field("truck-alerts", 2), field("Alerts on speeding trucks from Kafka", 1));
+        index.put(3L, field("hdfs-archiver", 2), field(null, 1));
+    }
+
+    @Test
+    public void testTokenize() {
+        assertEquals(Arrays.asList("kafka", "to", "hdfs"), SearchIndex.tokenize("Kafka-to_HDFS kafka"));
+        assertTrue(SearchIndex.tokenize(".*").isEmpty());
+        assertTrue(SearchIndex.tokenize(null).isEmpty());
+    }
+
+    @Test
+    public void testPrefixMatchOrderedByRelevance() {
+        // exact matches in the name first, then prefix matches in the name, then matches in the description
+        assertEquals(Arrays.asList(1L, 3L), index.search("hdfs"));
+        assertEquals(Arrays.asList(2L, 1L), index.search("truck"));
+        assertEquals(Arrays.asList(1L, 2L), index.search("kaf"));
+        assertEquals(Collections.emptyList(), index.search("flink"));
+    }
+
+    @Test
+    public void testAllQueryTokensMustMatch() {
+        assertEquals(Collections.singletonList(2L), index.search("truck speed"));
+        assertEquals(Collections.singletonList(1L), index.search("events HDFS"));
+    }
+
+    @Test
+    public void testUpdateAndRemove() {
+        index.put(3L, field("flink-archiver", 2));
+        assertEquals(Collections.singletonList(1L), index.search("hdfs"));
+        assertEquals(Collections.singletonList(3L), index.search("flink"));
+
+        index.remove(1L);
+        assertEquals(Collections.emptyList(), index.search("hdfs"));
+        assertEquals(Collections.singletonList(2L), index.search("kafka"));
+        assertEquals(2, index.size());
+    }
+}
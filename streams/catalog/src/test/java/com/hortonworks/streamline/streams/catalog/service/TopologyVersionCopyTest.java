@@ -0,0 +1,262 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.catalog.service;
+
+import com.hortonworks.registries.common.QueryParam;
+import com.hortonworks.registries.common.Schema;
+import com.hortonworks.registries.storage.Storable;
+import com.hortonworks.registries.storage.StorableKey;
+import com.hortonworks.registries.storage.exception.StorageException;
+import com.hortonworks.registries.storage.impl.memory.InMemoryStorageManager;
+import com.hortonworks.streamline.common.Config;
+import com.hortonworks.streamline.streams.catalog.Topology;
+import com.hortonworks.streamline.streams.catalog.TopologyEdge;
+import com.hortonworks.streamline.streams.catalog.TopologyEditorMetadata;
+import com.hortonworks.streamline.streams.catalog.TopologyProcessor;
+import com.hortonworks.streamline.streams.catalog.TopologyProcessorStreamMap;
+import com.hortonworks.streamline.streams.catalog.TopologySink;
+import com.hortonworks.streamline.streams.catalog.TopologySource;
+import com.hortonworks.streamline.streams.catalog.TopologySourceStreamMap;
+import com.hortonworks.streamline.streams.catalog.TopologyStream;
+import com.hortonworks.streamline.streams.layout.component.Stream;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TopologyVersionCopyTest {
+    private static final String[] DEPENDENCY_NAMESPACES = {
+            new TopologyStream().getNameSpace(), new TopologySource().getNameSpace(),
+            new TopologySourceStreamMap().getNameSpace(), new TopologyProcessor().getNameSpace(),
+            new TopologyProcessorStreamMap().getNameSpace(), new TopologySink().getNameSpace(),
+            new TopologyEdge().getNameSpace()
+    };
+
+    private CountingStorageManager dao;
+    private StreamCatalogService catalogService;
+    private Topology topology;
+
+    /**
+     * Counts the storage calls by operation and namespace, e.g. "find:topology_source", leaving out the calls the
+     * in-memory storage makes to itself.
+     */
+    private static class CountingStorageManager extends InMemoryStorageManager {
+        private final Map<String, Integer> calls = new HashMap<>();
+        private int depth;
+
+        @Override
+        public void add(Storable storable) throws StorageException {
+            count("add", storable.getNameSpace());
+            depth++;
+            try {
+                super.add(storable);
+            } finally {
+                depth--;
+            }
+        }
+
+        @Override
+        public <T extends Storable> T remove(StorableKey key) throws StorageException {
+            count("remove", key.getNameSpace());
+            depth++;
+            try {
+                return super.remove(key);
+            } finally {
+                depth--;
+            }
+        }
+
+        @Override
+        public void addOrUpdate(Storable storable) throws StorageException {
+            count("addOrUpdate", storable.getNameSpace());
+            depth++;
+            try {
+                super.addOrUpdate(storable);
+            } finally {
+                depth--;
+            }
+        }
+
+        @Override
+        public <T extends Storable> T get(StorableKey key) throws StorageException {
+            count("get", key.getNameSpace());
+            return super.get(key);
+        }
+
+        @Override
+        public <T extends Storable> Collection<T> find(String namespace, List<QueryParam> queryParams)
+                throws StorageException {
+            count("find", namespace);
+            return super.find(namespace, queryParams);
+        }
+
+        private void count(String operation, String namespace) {
+            if (depth == 0) {
+                calls.merge(operation + ":" + namespace, 1, Integer::sum);
+            }
+        }
+
+        int calls(String operation, String namespace) {
+            return calls.getOrDefault(operation + ":" + namespace, 0);
+        }
+
+        int calls(String operation) {
+            return calls.entrySet().stream()
+                    .filter(e -> e.getKey().startsWith(operation + ":"))
+                    .mapToInt(Map.Entry::getValue)
+                    .sum();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        dao = new CountingStorageManager();
+        catalogService = new StreamCatalogService(dao, null, null);
+        topology = new Topology();
+        topology.setName("topology1");
+        topology.setNamespaceId(1L);
+        topology.setConfig("{}");
+        topology = catalogService.addTopology(topology);
+
+        // source -> processor -> sink, each output component with its own stream
+        TopologySource source = new TopologySource();
+        source.setName("source");
+        source.setConfig(new Config());
+        source.setOutputStreams(Collections.singletonList(stream("source_stream")));
+        source = catalogService.addTopologySource(topology.getId(), source);
+
+        TopologyProcessor processor = new TopologyProcessor();
+        processor.setName("processor");
+        processor.setConfig(new Config());
+        processor.setOutputStreams(Collections.singletonList(stream("processor_stream")));
+        processor = catalogService.addTopologyProcessor(topology.getId(), processor);
+
+        TopologySink sink = new TopologySink();
+        sink.setName("sink");
+        sink.setConfig(new Config());
+        sink = catalogService.addTopologySink(topology.getId(), sink);
+
+        catalogService.addTopologyEdge(topology.getId(), edge(source.getId(), processor.getId(),
+                source.getOutputStreamIds().get(0)));
+        catalogService.addTopologyEdge(topology.getId(), edge(processor.getId(), sink.getId(),
+                processor.getOutputStreamIds().get(0)));
+
+        TopologyEditorMetadata metadata = new TopologyEditorMetadata();
+        metadata.setTopologyId(topology.getId());
+        metadata.setData("{}");
+        catalogService.addTopologyEditorMetadata(topology.getId(), metadata);
+    }
+
+    @Test
+    public void testCloneTopologyVersion() throws Exception {
+        Long oldVersionId = topology.getVersionId();
+        dao.calls.clear();
+
+        Long newVersionId = catalogService.cloneTopologyVersion(topology.getId(), oldVersionId).getVersionId();
+
+        // one query and one add per row for each namespace, no lookups of the copied entities
+        for (String namespace : DEPENDENCY_NAMESPACES) {
+            assertEquals(namespace, 1, dao.calls("find", namespace));
+            assertEquals(namespace, 0, dao.calls("get", namespace));
+        }
+        assertEquals(2, dao.calls("add", new TopologyStream().getNameSpace()));
+        assertEquals(1, dao.calls("add", new TopologySource().getNameSpace()));
+        assertEquals(1, dao.calls("add", new TopologySourceStreamMap().getNameSpace()));
+        assertEquals(1, dao.calls("add", new TopologyProcessor().getNameSpace()));
+        assertEquals(1, dao.calls("add", new TopologyProcessorStreamMap().getNameSpace()));
+        assertEquals(1, dao.calls("add", new TopologySink().getNameSpace()));
+        assertEquals(2, dao.calls("add", new TopologyEdge().getNameSpace()));
+        assertEquals(1, dao.calls("add", new TopologyEditorMetadata().getNameSpace()));
+
+        List<QueryParam> newVersion = QueryParam.params(TopologyEdge.TOPOLOGYID, topology.getId().toString(),
+                TopologyEdge.VERSIONID, newVersionId.toString());
+        assertEquals(2, catalogService.listStreamInfos(newVersion).size());
+        assertEquals(2, catalogService.listTopologyEdges(newVersion).size());
+        assertNotNull(catalogService.getTopologyEditorMetadata(topology.getId(), newVersionId));
+        Collection<TopologySource> sources = catalogService.listTopologySources(newVersion);
+        assertEquals(1, sources.size());
+        TopologySource source = sources.iterator().next();
+        assertEquals(newVersionId, source.getVersionId());
+        assertEquals(1, source.getOutputStreamIds().size());
+        Collection<TopologyProcessor> processors = catalogService.listTopologyProcessors(newVersion);
+        assertEquals(1, processors.iterator().next().getOutputStreamIds().size());
+    }
+
+    @Test
+    public void testRemoveTopologyVersion() throws Exception {
+        Long oldVersionId = topology.getVersionId();
+        Long newVersionId = catalogService.cloneTopologyVersion(topology.getId(), oldVersionId).getVersionId();
+        dao.calls.clear();
+
+        catalogService.removeTopology(topology.getId(), oldVersionId, true);
+
+        // one query per namespace and one remove per row, without reconfiguring the other components
+        for (String namespace : DEPENDENCY_NAMESPACES) {
+            assertEquals(namespace, 1, dao.calls("find", namespace));
+            assertEquals(namespace, 0, dao.calls("get", namespace));
+        }
+        assertEquals(0, dao.calls("addOrUpdate"));
+        assertEquals(2, dao.calls("remove", new TopologyStream().getNameSpace()));
+        assertEquals(1, dao.calls("remove", new TopologySourceStreamMap().getNameSpace()));
+        assertEquals(1, dao.calls("remove", new TopologyProcessorStreamMap().getNameSpace()));
+        assertEquals(2, dao.calls("remove", new TopologyEdge().getNameSpace()));
+
+        List<QueryParam> oldVersion = QueryParam.params(TopologyEdge.TOPOLOGYID, topology.getId().toString(),
+                TopologyEdge.VERSIONID, oldVersionId.toString());
+        assertTrue(catalogService.listStreamInfos(oldVersion).isEmpty());
+        assertTrue(catalogService.listTopologySources(oldVersion).isEmpty());
+        assertTrue(catalogService.listTopologyProcessors(oldVersion).isEmpty());
+        assertTrue(catalogService.listTopologySinks(oldVersion).isEmpty());
+        assertTrue(catalogService.listTopologyEdges(oldVersion).isEmpty());
+        assertNull(catalogService.getTopologyEditorMetadata(topology.getId(), oldVersionId));
+        assertTrue(dao.find(new TopologySourceStreamMap().getNameSpace(), QueryParam.params(
+                TopologySourceStreamMap.FIELD_VERSION_ID, oldVersionId.toString())).isEmpty());
+
+        // the other version is untouched
+        List<QueryParam> newVersion = QueryParam.params(TopologyEdge.TOPOLOGYID, topology.getId().toString(),
+                TopologyEdge.VERSIONID, newVersionId.toString());
+        assertEquals(2, catalogService.listTopologyEdges(newVersion).size());
+        assertEquals(1, catalogService.listTopologySources(newVersion).iterator().next().getOutputStreamIds().size());
+    }
+
+    private static TopologyStream stream(String streamId) {
+        TopologyStream stream = new TopologyStream();
+        stream.setStreamId(streamId);
+        stream.setFields(Arrays.asList(Schema.Field.of("field1", Schema.Type.STRING)));
+        return stream;
+    }
+
+    private static TopologyEdge edge(Long fromId, Long toId, Long streamId) {
+        TopologyEdge.StreamGrouping streamGrouping = new TopologyEdge.StreamGrouping();
+        streamGrouping.setStreamId(streamId);
+        streamGrouping.setGrouping(Stream.Grouping.SHUFFLE);
+        TopologyEdge edge = new TopologyEdge();
+        edge.setFromId(fromId);
+        edge.setToId(toId);
+        edge.setStreamGroupings(Collections.singletonList(streamGrouping));
+        return edge;
+    }
+}
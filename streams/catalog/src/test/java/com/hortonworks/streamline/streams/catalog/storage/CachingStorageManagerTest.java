@@ -0,0 +1,159 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.catalog.storage;
+
+import com.hortonworks.registries.common.QueryParam;
+import com.hortonworks.registries.common.transaction.TransactionIsolation;
+import com.hortonworks.registries.storage.StorageManager;
+import com.hortonworks.registries.storage.impl.memory.InMemoryStorageManager;
+import com.hortonworks.streamline.streams.catalog.File;
+import com.hortonworks.streamline.streams.catalog.Notifier;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CachingStorageManagerTest {
+    private StorageManager delegate;
+    private CachingStorageManager dao;
+
+    @Before
+    public void setUp() {
+        delegate = new InMemoryStorageManager();
+        dao = new CachingStorageManager(delegate, Collections.singletonMap(File.NAMESPACE,
+                new CachingStorageManager.NamespaceCacheConfig(60_000, 100)));
+    }
+
+    @Test
+    public void testGetIsCachedAndInvalidatedOnWrite() {
+        dao.add(file(1L, "file-1"));
+        assertEquals("file-1", getFile(1L).getName());
+
+        // bypassing the cache
+        delegate.addOrUpdate(file(1L, "changed-behind"));
+        assertEquals("file-1", getFile(1L).getName());
+
+        dao.addOrUpdate(file(1L, "file-1-updated"));
+        assertEquals("file-1-updated", getFile(1L).getName());
+
+        dao.remove(file(1L, null).getStorableKey());
+        assertNull(getFile(1L));
+    }
+
+    @Test
+    public void testQueriesAreCachedByParametersAndInvalidatedOnWrite() {
+        dao.add(file(1L, "file-1"));
+        dao.add(file(2L, "file-2"));
+        List<QueryParam> byName = QueryParam.params(File.NAME, "file-1");
+
+        assertEquals(1, dao.find(File.NAMESPACE, byName).size());
+        assertEquals(2, dao.list(File.NAMESPACE).size());
+
+        delegate.add(file(3L, "file-1"));
+        assertEquals(1, dao.find(File.NAMESPACE, byName).size());
+        assertEquals(2, dao.list(File.NAMESPACE).size());
+        // different parameters, different entry
+        assertEquals(1, dao.find(File.NAMESPACE, QueryParam.params(File.NAME, "file-2")).size());
+
+        dao.remove(file(2L, null).getStorableKey());
+        assertEquals(2, dao.find(File.NAMESPACE, byName).size());
+        assertEquals(2, dao.list(File.NAMESPACE).size());
+    }
+
+    @Test
+    public void testReturnedEntitiesAreCopies() {
+        dao.add(file(1L, "file-1"));
+        // the first read returns what the storage returned, later reads are served from the cache
+        getFile(1L);
+        getFile(1L).setName("modified-by-caller");
+        assertEquals("file-1", getFile(1L).getName());
+
+        dao.list(File.NAMESPACE);
+        Collection<File> files = dao.list(File.NAMESPACE);
+        files.iterator().next().setName("modified-by-caller");
+        assertEquals("file-1", dao.<File>list(File.NAMESPACE).iterator().next().getName());
+    }
+
+    @Test
+    public void testNamespacesNotConfiguredAreNotCached() {
+        Notifier notifier = new Notifier();
+        notifier.setId(1L);
+        notifier.setName("notifier-1");
+        dao.add(notifier);
+        assertEquals(1, dao.list(Notifier.NAMESPACE).size());
+
+        Notifier other = new Notifier();
+        other.setId(2L);
+        other.setName("notifier-2");
+        delegate.add(other);
+        assertEquals(2, dao.list(Notifier.NAMESPACE).size());
+    }
+
+    @Test
+    public void testTransactionWritesBypassCacheAndInvalidateOnCommit() throws Exception {
+        dao.add(file(1L, "file-1"));
+        assertEquals("file-1", getFile(1L).getName());
+
+        dao.beginTransaction(TransactionIsolation.DEFAULT);
+        dao.addOrUpdate(file(1L, "in-transaction"));
+        assertEquals("in-transaction", getFile(1L).getName());
+        delegate.addOrUpdate(file(1L, "in-transaction-2"));
+        // the namespace is written by the transaction: never served from the cache in it
+        assertEquals("in-transaction-2", getFile(1L).getName());
+
+        // another thread caches what it reads meanwhile
+        assertEquals("in-transaction-2", CompletableFuture.supplyAsync(() -> getFile(1L).getName()).get());
+        delegate.addOrUpdate(file(1L, "committed"));
+        dao.commitTransaction();
+
+        assertEquals("committed", getFile(1L).getName());
+        assertEquals("committed", CompletableFuture.supplyAsync(() -> getFile(1L).getName()).get());
+    }
+
+    @Test
+    public void testRollbackInvalidates() {
+        dao.add(file(1L, "file-1"));
+        dao.beginTransaction(TransactionIsolation.DEFAULT);
+        dao.addOrUpdate(file(1L, "rolled-back"));
+        // what the storage holds after the rollback
+        delegate.addOrUpdate(file(1L, "file-1"));
+        dao.rollbackTransaction();
+
+        assertEquals("file-1", getFile(1L).getName());
+        assertTrue(dao.list(File.NAMESPACE).size() == 1);
+    }
+
+    private File getFile(Long id) {
+        return dao.get(file(id, null).getStorableKey());
+    }
+
+    private static File file(Long id, String name) {
+        File file = new File();
+        file.setId(id);
+        file.setName(name);
+        file.setStoredFileName("/tmp/file-" + id + ".jar");
+        file.setVersion(0L);
+        file.setTimestamp(System.currentTimeMillis());
+        return file;
+    }
+}
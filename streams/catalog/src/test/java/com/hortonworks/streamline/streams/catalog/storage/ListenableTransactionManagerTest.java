@@ -0,0 +1,133 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.catalog.storage;
+
+import com.hortonworks.registries.common.transaction.TransactionIsolation;
+import com.hortonworks.registries.storage.NOOPTransactionManager;
+import com.hortonworks.registries.storage.impl.memory.InMemoryStorageManager;
+import com.hortonworks.streamline.streams.catalog.Topology;
+import com.hortonworks.streamline.streams.catalog.service.StreamCatalogService;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ListenableTransactionManagerTest {
+    private ListenableTransactionManager transactionManager;
+    private List<String> actions;
+
+    @Before
+    public void setUp() {
+        transactionManager = new ListenableTransactionManager(new NOOPTransactionManager());
+        actions = new ArrayList<>();
+    }
+
+    @Test
+    public void testActionsRunOnCommit() {
+        transactionManager.beginTransaction(TransactionIsolation.DEFAULT);
+        transactionManager.afterCommit(() -> actions.add("first"));
+        transactionManager.afterCommit(() -> actions.add("second"));
+        assertTrue(actions.isEmpty());
+
+        transactionManager.commitTransaction();
+        assertEquals(2, actions.size());
+        assertEquals("first", actions.get(0));
+    }
+
+    @Test
+    public void testActionsAreDroppedOnRollback() {
+        transactionManager.beginTransaction(TransactionIsolation.DEFAULT);
+        transactionManager.afterCommit(() -> actions.add("rolled-back"));
+        transactionManager.rollbackTransaction();
+        assertTrue(actions.isEmpty());
+
+        // the next transaction starts afresh
+        transactionManager.beginTransaction(TransactionIsolation.DEFAULT);
+        transactionManager.afterCommit(() -> actions.add("committed"));
+        transactionManager.commitTransaction();
+        assertEquals(Collections.singletonList("committed"), actions);
+    }
+
+    @Test
+    public void testActionsRunWhenOutermostTransactionCommits() {
+        transactionManager.beginTransaction(TransactionIsolation.DEFAULT);
+        transactionManager.beginTransaction(TransactionIsolation.DEFAULT);
+        transactionManager.afterCommit(() -> actions.add("nested"));
+        transactionManager.commitTransaction();
+        assertTrue(actions.isEmpty());
+        transactionManager.commitTransaction();
+        assertEquals(Collections.singletonList("nested"), actions);
+
+        transactionManager.beginTransaction(TransactionIsolation.DEFAULT);
+        transactionManager.beginTransaction(TransactionIsolation.DEFAULT);
+        transactionManager.afterCommit(() -> actions.add("nested-rolled-back"));
+        transactionManager.rollbackTransaction();
+        transactionManager.commitTransaction();
+        assertEquals(1, actions.size());
+    }
+
+    @Test
+    public void testActionsRunRightAwayWithoutTransaction() throws Exception {
+        transactionManager.afterCommit(() -> actions.add("no-transaction"));
+        assertEquals(1, actions.size());
+
+        // the transaction of another thread is not the one of this thread
+        transactionManager.beginTransaction(TransactionIsolation.DEFAULT);
+        CompletableFuture.runAsync(() -> transactionManager.afterCommit(() -> actions.add("other-thread"))).get();
+        assertEquals(2, actions.size());
+        transactionManager.commitTransaction();
+    }
+
+    @Test
+    public void testTopologySearchIndexIsChangedOnCommit() {
+        // the in-memory storage keeps the writes rolled back, only the index is checked
+        StreamCatalogService catalogService = new StreamCatalogService(new InMemoryStorageManager(), null, null,
+                transactionManager);
+        assertTrue(catalogService.searchTopologies("topology").isEmpty());
+
+        transactionManager.beginTransaction(TransactionIsolation.DEFAULT);
+        catalogService.addTopology(topology("rolled-back"));
+        assertTrue(catalogService.searchTopologies("rolled").isEmpty());
+        transactionManager.rollbackTransaction();
+        assertTrue(catalogService.searchTopologies("rolled").isEmpty());
+
+        transactionManager.beginTransaction(TransactionIsolation.DEFAULT);
+        Topology committed = catalogService.addTopology(topology("committed"));
+        assertTrue(catalogService.searchTopologies("committed").isEmpty());
+        transactionManager.commitTransaction();
+        assertEquals(1, catalogService.searchTopologies("committed").size());
+
+        transactionManager.beginTransaction(TransactionIsolation.DEFAULT);
+        committed.setName("renamed");
+        catalogService.addOrUpdateTopology(committed.getId(), committed);
+        transactionManager.rollbackTransaction();
+        assertTrue(catalogService.searchTopologies("renamed").isEmpty());
+    }
+
+    private static Topology topology(String name) {
+        Topology topology = new Topology();
+        topology.setName(name);
+        topology.setNamespaceId(1L);
+        topology.setConfig("{}");
+        return topology;
+    }
+}
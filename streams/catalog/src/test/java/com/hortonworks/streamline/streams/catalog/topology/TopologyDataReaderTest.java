@@ -0,0 +1,193 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.catalog.topology;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hortonworks.streamline.streams.catalog.TopologyBranchRule;
+import com.hortonworks.streamline.streams.catalog.TopologyEdge;
+import com.hortonworks.streamline.streams.catalog.TopologyEditorMetadata;
+import com.hortonworks.streamline.streams.catalog.TopologyProcessor;
+import com.hortonworks.streamline.streams.catalog.TopologyRule;
+import com.hortonworks.streamline.streams.catalog.TopologySink;
+import com.hortonworks.streamline.streams.catalog.TopologySource;
+import com.hortonworks.streamline.streams.catalog.TopologyWindow;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class TopologyDataReaderTest {
+
+    private static class RecordingHandler implements TopologyDataReader.Handler {
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onTopology(String topologyName, String config) {
+            events.add("topology:" + topologyName + ":" + config);
+        }
+
+        @Override
+        public void onBundleIdToType(Map<String, String> bundleIdToType) {
+            events.add("bundles:" + bundleIdToType);
+        }
+
+        @Override
+        public void onSource(TopologySource source) {
+            events.add("source:" + source.getId());
+        }
+
+        @Override
+        public void onProcessor(TopologyProcessor processor) {
+            events.add("processor:" + processor.getId());
+        }
+
+        @Override
+        public void onSink(TopologySink sink) {
+            events.add("sink:" + sink.getId());
+        }
+
+        @Override
+        public void onRule(TopologyRule rule) {
+            events.add("rule:" + rule.getId());
+        }
+
+        @Override
+        public void onWindow(TopologyWindow window) {
+            events.add("window:" + window.getId());
+        }
+
+        @Override
+        public void onBranchRule(TopologyBranchRule branchRule) {
+            events.add("branch:" + branchRule.getId());
+        }
+
+        @Override
+        public void onEdge(TopologyEdge edge) {
+            events.add("edge:" + edge.getId());
+        }
+
+        @Override
+        public void onTopologyEditorMetadata(TopologyEditorMetadata metadata) {
+            events.add("metadata:" + (metadata != null ? metadata.getData() : null));
+        }
+    }
+
+    private static final List<String> EXPECTED = Arrays.asList(
+            "topology:topology1:{}", "bundles:{1=KAFKA}", "source:1", "source:2", "processor:3", "sink:4",
+            "rule:5", "window:6", "branch:7", "edge:8", "metadata:{\"sources\":[]}");
+
+    @Test
+    public void testReadWritten() throws Exception {
+        TopologyData topologyData = createTopologyData();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TopologyDataWriter writer = new TopologyDataWriter(out)) {
+            writer.writeField(TopologyData.TOPOLOGY_NAME, topologyData.getTopologyName());
+            writer.writeField(TopologyData.CONFIG, topologyData.getConfig());
+            writer.writeField(TopologyData.BUNDLE_ID_TO_TYPE, topologyData.getBundleIdToType());
+            writeArray(writer, TopologyData.SOURCES, topologyData.getSources());
+            writeArray(writer, TopologyData.PROCESSORS, topologyData.getProcessors());
+            writeArray(writer, TopologyData.SINKS, topologyData.getSinks());
+            writeArray(writer, TopologyData.RULES, topologyData.getRules());
+            writeArray(writer, TopologyData.WINDOWS, topologyData.getWindows());
+            writeArray(writer, TopologyData.BRANCH_RULES, topologyData.getBranchRules());
+            writeArray(writer, TopologyData.EDGES, topologyData.getEdges());
+            writer.writeField(TopologyData.TOPOLOGY_EDITOR_METADATA, topologyData.getTopologyEditorMetadata());
+        }
+
+        // readable as before
+        TopologyData read = new ObjectMapper().readValue(out.toByteArray(), TopologyData.class);
+        assertEquals(2, read.getSources().size());
+        assertEquals("KAFKA", read.getBundleIdToType().get("1"));
+
+        assertEquals(EXPECTED, read(out.toByteArray()));
+    }
+
+    @Test
+    public void testReadOlderExportsInAnyOrder() throws Exception {
+        byte[] exported = new ObjectMapper().writeValueAsBytes(createTopologyData());
+        assertEquals(EXPECTED, read(exported));
+    }
+
+    @Test
+    public void testMissingSections() throws Exception {
+        String exported = "{\"sources\":[{\"id\":1}],\"topologyName\":\"topology1\",\"config\":\"{}\","
+                + "\"bundleIdToType\":{\"1\":\"KAFKA\"},\"edges\":null}";
+        assertEquals(Arrays.asList("topology:topology1:{}", "bundles:{1=KAFKA}", "source:1"),
+                read(exported.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownField() throws Exception {
+        read("{\"topologyName\":\"topology1\",\"streams\":[]}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> read(byte[] exported) throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        new TopologyDataReader(handler).read(new ByteArrayInputStream(exported));
+        return handler.events;
+    }
+
+    private static void writeArray(TopologyDataWriter writer, String name, List<?> entities) throws Exception {
+        writer.startArray(name);
+        for (Object entity : entities) {
+            writer.write(entity);
+        }
+        writer.endArray();
+    }
+
+    private static TopologyData createTopologyData() {
+        TopologyData topologyData = new TopologyData();
+        topologyData.setTopologyName("topology1");
+        topologyData.setConfig("{}");
+        topologyData.addBundleIdToType("1", "KAFKA");
+        for (long id = 1; id <= 2; id++) {
+            TopologySource source = new TopologySource();
+            source.setId(id);
+            source.setOutputStreams(Collections.emptyList());
+            topologyData.addSource(source);
+        }
+        TopologyProcessor processor = new TopologyProcessor();
+        processor.setId(3L);
+        topologyData.addProcessor(processor);
+        TopologySink sink = new TopologySink();
+        sink.setId(4L);
+        topologyData.addSink(sink);
+        TopologyRule rule = new TopologyRule();
+        rule.setId(5L);
+        topologyData.addRule(rule);
+        TopologyWindow window = new TopologyWindow();
+        window.setId(6L);
+        topologyData.addWindow(window);
+        TopologyBranchRule branchRule = new TopologyBranchRule();
+        branchRule.setId(7L);
+        topologyData.addBranch(branchRule);
+        TopologyEdge edge = new TopologyEdge();
+        edge.setId(8L);
+        topologyData.addEdge(edge);
+        TopologyEditorMetadata metadata = new TopologyEditorMetadata();
+        metadata.setData("{\"sources\":[]}");
+        topologyData.setMetadata(metadata);
+        return topologyData;
+    }
+}
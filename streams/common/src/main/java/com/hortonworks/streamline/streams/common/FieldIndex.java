@@ -0,0 +1,142 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.common;
+
+import com.hortonworks.registries.common.Schema;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An immutable table which maps the field names of a known schema to dense positions (0 .. size - 1).
+ * <p>
+ * A single instance is meant to be shared by all the {@link IndexedFieldsAndValues} built for the same schema,
+ * so that the field names are stored once per schema instead of once per event. Lookups go through an open addressing
+ * table which is sized at construction time and never rehashed.
+ */
+public final class FieldIndex implements Serializable {
+    private static final int EMPTY = -1;
+
+    private final String[] names;
+    private final int[] slots;
+    private final int mask;
+
+    private FieldIndex(String[] names) {
+        this.names = names;
+        int capacity = Integer.highestOneBit(Math.max(2, names.length * 2 - 1)) << 1;
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(slots, EMPTY);
+        for (int i = 0; i < names.length; i++) {
+            int slot = spread(names[i].hashCode()) & mask;
+            while (slots[slot] != EMPTY) {
+                if (names[slots[slot]].equals(names[i])) {
+                    throw new IllegalArgumentException("Duplicate field name: " + names[i]);
+                }
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = i;
+        }
+    }
+
+    /**
+     * Creates an index for the given field names. The position of each field is the position in the given collection.
+     */
+    public static FieldIndex of(Collection<String> fieldNames) {
+        Objects.requireNonNull(fieldNames, "fieldNames is null");
+        String[] names = new String[fieldNames.size()];
+        int i = 0;
+        for (String fieldName : fieldNames) {
+            names[i++] = Objects.requireNonNull(fieldName, "field name is null");
+        }
+        return new FieldIndex(names);
+    }
+
+    /**
+     * Creates an index for the top level fields of the given schema.
+     */
+    public static FieldIndex of(Schema schema) {
+        Objects.requireNonNull(schema, "schema is null");
+        List<String> fieldNames = new ArrayList<>();
+        for (Schema.Field field : schema.getFields()) {
+            fieldNames.add(field.getName());
+        }
+        return of(fieldNames);
+    }
+
+    /**
+     * Returns the position of the given field, or -1 if the field is not part of this index.
+     */
+    public int indexOf(Object fieldName) {
+        if (!(fieldName instanceof String)) {
+            return EMPTY;
+        }
+        int slot = spread(fieldName.hashCode()) & mask;
+        int index;
+        while ((index = slots[slot]) != EMPTY) {
+            String name = names[index];
+            if (name == fieldName || name.equals(fieldName)) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return EMPTY;
+    }
+
+    public boolean contains(Object fieldName) {
+        return indexOf(fieldName) != EMPTY;
+    }
+
+    public String nameAt(int index) {
+        return names[index];
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public List<String> getFieldNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return Arrays.equals(names, ((FieldIndex) o).names);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(names);
+    }
+
+    @Override
+    public String toString() {
+        return "FieldIndex{" +
+                "names=" + Arrays.toString(names) +
+                '}';
+    }
+}
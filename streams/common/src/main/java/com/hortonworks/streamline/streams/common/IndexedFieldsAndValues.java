@@ -0,0 +1,181 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.common;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable fields and values map bound to a {@link FieldIndex}.
+ * <p>
+ * Values are stored in an array ordered by the shared field index, so the field names are not repeated in every event
+ * and {@link #get(Object)} does not need to hash into a per event table. A field without value is treated as absent,
+ * which means, like {@link com.google.common.collect.ImmutableMap}, null values are not allowed.
+ * <p>
+ * {@link StreamlineEventImpl} keeps an instance of this class as is (without copying) when it is passed as the
+ * fields and values of the event.
+ */
+public final class IndexedFieldsAndValues extends AbstractMap<String, Object> implements Serializable {
+    private final FieldIndex fieldIndex;
+    private final Object[] values;
+    private final int size;
+    private transient Set<Map.Entry<String, Object>> entrySet;
+
+    private IndexedFieldsAndValues(FieldIndex fieldIndex, Object[] values, int size) {
+        this.fieldIndex = fieldIndex;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Copies the given map into a new instance bound to the given index.
+     *
+     * @throws IllegalArgumentException if the map contains a field which is not part of the index
+     */
+    public static IndexedFieldsAndValues copyOf(FieldIndex fieldIndex, Map<String, ?> fieldsAndValues) {
+        if (fieldsAndValues instanceof IndexedFieldsAndValues
+                && ((IndexedFieldsAndValues) fieldsAndValues).fieldIndex.equals(fieldIndex)) {
+            return (IndexedFieldsAndValues) fieldsAndValues;
+        }
+        Builder builder = builder(fieldIndex);
+        for (Map.Entry<String, ?> entry : fieldsAndValues.entrySet()) {
+            builder.put(entry.getKey(), entry.getValue());
+        }
+        return builder.build();
+    }
+
+    public static Builder builder(FieldIndex fieldIndex) {
+        return new Builder(fieldIndex);
+    }
+
+    public static final class Builder {
+        private final FieldIndex fieldIndex;
+        private Object[] values;
+
+        private Builder(FieldIndex fieldIndex) {
+            this.fieldIndex = Objects.requireNonNull(fieldIndex, "fieldIndex is null");
+            this.values = new Object[fieldIndex.size()];
+        }
+
+        public Builder put(String field, Object value) {
+            int index = fieldIndex.indexOf(field);
+            if (index < 0) {
+                throw new IllegalArgumentException("Field " + field + " is not part of " + fieldIndex);
+            }
+            return set(index, value);
+        }
+
+        public Builder set(int index, Object value) {
+            Objects.requireNonNull(value, "null value for field " + fieldIndex.nameAt(index));
+            values[index] = value;
+            return this;
+        }
+
+        /**
+         * Builds the map. The builder hands over its values and can't be used after this call.
+         */
+        public IndexedFieldsAndValues build() {
+            Object[] built = Objects.requireNonNull(values, "build() was already called");
+            values = null;
+            int size = 0;
+            for (Object value : built) {
+                if (value != null) {
+                    size++;
+                }
+            }
+            return new IndexedFieldsAndValues(fieldIndex, built, size);
+        }
+    }
+
+    public FieldIndex getFieldIndex() {
+        return fieldIndex;
+    }
+
+    /**
+     * Returns the value at the given position of the field index, or null if the field has no value.
+     */
+    public Object get(int index) {
+        return values[index];
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = fieldIndex.indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int index = fieldIndex.indexOf(key);
+        return index >= 0 && values[index] != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        Set<Map.Entry<String, Object>> result = entrySet;
+        if (result == null) {
+            entrySet = result = new EntrySet();
+        }
+        return result;
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+            return new Iterator<Map.Entry<String, Object>>() {
+                private int next = advance(0);
+
+                private int advance(int from) {
+                    while (from < values.length && values[from] == null) {
+                        from++;
+                    }
+                    return from;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next < values.length;
+                }
+
+                @Override
+                public Map.Entry<String, Object> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int current = next;
+                    next = advance(current + 1);
+                    return new AbstractMap.SimpleImmutableEntry<>(fieldIndex.nameAt(current), values[current]);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
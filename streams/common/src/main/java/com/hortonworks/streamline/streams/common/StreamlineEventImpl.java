@@ -53,7 +53,7 @@ public final class StreamlineEventImpl extends ForwardingMap<String, Object> imp
     private final ImmutableMap<String, Object> auxiliaryFieldsAndValues;
     private final String dataSourceId;
     private final String id = UUID.randomUUID().toString();
-    private final ImmutableMap<String, Object> delegate;
+    private final Map<String, Object> delegate;
 
     @Override
     protected Map<String, Object> delegate() {
@@ -73,10 +73,13 @@ public final class StreamlineEventImpl extends ForwardingMap<String, Object> imp
      */
     private StreamlineEventImpl(Map<String, Object> keyValues, String dataSourceId, Map<String, Object> header,
                                 String sourceStream, Map<String, Object> auxiliaryFieldsAndValues) {
-        if (keyValues instanceof StreamlineEventImpl) {
-            this.delegate = ImmutableMap.copyOf(((StreamlineEventImpl) keyValues).delegate());
+        Map<String, Object> fieldsAndValues = keyValues instanceof StreamlineEventImpl
+                ? ((StreamlineEventImpl) keyValues).delegate() : keyValues;
+        // schema bound fields and values are immutable and compact, so they are kept as is.
+        if (fieldsAndValues instanceof IndexedFieldsAndValues) {
+            this.delegate = fieldsAndValues;
         } else {
-            this.delegate = ImmutableMap.copyOf(keyValues);
+            this.delegate = ImmutableMap.copyOf(fieldsAndValues);
         }
         this.dataSourceId = dataSourceId;
         this.sourceStream = sourceStream;
@@ -17,25 +17,51 @@ package com.hortonworks.streamline.streams.common.event;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
 
+/**
+ * Reads the events of a test run event log file.
+ *
+ * Lookups of specific events (by id, or by root event) go through the side index of the log (see {@link EventLogIndex})
+ * when it exists, reading only the needed records from the log. Logs without an index are scanned.
+ */
 public class EventLogFileReader {
     public static final Charset ENCODING_UTF_8 = Charset.forName("UTF-8");
 
+    private static final int INDEX_CACHE_SIZE = 16;
+
     private final ObjectMapper objectMapper;
+    // event log file path -> index of the file, refreshed incrementally on each lookup
+    private final Cache<String, EventLogIndex> indexCache;
 
     public EventLogFileReader() {
         this.objectMapper = new ObjectMapper();
+        this.indexCache = CacheBuilder.newBuilder().maximumSize(INDEX_CACHE_SIZE).build();
     }
 
     public List<EventInformation> loadEventLogFile(File eventLogFile) throws IOException {
@@ -53,6 +79,244 @@ public class EventLogFileReader {
         });
     }
 
+    /**
+     * Loads the events with the given ids, in log order. Ids which are not in the log are ignored.
+     */
+    public List<EventInformation> loadEvents(File eventLogFile, Collection<String> eventIds) throws IOException {
+        Set<String> ids = new HashSet<>(eventIds);
+        EventLogIndex index = getIndex(eventLogFile);
+        if (index == null) {
+            return scan(eventLogFile, e -> ids.contains(e.getEventId()));
+        }
+
+        List<EventLogIndex.Entry> entries = new ArrayList<>(ids.size());
+        for (String eventId : ids) {
+            EventLogIndex.Entry entry = index.getEntry(eventId);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return readEvents(eventLogFile, index, entries, e -> ids.contains(e.getEventId()));
+    }
+
+    /**
+     * Loads the given root event and all the events derived from it (the events having it as root), in log order.
+     */
+    public List<EventInformation> loadEventsOfRootEvent(File eventLogFile, String rootEventId) throws IOException {
+        Predicate<EventInformation> ofRootEvent = ofRootEvent(rootEventId);
+        EventLogIndex index = getIndex(eventLogFile);
+        if (index == null) {
+            return scan(eventLogFile, ofRootEvent);
+        }
+
+        List<EventLogIndex.Entry> entries = new ArrayList<>();
+        EventLogIndex.Entry rootEntry = index.getEntry(rootEventId);
+        if (rootEntry != null) {
+            entries.add(rootEntry);
+        }
+        for (String eventId : index.getEventIdsOfRootEvent(rootEventId)) {
+            entries.add(index.getEntry(eventId));
+        }
+        return readEvents(eventLogFile, index, entries, ofRootEvent);
+    }
+
+    /**
+     * Loads the events of the given root event (as {@link #loadEventsOfRootEvent(File, String)}), followed by all
+     * their ancestors which are not derived from the root event, such as the other events joined with them.
+     *
+     * The log is read at most once: the ancestors are looked up level by level through the index, the part of the log
+     * which is not indexed yet being read once. Logs without an index are scanned once, keeping the events by id.
+     */
+    public List<EventInformation> loadEventsOfRootEventWithAncestors(File eventLogFile, String rootEventId)
+            throws IOException {
+        Predicate<EventInformation> ofRootEvent = ofRootEvent(rootEventId);
+        EventLogIndex index = getIndex(eventLogFile);
+        if (index == null) {
+            Map<String, EventInformation> eventsById = new HashMap<>();
+            List<EventInformation> events = new ArrayList<>();
+            try (Stream<EventInformation> allEvents = loadEventLogFileAsStream(eventLogFile)) {
+                allEvents.forEach(e -> {
+                    eventsById.put(e.getEventId(), e);
+                    if (ofRootEvent.test(e)) {
+                        events.add(e);
+                    }
+                });
+            }
+            addAncestors(events, ids -> {
+                List<EventInformation> ancestors = new ArrayList<>(ids.size());
+                for (String id : ids) {
+                    EventInformation ancestor = eventsById.get(id);
+                    if (ancestor != null) {
+                        ancestors.add(ancestor);
+                    }
+                }
+                return ancestors;
+            });
+            return events;
+        }
+
+        try (FileChannel channel = FileChannel.open(eventLogFile.toPath(), StandardOpenOption.READ)) {
+            Map<String, EventInformation> unindexedById = new LinkedHashMap<>();
+            for (EventInformation event : readUnindexed(channel, index)) {
+                unindexedById.put(event.getEventId(), event);
+            }
+
+            List<EventLogIndex.Entry> entries = new ArrayList<>();
+            EventLogIndex.Entry rootEntry = index.getEntry(rootEventId);
+            if (rootEntry != null) {
+                entries.add(rootEntry);
+            }
+            for (String eventId : index.getEventIdsOfRootEvent(rootEventId)) {
+                entries.add(index.getEntry(eventId));
+            }
+            List<EventInformation> events = readEntries(channel, entries);
+            unindexedById.values().stream().filter(ofRootEvent).forEach(events::add);
+
+            addAncestors(events, ids -> {
+                List<EventLogIndex.Entry> ancestorEntries = new ArrayList<>(ids.size());
+                List<EventInformation> unindexedAncestors = new ArrayList<>();
+                for (String id : ids) {
+                    EventLogIndex.Entry entry = index.getEntry(id);
+                    if (entry != null) {
+                        ancestorEntries.add(entry);
+                    } else if (unindexedById.containsKey(id)) {
+                        unindexedAncestors.add(unindexedById.get(id));
+                    }
+                }
+                List<EventInformation> ancestors = readEntries(channel, ancestorEntries);
+                ancestors.addAll(unindexedAncestors);
+                return ancestors;
+            });
+            return events;
+        }
+    }
+
+    private static Predicate<EventInformation> ofRootEvent(String rootEventId) {
+        return e -> e.getEventId().equals(rootEventId) ||
+                (e.getRootIds() != null && e.getRootIds().contains(rootEventId));
+    }
+
+    private interface EventLoader {
+        List<EventInformation> load(Set<String> eventIds) throws IOException;
+    }
+
+    // Adds the ancestors of the events which are not in the list yet, one generation at a time
+    private static void addAncestors(List<EventInformation> events, EventLoader loader) throws IOException {
+        Set<String> loadedEventIds = new HashSet<>();
+        events.forEach(event -> loadedEventIds.add(event.getEventId()));
+
+        List<EventInformation> newEvents = events;
+        while (!newEvents.isEmpty()) {
+            Set<String> missingParentIds = new HashSet<>();
+            for (EventInformation event : newEvents) {
+                if (event.getParentIds() != null) {
+                    for (String parentId : event.getParentIds()) {
+                        if (!loadedEventIds.contains(parentId)) {
+                            missingParentIds.add(parentId);
+                        }
+                    }
+                }
+            }
+            if (missingParentIds.isEmpty()) {
+                break;
+            }
+            newEvents = loader.load(missingParentIds);
+            newEvents.forEach(event -> loadedEventIds.add(event.getEventId()));
+            events.addAll(newEvents);
+        }
+    }
+
+    // Returns the refreshed index of the event log file, or null if the file has no (usable) index.
+    private EventLogIndex getIndex(File eventLogFile) throws IOException {
+        EventLogIndex index;
+        try {
+            index = indexCache.get(eventLogFile.getAbsolutePath(), () -> new EventLogIndex(eventLogFile));
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        if (!index.exists()) {
+            indexCache.invalidate(eventLogFile.getAbsolutePath());
+            return null;
+        }
+        index.refresh();
+        if (index.getIndexedLength() > eventLogFile.length()) {
+            // the event log file was truncated or replaced: the index doesn't match it anymore
+            indexCache.invalidate(eventLogFile.getAbsolutePath());
+            return null;
+        }
+        return index;
+    }
+
+    // Reads the indexed records, and the records of the part of the log which is not indexed yet matching the filter.
+    private List<EventInformation> readEvents(File eventLogFile, EventLogIndex index, List<EventLogIndex.Entry> entries,
+                                              Predicate<EventInformation> unindexedFilter) throws IOException {
+        try (FileChannel channel = FileChannel.open(eventLogFile.toPath(), StandardOpenOption.READ)) {
+            List<EventInformation> events = readEntries(channel, entries);
+            for (EventInformation event : readUnindexed(channel, index)) {
+                if (unindexedFilter.test(event)) {
+                    events.add(event);
+                }
+            }
+            return events;
+        }
+    }
+
+    // Reads the records of the entries, in log order
+    private List<EventInformation> readEntries(FileChannel channel, List<EventLogIndex.Entry> entries)
+            throws IOException {
+        entries.sort(Comparator.comparingLong(EventLogIndex.Entry::getOffset));
+        List<EventInformation> events = new ArrayList<>(entries.size());
+        for (EventLogIndex.Entry entry : entries) {
+            events.add(parse(read(channel, entry.getOffset(), entry.getLength())));
+        }
+        return events;
+    }
+
+    // Reads the records of the part of the log which is not indexed yet
+    private List<EventInformation> readUnindexed(FileChannel channel, EventLogIndex index) throws IOException {
+        List<EventInformation> events = new ArrayList<>();
+        long indexedLength = index.getIndexedLength();
+        long tailLength = channel.size() - indexedLength;
+        if (tailLength > 0) {
+            byte[] tail = read(channel, indexedLength, (int) Math.min(tailLength, Integer.MAX_VALUE));
+            int lineStart = 0;
+            for (int i = 0; i < tail.length; i++) {
+                // a trailing partial line (not flushed yet) is skipped
+                if (tail[i] == '\n') {
+                    if (i > lineStart) {
+                        events.add(parse(tail, lineStart, i - lineStart));
+                    }
+                    lineStart = i + 1;
+                }
+            }
+        }
+        return events;
+    }
+
+    private List<EventInformation> scan(File eventLogFile, Predicate<EventInformation> filter) throws IOException {
+        try (Stream<EventInformation> events = loadEventLogFileAsStream(eventLogFile)) {
+            return events.filter(filter).collect(toList());
+        }
+    }
+
+    private static byte[] read(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of event log file at offset " + (offset + buffer.position()));
+            }
+        }
+        return buffer.array();
+    }
+
+    private EventInformation parse(byte[] bytes) throws IOException {
+        return parse(bytes, 0, bytes.length);
+    }
+
+    private EventInformation parse(byte[] bytes, int offset, int length) throws IOException {
+        return objectMapper.readValue(bytes, offset, length, EventInformation.class);
+    }
+
     public String readFileAsString(File eventLogFile) throws IOException {
         return FileUtils.readFileToString(eventLogFile, ENCODING_UTF_8);
     }
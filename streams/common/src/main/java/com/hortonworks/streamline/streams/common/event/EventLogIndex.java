@@ -0,0 +1,195 @@
+/**
+ * Copyright 2017 Hortonworks.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *   http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.common.event;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The side index of an event log file, written along with the log by the test run event logger.
+ *
+ * The index file is named after the event log file with INDEX_FILE_SUFFIX, and has one line per logged event:
+ * <pre>
+ * eventId TAB offset TAB length TAB rootId1,rootId2,...
+ * </pre>
+ * where offset and length locate the JSON line of the event in the event log file (in bytes, without the line
+ * separator). An index line is written only after the event line it points to, so the index always covers a prefix
+ * of the event log file: events after {@link #getIndexedLength()} have to be read from the log itself.
+ *
+ * An instance reads the index file incrementally: {@link #refresh()} only parses the lines appended since the last call.
+ */
+public class EventLogIndex {
+    public static final String INDEX_FILE_SUFFIX = ".index";
+
+    private static final char FIELD_SEPARATOR = '\t';
+    private static final char ID_SEPARATOR = ',';
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final File indexFile;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, List<String>> eventIdsByRootId = new HashMap<>();
+    private long indexFilePosition;
+    private long indexedLength;
+
+    public static class Entry {
+        private final long offset;
+        private final int length;
+
+        Entry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+    }
+
+    public EventLogIndex(File eventLogFile) {
+        this.indexFile = indexFileOf(eventLogFile);
+    }
+
+    public static File indexFileOf(File eventLogFile) {
+        return new File(eventLogFile.getPath() + INDEX_FILE_SUFFIX);
+    }
+
+    /**
+     * Builds the index line of an event, including the line separator.
+     */
+    public static String toIndexLine(String eventId, long offset, int length, Set<String> rootIds) {
+        StringBuilder sb = new StringBuilder(eventId.length() * (rootIds.size() + 1) + 32);
+        sb.append(eventId).append(FIELD_SEPARATOR).append(offset).append(FIELD_SEPARATOR).append(length)
+                .append(FIELD_SEPARATOR);
+        boolean first = true;
+        for (String rootId : rootIds) {
+            if (!first) {
+                sb.append(ID_SEPARATOR);
+            }
+            sb.append(rootId);
+            first = false;
+        }
+        return sb.append('\n').toString();
+    }
+
+    public boolean exists() {
+        return indexFile.exists();
+    }
+
+    /**
+     * Reads the index lines appended since the last call. A trailing partial line (not flushed yet) is left for the
+     * next call.
+     */
+    public synchronized void refresh() throws IOException {
+        if (!indexFile.exists()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < indexFilePosition) {
+                // the index file was recreated
+                clear();
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            long position = indexFilePosition;
+            while (channel.read(buffer, position) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    position++;
+                    if (b == '\n') {
+                        addEntry(new String(line.toByteArray(), EventLogFileReader.ENCODING_UTF_8));
+                        line.reset();
+                        indexFilePosition = position;
+                    } else {
+                        line.write(b);
+                    }
+                }
+                buffer.clear();
+            }
+        }
+    }
+
+    public synchronized Entry getEntry(String eventId) {
+        return entries.get(eventId);
+    }
+
+    /**
+     * Returns the ids of the events which have the given event as root (not including the root event itself).
+     */
+    public synchronized List<String> getEventIdsOfRootEvent(String rootEventId) {
+        List<String> eventIds = eventIdsByRootId.get(rootEventId);
+        return eventIds != null ? new ArrayList<>(eventIds) : Collections.emptyList();
+    }
+
+    /**
+     * Returns the length of the prefix of the event log file covered by this index.
+     */
+    public synchronized long getIndexedLength() {
+        return indexedLength;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void addEntry(String line) {
+        int eventIdEnd = line.indexOf(FIELD_SEPARATOR);
+        int offsetEnd = line.indexOf(FIELD_SEPARATOR, eventIdEnd + 1);
+        int lengthEnd = line.indexOf(FIELD_SEPARATOR, offsetEnd + 1);
+        if (eventIdEnd < 0 || offsetEnd < 0 || lengthEnd < 0) {
+            throw new IllegalStateException("Malformed line in event log index " + indexFile + ": " + line);
+        }
+
+        String eventId = line.substring(0, eventIdEnd);
+        long offset = Long.parseLong(line.substring(eventIdEnd + 1, offsetEnd));
+        int length = Integer.parseInt(line.substring(offsetEnd + 1, lengthEnd));
+        entries.putIfAbsent(eventId, new Entry(offset, length));
+        indexedLength = Math.max(indexedLength, offset + length + 1);
+
+        int rootIdStart = lengthEnd + 1;
+        while (rootIdStart < line.length()) {
+            int rootIdEnd = line.indexOf(ID_SEPARATOR, rootIdStart);
+            if (rootIdEnd < 0) {
+                rootIdEnd = line.length();
+            }
+            eventIdsByRootId.computeIfAbsent(line.substring(rootIdStart, rootIdEnd), k -> new ArrayList<>())
+                    .add(eventId);
+            rootIdStart = rootIdEnd + 1;
+        }
+    }
+
+    private void clear() {
+        entries.clear();
+        eventIdsByRootId.clear();
+        indexFilePosition = 0;
+        indexedLength = 0;
+    }
+}
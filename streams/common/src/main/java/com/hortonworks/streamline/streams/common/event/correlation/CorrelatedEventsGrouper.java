@@ -19,21 +19,51 @@ import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Multimap;
 import com.hortonworks.streamline.streams.common.event.EventInformation;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Stream;
-
-import static java.util.stream.Collectors.toMap;
 
+/**
+ * Groups the events of a test run by their correlation.
+ * <p>
+ * The events are indexed once at construction (event id to event, and parent id to children ids), so that the events
+ * related to a root event are found with a traversal of the event graph instead of scanning all the events.
+ * Instances are immutable once built and can be shared between requests on the same event log.
+ */
 public class CorrelatedEventsGrouper {
-    private final List<EventInformation> events;
+    private final Map<String, EventInformation> eventsById;
+    private final Map<String, List<String>> childrenByParentId;
+    private final List<String> rootEventIds;
+    private volatile List<Set<String>> relatedSourceEventGroups;
 
     public CorrelatedEventsGrouper(List<EventInformation> events) {
-        this.events = events;
+        this.eventsById = new LinkedHashMap<>(events.size() * 2);
+        this.childrenByParentId = new HashMap<>();
+        this.rootEventIds = new ArrayList<>();
+
+        for (EventInformation event : events) {
+            if (event == null) {
+                continue;
+            }
+            String eventId = event.getEventId();
+            if (eventsById.putIfAbsent(eventId, event) != null) {
+                continue;
+            }
+            if (event.getRootIds().isEmpty()) {
+                rootEventIds.add(eventId);
+            }
+            for (String parentId : event.getParentIds()) {
+                childrenByParentId.computeIfAbsent(parentId, k -> new ArrayList<>(1)).add(eventId);
+            }
+        }
     }
 
     /**
@@ -44,19 +74,21 @@ public class CorrelatedEventsGrouper {
      * @return the group of correlated events per source
      */
     public List<Set<String>> groupByRelatedSourceEvents(Set<String> sources) {
-        Multimap<Set<String>, String> allEventsToSourceEvents = LinkedHashMultimap.create();
-        Stream<String> rootEventIds = events.stream().filter(e -> e != null && e.getRootIds().isEmpty())
-                .map(EventInformation::getEventId);
-        rootEventIds.forEach(rootEventId -> {
-            Map<String, EventInformation> allRelatedEvents = buildRelatedEventsMap(rootEventId);
-            allEventsToSourceEvents.put(allRelatedEvents.keySet(), rootEventId);
-        });
-
-        List<Set<String>> result = new ArrayList<>();
-        allEventsToSourceEvents.asMap().values().forEach(v ->
-                result.add(new HashSet<>(v))
-        );
+        List<Set<String>> result = relatedSourceEventGroups;
+        if (result == null) {
+            Multimap<Set<String>, String> allEventsToSourceEvents = LinkedHashMultimap.create();
+            for (String rootEventId : rootEventIds) {
+                Map<String, EventInformation> allRelatedEvents = buildRelatedEventsMap(rootEventId);
+                allEventsToSourceEvents.put(allRelatedEvents.keySet(), rootEventId);
+            }
 
+            result = new ArrayList<>();
+            for (Collection<String> sourceEventIds : allEventsToSourceEvents.asMap().values()) {
+                result.add(Collections.unmodifiableSet(new HashSet<>(sourceEventIds)));
+            }
+            result = Collections.unmodifiableList(result);
+            relatedSourceEventGroups = result;
+        }
         return result;
     }
 
@@ -64,54 +96,51 @@ public class CorrelatedEventsGrouper {
         return new GroupedCorrelationEvents(buildRelatedEventsMap(rootEventId), rootEventId);
     }
 
+    // The root event, all the events derived from it, and all the ancestors of those events
+    // (e.g. the other inputs of a join, which are not derived from the root event)
     private Map<String, EventInformation> buildRelatedEventsMap(String rootEventId) {
-        Map<String, EventInformation> allEventsMap = events.stream()
-                .collect(toMap(EventInformation::getEventId, e -> e));
-
-        Stream<EventInformation> eventsAssociatedToRootEventStream = events.stream().filter(e -> {
-            boolean isRootEvent = e.getEventId().equals(rootEventId);
-            boolean containsRootEvent = e.getRootIds() != null && e.getRootIds().contains(rootEventId);
-            return isRootEvent || containsRootEvent;
-        });
-
-        Map<String, EventInformation> relatedEventsMap = eventsAssociatedToRootEventStream.collect(
-                toMap(EventInformation::getEventId, e -> e));
-
-        addNonExistingParents(allEventsMap, relatedEventsMap);
-
-        return relatedEventsMap;
-    }
-
-    private void addNonExistingParents(Map<String, EventInformation> allEventsMap,
-                                       Map<String, EventInformation> relatedEventsMap) {
-        Map<String, EventInformation> eventsToAddMap = new HashMap<>();
-
-        relatedEventsMap.forEach((eventId, event) ->
-                findAndAddParentsIfNecessary(allEventsMap, relatedEventsMap, eventsToAddMap, event));
-
-        // add all the events we newly found
-        relatedEventsMap.putAll(eventsToAddMap);
-    }
-
-    private void findAndAddParentsIfNecessary(Map<String, EventInformation> allEventsMap,
-                                              Map<String, EventInformation> relatedEventsMap,
-                                              Map<String, EventInformation> eventsToAddMap,
-                                              EventInformation event) {
-        Set<String> parentIds = event.getParentIds();
+        Map<String, EventInformation> relatedEventsMap = new HashMap<>();
+        EventInformation rootEvent = eventsById.get(rootEventId);
+        if (rootEvent == null) {
+            return relatedEventsMap;
+        }
 
-        for (String parentId : parentIds) {
-            if (!relatedEventsMap.containsKey(parentId) && !eventsToAddMap.containsKey(parentId)) {
-                // find and add parent to relatedEventsMap
-                EventInformation parent = allEventsMap.get(parentId);
-                if (parent == null) {
-                    throw new RuntimeException("Failed to find parent event: logged event information may be corrupted.");
+        // 1. descendants of the root event
+        Deque<String> queue = new ArrayDeque<>();
+        relatedEventsMap.put(rootEventId, rootEvent);
+        queue.add(rootEventId);
+        List<EventInformation> descendants = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            List<String> childIds = childrenByParentId.get(queue.poll());
+            if (childIds == null) {
+                continue;
+            }
+            for (String childId : childIds) {
+                EventInformation child = eventsById.get(childId);
+                if (relatedEventsMap.putIfAbsent(childId, child) == null) {
+                    descendants.add(child);
+                    queue.add(childId);
                 }
-                eventsToAddMap.put(parent.getEventId(), parent);
+            }
+        }
 
-                // newly found parent event may have parent event(s) as well... find them as well
-                findAndAddParentsIfNecessary(allEventsMap, relatedEventsMap, eventsToAddMap, parent);
+        // 2. ancestors of those events which are not derived from the root event
+        Deque<EventInformation> ancestorsQueue = new ArrayDeque<>(descendants);
+        ancestorsQueue.add(rootEvent);
+        while (!ancestorsQueue.isEmpty()) {
+            for (String parentId : ancestorsQueue.poll().getParentIds()) {
+                if (!relatedEventsMap.containsKey(parentId)) {
+                    EventInformation parent = eventsById.get(parentId);
+                    if (parent == null) {
+                        throw new RuntimeException("Failed to find parent event: logged event information may be corrupted.");
+                    }
+                    relatedEventsMap.put(parentId, parent);
+                    ancestorsQueue.add(parent);
+                }
             }
         }
+
+        return relatedEventsMap;
     }
 
 }
@@ -0,0 +1,117 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.common;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IndexedFieldsAndValuesTest {
+    private final FieldIndex fieldIndex = FieldIndex.of(Arrays.asList("a", "b", "c", "d", "e"));
+
+    @Test
+    public void testFieldIndex() {
+        assertEquals(5, fieldIndex.size());
+        for (int i = 0; i < fieldIndex.size(); i++) {
+            assertEquals(i, fieldIndex.indexOf(fieldIndex.nameAt(i)));
+        }
+        assertEquals(-1, fieldIndex.indexOf("f"));
+        assertEquals(-1, fieldIndex.indexOf(null));
+        assertEquals(-1, fieldIndex.indexOf(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFieldIndexDuplicateField() {
+        FieldIndex.of(Arrays.asList("a", "b", "a"));
+    }
+
+    @Test
+    public void testGetAndEquality() {
+        IndexedFieldsAndValues fieldsAndValues = IndexedFieldsAndValues.builder(fieldIndex)
+                .put("a", "A").put("c", 3).build();
+        assertEquals(2, fieldsAndValues.size());
+        assertEquals("A", fieldsAndValues.get("a"));
+        assertEquals(3, fieldsAndValues.get("c"));
+        assertNull(fieldsAndValues.get("b"));
+        assertFalse(fieldsAndValues.containsKey("b"));
+        assertFalse(fieldsAndValues.containsKey("f"));
+        assertTrue(fieldsAndValues.containsKey("c"));
+
+        Map<String, Object> expected = ImmutableMap.of("a", "A", "c", 3);
+        assertEquals(expected, fieldsAndValues);
+        assertEquals(fieldsAndValues, expected);
+        assertEquals(expected.hashCode(), fieldsAndValues.hashCode());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownField() {
+        IndexedFieldsAndValues.builder(fieldIndex).put("f", "F");
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullValue() {
+        IndexedFieldsAndValues.builder(fieldIndex).put("a", null);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() {
+        IndexedFieldsAndValues.builder(fieldIndex).put("a", "A").build().put("b", "B");
+    }
+
+    @Test
+    public void testEventKeepsIndexedFieldsAndValues() {
+        IndexedFieldsAndValues fieldsAndValues = IndexedFieldsAndValues.copyOf(fieldIndex, ImmutableMap.of("a", "A", "b", "B"));
+        StreamlineEventImpl event = StreamlineEventImpl.builder().fieldsAndValues(fieldsAndValues).build();
+        assertSame(fieldsAndValues, event.delegate());
+        assertEquals("B", event.get("b"));
+
+        StreamlineEventImpl copied = StreamlineEventImpl.builder().from(event).build();
+        assertSame(fieldsAndValues, copied.delegate());
+
+        StreamlineEventImpl added = (StreamlineEventImpl) event.addFieldAndValue("f", "F");
+        Map<String, Object> expected = new HashMap<>(fieldsAndValues);
+        expected.put("f", "F");
+        assertEquals(expected, added);
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        IndexedFieldsAndValues fieldsAndValues = IndexedFieldsAndValues.builder(fieldIndex)
+                .put("b", "B").put("e", 5L).build();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(fieldsAndValues);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            IndexedFieldsAndValues read = (IndexedFieldsAndValues) in.readObject();
+            assertEquals(fieldsAndValues, read);
+            assertEquals(5L, read.get("e"));
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2017 Hortonworks.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *   http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.common.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventLogFileReaderTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private File eventLogFile;
+    private File indexFile;
+    private long offset;
+
+    /*
+        <SOURCE1>   <JOIN>          <SINK>
+          e1    ->  e3 (e1 & e2) ->  e4
+
+        <SOURCE2>
+          e2    /
+
+        <SOURCE1>
+          e5
+     */
+    private final List<EventInformation> events = Arrays.asList(
+            event("1", Collections.emptySet(), Collections.emptySet()),
+            event("2", Collections.emptySet(), Collections.emptySet()),
+            event("3", Sets.newHashSet("1", "2"), Sets.newHashSet("1", "2")),
+            event("4", Sets.newHashSet("1", "2"), Sets.newHashSet("3")),
+            event("5", Collections.emptySet(), Collections.emptySet()));
+
+    @Before
+    public void setUp() throws Exception {
+        eventLogFile = File.createTempFile("test-run-event-log", ".log");
+        indexFile = EventLogIndex.indexFileOf(eventLogFile);
+    }
+
+    @After
+    public void tearDown() {
+        eventLogFile.delete();
+        indexFile.delete();
+    }
+
+    @Test
+    public void testLoadEventsWithIndex() throws Exception {
+        append(events, true);
+        EventLogFileReader reader = new EventLogFileReader();
+
+        assertEquals(Arrays.asList("1", "3", "4"), ids(reader.loadEventsOfRootEvent(eventLogFile, "1")));
+        assertEquals(Collections.singletonList("5"), ids(reader.loadEventsOfRootEvent(eventLogFile, "5")));
+        assertTrue(reader.loadEventsOfRootEvent(eventLogFile, "unknown").isEmpty());
+        assertEquals(Arrays.asList("2", "4"), ids(reader.loadEvents(eventLogFile, Arrays.asList("4", "2", "unknown"))));
+
+        EventInformation event = reader.loadEvents(eventLogFile, Collections.singleton("3")).get(0);
+        assertEquals(Sets.newHashSet("1", "2"), event.getParentIds());
+        assertEquals("JOIN", event.getComponentName());
+    }
+
+    @Test
+    public void testLoadEventsAppendedAfterLookup() throws Exception {
+        append(events.subList(0, 2), true);
+        EventLogFileReader reader = new EventLogFileReader();
+        assertEquals(Collections.singletonList("1"), ids(reader.loadEventsOfRootEvent(eventLogFile, "1")));
+
+        append(events.subList(2, events.size()), true);
+        assertEquals(Arrays.asList("1", "3", "4"), ids(reader.loadEventsOfRootEvent(eventLogFile, "1")));
+    }
+
+    @Test
+    public void testLoadEventsNotIndexedYet() throws Exception {
+        append(events.subList(0, 3), true);
+        // index lines of the last events are not written yet
+        append(events.subList(3, events.size()), false);
+
+        EventLogFileReader reader = new EventLogFileReader();
+        assertEquals(Arrays.asList("1", "3", "4"), ids(reader.loadEventsOfRootEvent(eventLogFile, "1")));
+        assertEquals(Arrays.asList("2", "5"), ids(reader.loadEvents(eventLogFile, Arrays.asList("2", "5"))));
+    }
+
+    @Test
+    public void testLoadEventsWithoutIndex() throws Exception {
+        append(events, false);
+        indexFile.delete();
+
+        EventLogFileReader reader = new EventLogFileReader();
+        assertEquals(Arrays.asList("1", "3", "4"), ids(reader.loadEventsOfRootEvent(eventLogFile, "1")));
+        assertEquals(Arrays.asList("2", "4"), ids(reader.loadEvents(eventLogFile, Arrays.asList("4", "2"))));
+    }
+
+    @Test
+    public void testLoadEventsWithAncestors() throws Exception {
+        append(eventsWithAncestors(), true);
+        EventLogFileReader reader = new EventLogFileReader();
+        assertEquals(Arrays.asList("1", "3", "4", "9", "2", "8", "7"),
+                ids(reader.loadEventsOfRootEventWithAncestors(eventLogFile, "1")));
+        assertEquals(Arrays.asList("7", "8", "9", "1"),
+                ids(reader.loadEventsOfRootEventWithAncestors(eventLogFile, "7")));
+        assertTrue(reader.loadEventsOfRootEventWithAncestors(eventLogFile, "unknown").isEmpty());
+    }
+
+    @Test
+    public void testLoadEventsWithAncestorsNotIndexedYet() throws Exception {
+        List<EventInformation> events = eventsWithAncestors();
+        append(events.subList(0, 4), true);
+        append(events.subList(4, events.size()), false);
+        EventLogFileReader reader = new EventLogFileReader();
+        assertEquals(Arrays.asList("1", "3", "4", "9", "2", "8", "7"),
+                ids(reader.loadEventsOfRootEventWithAncestors(eventLogFile, "1")));
+    }
+
+    @Test
+    public void testLoadEventsWithAncestorsWithoutIndex() throws Exception {
+        append(eventsWithAncestors(), false);
+        indexFile.delete();
+        EventLogFileReader reader = new EventLogFileReader();
+        assertEquals(Arrays.asList("1", "3", "4", "9", "2", "8", "7"),
+                ids(reader.loadEventsOfRootEventWithAncestors(eventLogFile, "1")));
+    }
+
+    /*
+        the events above, plus
+
+        <SOURCE7>   <SINK>      <JOIN>
+          e7    ->  e8      ->  e9 (e1 & e8)
+                        e1  /
+     */
+    private List<EventInformation> eventsWithAncestors() {
+        List<EventInformation> result = new ArrayList<>(events);
+        result.add(event("7", Collections.emptySet(), Collections.emptySet()));
+        result.add(event("8", Sets.newHashSet("7"), Sets.newHashSet("7")));
+        result.add(event("9", Sets.newHashSet("1", "7"), Sets.newHashSet("1", "8")));
+        return result;
+    }
+
+    private void append(List<EventInformation> events, boolean writeIndex) throws IOException {
+        try (OutputStream log = new FileOutputStream(eventLogFile, true);
+             OutputStream index = new FileOutputStream(indexFile, true)) {
+            for (EventInformation event : events) {
+                byte[] line = objectMapper.writeValueAsBytes(event);
+                log.write(line);
+                log.write('\n');
+                if (writeIndex) {
+                    index.write(EventLogIndex.toIndexLine(event.getEventId(), offset, line.length, event.getRootIds())
+                            .getBytes(EventLogFileReader.ENCODING_UTF_8));
+                }
+                offset += line.length + 1;
+            }
+        }
+    }
+
+    private static List<String> ids(List<EventInformation> events) {
+        return events.stream().map(EventInformation::getEventId).collect(toList());
+    }
+
+    private static EventInformation event(String eventId, Set<String> rootIds, Set<String> parentIds) {
+        String componentName = rootIds.isEmpty() ? "SOURCE" + eventId : (parentIds.size() > 1 ? "JOIN" : "SINK");
+        return new EventInformation(System.currentTimeMillis(), componentName, "default",
+                Collections.singleton("target"), eventId, rootIds, parentIds,
+                Collections.singletonMap("key", "value" + eventId));
+    }
+}
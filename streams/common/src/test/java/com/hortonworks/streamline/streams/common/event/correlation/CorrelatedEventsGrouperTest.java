@@ -213,4 +213,70 @@ public class CorrelatedEventsGrouperTest {
         Assert.assertTrue(sink3.getOutputEventIds().isEmpty());
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGroupByRelatedSourceEvents() throws Exception {
+        long timestamp = System.currentTimeMillis();
+
+        /*
+         <SOURCE1>     <JOIN>      <SINK>
+           e1     ->   e3 (e1 & e2)  ->
+
+         <SOURCE2>
+           e2     /
+
+         <SOURCE1>   <PROJECTION>
+           e4     ->     e5       ->
+        */
+        List<EventInformation> testEvents = new ArrayList<>();
+        testEvents.add(new EventInformation(timestamp, "SOURCE1", "default",
+                Collections.singleton("JOIN"), "1",
+                Collections.emptySet(), Collections.emptySet(), TEST_FIELDS_AND_VALUES));
+        testEvents.add(new EventInformation(timestamp, "SOURCE2", "default",
+                Collections.singleton("JOIN"), "2",
+                Collections.emptySet(), Collections.emptySet(), TEST_FIELDS_AND_VALUES));
+        testEvents.add(new EventInformation(timestamp, "JOIN", "default",
+                Collections.singleton("SINK"), "3",
+                Sets.newHashSet("1", "2"), Sets.newHashSet("1", "2"), TEST_FIELDS_AND_VALUES));
+        testEvents.add(new EventInformation(timestamp, "SOURCE1", "default",
+                Collections.singleton("PROJECTION"), "4",
+                Collections.emptySet(), Collections.emptySet(), TEST_FIELDS_AND_VALUES));
+        testEvents.add(new EventInformation(timestamp, "PROJECTION", "default",
+                Collections.singleton("SINK"), "5",
+                Sets.newHashSet("4"), Sets.newHashSet("4"), TEST_FIELDS_AND_VALUES));
+
+        CorrelatedEventsGrouper eventsGrouper = new CorrelatedEventsGrouper(testEvents);
+        List<Set<String>> groups = eventsGrouper.groupByRelatedSourceEvents(Sets.newHashSet("SOURCE1", "SOURCE2"));
+        Assert.assertEquals(2, groups.size());
+        Assert.assertEquals(Sets.newHashSet("1", "2"), groups.get(0));
+        Assert.assertEquals(Sets.newHashSet("4"), groups.get(1));
+    }
+
+    @Test
+    public void testGroupEventsWithLongChain() throws Exception {
+        long timestamp = System.currentTimeMillis();
+        int chainLength = 100000;
+
+        // SOURCE -> PROCESSOR -> PROCESSOR -> ... : deep enough to overflow the stack with a recursive traversal
+        List<EventInformation> testEvents = new ArrayList<>(chainLength);
+        testEvents.add(new EventInformation(timestamp, "SOURCE", "default",
+                Collections.singleton("PROCESSOR"), "0",
+                Collections.emptySet(), Collections.emptySet(), TEST_FIELDS_AND_VALUES));
+        for (int i = 1; i < chainLength; i++) {
+            testEvents.add(new EventInformation(timestamp, "PROCESSOR", "default",
+                    Collections.singleton("PROCESSOR"), String.valueOf(i),
+                    Collections.singleton("0"), Collections.singleton(String.valueOf(i - 1)), TEST_FIELDS_AND_VALUES));
+        }
+
+        CorrelatedEventsGrouper eventsGrouper = new CorrelatedEventsGrouper(testEvents);
+        GroupedCorrelationEvents groupedEvents = eventsGrouper.groupByComponent("0");
+        Assert.assertEquals(chainLength, groupedEvents.getAllEvents().size());
+
+        // selecting an event in the middle of the chain brings all of its ancestors
+        groupedEvents = eventsGrouper.groupByComponent(String.valueOf(chainLength - 1));
+        Assert.assertEquals(chainLength, groupedEvents.getAllEvents().size());
+
+        List<Set<String>> groups = eventsGrouper.groupByRelatedSourceEvents(Collections.singleton("SOURCE"));
+        Assert.assertEquals(Collections.singletonList(Collections.singleton("0")), groups);
+    }
+}
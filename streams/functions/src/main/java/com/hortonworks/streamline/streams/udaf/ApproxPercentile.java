@@ -0,0 +1,76 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.udaf;
+
+import com.hortonworks.streamline.streams.rule.MergeableUDAF;
+import com.hortonworks.streamline.streams.rule.UDAF2;
+
+/**
+ * Estimates a percentile of the non null values of a group with a {@link TDigest}, e.g.
+ * approx_percentile(0.95, x) for the 95th percentile. The memory used is bounded by the
+ * compression, 100 by default, a subclass can pick another compression.
+ */
+public class ApproxPercentile implements UDAF2<ApproxPercentile.Aggregate, Double, Number, Double>,
+        MergeableUDAF<ApproxPercentile.Aggregate> {
+    static final double DEFAULT_COMPRESSION = 100;
+
+    private final double compression;
+
+    public static class Aggregate {
+        private final TDigest digest;
+        private Double percentile;
+
+        Aggregate(TDigest digest) {
+            this.digest = digest;
+        }
+    }
+
+    public ApproxPercentile() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    protected ApproxPercentile(double compression) {
+        this.compression = compression;
+    }
+
+    @Override
+    public Aggregate init() {
+        return new Aggregate(new TDigest(compression));
+    }
+
+    @Override
+    public Aggregate add(Aggregate aggregate, Double percentile, Number val) {
+        aggregate.percentile = percentile;
+        if (val != null) {
+            aggregate.digest.add(val);
+        }
+        return aggregate;
+    }
+
+    @Override
+    public Aggregate merge(Aggregate aggregate, Aggregate other) {
+        aggregate.digest.merge(other.digest);
+        if (aggregate.percentile == null) {
+            aggregate.percentile = other.percentile;
+        }
+        return aggregate;
+    }
+
+    @Override
+    public Double result(Aggregate aggregate) {
+        return aggregate.percentile != null ? aggregate.digest.quantile(aggregate.percentile) : null;
+    }
+}
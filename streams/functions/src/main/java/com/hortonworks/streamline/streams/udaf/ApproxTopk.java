@@ -0,0 +1,66 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.udaf;
+
+import com.hortonworks.streamline.streams.rule.MergeableUDAF;
+import com.hortonworks.streamline.streams.rule.UDAF2;
+
+import java.util.List;
+
+/**
+ * Estimates the k most frequent non null values of a group with a {@link SpaceSaving} summary,
+ * e.g. approx_topk(5, x), the most frequent first. The summary counts at most k times the
+ * capacity factor values, 10 by default, a subclass can pick another factor.
+ */
+public class ApproxTopk<T> implements UDAF2<SpaceSaving<T>, Integer, T, List<T>>, MergeableUDAF<SpaceSaving<T>> {
+    static final int DEFAULT_CAPACITY_FACTOR = 10;
+
+    private final int capacityFactor;
+
+    public ApproxTopk() {
+        this(DEFAULT_CAPACITY_FACTOR);
+    }
+
+    protected ApproxTopk(int capacityFactor) {
+        if (capacityFactor < 1) {
+            throw new IllegalArgumentException("Capacity factor should be at least 1, got " + capacityFactor);
+        }
+        this.capacityFactor = capacityFactor;
+    }
+
+    @Override
+    public SpaceSaving<T> init() {
+        return new SpaceSaving<>(0);
+    }
+
+    @Override
+    public SpaceSaving<T> add(SpaceSaving<T> aggregate, Integer k, T val) {
+        if (k <= 0 || val == null) {
+            return aggregate;
+        }
+        return aggregate.ensureCapacity(k * capacityFactor).add(val);
+    }
+
+    @Override
+    public SpaceSaving<T> merge(SpaceSaving<T> aggregate, SpaceSaving<T> other) {
+        return aggregate.merge(other);
+    }
+
+    @Override
+    public List<T> result(SpaceSaving<T> aggregate) {
+        return aggregate.top(aggregate.capacity() / capacityFactor);
+    }
+}
@@ -0,0 +1,232 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.udaf;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates the number of distinct values using the HyperLogLog algorithm of Flajolet et al.
+ * with 64 bit hashes, so that only the small range correction (linear counting) is needed.
+ * The sketch uses 2^precision registers of one byte and has a relative standard error of
+ * about 1.04 / sqrt(2^precision). Sketches of the same precision are merged by keeping the
+ * maximum of each register.
+ * <p>
+ * The values are hashed by their content with a 64 bit variant of murmur3, so that equal values
+ * hash the same in every worker: numbers by their value, strings by their characters, byte arrays,
+ * lists and maps by their elements, and any other value by its string form.
+ */
+public class HyperLogLog {
+    static final int MIN_PRECISION = 4;
+    static final int MAX_PRECISION = 18;
+
+    private static final long SEED = 0x9368e53c2f6af274L;
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    // mixed before the values other than numbers, so that e.g. "1" and 1 hash differently
+    private static final long NULL_TAG = 0x6e756c6cL;
+    private static final long STRING_TAG = 0x73747220L;
+    private static final long BYTES_TAG = 0x62797465L;
+    private static final long LIST_TAG = 0x6c697374L;
+    private static final long MAP_TAG = 0x6d617020L;
+
+    private int precision;
+    private byte[] registers;
+
+    /**
+     * An empty sketch, whose precision is set by the first {@link #ensureRegisters(int)}.
+     */
+    HyperLogLog() {
+        this.registers = new byte[0];
+    }
+
+    HyperLogLog(int precision) {
+        this();
+        ensureRegisters(precision);
+    }
+
+    /**
+     * Allocates the registers of an empty sketch, a sketch keeps the precision it was first given.
+     */
+    HyperLogLog ensureRegisters(int precision) {
+        if (registers.length == 0) {
+            if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+                throw new IllegalArgumentException("Precision should be between " + MIN_PRECISION + " and "
+                        + MAX_PRECISION + ", got " + precision);
+            }
+            this.precision = precision;
+            this.registers = new byte[1 << precision];
+        }
+        return this;
+    }
+
+    HyperLogLog add(Object val) {
+        if (registers.length == 0) {
+            throw new IllegalStateException("The precision of the sketch is not set");
+        }
+        long hash = hash(val);
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        // the rank of the first 1 bit of the remaining bits, bounded by the bit set after them
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+        return this;
+    }
+
+    HyperLogLog merge(HyperLogLog other) {
+        if (other.registers.length == 0) {
+            return this;
+        }
+        if (registers.length == 0) {
+            precision = other.precision;
+            registers = other.registers.clone();
+            return this;
+        }
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches of precision " + precision + " and "
+                    + other.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        return this;
+    }
+
+    long estimate() {
+        int m = registers.length;
+        if (m == 0) {
+            return 0;
+        }
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                ++zeros;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    static long hash(Object val) {
+        return finish(update(SEED, val));
+    }
+
+    // equal integral numbers update the same whatever their type
+    private static long update(long h, Object val) {
+        if (val instanceof Byte || val instanceof Short || val instanceof Integer || val instanceof Long) {
+            return mix(h, ((Number) val).longValue());
+        } else if (val instanceof Float || val instanceof Double) {
+            return mix(h, Double.doubleToLongBits(((Number) val).doubleValue()));
+        } else if (val instanceof CharSequence) {
+            return update(mix(h, STRING_TAG), (CharSequence) val);
+        } else if (val instanceof byte[]) {
+            return update(mix(h, BYTES_TAG), (byte[]) val);
+        } else if (val instanceof Object[]) {
+            return update(h, Arrays.asList((Object[]) val));
+        } else if (val instanceof List) {
+            List<?> list = (List<?>) val;
+            h = mix(h, LIST_TAG);
+            for (Object element : list) {
+                h = update(h, element);
+            }
+            return mix(h, list.size());
+        } else if (val instanceof Map) {
+            // the entries are combined whatever their order
+            Map<?, ?> map = (Map<?, ?>) val;
+            long entries = 0;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                entries += finish(update(update(SEED, entry.getKey()), entry.getValue()));
+            }
+            return mix(mix(mix(h, MAP_TAG), entries), map.size());
+        } else if (val == null) {
+            return mix(h, NULL_TAG);
+        }
+        return update(mix(h, STRING_TAG), val.toString());
+    }
+
+    // four characters per block, without encoding them
+    private static long update(long h, CharSequence chars) {
+        int length = chars.length();
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            h = mix(h, (long) chars.charAt(i) | (long) chars.charAt(i + 1) << 16
+                    | (long) chars.charAt(i + 2) << 32 | (long) chars.charAt(i + 3) << 48);
+        }
+        long tail = 0;
+        for (int shift = 0; i < length; i++, shift += 16) {
+            tail |= (long) chars.charAt(i) << shift;
+        }
+        return mix(mix(h, tail), length);
+    }
+
+    private static long update(long h, byte[] bytes) {
+        int i = 0;
+        for (; i + 8 <= bytes.length; i += 8) {
+            long block = 0;
+            for (int j = 7; j >= 0; j--) {
+                block = block << 8 | (bytes[i + j] & 0xffL);
+            }
+            h = mix(h, block);
+        }
+        long tail = 0;
+        for (int shift = 0; i < bytes.length; i++, shift += 8) {
+            tail |= (bytes[i] & 0xffL) << shift;
+        }
+        return mix(mix(h, tail), bytes.length);
+    }
+
+    // the block mixing of murmur3 x64, one 8 byte block at a time
+    private static long mix(long h, long block) {
+        block *= C1;
+        block = Long.rotateLeft(block, 31);
+        block *= C2;
+        h ^= block;
+        h = Long.rotateLeft(h, 27);
+        return h * 5 + 0x52dce729;
+    }
+
+    // the finalization mix of murmur3, spreading every bit of the state over the hash
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
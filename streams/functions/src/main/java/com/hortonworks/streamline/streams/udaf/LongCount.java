@@ -15,9 +15,10 @@
  **/
 package com.hortonworks.streamline.streams.udaf;
 
-import com.hortonworks.streamline.streams.rule.UDAF;
+import com.hortonworks.streamline.streams.rule.MergeableUDAF;
+import com.hortonworks.streamline.streams.rule.RetractableUDAF;
 
-public class LongCount implements UDAF<Long, Object, Long> {
+public class LongCount implements RetractableUDAF<Long, Object, Long>, MergeableUDAF<Long> {
     @Override
     public Long init() {
         return 0L;
@@ -25,20 +26,34 @@ public class LongCount implements UDAF<Long, Object, Long> {
 
     @Override
     public Long add(Long aggregate, Object val) {
+        return counted(val) ? aggregate + 1 : aggregate;
+    }
+
+    @Override
+    public Long retract(Long aggregate, Object val) {
+        return counted(val) ? aggregate - 1 : aggregate;
+    }
+
+    @Override
+    public Long merge(Long aggregate, Long other) {
+        return aggregate + other;
+    }
+
+    @Override
+    public Long result(Long aggregate) {
+        return aggregate;
+    }
+
+    private static boolean counted(Object val) {
         if (val == null) {
-            return aggregate;
+            return false;
         } else if (val instanceof Iterable) {
             for (Object o : (Iterable<?>) val) {
                 if (o == null) {
-                    return aggregate;
+                    return false;
                 }
             }
         }
-        return aggregate + 1;
-    }
-
-    @Override
-    public Long result(Long aggregate) {
-        return aggregate;
+        return true;
     }
 }
@@ -0,0 +1,93 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.udaf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the n largest long values in a min heap over a primitive array allocated once,
+ * so that adding a value neither boxes nor allocates.
+ */
+public class LongTopnHeap {
+    private long[] heap;
+    private int size;
+
+    LongTopnHeap add(int n, long val) {
+        if (heap == null) {
+            heap = new long[n];
+        }
+        if (size < heap.length) {
+            heap[size] = val;
+            siftUp(size++);
+        } else if (val > heap[0]) {
+            heap[0] = val;
+            siftDown(0);
+        }
+        return this;
+    }
+
+    LongTopnHeap merge(LongTopnHeap other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.heap.length, other.heap[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the values, largest first.
+     */
+    List<Long> descending() {
+        long[] values = Arrays.copyOf(heap != null ? heap : new long[0], size);
+        Arrays.sort(values);
+        List<Long> res = new ArrayList<>(size);
+        for (int i = values.length - 1; i >= 0; i--) {
+            res.add(values[i]);
+        }
+        return res;
+    }
+
+    private void siftUp(int i) {
+        long val = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= val) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = val;
+    }
+
+    private void siftDown(int i) {
+        long val = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                ++child;
+            }
+            if (val <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = val;
+    }
+}
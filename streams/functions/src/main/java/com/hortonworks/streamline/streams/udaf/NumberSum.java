@@ -15,9 +15,17 @@
  **/
 package com.hortonworks.streamline.streams.udaf;
 
-import com.hortonworks.streamline.streams.rule.UDAF;
+import com.hortonworks.streamline.streams.rule.MergeableUDAF;
+import com.hortonworks.streamline.streams.rule.RetractableUDAF;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class NumberSum implements RetractableUDAF<Number, Number, Number>, MergeableUDAF<Number> {
+    // the types of the values, narrowest first
+    private static final List<Class<? extends Number>> TYPES = Arrays.asList(Byte.class, Short.class,
+            Integer.class, Long.class, Float.class, Double.class);
 
-public class NumberSum implements UDAF<Number, Number, Number> {
     @Override
     public Number init() {
         return 0;
@@ -41,6 +49,38 @@ public class NumberSum implements UDAF<Number, Number, Number> {
         throw new IllegalArgumentException("Value type " + val.getClass());
     }
 
+    @Override
+    public Number retract(Number aggregate, Number val) {
+        if (val instanceof Byte) {
+            return (byte) (aggregate.byteValue() - val.byteValue());
+        } else if (val instanceof Short) {
+            return (short) (aggregate.shortValue() - val.shortValue());
+        } else if (val instanceof Integer) {
+            return aggregate.intValue() - val.intValue();
+        } else if (val instanceof Long) {
+            return aggregate.longValue() - val.longValue();
+        } else if (val instanceof Float) {
+            return aggregate.floatValue() - val.floatValue();
+        } else if (val instanceof Double) {
+            return aggregate.doubleValue() - val.doubleValue();
+        }
+        throw new IllegalArgumentException("Value type " + val.getClass());
+    }
+
+    @Override
+    public Number merge(Number aggregate, Number other) {
+        // the aggregate of no values is an integer 0, keep the type of the other one
+        if (other.doubleValue() == 0) {
+            return aggregate;
+        } else if (aggregate.doubleValue() == 0) {
+            return other;
+        }
+        // the sum is computed in the type of the added value, so the narrower aggregate is added to the wider one
+        return TYPES.indexOf(aggregate.getClass()) > TYPES.indexOf(other.getClass())
+                ? add(other, aggregate)
+                : add(aggregate, other);
+    }
+
     @Override
     public Number result(Number aggregate) {
         return aggregate;
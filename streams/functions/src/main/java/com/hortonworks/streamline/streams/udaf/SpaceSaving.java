@@ -0,0 +1,126 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.udaf;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Finds the most frequent values using the Space-Saving algorithm of Metwally, Agrawal and El Abbadi.
+ * At most capacity values are counted, a new value replacing one of the least counted values and
+ * taking over its count. The counted values are kept in buckets by count, so that a value is counted
+ * and the least counted value found in logarithmic time. Summaries are merged as described by
+ * Agarwal et al. in "Mergeable Summaries".
+ */
+public class SpaceSaving<T> {
+    private int capacity;
+    private final Map<T, Long> counts = new HashMap<>();
+    private final TreeMap<Long, LinkedHashSet<T>> buckets = new TreeMap<>();
+
+    SpaceSaving(int capacity) {
+        this.capacity = capacity;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Sets the capacity if no value was counted yet.
+     */
+    SpaceSaving<T> ensureCapacity(int capacity) {
+        if (counts.isEmpty()) {
+            this.capacity = Math.max(this.capacity, capacity);
+        }
+        return this;
+    }
+
+    SpaceSaving<T> add(T val) {
+        Long count = counts.get(val);
+        if (count != null) {
+            removeFromBucket(val, count);
+            put(val, count + 1);
+        } else if (counts.size() < capacity) {
+            put(val, 1L);
+        } else if (capacity > 0) {
+            Map.Entry<Long, LinkedHashSet<T>> least = buckets.firstEntry();
+            Iterator<T> it = least.getValue().iterator();
+            T replaced = it.next();
+            it.remove();
+            if (least.getValue().isEmpty()) {
+                buckets.remove(least.getKey());
+            }
+            counts.remove(replaced);
+            put(val, least.getKey() + 1);
+        }
+        return this;
+    }
+
+    SpaceSaving<T> merge(SpaceSaving<T> other) {
+        // a value not counted by a full summary was counted at most as many times as its least counted value
+        long minCount = minCount();
+        long otherMinCount = other.minCount();
+        capacity = Math.max(capacity, other.capacity);
+        Map<T, Long> merged = new HashMap<>();
+        counts.forEach((val, count) -> merged.put(val, count + other.counts.getOrDefault(val, otherMinCount)));
+        other.counts.forEach((val, count) -> merged.putIfAbsent(val, count + minCount));
+        counts.clear();
+        buckets.clear();
+        merged.entrySet().stream()
+                .sorted(Map.Entry.<T, Long>comparingByValue().reversed())
+                .limit(capacity)
+                .forEach(e -> put(e.getKey(), e.getValue()));
+        return this;
+    }
+
+    /**
+     * Returns up to n of the most frequent values, the most frequent first.
+     */
+    List<T> top(int n) {
+        List<T> top = new ArrayList<>();
+        for (LinkedHashSet<T> bucket : buckets.descendingMap().values()) {
+            for (T val : bucket) {
+                if (top.size() == n) {
+                    return top;
+                }
+                top.add(val);
+            }
+        }
+        return top;
+    }
+
+    private long minCount() {
+        return counts.size() < capacity || buckets.isEmpty() ? 0 : buckets.firstKey();
+    }
+
+    private void put(T val, long count) {
+        counts.put(val, count);
+        buckets.computeIfAbsent(count, c -> new LinkedHashSet<>()).add(val);
+    }
+
+    private void removeFromBucket(T val, long count) {
+        LinkedHashSet<T> bucket = buckets.get(count);
+        bucket.remove(val);
+        if (bucket.isEmpty()) {
+            buckets.remove(count);
+        }
+    }
+}
@@ -15,9 +15,10 @@
  **/
 package com.hortonworks.streamline.streams.udaf;
 
-import com.hortonworks.streamline.streams.rule.UDAF;
+import com.hortonworks.streamline.streams.rule.MergeableUDAF;
+import com.hortonworks.streamline.streams.rule.RetractableUDAF;
 
-public class Stddev implements UDAF<StddevOnline, Number, Double> {
+public class Stddev implements RetractableUDAF<StddevOnline, Number, Double>, MergeableUDAF<StddevOnline> {
     @Override
     public StddevOnline init() {
         return new StddevOnline();
@@ -28,6 +29,16 @@ public class Stddev implements UDAF<StddevOnline, Number, Double> {
         return aggregate.add(val);
     }
 
+    @Override
+    public StddevOnline retract(StddevOnline aggregate, Number val) {
+        return aggregate.remove(val);
+    }
+
+    @Override
+    public StddevOnline merge(StddevOnline aggregate, StddevOnline other) {
+        return aggregate.merge(other);
+    }
+
     @Override
     public Double result(StddevOnline aggregate) {
         return aggregate.stddev();
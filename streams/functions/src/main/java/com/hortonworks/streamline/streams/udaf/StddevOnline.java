@@ -18,6 +18,8 @@ package com.hortonworks.streamline.streams.udaf;
 /**
  * Computes online variance and stddev of values using
  * B.P. Welford's algorithm described in Knuth's TAOCP Vol2. p232, 3rd edition.
+ * Values are removed by reversing the update and aggregates are merged using the
+ * pairwise update of Chan, Golub and LeVeque.
  */
 public class StddevOnline {
     private int n;
@@ -32,6 +34,34 @@ public class StddevOnline {
         return this;
     }
 
+    StddevOnline remove(Number val) {
+        if (n <= 1) {
+            n = 0;
+            mean = 0;
+            aggregate = 0;
+            return this;
+        }
+        double prevMean = (n * mean - val.doubleValue()) / (n - 1);
+        aggregate -= (val.doubleValue() - prevMean) * (val.doubleValue() - mean);
+        // rounding errors could make it slightly negative
+        aggregate = Math.max(aggregate, 0);
+        mean = prevMean;
+        --n;
+        return this;
+    }
+
+    StddevOnline merge(StddevOnline other) {
+        if (other.n == 0) {
+            return this;
+        }
+        int count = n + other.n;
+        double delta = other.mean - mean;
+        mean += delta * other.n / count;
+        aggregate += other.aggregate + delta * delta * ((double) n * other.n / count);
+        n = count;
+        return this;
+    }
+
     double stddevp() {
         return Math.sqrt(variancep());
     }
@@ -0,0 +1,163 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.udaf;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Estimates quantiles of values using the merging t-digest of T. Dunning and O. Ertl.
+ * The values are buffered and periodically merged with the centroids, sorted by mean, keeping
+ * the centroids small near the tails with the arcsine scale function. The number of centroids is
+ * bounded by about the compression, which trades memory for accuracy. Digests are merged by
+ * merging the centroids of the other digest as weighted values.
+ */
+public class TDigest {
+    static final double MIN_COMPRESSION = 10;
+
+    private final double compression;
+    private final double[] means;
+    private final double[] weights;
+    private int centroids;
+    private final double[] bufferedMeans;
+    private final double[] bufferedWeights;
+    private int buffered;
+    private double totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    TDigest(double compression) {
+        if (compression < MIN_COMPRESSION) {
+            throw new IllegalArgumentException("Compression should be at least " + MIN_COMPRESSION
+                    + ", got " + compression);
+        }
+        this.compression = compression;
+        // any two adjacent centroids span more than 1 in k, which ranges over compression / 2
+        int size = (int) Math.ceil(compression) + 2;
+        means = new double[size];
+        weights = new double[size];
+        bufferedMeans = new double[5 * size];
+        bufferedWeights = new double[5 * size];
+    }
+
+    TDigest add(Number val) {
+        add(val.doubleValue(), 1);
+        return this;
+    }
+
+    TDigest merge(TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.centroids; i++) {
+            add(other.means[i], other.weights[i]);
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    /**
+     * Returns the estimated value at the quantile, between 0 and 1, or null if no value was added.
+     */
+    Double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile should be between 0 and 1, got " + q);
+        }
+        compress();
+        if (centroids == 0) {
+            return null;
+        } else if (centroids == 1) {
+            return means[0];
+        }
+        // each centroid is taken as centered at the middle of its weight
+        double index = q * totalWeight;
+        if (index < weights[0] / 2) {
+            return interpolate(index, 0, min, weights[0] / 2, means[0]);
+        }
+        double soFar = weights[0] / 2;
+        for (int i = 0; i < centroids - 1; i++) {
+            double next = soFar + (weights[i] + weights[i + 1]) / 2;
+            if (index <= next) {
+                return interpolate(index, soFar, means[i], next, means[i + 1]);
+            }
+            soFar = next;
+        }
+        return interpolate(index, soFar, means[centroids - 1], totalWeight, max);
+    }
+
+    private void add(double mean, double weight) {
+        if (buffered == bufferedMeans.length) {
+            compress();
+        }
+        bufferedMeans[buffered] = mean;
+        bufferedWeights[buffered] = weight;
+        ++buffered;
+        totalWeight += weight;
+        min = Math.min(min, mean);
+        max = Math.max(max, mean);
+    }
+
+    // merges the buffered values with the centroids
+    private void compress() {
+        if (buffered == 0) {
+            return;
+        }
+        int count = centroids + buffered;
+        double[] allMeans = Arrays.copyOf(means, count);
+        double[] allWeights = Arrays.copyOf(weights, count);
+        System.arraycopy(bufferedMeans, 0, allMeans, centroids, buffered);
+        System.arraycopy(bufferedWeights, 0, allWeights, centroids, buffered);
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> allMeans[i]));
+
+        centroids = 0;
+        buffered = 0;
+        double mean = allMeans[order[0]];
+        double weight = allWeights[order[0]];
+        double soFar = 0;
+        double kLeft = k(0);
+        for (int i = 1; i < count; i++) {
+            double nextMean = allMeans[order[i]];
+            double nextWeight = allWeights[order[i]];
+            if (k((soFar + weight + nextWeight) / totalWeight) - kLeft <= 1) {
+                weight += nextWeight;
+                mean += (nextMean - mean) * nextWeight / weight;
+            } else {
+                means[centroids] = mean;
+                weights[centroids] = weight;
+                ++centroids;
+                soFar += weight;
+                kLeft = k(soFar / totalWeight);
+                mean = nextMean;
+                weight = nextWeight;
+            }
+        }
+        means[centroids] = mean;
+        weights[centroids] = weight;
+        ++centroids;
+    }
+
+    // the scale function, limiting a centroid to a k range of 1
+    private double k(double q) {
+        return compression / (2 * Math.PI) * Math.asin(2 * Math.min(q, 1) - 1);
+    }
+
+    private static double interpolate(double x, double x0, double y0, double x1, double y1) {
+        return x1 > x0 ? y0 + (x - x0) / (x1 - x0) * (y1 - y0) : y0;
+    }
+}
@@ -0,0 +1,50 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.udaf;
+
+import com.hortonworks.streamline.streams.rule.MergeableUDAF;
+import com.hortonworks.streamline.streams.rule.UDAF2;
+
+import java.util.List;
+
+/**
+ * Computes streaming top n values of a group of floating point values, like {@link Topn} but
+ * keeping the values in a {@link DoubleTopnHeap} of primitive doubles.
+ */
+public class TopnDouble implements UDAF2<DoubleTopnHeap, Integer, Number, List<Double>>, MergeableUDAF<DoubleTopnHeap> {
+    @Override
+    public DoubleTopnHeap init() {
+        return new DoubleTopnHeap();
+    }
+
+    @Override
+    public DoubleTopnHeap add(DoubleTopnHeap aggregate, Integer n, Number val) {
+        if (n <= 0 || val == null) {
+            return aggregate;
+        }
+        return aggregate.add(n, val.doubleValue());
+    }
+
+    @Override
+    public DoubleTopnHeap merge(DoubleTopnHeap aggregate, DoubleTopnHeap other) {
+        return aggregate.merge(other);
+    }
+
+    @Override
+    public List<Double> result(DoubleTopnHeap aggregate) {
+        return aggregate.descending();
+    }
+}
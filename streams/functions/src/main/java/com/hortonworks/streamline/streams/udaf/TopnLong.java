@@ -0,0 +1,54 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.udaf;
+
+import com.hortonworks.streamline.streams.rule.MergeableUDAF;
+import com.hortonworks.streamline.streams.rule.UDAF2;
+
+import java.util.List;
+
+/**
+ * Computes streaming top n values of a group of integral values, like {@link Topn} but
+ * keeping the values in a {@link LongTopnHeap} of primitive longs. Floating point values are
+ * rejected rather than truncated, {@link TopnDouble} takes them.
+ */
+public class TopnLong implements UDAF2<LongTopnHeap, Integer, Number, List<Long>>, MergeableUDAF<LongTopnHeap> {
+    @Override
+    public LongTopnHeap init() {
+        return new LongTopnHeap();
+    }
+
+    @Override
+    public LongTopnHeap add(LongTopnHeap aggregate, Integer n, Number val) {
+        if (n <= 0 || val == null) {
+            return aggregate;
+        }
+        if (!(val instanceof Long || val instanceof Integer || val instanceof Short || val instanceof Byte)) {
+            throw new IllegalArgumentException("Value type " + val.getClass() + " is not integral, use TopnDouble");
+        }
+        return aggregate.add(n, val.longValue());
+    }
+
+    @Override
+    public LongTopnHeap merge(LongTopnHeap aggregate, LongTopnHeap other) {
+        return aggregate.merge(other);
+    }
+
+    @Override
+    public List<Long> result(LongTopnHeap aggregate) {
+        return aggregate.descending();
+    }
+}
@@ -0,0 +1,109 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.udaf;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class ApproxCountDistinctTest {
+    @Test
+    public void testResult() throws Exception {
+        ApproxCountDistinct countDistinct = new ApproxCountDistinct();
+        HyperLogLog aggregate = countDistinct.init();
+        Assert.assertEquals(0L, (long) countDistinct.result(aggregate));
+        for (int i = 0; i < 100000; i++) {
+            // each value twice, in different types
+            aggregate = countDistinct.add(aggregate, i);
+            aggregate = countDistinct.add(aggregate, (long) i);
+            aggregate = countDistinct.add(aggregate, "value-" + (i % 1000));
+            aggregate = countDistinct.add(aggregate, null);
+        }
+        Assert.assertEquals(101000, countDistinct.result(aggregate), 101000 * 0.03);
+
+        HyperLogLog small = countDistinct.add(countDistinct.add(countDistinct.init(), "a"), "b");
+        Assert.assertEquals(2L, (long) countDistinct.result(small));
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        ApproxCountDistinct countDistinct = new ApproxCountDistinct();
+        HyperLogLog left = countDistinct.init();
+        HyperLogLog right = countDistinct.init();
+        HyperLogLog all = countDistinct.init();
+        for (int i = 0; i < 50000; i++) {
+            left = countDistinct.add(left, i);
+            right = countDistinct.add(right, i + 25000);
+            all = countDistinct.add(countDistinct.add(all, i), i + 25000);
+        }
+        Assert.assertEquals(countDistinct.result(all), countDistinct.result(countDistinct.merge(left, right)));
+    }
+
+    @Test
+    public void testPrecisionArgument() throws Exception {
+        ApproxCountDistinct2 countDistinct = new ApproxCountDistinct2();
+        HyperLogLog aggregate = countDistinct.init();
+        Assert.assertEquals(0L, (long) countDistinct.result(countDistinct.add(aggregate, 10, null)));
+        for (int i = 0; i < 100000; i++) {
+            aggregate = countDistinct.add(aggregate, 10, i);
+        }
+        // 1.04 / sqrt(2^10) is about 3%
+        Assert.assertEquals(100000, countDistinct.result(aggregate), 100000 * 0.1);
+        Assert.assertEquals(countDistinct.result(aggregate),
+                countDistinct.result(countDistinct.merge(countDistinct.init(), aggregate)));
+        Assert.assertEquals(countDistinct.result(aggregate),
+                countDistinct.result(countDistinct.merge(aggregate, countDistinct.init())));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPrecision() throws Exception {
+        new ApproxCountDistinct2().add(new HyperLogLog(), 20, 1);
+    }
+
+    @Test
+    public void testHashByContent() throws Exception {
+        Assert.assertEquals(HyperLogLog.hash(1), HyperLogLog.hash(1L));
+        Assert.assertNotEquals(HyperLogLog.hash(1), HyperLogLog.hash("1"));
+        Assert.assertEquals(HyperLogLog.hash(new StringBuilder("abcde")), HyperLogLog.hash("abcde"));
+        Assert.assertNotEquals(HyperLogLog.hash("abcd"), HyperLogLog.hash("abcde"));
+        Assert.assertEquals(HyperLogLog.hash(new byte[] {1, 2, 3}), HyperLogLog.hash(new byte[] {1, 2, 3}));
+        Assert.assertNotEquals(HyperLogLog.hash(new byte[] {1, 2, 3}), HyperLogLog.hash(new byte[] {1, 2, 3, 0}));
+        Assert.assertEquals(HyperLogLog.hash(Arrays.asList(1, "a", null)),
+                HyperLogLog.hash(new ArrayList<>(Arrays.asList(1, "a", null))));
+        Assert.assertNotEquals(HyperLogLog.hash(Arrays.asList(1, 2)), HyperLogLog.hash(Arrays.asList(2, 1)));
+
+        Map<String, Object> map = new HashMap<>();
+        Map<String, Object> sortedMap = new TreeMap<>(Comparator.reverseOrder());
+        for (int i = 0; i < 20; i++) {
+            map.put("key" + i, i);
+            sortedMap.put("key" + i, i);
+        }
+        Assert.assertEquals(HyperLogLog.hash(map), HyperLogLog.hash(sortedMap));
+        sortedMap.put("key0", 1);
+        Assert.assertNotEquals(HyperLogLog.hash(map), HyperLogLog.hash(sortedMap));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMergeDifferentPrecisions() throws Exception {
+        new HyperLogLog(10).merge(new HyperLogLog(12));
+    }
+}
@@ -0,0 +1,62 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.udaf;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class ApproxPercentileTest {
+    @Test
+    public void testResult() throws Exception {
+        ApproxPercentile percentile = new ApproxPercentile();
+        Assert.assertNull(percentile.result(percentile.init()));
+
+        List<Integer> values = new ArrayList<>();
+        for (int i = 1; i <= 100000; i++) {
+            values.add(i);
+        }
+        Collections.shuffle(values, new Random(42));
+        for (double p : new double[] {0, 0.01, 0.5, 0.95, 0.999, 1}) {
+            ApproxPercentile.Aggregate aggregate = percentile.init();
+            for (Integer value : values) {
+                aggregate = percentile.add(aggregate, p, value);
+            }
+            Assert.assertEquals(Math.max(1, p * 100000), percentile.result(aggregate), 100000 * 0.005);
+        }
+
+        ApproxPercentile.Aggregate single = percentile.add(percentile.init(), 0.5, 42);
+        Assert.assertEquals(42, percentile.result(single), 0);
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        ApproxPercentile percentile = new ApproxPercentile();
+        ApproxPercentile.Aggregate left = percentile.init();
+        ApproxPercentile.Aggregate right = percentile.init();
+        for (int i = 1; i <= 10000; i++) {
+            left = percentile.add(left, 0.9, i);
+            right = percentile.add(right, 0.9, 10000 + i);
+        }
+        ApproxPercentile.Aggregate merged = percentile.merge(percentile.init(), left);
+        merged = percentile.merge(merged, right);
+        Assert.assertEquals(18000, percentile.result(merged), 20000 * 0.005);
+    }
+}
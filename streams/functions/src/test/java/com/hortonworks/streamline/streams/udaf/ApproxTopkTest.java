@@ -0,0 +1,64 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.udaf;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class ApproxTopkTest {
+    @Test
+    public void testResult() throws Exception {
+        ApproxTopk<String> topk = new ApproxTopk<>();
+        SpaceSaving<String> aggregate = topk.init();
+        // the frequent values among many infrequent ones, more than the summary can count
+        for (int i = 0; i < 10000; i++) {
+            aggregate = topk.add(aggregate, 3, "value-" + i);
+            if (i % 3 == 0) {
+                aggregate = topk.add(aggregate, 3, "a");
+            }
+            if (i % 5 == 0) {
+                aggregate = topk.add(aggregate, 3, "b");
+            }
+            if (i % 8 == 0) {
+                aggregate = topk.add(aggregate, 3, "c");
+            }
+        }
+        Assert.assertEquals(30, aggregate.capacity());
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), topk.result(aggregate));
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        ApproxTopk<Integer> topk = new ApproxTopk<>(1);
+        SpaceSaving<Integer> left = topk.init();
+        SpaceSaving<Integer> right = topk.init();
+        for (int i = 0; i < 5; i++) {
+            left = topk.add(left, 2, 1);
+            right = topk.add(right, 2, 2);
+        }
+        right = topk.add(right, 2, 2);
+        for (int i = 0; i < 3; i++) {
+            left = topk.add(left, 2, 2);
+            right = topk.add(right, 2, 3);
+        }
+        List<Integer> result = topk.result(topk.merge(left, right));
+        Assert.assertEquals(Arrays.asList(2, 1), result);
+        Assert.assertTrue(topk.result(topk.init()).isEmpty());
+    }
+}
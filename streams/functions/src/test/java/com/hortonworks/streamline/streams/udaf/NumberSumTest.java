@@ -44,5 +44,17 @@ public class NumberSumTest {
         }
         Assert.assertEquals(clazz, agg.getClass());
         Assert.assertEquals(10, agg.intValue());
+
+        agg = sum.retract(agg, arr[0]);
+        Assert.assertEquals(clazz, agg.getClass());
+        Assert.assertEquals(9, agg.intValue());
+
+        Number other = sum.init();
+        other = sum.add(other, arr[0]);
+        agg = sum.merge(agg, other);
+        Assert.assertEquals(clazz, agg.getClass());
+        Assert.assertEquals(10, agg.intValue());
+        // merging an empty aggregate
+        Assert.assertEquals(clazz, sum.merge(sum.init(), agg).getClass());
     }
 }
\ No newline at end of file
@@ -53,4 +53,49 @@ public class StddevpTest {
         Assert.assertEquals(sqsum / (arr.length - 1), variance.result(varianceAgg), .0001);
     }
 
+    @Test
+    public void testRetractAndMerge() throws Exception {
+        Variance variance = new Variance();
+        Mean mean = new Mean();
+        double arr[] = {1, 2, 2, 3, 3, 4, 5};
+
+        // sliding the values {1, 2, 2, 3} to {2, 3, 3, 4, 5}
+        StddevOnline slidingAgg = variance.init();
+        for (int i = 0; i < 4; i++) {
+            slidingAgg = variance.add(slidingAgg, arr[i]);
+        }
+        slidingAgg = variance.retract(slidingAgg, arr[0]);
+        slidingAgg = variance.retract(slidingAgg, arr[1]);
+        for (int i = 4; i < arr.length; i++) {
+            slidingAgg = variance.add(slidingAgg, arr[i]);
+        }
+        StddevOnline expected = variance.init();
+        for (int i = 2; i < arr.length; i++) {
+            expected = variance.add(expected, arr[i]);
+        }
+        Assert.assertEquals(variance.result(expected), variance.result(slidingAgg), .0001);
+        Assert.assertEquals(mean.result(expected), mean.result(slidingAgg), .0001);
+
+        // merging {1, 2, 2} and {3, 3, 4, 5}
+        StddevOnline left = variance.init();
+        StddevOnline right = variance.init();
+        StddevOnline all = variance.init();
+        for (int i = 0; i < arr.length; i++) {
+            if (i < 3) {
+                left = variance.add(left, arr[i]);
+            } else {
+                right = variance.add(right, arr[i]);
+            }
+            all = variance.add(all, arr[i]);
+        }
+        StddevOnline merged = variance.merge(left, right);
+        Assert.assertEquals(variance.result(all), variance.result(merged), .0001);
+        Assert.assertEquals(mean.result(all), mean.result(merged), .0001);
+        Assert.assertEquals(mean.result(all), mean.result(variance.merge(variance.init(), all)), .0001);
+
+        // retracting all the values
+        StddevOnline single = mean.add(mean.init(), 42);
+        Assert.assertEquals(0, mean.result(mean.retract(single, 42)), .0001);
+    }
+
 }
\ No newline at end of file
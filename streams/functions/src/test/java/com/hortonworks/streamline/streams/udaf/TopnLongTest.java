@@ -0,0 +1,106 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.udaf;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+public class TopnLongTest {
+    @Test
+    public void testResult() throws Exception {
+        TopnLong topn = new TopnLong();
+        Topn<Long> expectedTopn = new Topn<>();
+        List<Long> values = new ArrayList<>();
+        for (long i = 0; i < 1000; i++) {
+            values.add(i % 300);
+        }
+        Collections.shuffle(values, new Random(42));
+        LongTopnHeap aggregate = topn.init();
+        PriorityQueue<Long> expected = expectedTopn.init();
+        for (Long value : values) {
+            aggregate = topn.add(aggregate, 5, value);
+            expected = expectedTopn.add(expected, 5, value);
+        }
+        Assert.assertEquals(Arrays.asList(299L, 299L, 299L, 298L, 298L), topn.result(aggregate));
+        Assert.assertEquals(expectedTopn.result(expected), topn.result(aggregate));
+        // integral values of any type
+        Assert.assertEquals(Arrays.asList(3L, 2L), topn.result(topn.add(topn.add(topn.add(topn.init(),
+                2, 1), 2, (short) 3), 2, 2L)));
+        Assert.assertTrue(topn.result(topn.add(topn.init(), 0, 1)).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonIntegralValue() throws Exception {
+        TopnLong topn = new TopnLong();
+        topn.add(topn.init(), 2, 1.5);
+    }
+
+    @Test
+    public void testDouble() throws Exception {
+        TopnDouble topn = new TopnDouble();
+        DoubleTopnHeap aggregate = topn.init();
+        for (double value : new double[] {0.5, -1, 2.5, 2.5, 1, 3}) {
+            aggregate = topn.add(aggregate, 3, value);
+        }
+        Assert.assertEquals(Arrays.asList(3.0, 2.5, 2.5), topn.result(aggregate));
+        Assert.assertEquals(Arrays.asList(2.5, 1.0), topn.result(topn.add(topn.add(topn.add(topn.init(),
+                2, 1), 2, 2.5f), 2, null)));
+    }
+
+    @Test
+    public void testResultIsSerializable() throws Exception {
+        TopnLong topnLong = new TopnLong();
+        List<Long> longs = topnLong.result(topnLong.add(topnLong.add(topnLong.init(), 2, 1L), 2, 2L));
+        Assert.assertEquals(Arrays.asList(2L, 1L), serializeAndDeserialize(longs));
+        TopnDouble topnDouble = new TopnDouble();
+        List<Double> doubles = topnDouble.result(topnDouble.add(topnDouble.add(topnDouble.init(), 2, 1.0), 2, 2.0));
+        Assert.assertEquals(Arrays.asList(2.0, 1.0), serializeAndDeserialize(doubles));
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        TopnLong topn = new TopnLong();
+        LongTopnHeap left = topn.init();
+        LongTopnHeap right = topn.init();
+        for (long i = 0; i < 10; i++) {
+            left = topn.add(left, 3, i);
+            right = topn.add(right, 3, i * 2);
+        }
+        Assert.assertEquals(Arrays.asList(18L, 16L, 14L), topn.result(topn.merge(left, right)));
+        Assert.assertEquals(Arrays.asList(18L, 16L, 14L), topn.result(topn.merge(topn.init(), right)));
+    }
+
+    private static Object serializeAndDeserialize(Object value) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return in.readObject();
+        }
+    }
+}
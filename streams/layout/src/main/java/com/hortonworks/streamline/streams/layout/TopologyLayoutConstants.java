@@ -55,10 +55,13 @@ public final class TopologyLayoutConstants {
     public final static String JSON_KEY_TABLE = "table";
     public final static String JSON_KEY_COLUMN_FAMILY = "columnFamily";
     public final static String JSON_KEY_ROW_KEY = "rowKeyField";
+    public final static String JSON_KEY_ROW_KEY_FIELDS = "rowKeyFields";
+    public final static String JSON_KEY_SALT_BUCKETS = "saltBuckets";
     public final static String JSON_KEY_MAPPER_IMPL =
             "hBaseMapperImplClassName";
     public final static String JSON_KEY_WRITE_TO_WAL = "writeToWAL";
     public final static String JSON_KEY_BATCH_SIZE = "batchSize";
+    public final static String JSON_KEY_FLUSH_INTERVAL_SECS = "flushIntervalSecs";
     public final static String JSON_KEY_FS_URL = "fsUrl";
     public final static String JSON_KEY_PATH = "path";
     public final static String JSON_KEY_PREFIX = "prefix";
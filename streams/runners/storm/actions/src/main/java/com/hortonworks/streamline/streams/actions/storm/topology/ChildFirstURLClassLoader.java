@@ -0,0 +1,108 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.actions.storm.topology;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Loads the classes and resources from its own URLs before asking its parent, so that the libraries of the Storm
+ * installation and of the topology (Guava, Jackson, ...) are not shadowed by the versions on the Streamline class path.
+ * <p>
+ * The JDK classes, the logging API and the classes or packages given as parent first are always loaded by the parent:
+ * the classes exchanged with the parent must be the same on both sides.
+ */
+class ChildFirstURLClassLoader extends URLClassLoader {
+    private static final String[] SYSTEM_PREFIXES = {
+            "java.", "javax.", "sun.", "jdk.", "org.w3c.dom.", "org.xml.sax.", "org.slf4j.",
+            "org.apache.commons.logging."
+    };
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final String[] parentFirstPrefixes;
+
+    ChildFirstURLClassLoader(URL[] urls, ClassLoader parent, String... parentFirstPrefixes) {
+        super(urls, parent);
+        this.parentFirstPrefixes = parentFirstPrefixes;
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (isParentFirst(name)) {
+            return super.loadClass(name, resolve);
+        }
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> clazz = findLoadedClass(name);
+            if (clazz == null) {
+                try {
+                    clazz = findClass(name);
+                } catch (ClassNotFoundException e) {
+                    return super.loadClass(name, resolve);
+                }
+            }
+            if (resolve) {
+                resolveClass(clazz);
+            }
+            return clazz;
+        }
+    }
+
+    @Override
+    public URL getResource(String name) {
+        if (isParentFirst(resourceClassName(name))) {
+            return super.getResource(name);
+        }
+        URL url = findResource(name);
+        return url != null ? url : super.getResource(name);
+    }
+
+    @Override
+    public Enumeration<URL> getResources(String name) throws IOException {
+        if (isParentFirst(resourceClassName(name))) {
+            return super.getResources(name);
+        }
+        List<URL> urls = Collections.list(findResources(name));
+        if (getParent() != null) {
+            urls.addAll(Collections.list(getParent().getResources(name)));
+        }
+        return Collections.enumeration(urls);
+    }
+
+    private boolean isParentFirst(String name) {
+        for (String prefix : SYSTEM_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        for (String prefix : parentFirstPrefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String resourceClassName(String resourceName) {
+        return resourceName.replace('/', '.');
+    }
+}
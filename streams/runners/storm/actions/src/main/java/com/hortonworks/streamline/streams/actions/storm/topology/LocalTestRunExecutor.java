@@ -0,0 +1,252 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.actions.storm.topology;
+
+import com.hortonworks.streamline.common.util.ProxyUtil;
+import com.hortonworks.streamline.streams.storm.common.TestRunTopologyRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32;
+
+/**
+ * Runs test run topologies inside the Streamline JVM, instead of spawning 'storm jar ... Flux --local' per test run.
+ * <p>
+ * Storm (the jars of the Storm installation) and the streamline storm jar are loaded in dedicated child first class
+ * loaders, so that their libraries are not replaced by the versions of the Streamline class path, and the topology
+ * runner is loaded from them through {@link ProxyUtil}. The runner keeps its local cluster up between test runs, so
+ * that only the first test run pays for starting it. The class path of a test run also contains the topology specific
+ * artifacts (cluster configuration files) and extra jars: a runner is reused by the test runs having the same class
+ * path content, and at most MAX_CACHED_RUNNERS runners are kept. Runners are started and shut down outside of the lock
+ * on the cache, so that a test run starting a runner does not hold up the test runs of the other runners.
+ */
+public class LocalTestRunExecutor {
+    private static final Logger LOG = LoggerFactory.getLogger(LocalTestRunExecutor.class);
+
+    static final String RUNNER_CLASS_NAME =
+            "com.hortonworks.streamline.streams.runtime.storm.testing.LocalClusterTestRunTopologyRunner";
+    private static final int MAX_CACHED_RUNNERS = 2;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // exchanged with the runner through the proxy, so loaded once by the Streamline class loader
+    private static final String[] PARENT_FIRST_CLASSES = {TestRunTopologyRunner.class.getName()};
+
+    private final File stormLibDirectory;
+    private final String stormJarLocation;
+    private final String runnerClassName;
+    // class path fingerprint -> runner, in least recently used order
+    private final LinkedHashMap<String, CachedRunner> runners = new LinkedHashMap<>(16, 0.75f, true);
+    private ClassLoader stormClassLoader;
+
+    public LocalTestRunExecutor(String stormHomeDir, String stormJarLocation) {
+        this(stormHomeDir, stormJarLocation, RUNNER_CLASS_NAME);
+    }
+
+    LocalTestRunExecutor(String stormHomeDir, String stormJarLocation, String runnerClassName) {
+        this.stormLibDirectory = new File(stormHomeDir, "lib");
+        this.stormJarLocation = stormJarLocation;
+        this.runnerClassName = runnerClassName;
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "local-test-run-executor-shutdown"));
+    }
+
+    public boolean isAvailable() {
+        return stormJarLocation != null && new File(stormJarLocation).isFile() && stormLibDirectory.isDirectory();
+    }
+
+    public void run(String fluxFilePath, String eventLogFilePath, Path artifactsLocation, List<File> extraJars,
+                    long durationMillis, BooleanSupplier killRequested) throws Exception {
+        List<File> classPath = new ArrayList<>();
+        classPath.add(new File(stormJarLocation));
+        if (artifactsLocation.toFile().isDirectory()) {
+            classPath.add(artifactsLocation.toFile());
+        }
+        classPath.addAll(extraJars);
+
+        String fingerprint = fingerprint(classPath);
+        CachedRunner runner = acquireRunner(fingerprint);
+        try {
+            runner.get(() -> createRunner(classPath))
+                    .runTopology(fluxFilePath, eventLogFilePath, durationMillis, killRequested);
+        } catch (Exception e) {
+            // a runner which failed to start is not kept
+            discardRunner(fingerprint, runner);
+            throw e;
+        } finally {
+            releaseRunner(runner);
+        }
+    }
+
+    public void shutdown() {
+        List<CachedRunner> toShutdown;
+        synchronized (this) {
+            toShutdown = new ArrayList<>(runners.values());
+            runners.clear();
+        }
+        toShutdown.forEach(LocalTestRunExecutor::shutdownQuietly);
+    }
+
+    private synchronized CachedRunner acquireRunner(String fingerprint) {
+        CachedRunner runner = runners.computeIfAbsent(fingerprint, key -> new CachedRunner());
+        runner.activeRuns++;
+        return runner;
+    }
+
+    private void releaseRunner(CachedRunner runner) {
+        List<CachedRunner> evicted;
+        synchronized (this) {
+            runner.activeRuns--;
+            evicted = evictIdleRunners();
+        }
+        evicted.forEach(LocalTestRunExecutor::shutdownQuietly);
+    }
+
+    private void discardRunner(String fingerprint, CachedRunner runner) {
+        if (!runner.isStarted()) {
+            synchronized (this) {
+                runners.remove(fingerprint, runner);
+            }
+        }
+    }
+
+    private List<CachedRunner> evictIdleRunners() {
+        List<CachedRunner> evicted = new ArrayList<>();
+        Iterator<CachedRunner> it = runners.values().iterator();
+        int toEvict = runners.size() - MAX_CACHED_RUNNERS;
+        while (toEvict > 0 && it.hasNext()) {
+            CachedRunner runner = it.next();
+            if (runner.activeRuns == 0) {
+                it.remove();
+                evicted.add(runner);
+                toEvict--;
+            }
+        }
+        return evicted;
+    }
+
+    private TestRunTopologyRunner createRunner(List<File> classPath) throws Exception {
+        LOG.info("Creating local test run topology runner for class path {}", classPath);
+        URL[] urls = new URL[classPath.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = classPath.get(i).toURI().toURL();
+        }
+        ClassLoader classLoader = new ChildFirstURLClassLoader(urls, getStormClassLoader(), PARENT_FIRST_CLASSES);
+        return new ProxyUtil<>(TestRunTopologyRunner.class, classLoader)
+                .loadClassFromJar(stormJarLocation, runnerClassName);
+    }
+
+    private synchronized ClassLoader getStormClassLoader() throws MalformedURLException {
+        if (stormClassLoader == null) {
+            File[] jars = stormLibDirectory.listFiles((dir, name) -> name.endsWith(".jar"));
+            if (jars == null || jars.length == 0) {
+                throw new IllegalStateException("No Storm jars found in " + stormLibDirectory);
+            }
+            URL[] urls = new URL[jars.length];
+            for (int i = 0; i < jars.length; i++) {
+                urls[i] = jars[i].toURI().toURL();
+            }
+            stormClassLoader = new ChildFirstURLClassLoader(urls, LocalTestRunExecutor.class.getClassLoader(),
+                    PARENT_FIRST_CLASSES);
+        }
+        return stormClassLoader;
+    }
+
+    private static void shutdownQuietly(CachedRunner runner) {
+        try {
+            runner.shutdown();
+        } catch (Exception e) {
+            LOG.warn("Failed to shut down local test run topology runner", e);
+        }
+    }
+
+    // The artifacts and extra jars are rewritten for every test run, so the content of the files is compared
+    // rather than their modification time. The streamline storm jar (first entry) is only replaced on upgrades.
+    static String fingerprint(List<File> classPath) throws IOException {
+        File stormJar = classPath.get(0);
+        StringBuilder sb = new StringBuilder();
+        sb.append(stormJar.getAbsolutePath()).append(':').append(stormJar.length()).append(':')
+                .append(stormJar.lastModified());
+        for (File entry : classPath.subList(1, classPath.size())) {
+            sb.append(File.pathSeparatorChar).append(entry.getAbsolutePath());
+            if (entry.isDirectory()) {
+                File[] files = entry.listFiles(File::isFile);
+                if (files != null) {
+                    Arrays.sort(files, Comparator.comparing(File::getName));
+                    for (File file : files) {
+                        sb.append('|').append(file.getName()).append(':').append(checksum(file));
+                    }
+                }
+            } else {
+                sb.append(':').append(checksum(entry));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue() ^ (file.length() << 32);
+    }
+
+    // The runner is started by the first test run using it, while the test runs of the same class path wait for it.
+    private static class CachedRunner {
+        // guarded by the executor, the other fields by the cached runner
+        private int activeRuns;
+        private TestRunTopologyRunner runner;
+        private boolean shutdown;
+
+        synchronized TestRunTopologyRunner get(Callable<TestRunTopologyRunner> factory) throws Exception {
+            if (shutdown) {
+                throw new IllegalStateException("Local test run topology runner is shut down");
+            }
+            if (runner == null) {
+                runner = factory.call();
+            }
+            return runner;
+        }
+
+        synchronized boolean isStarted() {
+            return runner != null;
+        }
+
+        synchronized void shutdown() {
+            shutdown = true;
+            if (runner != null) {
+                runner.shutdown();
+            }
+        }
+    }
+}
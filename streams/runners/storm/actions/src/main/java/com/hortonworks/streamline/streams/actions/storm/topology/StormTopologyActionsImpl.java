@@ -88,8 +88,6 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
-import static java.util.stream.Collectors.toList;
-
 /**
  * Storm implementation of the TopologyActions interface
  */
@@ -135,6 +133,8 @@ public class StormTopologyActionsImpl implements TopologyActions {
     public static final String TOPOLOGY_NOTIFIER_PLUGIN_CLASSNAME_ATLAS = "org.apache.atlas.storm.hook.StormAtlasHook";
 
     private static final Long DEFAULT_NIMBUS_THRIFT_MAX_BUFFER_SIZE = 1048576L;
+    // assembled topology jars, under the storm artifacts location
+    private static final String TOPOLOGY_JAR_CACHE_DIR = ".topology-jars";
 
     public static final String TOPOLOGY_EVENTLOGGER_REGISTER = "topology.event.logger.register";
     public static final String TOPOLOGY_EVENTLOGGER_CLASSNAME_STREAMLINE = "com.hortonworks.streamline.streams.runtime.storm.event.sample.StreamlineEventLogger";
@@ -145,7 +145,6 @@ public class StormTopologyActionsImpl implements TopologyActions {
     private String stormCliPath = "storm";
     private String stormJarLocation;
     private String catalogRootUrl;
-    private String javaJarCommand;
     private StormRestAPIClient client;
     private String nimbusSeeds;
     private Integer nimbusPort;
@@ -157,6 +156,8 @@ public class StormTopologyActionsImpl implements TopologyActions {
     private long nimbusThriftMaxBufferSize;
 
     private AutoCredsServiceConfigurationReader serviceConfigurationReader;
+    private LocalTestRunExecutor localTestRunExecutor;
+    private TopologyJarAssembler topologyJarAssembler;
     private final ConcurrentHashMap<Long, Boolean> forceKillRequests = new ConcurrentHashMap<>();
     private Set<String> environmentServiceNames;
 
@@ -178,20 +179,14 @@ public class StormTopologyActionsImpl implements TopologyActions {
                 stormCliPath = stormHomeDir + "bin" + File.separator + "storm";
             }
             this.stormJarLocation = (String) conf.get(StormTopologyLayoutConstants.STORM_JAR_LOCATION_KEY);
+            if (conf.containsKey(StormTopologyLayoutConstants.STORM_HOME_DIR) &&
+                    (Boolean) conf.getOrDefault(StormTopologyLayoutConstants.STORM_TEST_RUN_IN_PROCESS_KEY, false)) {
+                localTestRunExecutor = new LocalTestRunExecutor(
+                        (String) conf.get(StormTopologyLayoutConstants.STORM_HOME_DIR), stormJarLocation);
+            }
 
             catalogRootUrl = (String) conf.get(StormTopologyLayoutConstants.YAML_KEY_CATALOG_ROOT_URL);
 
-            Map<String, String> env = System.getenv();
-            String javaHomeStr = env.get("JAVA_HOME");
-            if (StringUtils.isNotEmpty(javaHomeStr)) {
-                if (!javaHomeStr.endsWith(File.separator)) {
-                    javaHomeStr += File.separator;
-                }
-                javaJarCommand = javaHomeStr + "bin" + File.separator + "jar";
-            } else {
-                javaJarCommand = "jar";
-            }
-
             String stormApiRootUrl = (String) conf.get(TopologyLayoutConstants.STORM_API_ROOT_URL_KEY);
             Subject subject = (Subject) conf.get(TopologyLayoutConstants.SUBJECT_OBJECT);
             Client restClient = ClientBuilder.newClient(new ClientConfig());
@@ -253,26 +248,32 @@ public class StormTopologyActionsImpl implements TopologyActions {
     @Override
     public void deploy(TopologyLayout topology, String mavenArtifacts, TopologyActionContext ctx, String asUser) throws Exception {
         ctx.setCurrentAction("Adding artifacts to jar");
-        Path jarToDeploy = addArtifactsToJar(getArtifactsLocation(topology));
-        ctx.setCurrentAction("Creating Storm topology YAML file");
-        String fileName = createYamlFileForDeploy(topology);
-        ctx.setCurrentAction("Deploying topology via 'storm jar' command");
-        List<String> commands = new ArrayList<String>();
-        commands.add(stormCliPath);
-        commands.add("jar");
-        commands.add(jarToDeploy.toString());
-        commands.addAll(getExtraJarsArg(topology));
-        commands.addAll(getMavenArtifactsRelatedArgs(mavenArtifacts));
-        commands.addAll(getNimbusConf());
-        commands.addAll(getSecuredClusterConf(asUser));
-        commands.add("org.apache.storm.flux.Flux");
-        commands.add("--remote");
-        commands.add(fileName);
-        LOG.info("Deploying Application {}", topology.getName());
-        LOG.info(String.join(" ", commands));
-
-        Process process = executeShellProcess(commands);
-        ShellProcessResult shellProcessResult = waitProcessFor(process);
+        TopologyJarAssembler.TopologyJars jarsToDeploy = addArtifactsToJar(getArtifactsLocation(topology));
+        ShellProcessResult shellProcessResult;
+        try {
+            ctx.setCurrentAction("Creating Storm topology YAML file");
+            String fileName = createYamlFileForDeploy(topology);
+            ctx.setCurrentAction("Deploying topology via 'storm jar' command");
+            List<String> commands = new ArrayList<String>();
+            commands.add(stormCliPath);
+            commands.add("jar");
+            commands.add(jarsToDeploy.getJar().toString());
+            commands.addAll(getExtraJarsArg(topology, jarsToDeploy));
+            commands.addAll(getMavenArtifactsRelatedArgs(mavenArtifacts));
+            commands.addAll(getNimbusConf());
+            commands.addAll(getSecuredClusterConf(asUser));
+            commands.add("org.apache.storm.flux.Flux");
+            commands.add("--remote");
+            commands.add(fileName);
+            LOG.info("Deploying Application {}", topology.getName());
+            LOG.info(String.join(" ", commands));
+
+            Process process = executeShellProcess(commands);
+            shellProcessResult = waitProcessFor(process);
+        } finally {
+            // the jars can be evicted from the cache once 'storm jar' is done with them
+            releaseJars(jarsToDeploy);
+        }
         int exitValue = shellProcessResult.exitValue;
         if (exitValue != 0) {
             LOG.error("Topology deploy command failed - exit code: {} / output: {}", exitValue, shellProcessResult.stdout);
@@ -306,32 +307,45 @@ public class StormTopologyActionsImpl implements TopologyActions {
 
         TopologyLayout testTopology = copyTopologyLayout(topology, testTopologyDag);
 
-        Path jarToDeploy = addArtifactsToJar(getArtifactsLocation(testTopology));
-        String fileName = createYamlFileForTest(testTopology);
-        List<String> commands = new ArrayList<String>();
-        commands.add(stormCliPath);
-        commands.add("jar");
-        commands.add(jarToDeploy.toString());
-        commands.addAll(getExtraJarsArg(testTopology));
-        commands.addAll(getMavenArtifactsRelatedArgs(mavenArtifacts));
-        commands.addAll(getNimbusConf());
-        commands.addAll(getForceNonSecuredClusterConf());
-        commands.addAll(getTempWorkerArtifactArgs());
-        commands.addAll(getNoMetricConsumerArgs());
-        commands.add("org.apache.storm.flux.Flux");
-        commands.add("--local");
-
-        commands.add("-s");
-        if (durationSecs.isPresent()) {
-            commands.add(String.valueOf(durationSecs.get() * 1000));
-        } else {
-            commands.add(String.valueOf(TEST_RUN_TOPOLOGY_DEFAULT_WAIT_MILLIS_FOR_SHUTDOWN));
+        long durationMillis = durationSecs.map(secs -> secs * 1000).orElse((long) TEST_RUN_TOPOLOGY_DEFAULT_WAIT_MILLIS_FOR_SHUTDOWN);
+        // maven artifacts are resolved by 'storm jar'
+        if (localTestRunExecutor != null && StringUtils.isEmpty(mavenArtifacts)) {
+            if (localTestRunExecutor.isAvailable()) {
+                runTestInProcess(testTopology, testRunHistory, durationMillis);
+                return;
+            }
+            LOG.warn("Storm jars or streamline storm jar not found, running test topologies with 'storm jar' command");
+            localTestRunExecutor = null;
         }
 
-        commands.add(fileName);
-
-        Process process = executeShellProcess(commands);
-        ShellProcessResult shellProcessResult = waitTestRunProcess(process, testRunHistory.getId());
+        TopologyJarAssembler.TopologyJars jarsToDeploy = addArtifactsToJar(getArtifactsLocation(testTopology));
+        ShellProcessResult shellProcessResult;
+        try {
+            String fileName = createYamlFileForTest(testTopology);
+            List<String> commands = new ArrayList<String>();
+            commands.add(stormCliPath);
+            commands.add("jar");
+            commands.add(jarsToDeploy.getJar().toString());
+            commands.addAll(getExtraJarsArg(testTopology, jarsToDeploy));
+            commands.addAll(getMavenArtifactsRelatedArgs(mavenArtifacts));
+            commands.addAll(getNimbusConf());
+            commands.addAll(getForceNonSecuredClusterConf());
+            commands.addAll(getTempWorkerArtifactArgs());
+            commands.addAll(getNoMetricConsumerArgs());
+            commands.add("org.apache.storm.flux.Flux");
+            commands.add("--local");
+
+            commands.add("-s");
+            commands.add(String.valueOf(durationMillis));
+
+            commands.add(fileName);
+
+            Process process = executeShellProcess(commands);
+            shellProcessResult = waitTestRunProcess(process, testRunHistory.getId());
+        } finally {
+            // the jars can be evicted from the cache once 'storm jar' is done with them
+            releaseJars(jarsToDeploy);
+        }
         int exitValue = shellProcessResult.exitValue;
         if (exitValue != 0) {
             LOG.error("Topology deploy command as test mode failed - exit code: {} / output: {}", exitValue, shellProcessResult.stdout);
@@ -340,6 +354,30 @@ public class StormTopologyActionsImpl implements TopologyActions {
         }
     }
 
+    private void runTestInProcess(TopologyLayout testTopology, TopologyTestRunHistory testRunHistory,
+                                  long durationMillis) throws Exception {
+        String fileName = createYamlFileForTest(testTopology);
+        List<File> extraJars = new ArrayList<>();
+        File[] extraJarFiles = getExtraJarsLocation(testTopology).toFile().listFiles();
+        if (extraJarFiles != null) {
+            extraJars.addAll(Arrays.asList(extraJarFiles));
+        }
+
+        long historyId = testRunHistory.getId();
+        forceKillRequests.put(historyId, false);
+        LOG.info("Running test run for history {} in process...", historyId);
+        try {
+            localTestRunExecutor.run(fileName, testRunHistory.getEventLogFilePath(), getArtifactsLocation(testTopology),
+                    extraJars, durationMillis, () -> forceKillRequests.getOrDefault(historyId, false));
+        } catch (Exception e) {
+            LOG.error("Topology run as test mode failed", e);
+            throw new Exception("Topology could not be run successfully as test mode: " + e.getMessage(), e);
+        } finally {
+            forceKillRequests.remove(historyId);
+        }
+        LOG.info("Test run for history {} is finished", historyId);
+    }
+
     @Override
     public boolean killTest(TopologyTestRunHistory testRunHistory) {
         // just turn on the flag only if it exists
@@ -492,9 +530,10 @@ public class StormTopologyActionsImpl implements TopologyActions {
         return args;
     }
 
-    private List<String> getExtraJarsArg(TopologyLayout topology) {
+    private List<String> getExtraJarsArg(TopologyLayout topology, TopologyJarAssembler.TopologyJars jarsToDeploy) {
         List<String> args = new ArrayList<>();
         List<String> jars = new ArrayList<>();
+        jarsToDeploy.getArtifactsJar().ifPresent(jar -> jars.add(jar.toString()));
         Path extraJarsPath = getExtraJarsLocation(topology);
         if (extraJarsPath.toFile().isDirectory()) {
             File[] jarFiles = extraJarsPath.toFile().listFiles();
@@ -601,42 +640,24 @@ public class StormTopologyActionsImpl implements TopologyActions {
         }
     }
 
-    private Path addArtifactsToJar(Path artifactsLocation) throws Exception {
-        Path jarFile = Paths.get(stormJarLocation);
-        if (artifactsLocation.toFile().isDirectory()) {
-            File[] artifacts = artifactsLocation.toFile().listFiles();
-            if (artifacts != null && artifacts.length > 0) {
-                Path newJar = Files.copy(jarFile, artifactsLocation.resolve(jarFile.getFileName()));
-
-                List<String> artifactFileNames = Arrays.stream(artifacts).filter(File::isFile)
-                        .map(File::getName).collect(toList());
-                List<String> commands = new ArrayList<>();
-
-                commands.add(javaJarCommand);
-                commands.add("uf");
-                commands.add(newJar.toString());
+    private TopologyJarAssembler.TopologyJars addArtifactsToJar(Path artifactsLocation) throws Exception {
+        if (!artifactsLocation.toFile().isDirectory()) {
+            LOG.debug("Artifacts directory {} does not exist, not adding any artifacts to jar", artifactsLocation);
+            return new TopologyJarAssembler.TopologyJars(Paths.get(stormJarLocation), null);
+        }
+        return getTopologyJarAssembler().assemble(artifactsLocation);
+    }
 
-                artifactFileNames.stream().forEachOrdered(name -> {
-                    commands.add("-C");
-                    commands.add(artifactsLocation.toString());
-                    commands.add(name);
-                });
+    private void releaseJars(TopologyJarAssembler.TopologyJars jars) {
+        getTopologyJarAssembler().release(jars);
+    }
 
-                Process process = executeShellProcess(commands);
-                ShellProcessResult shellProcessResult = waitProcessFor(process);
-                if (shellProcessResult.exitValue != 0) {
-                    LOG.error("Adding artifacts to jar command failed - exit code: {} / output: {}",
-                            shellProcessResult.exitValue, shellProcessResult.stdout);
-                    throw new RuntimeException("Topology could not be deployed " +
-                            "successfully: fail to add artifacts to jar");
-                }
-                LOG.debug("Added files {} to jar {}", artifactFileNames, jarFile);
-                return newJar;
-            }
-        } else {
-            LOG.debug("Artifacts directory {} does not exist, not adding any artifacts to jar", artifactsLocation);
+    private synchronized TopologyJarAssembler getTopologyJarAssembler() {
+        if (topologyJarAssembler == null) {
+            topologyJarAssembler = new TopologyJarAssembler(Paths.get(stormJarLocation),
+                    Paths.get(stormArtifactsLocation, TOPOLOGY_JAR_CACHE_DIR));
         }
-        return jarFile;
+        return topologyJarAssembler;
     }
 
     private String createYamlFileForDeploy(TopologyLayout topology) throws Exception {
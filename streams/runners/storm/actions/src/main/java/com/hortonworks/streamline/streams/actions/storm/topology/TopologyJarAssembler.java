@@ -0,0 +1,315 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.actions.storm.topology;
+
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.Striped;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Assembles the jars to submit for a topology: the streamline storm jar plus the topology artifacts (cluster
+ * configuration files), which are added at the root of the class path and replace the entries with the same name.
+ * <p>
+ * The streamline storm jar, which already contains the dependencies of the topologies, is submitted as it is, and the
+ * artifacts are written in a small jar of their own, submitted with it through '--jars'. As the storm jar comes first
+ * in the class path of the workers, an artifact replacing an entry of the storm jar can't be put in a jar of its own:
+ * the storm jar is then copied with the artifacts replacing its entries with the same name. This only happens when
+ * the storm jar bundles a configuration file of a cluster.
+ * <p>
+ * The written jars are cached in a directory and addressed by their content (the storm jar and the name and content
+ * of the artifacts), so that the topologies sharing the same artifacts (e.g. the topologies of the same namespace) and
+ * the subsequent deploys of a topology reuse the same jar. Only the assemblies of the same jar are serialized. The
+ * jars returned by {@link #assemble(Path)} are in use until they are given back to {@link #release(TopologyJars)},
+ * and the least recently used jars which are not in use are evicted from the cache.
+ */
+public class TopologyJarAssembler {
+    private static final Logger LOG = LoggerFactory.getLogger(TopologyJarAssembler.class);
+
+    private static final int MAX_CACHED_JARS = 8;
+    private static final String JAR_SUFFIX = ".jar";
+
+    private final Path baseJar;
+    private final Path cacheDirectory;
+    private final Striped<Lock> assemblyLocks = Striped.lock(16);
+    // cached jar -> number of deploys using it, in least recently used order. Guarded by 'this'
+    private final LinkedHashMap<Path, Integer> cachedJars = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean cachedJarsLoaded;
+    // the entry names of the base jar, read again when the base jar is replaced. Guarded by 'this'
+    private Set<String> baseEntryNames;
+    private String baseEntryNamesVersion;
+
+    /**
+     * The jar to submit and the jar of the artifacts to submit with it, if any.
+     */
+    public static class TopologyJars {
+        private final Path jar;
+        private final Path artifactsJar;
+
+        TopologyJars(Path jar, Path artifactsJar) {
+            this.jar = jar;
+            this.artifactsJar = artifactsJar;
+        }
+
+        public Path getJar() {
+            return jar;
+        }
+
+        public Optional<Path> getArtifactsJar() {
+            return Optional.ofNullable(artifactsJar);
+        }
+    }
+
+    public TopologyJarAssembler(Path baseJar, Path cacheDirectory) {
+        this.baseJar = baseJar;
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Returns the jars containing the entries of the base jar and the files of the artifacts directory, or the base
+     * jar alone if there is no artifact. The jars have to be released once they are consumed.
+     */
+    public TopologyJars assemble(Path artifactsLocation) throws IOException {
+        File[] artifacts = artifactsLocation.toFile().listFiles(File::isFile);
+        if (artifacts == null || artifacts.length == 0) {
+            LOG.debug("No artifacts in {}, not adding any artifacts to jar", artifactsLocation);
+            return new TopologyJars(baseJar, null);
+        }
+        Arrays.sort(artifacts, Comparator.comparing(File::getName));
+        boolean replacingBaseEntries = replacesBaseEntries(artifacts);
+
+        String key = contentKey(artifacts);
+        Path jar = cacheDirectory.resolve(key + JAR_SUFFIX);
+        Lock lock = assemblyLocks.get(key);
+        lock.lock();
+        try {
+            // in use before it is looked up, so that it can't be evicted once found
+            acquire(jar);
+            if (Files.exists(jar)) {
+                LOG.debug("Reusing jar {} for artifacts {}", jar, artifactsLocation);
+                return topologyJars(jar, replacingBaseEntries);
+            }
+            try {
+                Files.createDirectories(cacheDirectory);
+                Path tempJar = Files.createTempFile(cacheDirectory, key, ".tmp");
+                try {
+                    if (replacingBaseEntries) {
+                        writeJar(artifacts, tempJar);
+                    } else {
+                        writeArtifactsJar(artifacts, tempJar);
+                    }
+                    Files.move(tempJar, jar, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(tempJar);
+                }
+            } catch (IOException | RuntimeException e) {
+                discard(jar);
+                throw e;
+            }
+            LOG.debug("Added files {} to jar {}", Arrays.toString(artifacts), jar);
+        } finally {
+            lock.unlock();
+        }
+        evictLeastRecentlyUsed();
+        return topologyJars(jar, replacingBaseEntries);
+    }
+
+    /**
+     * Gives back the jars returned by {@link #assemble(Path)} once they are consumed, so that they can be evicted.
+     */
+    public void release(TopologyJars jars) {
+        Path jar = jars.getArtifactsJar().orElse(jars.getJar());
+        if (!jar.equals(baseJar)) {
+            release(jar);
+        }
+    }
+
+    private void release(Path jar) {
+        synchronized (this) {
+            Integer uses = cachedJars.get(jar);
+            if (uses == null || uses == 0) {
+                LOG.warn("Released jar {} is not in use", jar);
+            } else {
+                cachedJars.put(jar, uses - 1);
+            }
+        }
+        evictLeastRecentlyUsed();
+    }
+
+    // gives back a jar which could not be written, forgetting it unless it is still in use
+    private synchronized void discard(Path jar) {
+        int uses = cachedJars.get(jar) - 1;
+        if (uses == 0) {
+            cachedJars.remove(jar);
+        } else {
+            cachedJars.put(jar, uses);
+        }
+    }
+
+    private TopologyJars topologyJars(Path jar, boolean replacingBaseEntries) {
+        return replacingBaseEntries ? new TopologyJars(jar, null) : new TopologyJars(baseJar, jar);
+    }
+
+    private synchronized void acquire(Path jar) {
+        loadCachedJars();
+        cachedJars.merge(jar, 1, Integer::sum);
+    }
+
+    // the jars cached by a previous run, the least recently modified first
+    private void loadCachedJars() {
+        if (cachedJarsLoaded) {
+            return;
+        }
+        File[] jars = cacheDirectory.toFile().listFiles((dir, name) -> name.endsWith(JAR_SUFFIX));
+        if (jars != null) {
+            Arrays.sort(jars, Comparator.comparingLong(File::lastModified));
+            for (File jar : jars) {
+                cachedJars.put(jar.toPath(), 0);
+            }
+        }
+        cachedJarsLoaded = true;
+    }
+
+    private synchronized boolean replacesBaseEntries(File[] artifacts) throws IOException {
+        File base = baseJar.toFile();
+        String version = base.length() + ":" + base.lastModified();
+        if (!version.equals(baseEntryNamesVersion)) {
+            Set<String> names = new HashSet<>();
+            try (ZipFile zipFile = new ZipFile(base)) {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    names.add(entries.nextElement().getName());
+                }
+            }
+            baseEntryNames = names;
+            baseEntryNamesVersion = version;
+        }
+        for (File artifact : artifacts) {
+            if (baseEntryNames.contains(artifact.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String contentKey(File[] artifacts) throws IOException {
+        File base = baseJar.toFile();
+        Hasher hasher = Hashing.sha256().newHasher()
+                .putString(base.getAbsolutePath(), StandardCharsets.UTF_8)
+                .putLong(base.length())
+                .putLong(base.lastModified());
+        OutputStream hasherStream = Funnels.asOutputStream(hasher);
+        for (File artifact : artifacts) {
+            hasher.putString(artifact.getName(), StandardCharsets.UTF_8)
+                    .putLong(artifact.length());
+            Files.copy(artifact.toPath(), hasherStream);
+        }
+        return hasher.hash().toString();
+    }
+
+    private void writeArtifactsJar(File[] artifacts, Path target) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(target))) {
+            writeArtifacts(artifacts, out);
+        }
+    }
+
+    private void writeJar(File[] artifacts, Path target) throws IOException {
+        Set<String> artifactNames = new HashSet<>();
+        for (File artifact : artifacts) {
+            artifactNames.add(artifact.getName());
+        }
+        try (ZipFile base = new ZipFile(baseJar.toFile());
+             ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(target))) {
+            // the jar is written for a single upload, so compression speed matters more than size
+            out.setLevel(Deflater.BEST_SPEED);
+            for (ZipEntry entry : Collections.list(base.entries())) {
+                if (artifactNames.contains(entry.getName())) {
+                    continue;
+                }
+                ZipEntry copy = new ZipEntry(entry.getName());
+                copy.setTime(entry.getTime());
+                if (entry.getMethod() == ZipEntry.STORED) {
+                    copy.setMethod(ZipEntry.STORED);
+                    copy.setSize(entry.getSize());
+                    copy.setCompressedSize(entry.getCompressedSize());
+                    copy.setCrc(entry.getCrc());
+                }
+                out.putNextEntry(copy);
+                try (InputStream in = base.getInputStream(entry)) {
+                    ByteStreams.copy(in, out);
+                }
+                out.closeEntry();
+            }
+            writeArtifacts(artifacts, out);
+        }
+    }
+
+    private static void writeArtifacts(File[] artifacts, ZipOutputStream out) throws IOException {
+        out.setLevel(Deflater.BEST_SPEED);
+        for (File artifact : artifacts) {
+            ZipEntry entry = new ZipEntry(artifact.getName());
+            entry.setTime(artifact.lastModified());
+            out.putNextEntry(entry);
+            Files.copy(artifact.toPath(), out);
+            out.closeEntry();
+        }
+    }
+
+    private synchronized void evictLeastRecentlyUsed() {
+        int toEvict = cachedJars.size() - MAX_CACHED_JARS;
+        Iterator<Map.Entry<Path, Integer>> it = cachedJars.entrySet().iterator();
+        while (toEvict > 0 && it.hasNext()) {
+            Map.Entry<Path, Integer> cachedJar = it.next();
+            if (cachedJar.getValue() > 0) {
+                continue;
+            }
+            it.remove();
+            toEvict--;
+            try {
+                Files.deleteIfExists(cachedJar.getKey());
+            } catch (IOException e) {
+                LOG.warn("Could not delete cached topology jar {}", cachedJar.getKey(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright 2017 Hortonworks.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *   http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.actions.storm.topology;
+
+import com.hortonworks.streamline.streams.storm.common.TestRunTopologyRunner;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LocalTestRunExecutorTest {
+    private Path tempDir;
+    private File stormJar;
+    private Path artifacts;
+    private LocalTestRunExecutor executor;
+
+    public static class MockRunner implements TestRunTopologyRunner {
+        static final List<MockRunner> instances = Collections.synchronizedList(new ArrayList<>());
+        final List<String> runs = new ArrayList<>();
+        boolean shutdown;
+
+        public MockRunner() {
+            instances.add(this);
+        }
+
+        @Override
+        public void runTopology(String fluxFilePath, String eventLogFilePath, long durationMillis,
+                                BooleanSupplier killRequested) {
+            runs.add(fluxFilePath);
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+    }
+
+    // the first runner takes until it is released to start
+    public static class SlowStartingRunner extends MockRunner {
+        static CountDownLatch started;
+        static CountDownLatch release;
+
+        public SlowStartingRunner() throws InterruptedException {
+            if (started.getCount() > 0) {
+                started.countDown();
+                release.await();
+            }
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        MockRunner.instances.clear();
+        tempDir = Files.createTempDirectory("local-test-run-executor");
+        File stormLib = tempDir.resolve("storm").resolve("lib").toFile();
+        assertTrue(stormLib.mkdirs());
+        createEmptyJar(new File(stormLib, "storm-core.jar"));
+        stormJar = tempDir.resolve("streamline-runtime-storm.jar").toFile();
+        createEmptyJar(stormJar);
+        artifacts = tempDir.resolve("artifacts");
+        assertTrue(artifacts.toFile().mkdirs());
+
+        executor = new LocalTestRunExecutor(tempDir.resolve("storm").toString(), stormJar.getAbsolutePath(),
+                MockRunner.class.getName());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdown();
+        FileUtils.deleteDirectory(tempDir.toFile());
+    }
+
+    @Test
+    public void testRunnerIsReusedForSameClassPathContent() throws Exception {
+        assertTrue(executor.isAvailable());
+        writeArtifact("hbase-site.xml", "<configuration/>");
+        executor.run("test1.yaml", "test.log", artifacts, Collections.emptyList(), 1000, () -> false);
+
+        // artifacts are rewritten for every test run
+        FileUtils.cleanDirectory(artifacts.toFile());
+        writeArtifact("hbase-site.xml", "<configuration/>");
+        executor.run("test2.yaml", "test.log", artifacts, Collections.emptyList(), 1000, () -> false);
+
+        assertEquals(1, MockRunner.instances.size());
+        assertEquals(2, MockRunner.instances.get(0).runs.size());
+    }
+
+    @Test
+    public void testRunnersAreEvictedWhenClassPathChanges() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            writeArtifact("hbase-site.xml", "<configuration>" + i + "</configuration>");
+            executor.run("test" + i + ".yaml", "test" + i + ".log", artifacts, Collections.emptyList(), 1000,
+                    () -> false);
+        }
+
+        assertEquals(4, MockRunner.instances.size());
+        assertTrue(MockRunner.instances.get(0).shutdown);
+        assertTrue(MockRunner.instances.get(1).shutdown);
+        assertTrue(!MockRunner.instances.get(2).shutdown);
+        assertTrue(!MockRunner.instances.get(3).shutdown);
+    }
+
+    @Test(timeout = 30000)
+    public void testRunnerIsStartedWithoutHoldingUpOtherRunners() throws Exception {
+        SlowStartingRunner.started = new CountDownLatch(1);
+        SlowStartingRunner.release = new CountDownLatch(1);
+        LocalTestRunExecutor slowExecutor = new LocalTestRunExecutor(tempDir.resolve("storm").toString(),
+                stormJar.getAbsolutePath(), SlowStartingRunner.class.getName());
+        Path otherArtifacts = tempDir.resolve("other-artifacts");
+        assertTrue(otherArtifacts.toFile().mkdirs());
+        Files.write(otherArtifacts.resolve("hbase-site.xml"),
+                "<configuration>1</configuration>".getBytes(StandardCharsets.UTF_8));
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> slowRun = pool.submit(() -> {
+                slowExecutor.run("test1.yaml", "test1.log", artifacts, Collections.emptyList(), 1000, () -> false);
+                return null;
+            });
+            assertTrue(SlowStartingRunner.started.await(10, TimeUnit.SECONDS));
+
+            slowExecutor.run("test2.yaml", "test2.log", otherArtifacts, Collections.emptyList(), 1000, () -> false);
+            assertFalse(slowRun.isDone());
+
+            SlowStartingRunner.release.countDown();
+            slowRun.get();
+            assertEquals(2, MockRunner.instances.size());
+        } finally {
+            SlowStartingRunner.release.countDown();
+            pool.shutdownNow();
+            slowExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRunnerClassLoaderIsChildFirst() throws Exception {
+        // a copy of a class of the parent class loader
+        String className = MockRunner.class.getName();
+        String resourceName = className.replace('.', '/') + ".class";
+        Path classFile = tempDir.resolve("classes").resolve(resourceName);
+        Files.createDirectories(classFile.getParent());
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(resourceName)) {
+            Files.copy(in, classFile);
+        }
+
+        URL[] urls = {tempDir.resolve("classes").toUri().toURL()};
+        ClassLoader parent = getClass().getClassLoader();
+        try (ChildFirstURLClassLoader classLoader = new ChildFirstURLClassLoader(urls, parent,
+                TestRunTopologyRunner.class.getName())) {
+            Class<?> childClass = classLoader.loadClass(className);
+            assertSame(classLoader, childClass.getClassLoader());
+            assertEquals(classFile.toUri().toURL(), classLoader.getResource(resourceName));
+            // the interface exchanged with the parent is the parent's
+            assertSame(TestRunTopologyRunner.class, classLoader.loadClass(TestRunTopologyRunner.class.getName()));
+            assertTrue(TestRunTopologyRunner.class.isAssignableFrom(childClass));
+            assertSame(String.class, classLoader.loadClass(String.class.getName()));
+        }
+    }
+
+    @Test
+    public void testFingerprintOfExtraJars() throws Exception {
+        File extraJar = tempDir.resolve("custom-processor.jar").toFile();
+        Files.write(extraJar.toPath(), new byte[]{1, 2, 3});
+        List<File> classPath = new ArrayList<>();
+        classPath.add(stormJar);
+        classPath.add(extraJar);
+        String fingerprint = LocalTestRunExecutor.fingerprint(classPath);
+
+        Files.write(extraJar.toPath(), new byte[]{1, 2, 3});
+        assertEquals(fingerprint, LocalTestRunExecutor.fingerprint(classPath));
+
+        Files.write(extraJar.toPath(), new byte[]{1, 2, 4});
+        assertTrue(!fingerprint.equals(LocalTestRunExecutor.fingerprint(classPath)));
+    }
+
+    private void writeArtifact(String name, String content) throws IOException {
+        Files.write(artifacts.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void createEmptyJar(File file) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+            out.flush();
+        }
+    }
+}
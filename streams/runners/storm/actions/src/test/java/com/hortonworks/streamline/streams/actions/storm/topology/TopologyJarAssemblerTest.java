@@ -0,0 +1,208 @@
+/**
+ * Copyright 2017 Hortonworks.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *   http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.actions.storm.topology;
+
+import com.hortonworks.streamline.streams.actions.storm.topology.TopologyJarAssembler.TopologyJars;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TopologyJarAssemblerTest {
+    private Path tempDir;
+    private Path baseJar;
+    private Path cacheDir;
+    private TopologyJarAssembler assembler;
+
+    @Before
+    public void setUp() throws Exception {
+        tempDir = Files.createTempDirectory("topology-jar-assembler");
+        baseJar = tempDir.resolve("streamline-runtime-storm.jar");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(baseJar))) {
+            addEntry(out, JarFile.MANIFEST_NAME, "Manifest-Version: 1.0\n");
+            addEntry(out, "com/hortonworks/Bolt.class", "bolt");
+            addEntry(out, "defaults.yaml", "base");
+            addStoredEntry(out, "lib/dependency.jar", "dependency");
+        }
+        cacheDir = tempDir.resolve("jars");
+        assembler = new TopologyJarAssembler(baseJar, cacheDir);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(tempDir.toFile());
+    }
+
+    @Test
+    public void testArtifactsAreWrittenToJarOfTheirOwn() throws Exception {
+        Path artifacts = createArtifacts("topology1", "<configuration>cluster</configuration>");
+        TopologyJars jars = assembler.assemble(artifacts);
+
+        assertEquals(baseJar, jars.getJar());
+        assertTrue(jars.getArtifactsJar().isPresent());
+        try (JarFile jarFile = new JarFile(jars.getArtifactsJar().get().toFile())) {
+            assertEquals(2, jarFile.size());
+            assertEquals("<configuration>cluster</configuration>", read(jarFile, "hbase-site.xml"));
+            assertEquals("<property/>", read(jarFile, "core-site.xml"));
+        }
+    }
+
+    @Test
+    public void testArtifactsReplacingBaseJarEntriesAreAddedToJar() throws Exception {
+        Path artifacts = createArtifacts("topology1", "<configuration>cluster</configuration>");
+        Files.write(artifacts.resolve("defaults.yaml"), "cluster".getBytes(StandardCharsets.UTF_8));
+        TopologyJars jars = assembler.assemble(artifacts);
+
+        assertFalse(jars.getArtifactsJar().isPresent());
+        assertNotEquals(baseJar, jars.getJar());
+        try (JarFile jarFile = new JarFile(jars.getJar().toFile())) {
+            assertNotNull(jarFile.getManifest());
+            assertEquals("bolt", read(jarFile, "com/hortonworks/Bolt.class"));
+            assertEquals("cluster", read(jarFile, "defaults.yaml"));
+            assertEquals("<configuration>cluster</configuration>", read(jarFile, "hbase-site.xml"));
+            assertEquals("dependency", read(jarFile, "lib/dependency.jar"));
+            assertEquals(ZipEntry.STORED, jarFile.getEntry("lib/dependency.jar").getMethod());
+        }
+    }
+
+    @Test
+    public void testJarIsReusedForSameArtifacts() throws Exception {
+        Path jar1 = artifactsJar(assembler.assemble(createArtifacts("topology1", "<configuration/>")));
+        Path jar2 = artifactsJar(assembler.assemble(createArtifacts("topology2", "<configuration/>")));
+        Path jar3 = artifactsJar(assembler.assemble(createArtifacts("topology3", "<configuration/>\n")));
+
+        assertEquals(jar1, jar2);
+        assertNotEquals(jar1, jar3);
+        assertEquals(2, cacheDir.toFile().list().length);
+    }
+
+    @Test
+    public void testBaseJarIsUsedWithoutArtifacts() throws Exception {
+        Path artifacts = tempDir.resolve("empty");
+        Files.createDirectories(artifacts);
+        TopologyJars jars = assembler.assemble(artifacts);
+        assertEquals(baseJar, jars.getJar());
+        assertFalse(jars.getArtifactsJar().isPresent());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedJarsAreEvicted() throws Exception {
+        TopologyJars first = assemble(assembler, 0);
+        assembler.release(first);
+        TopologyJars second = assemble(assembler, 1);
+        assembler.release(second);
+        for (int i = 2; i <= 7; i++) {
+            assembler.release(assemble(assembler, i));
+        }
+        // reused, so no longer the least recently used
+        assembler.release(assemble(assembler, 0));
+        assembler.release(assemble(assembler, 8));
+
+        assertEquals(8, cacheDir.toFile().list().length);
+        assertTrue(artifactsJar(first).toFile().exists());
+        assertFalse(artifactsJar(second).toFile().exists());
+    }
+
+    @Test
+    public void testJarsInUseAreNotEvicted() throws Exception {
+        TopologyJars first = assemble(assembler, 0);
+        for (int i = 1; i <= 8; i++) {
+            assembler.release(assemble(assembler, i));
+        }
+        // still used by its deploy, the least recently used of the others is evicted instead
+        assertTrue(artifactsJar(first).toFile().exists());
+        assertEquals(8, cacheDir.toFile().list().length);
+
+        assembler.release(first);
+        for (int i = 9; i <= 16; i++) {
+            assembler.release(assemble(assembler, i));
+        }
+        assertFalse(artifactsJar(first).toFile().exists());
+        assertEquals(8, cacheDir.toFile().list().length);
+    }
+
+    @Test
+    public void testJarsCachedBeforeAreEvicted() throws Exception {
+        TopologyJars first = assemble(assembler, 0);
+        assembler.release(first);
+
+        TopologyJarAssembler restarted = new TopologyJarAssembler(baseJar, cacheDir);
+        for (int i = 1; i <= 8; i++) {
+            restarted.release(assemble(restarted, i));
+        }
+        assertFalse(artifactsJar(first).toFile().exists());
+        assertEquals(8, cacheDir.toFile().list().length);
+    }
+
+    private TopologyJars assemble(TopologyJarAssembler assembler, int topology) throws IOException {
+        return assembler.assemble(createArtifacts("topology" + topology,
+                "<configuration>" + topology + "</configuration>"));
+    }
+
+    private static Path artifactsJar(TopologyJars jars) {
+        return jars.getArtifactsJar().get();
+    }
+
+    private Path createArtifacts(String topology, String hbaseSite) throws IOException {
+        Path artifacts = tempDir.resolve(topology);
+        Files.createDirectories(artifacts);
+        Files.write(artifacts.resolve("hbase-site.xml"), hbaseSite.getBytes(StandardCharsets.UTF_8));
+        Files.write(artifacts.resolve("core-site.xml"), "<property/>".getBytes(StandardCharsets.UTF_8));
+        return artifacts;
+    }
+
+    private static void addEntry(ZipOutputStream out, String name, String content) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(content.getBytes(StandardCharsets.UTF_8));
+        out.closeEntry();
+    }
+
+    private static void addStoredEntry(ZipOutputStream out, String name, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(bytes.length);
+        entry.setCrc(crc.getValue());
+        out.putNextEntry(entry);
+        out.write(bytes);
+        out.closeEntry();
+    }
+
+    private static String read(JarFile jarFile, String name) throws IOException {
+        try (InputStream in = jarFile.getInputStream(jarFile.getEntry(name))) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+}
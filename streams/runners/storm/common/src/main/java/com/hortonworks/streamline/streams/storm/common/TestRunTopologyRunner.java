@@ -0,0 +1,36 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.storm.common;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs test run topologies (Flux definitions) inside the current JVM.
+ * <p>
+ * The implementation lives in the streamline storm runtime jar and is loaded, along with Storm, in a separate class
+ * loader: only JDK types are used in the method signatures so that they can be called across class loaders.
+ * An instance can run several topologies, one after the other or concurrently, until it is shut down.
+ */
+public interface TestRunTopologyRunner {
+    /**
+     * Submits the topology defined in the given Flux file, lets it run for the given duration (or until a kill
+     * is requested), kills it, and writes out and closes its event log file.
+     */
+    void runTopology(String fluxFilePath, String eventLogFilePath, long durationMillis,
+                     BooleanSupplier killRequested) throws Exception;
+
+    void shutdown();
+}
@@ -35,6 +35,7 @@ import java.util.stream.Collectors;
  * {@code
  *    {
  *     "flushFrequencyInMilliSecs": 1000,
+ *     "maxInFlightBatches": 16,
  *     "tableName": "temperature",
  *     "columns": [
  *       {
@@ -76,6 +77,7 @@ public class CassandraBoltFluxComponent extends AbstractFluxComponent {
     private static final String FIELD_NAME_KEY = "fieldName";
     private static final String TABLE_NAME_KEY = "tableName";
     private static final String COLUMNS_KEY = "columns";
+    private static final String MAX_IN_FLIGHT_BATCHES_KEY = "maxInFlightBatches";
 
     @Override
     protected void generateComponent() {
@@ -91,9 +93,11 @@ public class CassandraBoltFluxComponent extends AbstractFluxComponent {
             constructorArgs.add(flushFrequencyInSecs);
         }
 
-        Map<String, Object> configMethod = getConfigMethodWithRefArgs("withCassandraConfig", Collections.singletonList(addCassandraConfig()));
+        List<Map<String, Object>> configMethods = new ArrayList<>();
+        configMethods.add(getConfigMethodWithRefArgs("withCassandraConfig", Collections.singletonList(addCassandraConfig())));
+        configMethods.addAll(getConfigMethodsYaml(new String[] {"withMaxInFlightBatches"}, new String[] {MAX_IN_FLIGHT_BATCHES_KEY}));
 
-        component = createComponent(boltClassId, CASSANDRA_BOLT_CLASS, null, constructorArgs, Collections.singletonList(configMethod));
+        component = createComponent(boltClassId, CASSANDRA_BOLT_CLASS, null, constructorArgs, configMethods);
 
         addParallelismToComponent();
     }
@@ -70,9 +70,14 @@ public class HbaseBoltFluxComponent extends AbstractFluxComponent {
         };
         List<Object> hbaseMapperConstructorArgs = getConstructorArgsYaml
                 (constructorArgNames);
+        String[] configMethodNames = {"withRowKeyFields", "withSaltBuckets"};
+        String[] configKeys = {
+            TopologyLayoutConstants.JSON_KEY_ROW_KEY_FIELDS, TopologyLayoutConstants.JSON_KEY_SALT_BUCKETS
+        };
+        List<Map<String, Object>> configMethods = getConfigMethodsYaml(configMethodNames, configKeys);
 
         this.addToComponents(this.createComponent(hbaseMapperComponentId,
-                hbaseMapperClassName, null, hbaseMapperConstructorArgs, null));
+                hbaseMapperClassName, null, hbaseMapperConstructorArgs, configMethods));
         return hbaseMapperComponentId;
 
     }
@@ -38,6 +38,8 @@ public class JDBCBoltFluxComponent extends AbstractFluxComponent {
     private static final String KEY_JDBC_URL = "jdbcUrl";
     private static final String KEY_USERNAME = "username";
     private static final String KEY_PASSWORD = "password";
+    private static final String KEY_BATCH_SIZE = "batchSize";
+    private static final String KEY_LINGER_MILLIS = "lingerMillis";
     private static final String PHOENIX = "phoenix";
     private static final String MYSQL = "mysql";
     private static final String POSTGRESQL = "postgresql";
@@ -65,6 +67,8 @@ public class JDBCBoltFluxComponent extends AbstractFluxComponent {
         withInsertQuery.put(StormTopologyLayoutConstants.YAML_KEY_ARGS, Arrays.asList(queryInfo.getQuery()));
 
         configMethods.add(withInsertQuery);
+        configMethods.addAll(getConfigMethodsYaml(new String[] {"withBatchSize", "withLingerMillis"},
+                new String[] {KEY_BATCH_SIZE, KEY_LINGER_MILLIS}));
         component = createComponent(boltId, boltClassName, null, constructorArgs, configMethods);
         addParallelismToComponent();
     }
@@ -13,13 +13,13 @@
   * See the License for the specific language governing permissions and
   * limitations under the License.
  **/
-
 package com.hortonworks.streamline.streams.layout.storm;
 
 import com.google.common.collect.Lists;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hortonworks.streamline.streams.layout.TopologyLayoutConstants;
 import com.hortonworks.streamline.streams.layout.component.impl.model.ModelProcessor;
 
 import org.slf4j.Logger;
@@ -27,6 +27,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class MLModelEvaluationFluxComponent extends AbstractFluxComponent {
     private static final Logger LOG = LoggerFactory.getLogger(MLModelEvaluationFluxComponent.class);
@@ -42,7 +43,13 @@ public class MLModelEvaluationFluxComponent extends AbstractFluxComponent {
                 getRefYaml(modelRunnerFactory()),
                 getRefYaml(modelOutputs()));
 
-        component = createComponent(boltId, boltClassName, null, boltConstructorArgs, null);
+        String[] configMethodNames = {"withBatchSize", "withFlushIntervalSecs"};
+        String[] configKeys = {
+            TopologyLayoutConstants.JSON_KEY_BATCH_SIZE, TopologyLayoutConstants.JSON_KEY_FLUSH_INTERVAL_SECS
+        };
+        List<Map<String, Object>> configMethods = getConfigMethodsYaml(configMethodNames, configKeys);
+
+        component = createComponent(boltId, boltClassName, null, boltConstructorArgs, configMethods);
         addParallelismToComponent();
         LOG.debug("SUCCESSFULLY generated [{}]", this.getClass().getSimpleName());
     }
@@ -20,6 +20,7 @@ package com.hortonworks.streamline.streams.layout.storm;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -41,7 +42,9 @@ import java.util.stream.Stream;
   ],
 
 "outputKeys" : [ "userID", "orders:product as product" ,"orderId", "impressionId" ],
-"outputStream" : "joinedStream1"
+"outputStream" : "joinedStream1",
+
+"stateBackend" : { "directory" : "/local/dir/for/join/state", "segmentSizeMB" : 64 }     <-- optional. tuples are kept on heap if absent
 }
  */
 
@@ -59,6 +62,12 @@ public class SLRealtimeJoinBoltFluxComponent extends AbstractFluxComponent {
 
         List<Map<String, Object>> configMethods = getConfigMethodsYaml(configMethodNames, configValues);
 
+        Map<String, Object> stateBackendConf = (Map<String, Object>) conf.get("stateBackend");
+        if (stateBackendConf != null) {
+            String stateBackendId = addStateBackendToComponents(stateBackendConf);
+            configMethods.add(getConfigMethodWithRefArgs("withStateBackend", Collections.singletonList(stateBackendId)));
+        }
+
         component = createComponent(boltId, boltClassName, null, boltConstructorArgs, configMethods);
         addParallelismToComponent();
 
@@ -159,6 +168,27 @@ public class SLRealtimeJoinBoltFluxComponent extends AbstractFluxComponent {
         return result.toArray(new Object[]{});
     }
 
+    // Creates component for the disk based join state and adds it to the components list
+    // returns the component ID
+    private String addStateBackendToComponents(Map<String, Object> stateBackendConf) {
+        String componentId = "joinstate_" + UUID.randomUUID();
+        String className = "com.hortonworks.streamline.streams.runtime.storm.bolt.query.SegmentedFileJoinStateBackend";
+
+        Object directory = stateBackendConf.get("directory");
+        if (directory == null) {
+            throw new IllegalArgumentException("'directory' is required in 'stateBackend' configuration");
+        }
+        List<Object> constructorArgs = new ArrayList<>();
+        constructorArgs.add(directory.toString());
+        Integer segmentSizeMB = (Integer) stateBackendConf.get("segmentSizeMB");
+        if (segmentSizeMB != null) {
+            constructorArgs.add(segmentSizeMB * 1024L * 1024L);
+        }
+
+        this.addToComponents(this.createComponent(componentId, className, null, constructorArgs, null));
+        return componentId;
+    }
+
     private String addComparatorToComponents(ArrayList<String> condition) {
         String componentId = "slcmp_" + UUID.randomUUID();
 
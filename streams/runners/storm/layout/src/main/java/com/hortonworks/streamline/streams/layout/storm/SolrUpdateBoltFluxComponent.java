@@ -18,6 +18,7 @@ package com.hortonworks.streamline.streams.layout.storm;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static com.hortonworks.streamline.streams.layout.storm.DruidBoltFluxComponent.KEY_BATCH_SIZE;
 
@@ -31,16 +32,28 @@ public class SolrUpdateBoltFluxComponent extends AbstractFluxComponent {
     public final static String JSON_KEY_COMMIT_BATCH_SIZE = "commitBatchSize";
     public final static String JSON_KEY_JSON_TUPLE_FIELD = "jsonTupleField";
     public final static String JSON_KEY_SOLR_JSON_UPDATE_URL = "solrJsonUpdateUrl";
+    public final static String JSON_KEY_BULK_MAX_DOCS = "bulkMaxDocs";
+    public final static String JSON_KEY_BULK_MAX_BYTES = "bulkMaxBytes";
+    public final static String JSON_KEY_COMMIT_WITHIN_MS = "commitWithinMs";
 
     @Override
     protected void generateComponent() {
         final String boltId = "solrUpdateBolt" + UUID_FOR_COMPONENTS;
-        final String boltClassName = "org.apache.storm.solr.bolt.SolrUpdateBolt";
         final List<Object> boltConstructorArgs = new ArrayList<>();
         boltConstructorArgs.add(getRefYaml(addSolrConfig()));
         boltConstructorArgs.add(getRefYaml(addSolrMapper()));
-        boltConstructorArgs.add(getRefYaml(addSolrCommitStrategy()));
-        component = createComponent(boltId, boltClassName, null, boltConstructorArgs, null);
+        if (conf.get(JSON_KEY_BULK_MAX_DOCS) != null) {
+            // bulk updates, committed by solr within the commit within time
+            final String boltClassName = "com.hortonworks.streamline.streams.runtime.storm.bolt.solr.StreamlineSolrBulkUpdateBolt";
+            final String[] configMethodNames = {"withMaxBatchDocs", "withMaxBatchBytes", "withCommitWithinMs"};
+            final String[] configKeys = {JSON_KEY_BULK_MAX_DOCS, JSON_KEY_BULK_MAX_BYTES, JSON_KEY_COMMIT_WITHIN_MS};
+            final List<Map<String, Object>> configMethods = getConfigMethodsYaml(configMethodNames, configKeys);
+            component = createComponent(boltId, boltClassName, null, boltConstructorArgs, configMethods);
+        } else {
+            final String boltClassName = "org.apache.storm.solr.bolt.SolrUpdateBolt";
+            boltConstructorArgs.add(getRefYaml(addSolrCommitStrategy()));
+            component = createComponent(boltId, boltClassName, null, boltConstructorArgs, null);
+        }
         addParallelismToComponent();
     }
 
@@ -24,6 +24,8 @@ public final class StormTopologyLayoutConstants {
     public static final String STORM_ARTIFACTS_LOCATION_KEY = "stormArtifactsDirectory";
     public static final String STORM_JAR_LOCATION_KEY = "streamlineStormJar";
     public static final String STORM_HOME_DIR = "stormHomeDir";
+    // run test topologies in a local cluster inside the streamline JVM instead of 'storm jar ... --local'
+    public static final String STORM_TEST_RUN_IN_PROCESS_KEY = "testRunInProcess";
     public static final String TOPOLOGY_MESSAGE_TIMEOUT_SECS = "topology.message.timeout.secs";
     public static final String TOPOLOGY_MAX_SPOUT_PENDING = "topology.max.spout.pending";
     public static final String STREAMLINE_COMPONENT_CONF_KEY = "streamlineComponent";
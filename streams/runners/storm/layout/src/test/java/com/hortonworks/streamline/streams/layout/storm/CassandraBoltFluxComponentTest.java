@@ -26,6 +26,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -83,6 +84,13 @@ public class CassandraBoltFluxComponentTest {
 
         // bind method args should be same as field selectors that are configured
         Assert.assertEquals(selectorIds, bindArgRefs);
+
+        // the bolt is configured with the cassandra config and the max in flight batches
+        List<Map<String, Object>> boltConfigMethods = (List<Map<String, Object>>) cassandraBoltFluxComponent.getComponent()
+                .get(StormTopologyLayoutConstants.YAML_KEY_CONFIG_METHODS);
+        Assert.assertEquals(2, boltConfigMethods.size());
+        Assert.assertEquals("withMaxInFlightBatches", boltConfigMethods.get(1).get("name"));
+        Assert.assertEquals(Collections.singletonList(16), boltConfigMethods.get(1).get("args"));
     }
 
 }
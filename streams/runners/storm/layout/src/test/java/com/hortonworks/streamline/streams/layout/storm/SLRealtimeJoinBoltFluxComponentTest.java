@@ -22,6 +22,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.snakeyaml.DumperOptions;
 import com.fasterxml.jackson.dataformat.yaml.snakeyaml.Yaml;
+import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
@@ -55,6 +56,30 @@ public class SLRealtimeJoinBoltFluxComponentTest {
 
     }
 
+    @Test
+    public void testFluxGen_StateBackend() throws Exception {
+        SLRealtimeJoinBoltFluxComponent me = new SLRealtimeJoinBoltFluxComponent();
+        String json = "{\n" +
+                "\"from\" : {\"stream\": \"orders\", \"minutes\" : 10, \"unique\" : false },\n" +
+                "\"joins\" : [\n" +
+                "    { \"type\":\"left\",  \"stream\":\"adImpressions\",  \"hours\":2,  \"unique\":false,\n" +
+                "               \"conditions\" : [ [ \"equal\",  \"adImpressions:userID\",  \"orders:userId\" ] ]\n" +
+                "     }\n" +
+                "  ],\n" +
+                "\"outputKeys\" : [ \"userID\", \"orderId\", \"impressionId\" ],\n" +
+                "\"outputStream\" : \"joinedStream1\",\n" +
+                "\"stateBackend\" : { \"directory\" : \"/tmp/rtjoin\", \"segmentSizeMB\" : 16 }\n" +
+                "}";
+
+        List<Map.Entry<String, Map<String, Object>>> map = getYamlComponents(json, me);
+        String yamlStr = makeYaml(map);
+        System.out.println(yamlStr);
+
+        Assert.assertTrue(yamlStr.contains("SegmentedFileJoinStateBackend"));
+        Assert.assertTrue(yamlStr.contains("withStateBackend"));
+        Assert.assertTrue(yamlStr.contains(Long.toString(16 * 1024L * 1024L)));
+    }
+
     public static List<Map.Entry<String, Map<String, Object>>> getYamlComponents(String json, FluxComponent fluxComponent) throws IOException {
         Map<String, Object> props = new ObjectMapper().readValue(json, new TypeReference<HashMap<String, Object>>(){});
 
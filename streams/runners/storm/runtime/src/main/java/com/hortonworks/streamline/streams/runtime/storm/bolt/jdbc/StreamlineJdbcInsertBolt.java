@@ -1,23 +1,214 @@
 package com.hortonworks.streamline.streams.runtime.storm.bolt.jdbc;
 
+import org.apache.storm.Config;
 import org.apache.storm.jdbc.bolt.JdbcInsertBolt;
+import org.apache.storm.jdbc.common.Column;
 import org.apache.storm.jdbc.common.ConnectionProvider;
 import org.apache.storm.jdbc.mapper.JdbcMapper;
 import org.apache.storm.task.OutputCollector;
 import org.apache.storm.task.TopologyContext;
+import org.apache.storm.tuple.Tuple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Inserts the tuples in micro-batches of up to batch size tuples, a partial batch being written once its first tuple
+ * waited for the linger time, checked on each tuple and on the tick tuples. A batch is written with a JDBC batch per
+ * query on a connection taken from the connection provider, and committed at once. The connection is given back to
+ * the pool after each batch, which validates it when it is taken again after being idle and evicts it when it broke.
+ * The tuples of a batch are acked when it is committed, or all failed.
+ */
 public class StreamlineJdbcInsertBolt extends JdbcInsertBolt {
+    private static final Logger LOG = LoggerFactory.getLogger(StreamlineJdbcInsertBolt.class);
+    private static final int DEFAULT_BATCH_SIZE = 1;
+    private static final int DEFAULT_LINGER_MILLIS = 1000;
+
+    private final JdbcMapper jdbcMapper;
+    private String tableName;
+    private String insertQuery;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int lingerMillis = DEFAULT_LINGER_MILLIS;
+
+    private transient List<Tuple> pendingTuples;
+    private transient List<List<Column>> pendingRows;
+    private transient long firstPendingMillis;
+
     public StreamlineJdbcInsertBolt(ConnectionProvider connectionProvider, JdbcMapper jdbcMapper) {
         super(connectionProvider, jdbcMapper);
+        this.jdbcMapper = jdbcMapper;
+    }
+
+    @Override
+    public StreamlineJdbcInsertBolt withTableName(String tableName) {
+        super.withTableName(tableName);
+        this.tableName = tableName;
+        return this;
+    }
+
+    @Override
+    public StreamlineJdbcInsertBolt withInsertQuery(String insertQuery) {
+        super.withInsertQuery(insertQuery);
+        this.insertQuery = insertQuery;
+        return this;
+    }
+
+    public StreamlineJdbcInsertBolt withBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size should be at least 1, got " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public StreamlineJdbcInsertBolt withLingerMillis(int lingerMillis) {
+        if (lingerMillis < 0) {
+            throw new IllegalArgumentException("Linger time should not be negative, got " + lingerMillis);
+        }
+        this.lingerMillis = lingerMillis;
+        return this;
     }
 
     @Override
     public void prepare(Map map, TopologyContext topologyContext, OutputCollector collector) {
         avoidDeadlockFromHikariCP();
         super.prepare(map, topologyContext, collector);
+        pendingTuples = new ArrayList<>(batchSize);
+        pendingRows = new ArrayList<>(batchSize);
+    }
+
+    @Override
+    protected void process(Tuple tuple) {
+        List<Column> columns;
+        try {
+            columns = jdbcMapper.getColumns(tuple);
+            if (columns == null || columns.isEmpty()) {
+                throw new IllegalArgumentException("No columns mapped from tuple " + tuple);
+            }
+        } catch (Exception e) {
+            collector.reportError(e);
+            collector.fail(tuple);
+            return;
+        }
+        if (pendingTuples.isEmpty()) {
+            firstPendingMillis = System.currentTimeMillis();
+        }
+        pendingTuples.add(tuple);
+        pendingRows.add(columns);
+        flushIfDue();
+    }
+
+    @Override
+    protected void onTickTuple(Tuple tuple) {
+        flushIfDue();
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        Map<String, Object> conf = super.getComponentConfiguration();
+        if (batchSize > 1) {
+            if (conf == null) {
+                conf = new HashMap<>();
+            }
+            conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, Math.max(1, (lingerMillis + 999) / 1000));
+        }
+        return conf;
+    }
+
+    private void flushIfDue() {
+        if (pendingTuples.size() >= batchSize
+                || (!pendingTuples.isEmpty() && System.currentTimeMillis() - firstPendingMillis >= lingerMillis)) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        try {
+            write();
+            pendingTuples.forEach(collector::ack);
+        } catch (Exception e) {
+            LOG.error("Failed to insert a batch of {} tuples", pendingTuples.size(), e);
+            collector.reportError(e);
+            pendingTuples.forEach(collector::fail);
+        } finally {
+            pendingTuples.clear();
+            pendingRows.clear();
+        }
+    }
+
+    private void write() throws SQLException {
+        // the rows of each query, the queries built from the table name depending on the columns of the rows
+        Map<String, List<List<Column>>> rowsPerQuery = new LinkedHashMap<>();
+        for (List<Column> row : pendingRows) {
+            rowsPerQuery.computeIfAbsent(insertQuery(row), q -> new ArrayList<>()).add(row);
+        }
+        try (Connection connection = connectionProvider.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                for (Map.Entry<String, List<List<Column>>> queryRows : rowsPerQuery.entrySet()) {
+                    try (PreparedStatement statement = statement(connection, queryRows.getKey())) {
+                        for (List<Column> row : queryRows.getValue()) {
+                            setParameters(statement, row);
+                            statement.addBatch();
+                        }
+                        statement.executeBatch();
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                try {
+                    connection.rollback();
+                } catch (SQLException re) {
+                    e.addSuppressed(re);
+                }
+                throw e;
+            }
+        }
+    }
+
+    private String insertQuery(List<Column> row) {
+        if (insertQuery != null) {
+            return insertQuery;
+        }
+        StringBuilder columnNames = new StringBuilder();
+        StringBuilder placeholders = new StringBuilder();
+        for (Column column : row) {
+            if (columnNames.length() > 0) {
+                columnNames.append(',');
+                placeholders.append(',');
+            }
+            columnNames.append(column.getColumnName());
+            placeholders.append('?');
+        }
+        return "Insert into " + tableName + " (" + columnNames + ") values (" + placeholders + ")";
+    }
+
+    private PreparedStatement statement(Connection connection, String query) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(query);
+        if (queryTimeoutSecs != null && queryTimeoutSecs > 0) {
+            statement.setQueryTimeout(queryTimeoutSecs);
+        }
+        return statement;
+    }
+
+    private static void setParameters(PreparedStatement statement, List<Column> row) throws SQLException {
+        int index = 1;
+        for (Column column : row) {
+            if (column.getVal() == null) {
+                statement.setNull(index++, column.getSqlType());
+            } else {
+                statement.setObject(index++, column.getVal(), column.getSqlType());
+            }
+        }
     }
 
     private static synchronized void avoidDeadlockFromHikariCP() {
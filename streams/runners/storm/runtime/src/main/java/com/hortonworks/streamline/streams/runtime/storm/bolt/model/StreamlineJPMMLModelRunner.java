@@ -16,6 +16,7 @@
 
 package com.hortonworks.streamline.streams.runtime.storm.bolt.model;
 
+import com.hortonworks.registries.common.Schema;
 import com.hortonworks.streamline.streams.StreamlineEvent;
 import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
 import com.hortonworks.streamline.streams.layout.component.Stream;
@@ -30,34 +31,60 @@ import org.jpmml.evaluator.FieldValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
+/**
+ * Scores the {@link StreamlineEvent} of a tuple with a PMML model. The fields projected to each output stream and the
+ * fields scored by the model are computed once when the runner is created. The maps of model arguments are reused from
+ * one tuple to the next, and the prepared {@link FieldValue} of the recent raw values of each field are cached, so that
+ * the repeated values, e.g. categories, are prepared once.
+ */
 public class StreamlineJPMMLModelRunner extends JPmmlModelRunner {
     private static final Logger LOG = LoggerFactory.getLogger(StreamlineJPMMLModelRunner.class);
+    // the number of prepared values cached per field, the cache of a field being cleared when full
+    static final int MAX_CACHED_FIELD_VALUES = 1024;
+
     private final String modelId;
-    private final Set<Stream> outputStreams;
+    // the output stream ids with the fields of the input event they project, leaving out the scored fields
+    private final Map<String, List<String>> streamFieldNames;
+    private final List<FieldName> scoredFields;
+    private final Map<FieldName, Map<Object, FieldValue>> preparedValues = new HashMap<>();
+    private final Map<FieldName, Object> rawInputs = new LinkedHashMap<>();
+    private final Map<FieldName, FieldValue> preProcInputs = new LinkedHashMap<>();
 
     public StreamlineJPMMLModelRunner(Set<Stream> outputStreams, String modelId, Evaluator evaluator, ModelOutputs modelOutputs) {
         super(evaluator, modelOutputs);
         this.modelId = modelId;
-        this.outputStreams = outputStreams;
+        Set<FieldName> scored = new LinkedHashSet<>(getPredictedFields());
+        scored.addAll(getOutputFields());
+        this.scoredFields = new ArrayList<>(scored);
+        this.streamFieldNames = new LinkedHashMap<>();
+        for (Stream stream : outputStreams) {
+            List<String> fieldNames = new ArrayList<>();
+            for (Schema.Field field : stream.getSchema().getFields()) {
+                if (!scored.contains(FieldName.create(field.getName()))) {
+                    fieldNames.add(field.getName());
+                }
+            }
+            streamFieldNames.put(stream.getId(), fieldNames);
+        }
     }
 
     /**
-     * @return The raw inputs extracted from the tuple for all 'active fields'
+     * @return The raw inputs extracted from the tuple for all 'active fields'. The map is reused for the next tuple.
      */
     @Override
     public Map<FieldName, Object> extractRawInputs(Tuple tuple) {
         LOG.debug("Extracting raw inputs from tuple: = [{}]", tuple);
         Object event = tuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT);
-        final Map<FieldName, Object> rawInputs = new LinkedHashMap<>();
+        rawInputs.clear();
         if(event instanceof StreamlineEvent) {
             StreamlineEvent streamlineEvent = (StreamlineEvent) event;
             for (FieldName fieldName : getActiveFields()) {
@@ -73,6 +100,20 @@ public class StreamlineJPMMLModelRunner extends JPmmlModelRunner {
         return rawInputs;
     }
 
+    /**
+     * @return The inputs prepared for the evaluator. The map is reused for the next tuple.
+     */
+    @Override
+    public Map<FieldName, FieldValue> preProcessInputs(Map<FieldName, Object> rawInputs) {
+        LOG.debug("Pre processing raw inputs: = [{}]", rawInputs);
+        preProcInputs.clear();
+        for (Map.Entry<FieldName, Object> rawInput : rawInputs.entrySet()) {
+            preProcInputs.put(rawInput.getKey(), prepare(rawInput.getKey(), rawInput.getValue()));
+        }
+        LOG.debug("Pre processed inputs = [{}]", preProcInputs);
+        return preProcInputs;
+    }
+
     @Override
     public Map<String, List<Object>> scoredTuplePerStream(Tuple input) {
         final Map<FieldName, Object> rawInputs = extractRawInputs(input);
@@ -82,45 +123,67 @@ public class StreamlineJPMMLModelRunner extends JPmmlModelRunner {
         return toStreamLineEvents(predScores, input);
     }
 
+    /**
+     * Scores the tuples one after the other, returning the scored tuples per stream of each input tuple, in order.
+     */
+    public List<Map<String, List<Object>>> scoredTuplesPerStream(List<Tuple> inputs) {
+        final List<Map<String, List<Object>>> scored = new ArrayList<>(inputs.size());
+        for (Tuple input : inputs) {
+            scored.add(scoredTuplePerStream(input));
+        }
+        return scored;
+    }
+
+    private FieldValue prepare(FieldName fieldName, Object rawValue) {
+        if (rawValue == null) {
+            return EvaluatorUtil.prepare(getEval(), fieldName, null);
+        }
+        Map<Object, FieldValue> cached = preparedValues.computeIfAbsent(fieldName, f -> new HashMap<>());
+        FieldValue value = cached.get(rawValue);
+        if (value == null) {
+            if (cached.size() >= MAX_CACHED_FIELD_VALUES) {
+                cached.clear();
+            }
+            value = EvaluatorUtil.prepare(getEval(), fieldName, rawValue);
+            cached.put(rawValue, value);
+        }
+        return value;
+    }
+
     private Map<String, List<Object>> toStreamLineEvents(Map<FieldName, ?> predScores, final Tuple input) {
         LOG.debug("Processing tuple {}", input);
-        final Set<String> inserted = new HashSet<>();
         final Map<String, List<Object>> streamsToEvents = new HashMap<>();
         final StreamlineEventImpl.Builder eventBuilder = StreamlineEventImpl.builder();
 
-        // add to StreamlineEvent the predicted scores for PMML model predicted fields
-        putPmmlScoresInEvent(predScores, inserted, eventBuilder, getPredictedFields(),
-                "Added PMML predicted (field,val)=({},{}) to StreamlineEvent");
-
-        // add to StreamlineEvent the predicted scores for PMML model output fields
-        putPmmlScoresInEvent(predScores, inserted, eventBuilder, getOutputFields(),
-                "Added PMML output (field,val)=({},{}) to StreamlineEvent");
+        // add to StreamlineEvent the predicted scores for PMML model predicted and output fields
+        for (FieldName scoredField : scoredFields) {
+            final String fieldName = scoredField.getValue();
+            final Object predValue = EvaluatorUtil.decode(predScores.get(scoredField));
+            eventBuilder.put(fieldName, predValue);
+            LOG.debug("Added PMML scored (field,val)=({},{}) to StreamlineEvent", fieldName, predValue);
+        }
 
         final StreamlineEvent scoredEvent = eventBuilder.build();
         LOG.debug("Scored StreamlineEvent {}", scoredEvent);
 
         final StreamlineEvent eventInTuple = getStreamlineEventFromTuple(input);
-        for (Stream stream : outputStreams) {
+        for (Map.Entry<String, List<String>> stream : streamFieldNames.entrySet()) {
             // Will contain scored and non scored events that match output fields
             final StreamlineEventImpl.Builder finalEventBuilder = StreamlineEventImpl.builder();
             finalEventBuilder.putAll(scoredEvent);
 
             if (eventInTuple != null) {
-                // Add previous tuple's StreamlineEvent to this tuple's StreamlineEvent to pass it downstream
-                Map<String, Object> nonScoredFieldsEvent = eventInTuple.entrySet().stream()
-                        .filter((e) ->
-                                // include only tuple fields untouched by the PMML model
-                                !inserted.contains(e.getKey())
-                                // include only tuple fields that are in output fields, i.e. were chosen by the user in the UI
-                                && stream.getSchema().getFields().stream().anyMatch((of) -> of.getName().equals(e.getKey())))
-                        .peek((e) -> LOG.debug("Adding entry {} to StreamlineEvent", e))
-                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-
-                if (nonScoredFieldsEvent != null) {
-                    finalEventBuilder.putAll(nonScoredFieldsEvent);
+                // Add previous tuple's StreamlineEvent fields untouched by the PMML model and chosen by the user
+                // in the UI as output fields, to pass them downstream
+                for (String fieldName : stream.getValue()) {
+                    final Object value = eventInTuple.get(fieldName);
+                    if (value != null) {
+                        LOG.debug("Adding entry {}={} to StreamlineEvent", fieldName, value);
+                        finalEventBuilder.put(fieldName, value);
+                    }
                 }
             }
-            streamsToEvents.put(stream.getId(), Collections.singletonList(finalEventBuilder.dataSourceId(modelId).build()));
+            streamsToEvents.put(stream.getKey(), Collections.singletonList(finalEventBuilder.dataSourceId(modelId).build()));
         }
         return streamsToEvents;
     }
@@ -137,17 +200,4 @@ public class StreamlineJPMMLModelRunner extends JPmmlModelRunner {
                 StreamlineEvent.STREAMLINE_EVENT, event);
         return null;
     }
-
-    private void putPmmlScoresInEvent(Map<FieldName, ?> predScores, Set<String> inserted,
-            StreamlineEventImpl.Builder eventBuilder, List<FieldName> predOrOutFields, String msg) {
-
-        for (FieldName predOrOutField : predOrOutFields) {
-            final Object targetValue = predScores.get(predOrOutField);
-            final String fieldName = predOrOutField.getValue();
-            final Object predValue = EvaluatorUtil.decode(targetValue);
-            eventBuilder.put(fieldName, predValue);
-            LOG.debug(msg, fieldName, predValue);
-            inserted.add(fieldName);
-        }
-    }
 }
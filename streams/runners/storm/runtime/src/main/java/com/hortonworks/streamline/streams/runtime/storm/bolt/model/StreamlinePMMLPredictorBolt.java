@@ -16,23 +16,43 @@
  * limitations under the License
  */
 
+
 package com.hortonworks.streamline.streams.runtime.storm.bolt.model;
 
 import com.hortonworks.streamline.streams.runtime.storm.event.correlation.EventCorrelatingOutputCollector;
+import org.apache.storm.Config;
 import org.apache.storm.pmml.PMMLPredictorBolt;
 import org.apache.storm.pmml.model.ModelOutputs;
+import org.apache.storm.pmml.runner.ModelRunner;
 import org.apache.storm.pmml.runner.ModelRunnerFactory;
 import org.apache.storm.task.OutputCollector;
 import org.apache.storm.task.TopologyContext;
+import org.apache.storm.tuple.Tuple;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * All processors need to extend either AbstractProcessorBolt or AbstractWindowedProcessorBolt to support
  * event correlation, but the class already extends Storm's PMMLPredictorBolt, hence we can't extend the class.
  * Instead, we override prepare() method and wrap collector directly.
+ * <p>
+ * With a batch size greater than 1, the tuples are scored in micro-batches of that size, the pending tuples being
+ * scored on the tick tuples every flush interval.
  */
 public class StreamlinePMMLPredictorBolt extends PMMLPredictorBolt {
+    private static final int DEFAULT_FLUSH_INTERVAL_SECS = 1;
+
+    private final ModelRunnerFactory modelRunnerFactory;
+    private int batchSize = 1;
+    private int flushIntervalSecs = DEFAULT_FLUSH_INTERVAL_SECS;
+
+    private ModelRunner runner;
+    private OutputCollector collector;
+    private List<Tuple> batch;
+
     /**
      * Creates an instance of {@link PMMLPredictorBolt} that executes, for every tuple, the runner constructed with
      * the {@link ModelRunnerFactory} specified in the parameter
@@ -44,10 +64,100 @@ public class StreamlinePMMLPredictorBolt extends PMMLPredictorBolt {
      */
     public StreamlinePMMLPredictorBolt(ModelRunnerFactory modelRunnerFactory, ModelOutputs modelOutputs) {
         super(modelRunnerFactory, modelOutputs);
+        this.modelRunnerFactory = modelRunnerFactory;
+    }
+
+    public StreamlinePMMLPredictorBolt withBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size should be at least 1, got " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public StreamlinePMMLPredictorBolt withFlushIntervalSecs(int flushIntervalSecs) {
+        if (flushIntervalSecs < 1) {
+            throw new IllegalArgumentException("Flush interval should be at least 1 second, got " + flushIntervalSecs);
+        }
+        this.flushIntervalSecs = flushIntervalSecs;
+        return this;
     }
 
     @Override
     public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
-        super.prepare(stormConf, context, new EventCorrelatingOutputCollector(context, collector));
+        // the runner and collector of PMMLPredictorBolt are not visible, this bolt scores the tuples itself
+        this.runner = modelRunnerFactory.newModelRunner();
+        this.collector = new EventCorrelatingOutputCollector(context, collector);
+        this.batch = new ArrayList<>(batchSize);
+    }
+
+    @Override
+    protected void process(Tuple input) {
+        batch.add(input);
+        if (batch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    @Override
+    protected void onTickTuple(Tuple tickTuple) {
+        flush();
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        Map<String, Object> conf = super.getComponentConfiguration();
+        if (batchSize > 1) {
+            if (conf == null) {
+                conf = new HashMap<>();
+            }
+            conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, flushIntervalSecs);
+        }
+        return conf;
+    }
+
+    private void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Map<String, List<Object>>> scored = null;
+        if (batch.size() > 1 && runner instanceof StreamlineJPMMLModelRunner) {
+            try {
+                scored = ((StreamlineJPMMLModelRunner) runner).scoredTuplesPerStream(batch);
+            } catch (Exception e) {
+                // scoring the tuples one by one, to fail only the ones that cannot be scored
+                LOG.debug("Failed to score a batch of {} tuples, scoring them one by one", batch.size(), e);
+            }
+        }
+        if (scored != null) {
+            for (int i = 0; i < batch.size(); i++) {
+                emit(batch.get(i), scored.get(i));
+            }
+        } else {
+            for (Tuple input : batch) {
+                score(input);
+            }
+        }
+        batch.clear();
+    }
+
+    private void score(Tuple input) {
+        Map<String, List<Object>> scoredTuplePerStream;
+        try {
+            scoredTuplePerStream = runner.scoredTuplePerStream(input);
+        } catch (Exception e) {
+            collector.reportError(e);
+            collector.fail(input);
+            return;
+        }
+        emit(input, scoredTuplePerStream);
+    }
+
+    private void emit(Tuple input, Map<String, List<Object>> scoredTuplePerStream) {
+        LOG.debug("Input tuple [{}] generated predicted scores [{}]", input, scoredTuplePerStream);
+        for (Map.Entry<String, List<Object>> streamToTuple : scoredTuplePerStream.entrySet()) {
+            collector.emit(streamToTuple.getKey(), input, streamToTuple.getValue());
+        }
+        collector.ack(input);
     }
 }
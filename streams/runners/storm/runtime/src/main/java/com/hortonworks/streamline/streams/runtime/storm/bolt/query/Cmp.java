@@ -45,7 +45,7 @@ public class Cmp {
         return new Equal(fieldSelector1, fieldSelector2);
     }
 
-    // Case-insensitive comparison of two String fields
+    // Case-insensitive comparison of two String fields, on their case folded forms which are also the join keys
     static class IgnoreCase extends Equal implements Serializable {
         public IgnoreCase(String fieldSelector1, String fieldSelector2) {
             super(fieldSelector1, fieldSelector2);
@@ -59,7 +59,43 @@ public class Cmp {
             Object f2 = joinField.findField(t2);
             if (f2==null)
                 throw new InvalidTuple("Field '" + joinField.canonicalFieldName() + "' not found in tuple", t2 );
-            return f1.toString().equalsIgnoreCase(f2.toString());
+            return foldCase(f1.toString()).equals(foldCase(f2.toString()));
+        }
+
+        @Override
+        public Object getKeyValue(Object fieldValue) {
+            return foldCase(fieldValue.toString());
+        }
+
+        /**
+         * Maps each code point to the lower case of its upper case, so that two strings have the same folded form
+         * exactly when they are equal ignoring case as per {@link String#equalsIgnoreCase(String)}. Unlike
+         * {@link String#toLowerCase}, the mapping is per code point and doesn't depend on the locale or the context,
+         * e.g. a capital dotted I and a final sigma map to a single code point. The string itself is returned when it
+         * is already folded.
+         */
+        static String foldCase(String str) {
+            int length = str.length();
+            int i = 0;
+            while (i < length) {
+                int cp = str.codePointAt(i);
+                if (fold(cp) != cp)
+                    break;
+                i += Character.charCount(cp);
+            }
+            if (i == length)
+                return str;
+            StringBuilder folded = new StringBuilder(length).append(str, 0, i);
+            while (i < length) {
+                int cp = str.codePointAt(i);
+                folded.appendCodePoint(fold(cp));
+                i += Character.charCount(cp);
+            }
+            return folded.toString();
+        }
+
+        private static int fold(int cp) {
+            return Character.toLowerCase(Character.toUpperCase(cp));
         }
     }
 
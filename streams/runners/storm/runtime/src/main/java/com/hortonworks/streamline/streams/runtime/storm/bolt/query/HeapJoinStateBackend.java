@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.hortonworks.streamline.streams.runtime.storm.bolt.query;
+
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.tuple.Tuple;
+
+import java.util.Map;
+
+/**
+ * Keeps the retained tuples on the heap. This is the default backend of {@link RealtimeJoinBolt}.
+ */
+public class HeapJoinStateBackend implements JoinStateBackend {
+    final static long serialVersionUID = 1L;
+
+    @Override
+    public JoinState createState(String streamName, Map stormConf, TopologyContext context) {
+        return new HeapJoinState();
+    }
+
+    static class HeapJoinState implements JoinState {
+        @Override
+        public Object put(Tuple tuple, long insertionTime) {
+            return tuple;
+        }
+
+        @Override
+        public Tuple get(Object ref) {
+            return (Tuple) ref;
+        }
+
+        @Override
+        public void release(Object ref) {
+        }
+
+        @Override
+        public Tuple getAnchor(Object ref) {
+            return (Tuple) ref;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -97,4 +97,12 @@ public abstract class JoinComparator implements Serializable {
 
     public abstract boolean compare(Tuple t1, Tuple t2) throws InvalidTuple;
 
+    /**
+     * Returns the value used in the join key for the given field value. Values which are equal as per
+     * {@link #compare(Tuple, Tuple)} must map to equal key values.
+     */
+    public Object getKeyValue(Object fieldValue) {
+        return fieldValue;
+    }
+
 }
@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.hortonworks.streamline.streams.runtime.storm.bolt.query;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The key of a tuple for a join edge, built from the values of the key fields of the tuple.
+ *
+ * Keys are compared by the values of their fields rather than by a concatenated string, so values containing the
+ * separator of a concatenated key can't alias each other. The hash code is computed once at construction.
+ *
+ * Values are normalized so that two values match exactly when their string representations do, as they did when the
+ * keys were strings: integral numbers (Byte, Short, Integer, Long) and strings holding the canonical decimal form of a
+ * long are compared by their long value, so that an Integer key field of one stream still joins a Long or a String
+ * key field of another stream. Likewise Double and Float numbers, and strings holding the canonical form of a double,
+ * are compared by their double value, a Float being taken as the double of its decimal form. The other values are
+ * compared by their string representation. Keys made of a single long or double value are stored as a primitive, and
+ * Double keys are built without going through their string representation.
+ */
+abstract class JoinKey implements Serializable {
+    final static long serialVersionUID = 1L;
+
+    static JoinKey of(Object value) {
+        Object normalized = normalize(value);
+        if (normalized instanceof Long)
+            return new LongKey((Long) normalized);
+        if (normalized instanceof Double)
+            return new DoubleKey((Double) normalized);
+        return new ObjectKey(normalized);
+    }
+
+    static JoinKey of(Object[] values) {
+        if (values.length == 1)
+            return of(values[0]);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = normalize(values[i]);
+        }
+        return new CompositeKey(values);
+    }
+
+    /**
+     * Returns the long value of integral numbers and of strings in the canonical decimal form of a long, the double
+     * value of floating point numbers and of strings in the canonical form of a double, and the string representation
+     * of the other values.
+     */
+    private static Object normalize(Object value) {
+        if (value instanceof Long || value instanceof Double)
+            return value;
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte)
+            return ((Number) value).longValue();
+        // the double nearest to the decimal form of the float, e.g. 0.1 for 0.1f, as its string joined the double's
+        if (value instanceof Float)
+            return Double.parseDouble(value.toString());
+        String str = value.toString();
+        if (isCanonicalLong(str))
+            return Long.parseLong(str);
+        if (isCanonicalDouble(str))
+            return Double.parseDouble(str);
+        return str;
+    }
+
+    // true for the strings produced by Long.toString(long)
+    private static boolean isCanonicalLong(String str) {
+        int length = str.length();
+        int start = length > 1 && str.charAt(0) == '-' ? 1 : 0;
+        if (length == start || length - start > 19)
+            return false;
+        // no leading zeros, and no "-0"
+        if (str.charAt(start) == '0' && (length - start > 1 || start == 1))
+            return false;
+        for (int i = start; i < length; i++) {
+            char c = str.charAt(i);
+            if (c < '0' || c > '9')
+                return false;
+        }
+        if (length - start < 19)
+            return true;
+        // 19 digits may overflow a long
+        try {
+            Long.parseLong(str);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // true for the strings produced by Double.toString(double)
+    private static boolean isCanonicalDouble(String str) {
+        if (str.equals("NaN") || str.equals("Infinity") || str.equals("-Infinity"))
+            return true;
+        // the canonical form always has a '.', the characters are checked first to only parse number like strings
+        boolean dot = false;
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '.')
+                dot = true;
+            else if ((c < '0' || c > '9') && c != '-' && c != 'E')
+                return false;
+        }
+        if (!dot)
+            return false;
+        try {
+            return Double.toString(Double.parseDouble(str)).equals(str);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    static final class LongKey extends JoinKey {
+        final long value;
+
+        LongKey(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof LongKey && value == ((LongKey) o).value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return Long.toString(value);
+        }
+    }
+
+    static final class DoubleKey extends JoinKey {
+        // the bits of the value, with a single NaN, as Double.equals compares them
+        final long bits;
+
+        DoubleKey(double value) {
+            this.bits = Double.doubleToLongBits(value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof DoubleKey && bits == ((DoubleKey) o).bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(bits);
+        }
+
+        @Override
+        public String toString() {
+            return Double.toString(Double.longBitsToDouble(bits));
+        }
+    }
+
+    static final class ObjectKey extends JoinKey {
+        final Object value;
+        final int hash;
+
+        ObjectKey(Object value) {
+            this.value = value;
+            this.hash = value.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ObjectKey)) return false;
+            ObjectKey that = (ObjectKey) o;
+            return hash == that.hash && value.equals(that.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return value.toString();
+        }
+    }
+
+    static final class CompositeKey extends JoinKey {
+        final Object[] values;
+        final int hash;
+
+        CompositeKey(Object[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CompositeKey)) return false;
+            CompositeKey that = (CompositeKey) o;
+            return hash == that.hash && Arrays.equals(values, that.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(values);
+        }
+    }
+}
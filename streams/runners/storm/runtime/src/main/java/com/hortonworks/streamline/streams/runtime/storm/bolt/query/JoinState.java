@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.hortonworks.streamline.streams.runtime.storm.bolt.query;
+
+import org.apache.storm.tuple.Tuple;
+
+/**
+ * Storage for the tuples retained by {@link RealtimeJoinBolt} for one stream. Not thread safe, as a bolt executes
+ * one tuple at a time.
+ *
+ * The bolt anchors the join results to the anchor of each stored tuple ({@link #getAnchor(Object)}), and acks the
+ * anchor once the tuple leaves the retention window, whether the state keeps the tuple itself or only a copy of it.
+ */
+public interface JoinState {
+
+    /**
+     * Stores the tuple.
+     *
+     * @return  the reference to use with {@link #get(Object)} and {@link #release(Object)}
+     */
+    Object put(Tuple tuple, long insertionTime);
+
+    /**
+     * @return  the tuple stored with the given reference, or a copy of it
+     */
+    Tuple get(Object ref);
+
+    /**
+     * Releases the storage of a tuple which left the retention window.
+     */
+    void release(Object ref);
+
+    /**
+     * @return  the tuple to anchor the results to and to ack once the tuple is released. Either the stored tuple
+     *          itself, or a tuple holding its message id when the state keeps only a copy of it. Storm tracks the
+     *          emits anchored to a tuple in the ack value of the anchor, so the anchors returned for a reference are
+     *          either the same instance or share their ack value.
+     */
+    Tuple getAnchor(Object ref);
+
+    /**
+     * Releases all the resources held by this state
+     */
+    void close();
+}
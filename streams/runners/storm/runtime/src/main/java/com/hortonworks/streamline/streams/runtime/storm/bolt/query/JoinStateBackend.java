@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.hortonworks.streamline.streams.runtime.storm.bolt.query;
+
+import org.apache.storm.task.TopologyContext;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * Creates the storage used by {@link RealtimeJoinBolt} for the tuples retained in the buffer of each joined stream.
+ *
+ * The join keys of the retained tuples (and the [key->tuples] indexes built on them) always live on the heap. The
+ * backend decides where the tuples themselves are kept:
+ *    - {@link HeapJoinStateBackend} (default) keeps the tuples as they are.
+ *    - {@link SegmentedFileJoinStateBackend} serializes the tuples into segmented files on local disk, so that long
+ *      retention windows are not bounded by the size of the heap.
+ */
+public interface JoinStateBackend extends Serializable {
+
+    /**
+     * Creates the state for one of the joined streams. Called from the prepare() of the bolt.
+     *
+     * @param streamName    name of the stream as declared in the join
+     * @param stormConf     the storm configuration given to the bolt. can be null.
+     * @param context       the context given to the bolt
+     */
+    JoinState createState(String streamName, Map stormConf, TopologyContext context);
+}
@@ -19,7 +19,6 @@
 package com.hortonworks.streamline.streams.runtime.storm.bolt.query;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.LinkedListMultimap;
 import org.apache.storm.Config;
 import org.apache.storm.task.OutputCollector;
 import org.apache.storm.task.TopologyContext;
@@ -42,10 +41,23 @@ enum JoinType {INNER, LEFT, RIGHT, OUTER}
  * Note: This class will get moved to Storm. This does not have any streamline specific code.
  *       The Streamline specific customizations are in the derived class (SLRealtimeJoinBolt)
  *
- * Provides ability to join two streams. Features:
+ * Provides ability to join two or more streams. Features:
  *    - Inner/left/right/outer joins are supported.
  *    - Supports multikey joins
  *    - Custom join comparators can be provided
+ *    - Any number of streams can be joined in a single bolt. Each *join() call adds a stream which is joined to
+ *      one or more of the previously declared streams.
+ *
+ * Each stream has its own retention buffer. When a tuple arrives, the buffers of the other streams are probed
+ * starting from the stream with the fewest candidate tuples for the keys bound so far, and one output tuple is emitted
+ * for every complete match involving the new tuple.
+ *
+ * For left/right/outer joins, a tuple of the outer side of the join which expires from its buffer without having been
+ * part of any complete match is emitted on its own (with nulls for the fields of the other streams).
+ *
+ * The retained tuples are kept on the heap by default. A {@link JoinStateBackend} such as
+ * {@link SegmentedFileJoinStateBackend} can be set via withStateBackend() to keep them on local disk instead, for
+ * retention windows which do not fit in the heap.
  *
  ****  Examples: ****
  *
@@ -68,21 +80,37 @@ enum JoinType {INNER, LEFT, RIGHT, OUTER}
  *            .select("orders:id, ads:userId as userid, ads:product as prod, price")
  *            .withOutputStream("outStreamName");
  *
+ *   3) -- Three way join. ---
+ *
+ *    new RealtimeJoinBolt(StreamKind.STREAM)
+ *            .from("purchases", Duration.ofSeconds(10), false )
+ *            .innerJoin("ads",   Duration.ofSeconds(20), false, Cmp.equal("ads:userId", "purchases:userId") )
+ *            .innerJoin("users", Duration.ofSeconds(60), true, Cmp.equal("users:id", "purchases:userId") )
+ *            .select("purchases:id, users:name, ads:product, price")
+ *            .withOutputStream("outStreamName");
+ *
+ *   4) -- Long retention window, spilled to local disk. ---
+ *
+ *    new RealtimeJoinBolt(StreamKind.STREAM)
+ *            .from("purchases", Duration.ofMinutes(10), false )
+ *            .innerJoin("ads",   Duration.ofHours(2), false, Cmp.equal("ads:userId", "purchases:userId") )
+ *            .select("purchases:id, ads:product, price")
+ *            .withStateBackend(new SegmentedFileJoinStateBackend("/local/disk/dir"))
+ *            .withOutputStream("outStreamName");
+ *
  */
 public class RealtimeJoinBolt extends BaseRichBolt  {
     private static final Logger LOG = LoggerFactory.getLogger(RealtimeJoinBolt.class);
 
-    public static final int NUM_STREAMS = 2; // currently we only support two stream joins
-    JoinInfo[] joinInfos = new JoinInfo[NUM_STREAMS]; // 0=> from stream, 1=> joined stream
+    final List<JoinInfo> joinInfos = new ArrayList<>(); // 0=> from stream, followed by the joined streams in declaration order
+    final List<JoinEdge> joinEdges = new ArrayList<>(); // join conditions between pairs of streams
 
     protected FieldSelector[] outputFields = null;   // specified via bolt.select() ... used in declaring Output fields
     protected String outputStream;    // output stream name
+    protected JoinStateBackend stateBackend = new HeapJoinStateBackend(); // storage for the retained tuples
 
     private OutputCollector collector;
 
-    private String fromStream = null;  // first stream
-    private String joinStream = null;  // second stream being joined to first
-
     public enum StreamKind {
         STREAM(0), SOURCE(1);
         int value;
@@ -124,7 +152,19 @@ public class RealtimeJoinBolt extends BaseRichBolt  {
 
     @Override
     public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        if (joinInfos.size() < 2)
+            throw new IllegalArgumentException("At least one of the *join() methods need to be called after from()");
         this.collector = collector;
+        for (JoinInfo joinInfo : joinInfos) {
+            joinInfo.initBuffer(stateBackend.createState(joinInfo.streamName, stormConf, context));
+        }
+    }
+
+    @Override
+    public void cleanup() {
+        for (JoinInfo joinInfo : joinInfos) {
+            joinInfo.closeBuffer();
+        }
     }
 
     @Override
@@ -138,9 +178,11 @@ public class RealtimeJoinBolt extends BaseRichBolt  {
     }
 
     private boolean needTicks() {
-        long fromStreamRetentionMs = joinInfos[0].retentionTime==null ? 0 : joinInfos[0].retentionTime;
-        long joinStreamRetentionMs = joinInfos[1].retentionTime==null ? 0 : joinInfos[1].retentionTime;
-        return fromStreamRetentionMs>0  || joinStreamRetentionMs>0;
+        for (JoinInfo joinInfo : joinInfos) {
+            if (joinInfo.retentionTime != null && joinInfo.retentionTime > 0)
+                return true;
+        }
+        return false;
     }
 
     /**
@@ -153,18 +195,16 @@ public class RealtimeJoinBolt extends BaseRichBolt  {
 
 
     public RealtimeJoinBolt from(String stream, int retentionCount, boolean unique) {
-        if (fromStream!=null)
+        if (!joinInfos.isEmpty())
             throw new IllegalArgumentException("from() method can be called only once.");
-        fromStream = stream;
-        this.joinInfos[0] = new JoinInfo(null, null, retentionCount, unique);
+        this.joinInfos.add(new JoinInfo(stream, 0, null, null, retentionCount, unique));
         return this;
     }
 
     public RealtimeJoinBolt from(String stream, Duration retentionTime, boolean unique) {
-        if (fromStream!=null)
+        if (!joinInfos.isEmpty())
             throw new IllegalArgumentException("from() method can be called only once.");
-        fromStream = stream;
-        this.joinInfos[0] = new JoinInfo(null, retentionTime.toMillis(), null, unique);
+        this.joinInfos.add(new JoinInfo(stream, 0, null, retentionTime.toMillis(), null, unique));
         return this;
     }
 
@@ -209,48 +249,53 @@ public class RealtimeJoinBolt extends BaseRichBolt  {
 
 
     private RealtimeJoinBolt joinHelperCountRetention(JoinType joinType, String stream, int retentionCount, boolean unique, JoinComparator[] comparators) {
-        if (fromStream==null)
-            throw  new IllegalArgumentException("Need to call from() before calling any of the *join() methods.");
-
-        // 1- Check stream names and make explicit any implicit stream names
-        validateAndSetupStreamNames(comparators, stream);
-        // 2- Check and set up the field names
-        if (joinStream!=null)
-            throw  new IllegalArgumentException("Join support limited to two streams currently.");
         if (retentionCount<=0)
             throw  new IllegalArgumentException("Retention count must be positive number");
-
-        joinStream = stream;
-        this.joinInfos[1] = new JoinInfo(joinType, null, retentionCount, unique, comparators);
-
-        if (joinType==JoinType.LEFT || joinType==JoinType.OUTER)
-            joinInfos[0].emitUnmatchedTuples = true;
-        if (joinType==JoinType.RIGHT || joinType==JoinType.OUTER)
-            joinInfos[1].emitUnmatchedTuples = true;
-        return this;
+        return joinHelper(joinType, stream, null, retentionCount, unique, comparators);
     }
 
     private RealtimeJoinBolt joinHelperTimeRetention(JoinType joinType, String stream, Duration retentionTime,
                                                      boolean unique, JoinComparator[] comparators) {
-        if (fromStream==null)
+        if (retentionTime.toMillis()<=0)
+            throw  new IllegalArgumentException("Retention count must be positive number");
+        return joinHelper(joinType, stream, retentionTime.toMillis(), null, unique, comparators);
+    }
+
+    private RealtimeJoinBolt joinHelper(JoinType joinType, String stream, Long retentionTimeMs, Integer retentionCount,
+                                        boolean unique, JoinComparator[] comparators) {
+        if (joinInfos.isEmpty())
             throw  new IllegalArgumentException("Need to call from() before calling any of the *join() methods.");
+        if (getStreamIndex(stream) >= 0)
+            throw  new IllegalArgumentException("Stream '" + stream + "' is already part of the join.");
+        if (comparators.length == 0)
+            throw  new IllegalArgumentException("At least one join condition is required to join stream '" + stream + "'");
 
         // 1- Check stream names and make explicit any implicit stream names
         validateAndSetupStreamNames(comparators, stream);
 
-        // 2- Check and set up the field names
-        if (joinStream!=null)
-            throw  new IllegalArgumentException("Join support limited to two streams currently.");
-        if (retentionTime.toMillis()<=0)
-            throw  new IllegalArgumentException("Retention count must be positive number");
+        // 2- Set up the stream and one join edge for each previously declared stream referred by the comparators
+        int streamIndex = joinInfos.size();
+        JoinInfo joinInfo = new JoinInfo(stream, streamIndex, joinType, retentionTimeMs, retentionCount, unique, comparators);
+        joinInfos.add(joinInfo);
 
-        joinStream = stream;
-        this.joinInfos[1] = new JoinInfo(joinType, retentionTime.toMillis(), null, unique, comparators);
+        Map<Integer, List<JoinComparator>> comparatorsByPriorStream = new LinkedHashMap<>();
+        for (JoinComparator cmp : comparators) {
+            int priorStream = getStreamIndex(cmp.getFromField().streamName);
+            if (priorStream < 0 || priorStream == streamIndex)
+                throw new IllegalArgumentException("Join condition on stream '" + stream + "' refers to an undeclared stream: '"
+                        + cmp.getFromField().streamName + "'");
+            comparatorsByPriorStream.computeIfAbsent(priorStream, k -> new ArrayList<>()).add(cmp);
+        }
+        for (Map.Entry<Integer, List<JoinComparator>> entry : comparatorsByPriorStream.entrySet()) {
+            JoinInfo priorJoinInfo = joinInfos.get(entry.getKey());
+            JoinEdge edge = new JoinEdge(priorJoinInfo, joinInfo, entry.getValue());
+            joinEdges.add(edge);
 
-        if (joinType==JoinType.LEFT || joinType==JoinType.OUTER)
-            joinInfos[0].emitUnmatchedTuples = true;
+            if (joinType==JoinType.LEFT || joinType==JoinType.OUTER)
+                priorJoinInfo.emitUnmatchedTuples = true;
+        }
         if (joinType==JoinType.RIGHT || joinType==JoinType.OUTER)
-            joinInfos[1].emitUnmatchedTuples = true;
+            joinInfo.emitUnmatchedTuples = true;
         return this;
     }
 
@@ -277,6 +322,15 @@ public class RealtimeJoinBolt extends BaseRichBolt  {
         }
     }
 
+    // returns the position of the stream in the join, or -1 if the stream is not part of the join
+    private int getStreamIndex(String stream) {
+        for (int i = 0; i < joinInfos.size(); i++) {
+            if (joinInfos.get(i).streamName.equalsIgnoreCase(stream))
+                return i;
+        }
+        return -1;
+    }
+
 
     /**
      * Specify output fields
@@ -303,6 +357,14 @@ public class RealtimeJoinBolt extends BaseRichBolt  {
         return this;
     }
 
+    /**
+     * Sets where the tuples retained for the join are stored. Tuples are kept on the heap by default.
+     */
+    public RealtimeJoinBolt withStateBackend(JoinStateBackend stateBackend) {
+        this.stateBackend = stateBackend;
+        return this;
+    }
+
     @VisibleForTesting
     public String[] getOutputFields() {
         String[] result = new String[outputFields.length];
@@ -324,12 +386,10 @@ public class RealtimeJoinBolt extends BaseRichBolt  {
 
         try {
             String stream = streamKind.getStreamId(tuple);
-            if (stream.equalsIgnoreCase(fromStream))
-                processFromStreamTuple(tuple, currTime);
-            else if(stream.equalsIgnoreCase(joinStream))
-                processJoinStreamTuple(tuple, currTime);
-            else
+            int streamIndex = getStreamIndex(stream);
+            if (streamIndex < 0)
                 throw new InvalidTuple("Source component/streamId for Tuple not part of streams being joined : " + stream, tuple);
+            processTuple(joinInfos.get(streamIndex), tuple, currTime);
         } catch (InvalidTuple e) {
             collector.ack(tuple);
             LOG.warn("{}. Tuple will be dropped.",  e.toString());
@@ -337,115 +397,131 @@ public class RealtimeJoinBolt extends BaseRichBolt  {
     }
 
 
-    private void processFromStreamTuple(Tuple tuple, long currTime) throws InvalidTuple {
-        String key = getFromStreamKey(tuple);
+    private void processTuple(JoinInfo joinInfo, Tuple tuple, long currTime) throws InvalidTuple {
+        TupleInfo tupleInfo = joinInfo.makeTupleInfo(tuple, currTime);
 
         // 1- Remove older duplicate if 'unique' flag was set
         TupleInfo duplicate = null;
-        if (joinInfos[0].unique) {
-            duplicate = joinInfos[0].remove(key);
+        if (joinInfo.unique) {
+            duplicate = joinInfo.remove(tupleInfo.keys[0]);
         }
 
-        // 2- Match tuple against other stream (unless its a duplicate) and emit results if any
-        boolean matchFound = false;
+        // 2- Add to retention buffer. Done before matching, so that the results are anchored to the anchor of the
+        //    stored tuple, which is the one acked when the tuple leaves the buffer
+        TupleInfo expired = joinInfo.addTuple(tupleInfo);
+
+        // 3- Match tuple against other streams (unless its a duplicate) and emit results if any
         if(duplicate==null) {
-            List<TupleInfo> matches = joinInfos[1].findMatches(key); // match with joinStream
-            if (matches != null && !matches.isEmpty()) {  // match found
-                for (TupleInfo tupleInfo : matches) {
-                    tupleInfo.matched = true;
-                    List<Object> outputTuple = doProjection(tupleInfo.tuple, tuple);
-                    emit(outputTuple, tuple, tupleInfo.tuple);
-                }
-                matchFound = true;
-            }
+            TupleInfo[] match = new TupleInfo[joinInfos.size()];
+            match[joinInfo.streamIndex] = tupleInfo;
+            findAndEmitMatches(match, 1);
         } else {
-            matchFound = duplicate.matched; // clone this setting from the older entry
+            tupleInfo.matched = duplicate.matched; // clone this setting from the older entry
         }
+        tupleInfo.tuple = null; // read from the state from now on
 
-        // 3- Add to retention buffer
-        Tuple expired = joinInfos[0].addTuple(key, tuple, matchFound, currTime); // emits unmatched expiring tuples depending on join type
-
-        // 4- ACK any expired tuples
+        // 4- Emit unmatched expiring tuples depending on join type, and ACK tuples leaving the buffer
         if (expired!=null)
-            collector.ack(expired);
+            joinInfo.evict(expired);
         if (duplicate!=null)
-            collector.ack(duplicate.tuple);
-
+            joinInfo.release(duplicate);
     }
 
-    private void processJoinStreamTuple(Tuple tuple, long currTime) throws InvalidTuple {
-        String key = getJoinStreamKey(tuple);
-
-        // 1- Remove older duplicate if 'unique' flag was set
-        TupleInfo duplicate = null;
-        if (joinInfos[1].unique) {
-            duplicate = joinInfos[1].remove(key);
+    /**
+     * Extends the partial match with tuples from the streams which are not bound yet, and emits one output tuple per
+     * complete match. At every step the join edge leading to the smallest set of candidate tuples is probed first,
+     * so that the most selective buffers prune the search as early as possible.
+     *
+     * @param match        tuples bound so far, indexed by stream. null for the streams not bound yet.
+     * @param boundCount   number of streams bound in 'match'
+     */
+    private void findAndEmitMatches(TupleInfo[] match, int boundCount) {
+        if (boundCount == match.length) {
+            emitMatch(match);
+            return;
         }
 
-        // 2- Match tuple against other stream (unless its a duplicate) and emit results if any
-        boolean matchFound = false;
-        if(duplicate==null) {
-            List<TupleInfo> matches = joinInfos[0].findMatches(key); // match with fromStream
-            if (matches != null && !matches.isEmpty()) {  // match found
-                for (TupleInfo tupleInfo : matches) {
-                    tupleInfo.matched = true;
-                    List<Object> outputTuple = doProjection(tupleInfo.tuple, tuple);
-                    emit(outputTuple, tuple, tupleInfo.tuple);
-                }
-                matchFound = true;
+        Collection<TupleInfo> candidates = null;
+        int candidateStream = -1;
+        for (JoinEdge edge : joinEdges) {
+            int boundStream, probedStream;
+            if (match[edge.priorStream.streamIndex] != null && match[edge.joinedStream.streamIndex] == null) {
+                boundStream = edge.priorStream.streamIndex;
+                probedStream = edge.joinedStream.streamIndex;
+            } else if (match[edge.joinedStream.streamIndex] != null && match[edge.priorStream.streamIndex] == null) {
+                boundStream = edge.joinedStream.streamIndex;
+                probedStream = edge.priorStream.streamIndex;
+            } else {
+                continue;
+            }
+            JoinKey key = match[boundStream].keys[edge.getEdgePosition(boundStream)];
+            Collection<TupleInfo> edgeCandidates = joinInfos.get(probedStream).findMatches(edge.getEdgePosition(probedStream), key);
+            if (edgeCandidates == null || edgeCandidates.isEmpty())
+                return; // no complete match is possible
+            if (candidates == null || edgeCandidates.size() < candidates.size()) {
+                candidates = edgeCandidates;
+                candidateStream = probedStream;
+            }
+        }
+        if (candidates == null)
+            return; // remaining streams are not connected to the bound ones
+
+        for (TupleInfo candidate : candidates) {
+            if (isConsistentWithMatch(candidate, candidateStream, match)) {
+                match[candidateStream] = candidate;
+                findAndEmitMatches(match, boundCount + 1);
+                match[candidateStream] = null;
             }
-        } else {
-            matchFound = duplicate.matched; // clone this setting from the older entry
         }
-
-        // 3- Add to retention buffer
-        Tuple expired = joinInfos[1].addTuple(key, tuple, matchFound, currTime); // emits unmatched expiring tuples depending on join type
-
-        // 4- ACK any expired tuples
-        if (expired!=null)
-            collector.ack(expired);
-        if (duplicate!=null)
-            collector.ack(duplicate.tuple);
     }
 
-
-    /**
-     *  Get the composite key for the tuple from the From Stream
-     * @param tuple
-     * @return
-     * @throws InvalidTuple
-     */
-    private String getFromStreamKey(Tuple tuple) throws InvalidTuple {
-        StringBuilder key = new StringBuilder();
-        for (JoinComparator cmp : joinInfos[1].comparators) { // info always comes from the join stream as from stream doesnt have
-            FieldSelector field = cmp.getFieldForFromStream();
-            Object partialKey = field.findField(tuple);
-            if (partialKey==null)
-                throw new InvalidTuple("'" + field + "' field is missing in the tuple", tuple);
-            key.append( partialKey.toString() );
-            key.append(".");
+    // verifies all the join edges between the candidate and the already bound streams
+    private boolean isConsistentWithMatch(TupleInfo candidate, int candidateStream, TupleInfo[] match) {
+        for (JoinEdge edge : joinInfos.get(candidateStream).edges) {
+            int otherStream = edge.getOtherStream(candidateStream);
+            TupleInfo other = match[otherStream];
+            if (other != null && !other.keys[edge.getEdgePosition(otherStream)].equals(candidate.keys[edge.getEdgePosition(candidateStream)]))
+                return false;
         }
-        return key.toString();
+        return true;
     }
 
+    private void emitMatch(TupleInfo[] match) {
+        Tuple[] tuples = new Tuple[match.length];
+        Tuple[] anchors = new Tuple[match.length];
+        for (int i = 0; i < match.length; i++) {
+            match[i].matched = true;
+            tuples[i] = joinInfos.get(i).getTuple(match[i]);
+            anchors[i] = joinInfos.get(i).getAnchor(match[i]);
+        }
+        List<Object> outputTuple = doProjection(tuples);
+        emit(outputTuple, Arrays.asList(anchors));
+    }
 
     /**
-     *  Get the composite key for the tuple from the Joined Stream
+     *  Get the (composite) key for the tuple from the given fields
      * @param tuple
+     * @param keyFields     fields of the tuple's stream in the join conditions
+     * @param comparators   join conditions, in the same order as keyFields
      * @return
      * @throws InvalidTuple
      */
-    private String getJoinStreamKey(Tuple tuple) throws InvalidTuple {
-        StringBuilder key = new StringBuilder();
-        for (JoinComparator cmp : joinInfos[1].comparators) { // info always comes from the join stream as from stream doesnt have
-            FieldSelector field = cmp.getFieldForJoinStream();
-            Object partialKey = field.findField(tuple);
-            if (partialKey==null)
-                throw new InvalidTuple("'" + field + "' field is missing in the tuple", tuple);
-            key.append( partialKey.toString() );
-            key.append(".");
+    private static JoinKey getKey(Tuple tuple, FieldSelector[] keyFields, JoinComparator[] comparators) throws InvalidTuple {
+        if (keyFields.length == 1)
+            return JoinKey.of(getKeyValue(tuple, keyFields[0], comparators[0]));
+
+        Object[] values = new Object[keyFields.length];
+        for (int i = 0; i < keyFields.length; i++) {
+            values[i] = getKeyValue(tuple, keyFields[i], comparators[i]);
         }
-        return key.toString();
+        return JoinKey.of(values);
+    }
+
+    private static Object getKeyValue(Tuple tuple, FieldSelector field, JoinComparator comparator) throws InvalidTuple {
+        Object partialKey = field.findField(tuple);
+        if (partialKey==null)
+            throw new InvalidTuple("'" + field + "' field is missing in the tuple", tuple);
+        return comparator.getKeyValue(partialKey);
     }
 
     private void emit(List<Object> outputTuple, Tuple anchor) {
@@ -455,123 +531,263 @@ public class RealtimeJoinBolt extends BaseRichBolt  {
             collector.emit(outputStream, anchor, outputTuple);
     }
 
-    private void emit(List<Object> outputTuple, Tuple dataTupleAnchor, Tuple lookupTupleAnchor) {
-        List<Tuple> anchors = Arrays.asList(dataTupleAnchor, lookupTupleAnchor);
+    private void emit(List<Object> outputTuple, List<Tuple> anchors) {
         if ( outputStream ==null )
             collector.emit(anchors, outputTuple);
         else
             collector.emit(outputStream, anchors, outputTuple);
     }
 
-    private void emitIfUnMatchedTuple(TupleInfo expired) {
-        if(!expired.matched) {
-            List<Object> outputTuple = doProjection(expired.tuple, null);
-            emit(outputTuple, expired.tuple);
-        }
-    }
 
     /** Performs projection on the tuples based on 'projectionFields'
-     * @param tuple1   can be null
-     * @param tuple2   can be null
+     * @param tuples   one tuple per stream of a complete match, or the single unmatched tuple. Elements can be null
      * @return   project fields
      */
-    protected List<Object> doProjection(Tuple tuple1, Tuple tuple2) {
+    protected List<Object> doProjection(Tuple... tuples) {
         ArrayList<Object> result = new ArrayList<>(outputFields.length);
         for ( int i = 0; i < outputFields.length; i++ ) {
-            FieldSelector outField = outputFields[i];
-            Object field = outField.findField(tuple1) ;
-            if (field==null)
-                field = outField.findField(tuple2);
-            result.add(field); // adds null if field is not found in both tuples
+            result.add(findField(outputFields[i], tuples)); // adds null if field is not found in any tuple
         }
         return result;
     }
 
-    class JoinInfo implements Serializable {
+    // returns the first value found for the field in the tuples, or null
+    protected static Object findField(FieldSelector outField, Tuple... tuples) {
+        for (Tuple tuple : tuples) {
+            Object field = outField.findField(tuple);
+            if (field != null)
+                return field;
+        }
+        return null;
+    }
+
+    /**
+     * Join conditions between a stream and one previously declared stream. The key of a tuple for an edge is built from
+     * the fields of the tuple's stream in the comparators of the edge.
+     */
+    static class JoinEdge implements Serializable {
         final static long serialVersionUID = 1L;
 
+        final JoinInfo priorStream;
+        final JoinInfo joinedStream;
+        final JoinComparator[] comparators;
+        final FieldSelector[] priorStreamFields;
+        final FieldSelector[] joinedStreamFields;
+        final int priorStreamEdgePosition;   // position of this edge in priorStream.edges
+        final int joinedStreamEdgePosition;  // position of this edge in joinedStream.edges
+
+        JoinEdge(JoinInfo priorStream, JoinInfo joinedStream, List<JoinComparator> comparators) {
+            this.priorStream = priorStream;
+            this.joinedStream = joinedStream;
+            this.comparators = comparators.toArray(new JoinComparator[0]);
+            this.priorStreamFields = new FieldSelector[comparators.size()];
+            this.joinedStreamFields = new FieldSelector[comparators.size()];
+            for (int i = 0; i < comparators.size(); i++) {
+                priorStreamFields[i] = comparators.get(i).getFieldForFromStream();
+                joinedStreamFields[i] = comparators.get(i).getFieldForJoinStream();
+            }
+            this.priorStreamEdgePosition = priorStream.addEdge(this);
+            this.joinedStreamEdgePosition = joinedStream.addEdge(this);
+        }
+
+        int getOtherStream(int streamIndex) {
+            return streamIndex == priorStream.streamIndex ? joinedStream.streamIndex : priorStream.streamIndex;
+        }
+
+        int getEdgePosition(int streamIndex) {
+            return streamIndex == priorStream.streamIndex ? priorStreamEdgePosition : joinedStreamEdgePosition;
+        }
+
+        FieldSelector[] getKeyFields(int streamIndex) {
+            return streamIndex == priorStream.streamIndex ? priorStreamFields : joinedStreamFields;
+        }
+    }
+
+    class JoinInfo implements Serializable {
+        final static long serialVersionUID = 2L;
+
+        final String streamName;
+        final int streamIndex;
         final JoinType joinType;              // null for first stream defined via from()
         final Long retentionTime;             // in millis. can be null.
         final Integer retentionCount;         // can be null
         final Boolean unique;
         final JoinComparator[] comparators;   // null for first stream defined via from()
+        final List<JoinEdge> edges = new ArrayList<>(); // edges this stream is part of. edges[0] provides the key for 'unique'
         boolean emitUnmatchedTuples = false;
 
-        final LinkedListMultimap<String, TupleInfo> buffer;   // retention window. A [key->tuple] map.
+        // retention window. Tuples in insertion order, plus a [key->tuples] index per edge.
+        // Entries removed as duplicates are only marked as removed in 'entries' and skipped on expiry.
+        // The tuples themselves are stored in 'state'.
+        private transient JoinState state;
+        private transient ArrayDeque<TupleInfo> entries;
+        private transient List<Map<JoinKey, ArrayDeque<TupleInfo>>> indexes;
+        private transient int size;
 
-        public JoinInfo(JoinType joinType, Long retentionTimeMs, Integer retentionCount, Boolean unique, JoinComparator... comparators) {
+        public JoinInfo(String streamName, int streamIndex, JoinType joinType, Long retentionTimeMs, Integer retentionCount,
+                        Boolean unique, JoinComparator... comparators) {
             if (retentionCount!=null && retentionTimeMs!=null)
                 throw new IllegalArgumentException("Either retentionTimeMs or retentionCount must be null");
+            this.streamName = streamName;
+            this.streamIndex = streamIndex;
             this.joinType = joinType;
             this.retentionTime = retentionTimeMs;
             this.retentionCount = retentionCount;
             this.unique = unique;
             this.comparators = comparators;
+        }
+
+        int addEdge(JoinEdge edge) {
+            edges.add(edge);
+            return edges.size() - 1;
+        }
+
+        void initBuffer(JoinState state) {
+            this.state = state;
             int estimateWindowSz = retentionCount != null ? retentionCount : 100_000;
-//            this.timeTracker = (retentionTimeMs!=null) ?  new LinkedHashMap<String, Long>( estimateWindowSz ) : null;
-            this.buffer = LinkedListMultimap.create( estimateWindowSz );
+            this.entries = new ArrayDeque<>(Math.min(estimateWindowSz, 1024));
+            this.indexes = new ArrayList<>(edges.size());
+            for (int i = 0; i < edges.size(); i++) {
+                indexes.add(new HashMap<>());
+            }
+            this.size = 0;
+        }
+
+        void closeBuffer() {
+            if (state != null)
+                state.close();
+        }
+
+        // the tuple being processed, or its copy from the state
+        Tuple getTuple(TupleInfo tupleInfo) {
+            return tupleInfo.tuple != null ? tupleInfo.tuple : state.get(tupleInfo.stateRef);
+        }
+
+        // the tuple to anchor the results to, and to ack once the tuple leaves the buffer
+        Tuple getAnchor(TupleInfo tupleInfo) {
+            return state.getAnchor(tupleInfo.stateRef);
+        }
+
+        // computes the key of the tuple for each of the edges of this stream
+        TupleInfo makeTupleInfo(Tuple tuple, long insertionTime) throws InvalidTuple {
+            JoinKey[] keys = new JoinKey[edges.size()];
+            for (int i = 0; i < keys.length; i++) {
+                JoinEdge edge = edges.get(i);
+                keys[i] = getKey(tuple, edge.getKeyFields(streamIndex), edge.comparators);
+            }
+            return new TupleInfo(tuple, keys, false, insertionTime);
         }
 
         // returns null if no match
-        List<TupleInfo> findMatches(String tupleKey) throws InvalidTuple {
-            return buffer.get(tupleKey);
+        Collection<TupleInfo> findMatches(int edgePosition, JoinKey tupleKey) {
+            return indexes.get(edgePosition).get(tupleKey);
         }
 
-        // Removes timedout entries from lookupBuffer & timeTracker. ACKs tuples being expired.
+        // Removes timedout entries from the buffer. ACKs tuples being expired.
         public void expireAndAckTimedOutEntries(OutputCollector collector, long currTime) {
-            if(buffer.isEmpty() || retentionTime==null)
+            if(size == 0 || retentionTime==null)
                 return;
             long expirationTime = currTime - retentionTime;
 
-            while ( !buffer.isEmpty() ) {
-                Map.Entry<String, TupleInfo> oldest = buffer.entries().get(0);
-                if ( expirationTime < oldest.getValue().insertionTime )
+            while ( size > 0 ) {
+                TupleInfo oldest = peekOldest();
+                if ( expirationTime < oldest.insertionTime )
                     break;
 
-                TupleInfo expired = buffer.entries().remove(0).getValue();
-                if (emitUnmatchedTuples)
-                    emitIfUnMatchedTuple(expired);
-                collector.ack(expired.tuple);
+                evict(expireOldest());
+            }
+        }
+
+        // Emits the tuple leaving the buffer if it was never matched (depending on join type), then releases it
+        void evict(TupleInfo expired) {
+            if (emitUnmatchedTuples && !expired.matched) {
+                Tuple tuple = getTuple(expired);
+                emit(doProjection(tuple), getAnchor(expired));
             }
+            release(expired);
         }
 
-        // Adds a new tuple into buffer, and removes the oldest tuple if size limit is reached (for count based retention case) or null
-        // returns an expiring tuple (if any) or null
-        public  Tuple addTuple(String key, Tuple tuple, boolean matched, long insertionTime) {
-            buffer.put(key, new TupleInfo(tuple, matched, insertionTime) );
+        // ACKs the tuple leaving the buffer, and frees its storage
+        void release(TupleInfo tupleInfo) {
+            collector.ack(getAnchor(tupleInfo));
+            state.release(tupleInfo.stateRef);
+        }
 
-            if (retentionCount!=null && buffer.size() > retentionCount) {
-                TupleInfo expired = expireOldest();
-                if (emitUnmatchedTuples)
-                    emitIfUnMatchedTuple(expired);
-                return expired.tuple;
+        // Adds a new tuple into buffer, and removes the oldest tuple if size limit is reached (for count based retention case)
+        // returns the expiring tuple (if any) or null. The caller needs to evict() it.
+        public TupleInfo addTuple(TupleInfo tupleInfo) {
+            tupleInfo.stateRef = state.put(tupleInfo.tuple, tupleInfo.insertionTime);
+            entries.addLast(tupleInfo);
+            for (int i = 0; i < tupleInfo.keys.length; i++) {
+                indexes.get(i).computeIfAbsent(tupleInfo.keys[i], k -> new ArrayDeque<>()).addLast(tupleInfo);
             }
+            size++;
+
+            if (retentionCount!=null && size > retentionCount)
+                return expireOldest();
             return null;
         }
 
+        private TupleInfo peekOldest() {
+            TupleInfo oldest = entries.peekFirst();
+            while (oldest.removed) {
+                entries.pollFirst();
+                oldest = entries.peekFirst();
+            }
+            return oldest;
+        }
+
         private TupleInfo expireOldest() {
-            return buffer.entries().remove(0).getValue();
+            TupleInfo oldest = peekOldest();
+            entries.pollFirst();
+            removeFromIndexes(oldest);
+            return oldest;
+        }
+
+        private void removeFromIndexes(TupleInfo tupleInfo) {
+            for (int i = 0; i < tupleInfo.keys.length; i++) {
+                Map<JoinKey, ArrayDeque<TupleInfo>> index = indexes.get(i);
+                ArrayDeque<TupleInfo> tuples = index.get(tupleInfo.keys[i]);
+                if (tuples.peekFirst() == tupleInfo)
+                    tuples.pollFirst();
+                else
+                    tuples.remove(tupleInfo);
+                if (tuples.isEmpty())
+                    index.remove(tupleInfo.keys[i]);
+            }
+            size--;
         }
 
         // remove the entry (if exsits) with this key and returns the removed entry or null
-        public TupleInfo remove(String key) {
-            List<TupleInfo> expired = buffer.removeAll(key);
-            if (expired==null || expired.isEmpty())
+        public TupleInfo remove(JoinKey key) {
+            ArrayDeque<TupleInfo> duplicates = indexes.get(0).get(key);
+            if (duplicates==null || duplicates.isEmpty())
                 return null;
-            return expired.get(0); // 'expired' will have only one element due to dedup
+            TupleInfo removed = null;
+            for (TupleInfo duplicate : new ArrayList<>(duplicates)) {
+                duplicate.removed = true;
+                removeFromIndexes(duplicate);
+                if (removed == null)
+                    removed = duplicate; // there will be only one entry due to dedup
+            }
+            return removed;
         }
     } // class JoinInfo
 }
 
 
 class TupleInfo {
-    Tuple tuple;
+    Tuple tuple;            // the tuple while it is processed. null once processed, the tuple is then read from the JoinState
+    Object stateRef;        // reference of the tuple in the JoinState, once added to the buffer
+    JoinKey[] keys;         // key of the tuple for each of the join edges of its stream
     boolean matched = false;
+    boolean removed = false;
     long insertionTime;
 
-    public TupleInfo(Tuple tuple, boolean matched, long insertionTime) {
+    public TupleInfo(Tuple tuple, JoinKey[] keys, boolean matched, long insertionTime) {
         this.tuple = tuple;
+        this.keys = keys;
         this.matched = matched;
         this.insertionTime =insertionTime;
     }
-}
\ No newline at end of file
+}
@@ -78,6 +78,11 @@ public class SLRealtimeJoinBolt extends RealtimeJoinBolt {
         return (SLRealtimeJoinBolt) super.withOutputStream(streamName);
     }
 
+    @Override
+    public SLRealtimeJoinBolt withStateBackend(JoinStateBackend stateBackend) {
+        return (SLRealtimeJoinBolt) super.withStateBackend(stateBackend);
+    }
+
     @Override
     public void declareOutputFields(OutputFieldsDeclarer declarer) {
         declarer.declareStream(this.outputStream, new Fields(StreamlineEvent.STREAMLINE_EVENT));
@@ -170,22 +175,21 @@ public class SLRealtimeJoinBolt extends RealtimeJoinBolt {
 
     /**
      *  NOTE: Streamline specific convenience method. Creates output tuple as a StreamlineEvent
-     * @param tuple1  can be null
-     * @param tuple2  can be null
+     * @param tuples  one tuple per stream of a complete match, or the single unmatched tuple. Elements can be null
      * @return
      */
     @Override
-    protected List<Object> doProjection(Tuple tuple1, Tuple tuple2) {
+    protected List<Object> doProjection(Tuple... tuples) {
         StreamlineEventImpl.Builder eventBuilder = StreamlineEventImpl.builder();
 
         for ( int i = 0; i < outputFields.length; i++ ) {
             FieldSelector outField = outputFields[i];
 
-            Object field = outField.findField(tuple1) ;
-            if (field==null)
-                field = outField.findField(tuple2);
-            String outputKeyName = dropStreamLineEventPrefix(outField.outputName );
-            eventBuilder.put(outputKeyName, field); // adds null if field is not found in both tuples
+            Object field = findField(outField, tuples);
+            if (field != null) { // skips the field if it is not found in any tuple, as event values can't be null
+                String outputKeyName = dropStreamLineEventPrefix(outField.outputName);
+                eventBuilder.put(outputKeyName, field);
+            }
         }
 
         StreamlineEventImpl slEvent = eventBuilder.dataSourceId("multiple sources").build();
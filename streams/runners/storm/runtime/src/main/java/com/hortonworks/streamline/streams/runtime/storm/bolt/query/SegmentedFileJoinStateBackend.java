@@ -0,0 +1,386 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.hortonworks.streamline.streams.runtime.storm.bolt.query;
+
+import org.apache.storm.serialization.KryoValuesDeserializer;
+import org.apache.storm.serialization.KryoValuesSerializer;
+import org.apache.storm.task.GeneralTopologyContext;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.tuple.MessageId;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.tuple.TupleImpl;
+import org.apache.storm.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the retained tuples in segmented files on local disk, so that the heap only holds the join keys and a small
+ * reference per tuple: the position of the tuple in its segment, its source, its message ids and its ack value.
+ * Meant for long time based retention windows, which would otherwise require huge heaps.
+ *
+ * The tuples are serialized with the kryo serializers registered for the topology and appended to the active segment
+ * of their stream. Once a segment reaches the configured size a new segment is started. The tuples are read back with
+ * positional reads of the segment files, served from the page cache for the recent ones. A segment file is deleted as
+ * a whole once all the tuples it holds have left the retention window, as tuples mostly expire in insertion order.
+ *
+ * As with the heap backend, the tuples are acked once they leave the retention window and the join results are
+ * anchored to all the joined tuples. The anchors are built when they are needed for an emit or an ack, from the
+ * message ids kept in the reference, and they read their values from the segment when asked for them. The ack value
+ * which storm updates on the anchors is kept in the reference, so that all the anchors of a tuple share it. Hence the
+ * content of the retention windows is replayed if the worker dies.
+ */
+public class SegmentedFileJoinStateBackend implements JoinStateBackend {
+    final static long serialVersionUID = 1L;
+    private static final Logger LOG = LoggerFactory.getLogger(SegmentedFileJoinStateBackend.class);
+
+    public static final long DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+    static final int WRITE_BUFFER_BYTES = 64 * 1024;
+    private static final long[] NO_MESSAGE_IDS = new long[0];
+
+    private final String directory;    // null => java.io.tmpdir
+    private final long segmentBytes;
+
+    public SegmentedFileJoinStateBackend() {
+        this(null, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * @param directory   local directory under which the segment files are created
+     */
+    public SegmentedFileJoinStateBackend(String directory) {
+        this(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * @param directory      local directory under which the segment files are created. java.io.tmpdir if null.
+     * @param segmentBytes   size at which a segment is sealed and a new one is started
+     */
+    public SegmentedFileJoinStateBackend(String directory, long segmentBytes) {
+        if (segmentBytes <= 0 || segmentBytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Segment size must be a positive number less than 2GB : " + segmentBytes);
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    @Override
+    public JoinState createState(String streamName, Map stormConf, TopologyContext context) {
+        // a full storm config is needed to set up kryo. Unit tests & local modes may not provide one
+        Map<String, Object> conf = new HashMap<>(Utils.readDefaultConfig());
+        if (stormConf != null)
+            conf.putAll(stormConf);
+
+        Path baseDir = Paths.get(directory != null ? directory : System.getProperty("java.io.tmpdir"));
+        try {
+            Files.createDirectories(baseDir);
+            String prefix = ("rtjoin-" + context.getThisComponentId() + "-" + streamName + "-").replaceAll("[^\\w.-]", "_");
+            Path stateDir = Files.createTempDirectory(baseDir, prefix);
+            LOG.info("Join state of stream '{}' is stored under {}", streamName, stateDir);
+            return new SegmentedFileJoinState(stateDir, segmentBytes, conf, context);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create the join state directory under " + baseDir, e);
+        }
+    }
+
+    static class SegmentedFileJoinState implements JoinState {
+        private final Path directory;
+        private final long segmentBytes;
+        private final GeneralTopologyContext context;
+        private final KryoValuesSerializer serializer;
+        private final KryoValuesDeserializer deserializer;
+        private final ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES); // pending writes of 'active'
+        private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+        private Segment active = null;
+        private long nextSegmentId = 0;
+
+        SegmentedFileJoinState(Path directory, long segmentBytes, Map conf, GeneralTopologyContext context) {
+            this.directory = directory;
+            this.segmentBytes = segmentBytes;
+            this.context = context;
+            this.serializer = new KryoValuesSerializer(conf);
+            this.deserializer = new KryoValuesDeserializer(conf);
+        }
+
+        @Override
+        public Object put(Tuple tuple, long insertionTime) {
+            try {
+                byte[] bytes = serializer.serialize(tuple.getValues());
+                if (active == null || (active.size > 0 && active.size + bytes.length > segmentBytes))
+                    rollSegment();
+                long offset = append(bytes);
+                active.live++;
+                return new FileRef(active, offset, bytes.length, tuple.size(), tuple.getSourceTask(),
+                        tuple.getSourceStreamId(), messageIds(tuple.getMessageId()));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write tuple to join state under " + directory, e);
+            }
+        }
+
+        @Override
+        public Tuple get(Object ref) {
+            FileRef fileRef = (FileRef) ref;
+            return new TupleImpl(context, read(fileRef), fileRef.sourceTask, fileRef.sourceStreamId);
+        }
+
+        @Override
+        public void release(Object ref) {
+            Segment segment = ((FileRef) ref).segment;
+            segment.live--;
+            if (segment.live == 0) {
+                if (segment == active) {
+                    writeBuffer.clear();
+                    active = null;
+                }
+                dropSegment(segment);
+            }
+        }
+
+        @Override
+        public Tuple getAnchor(Object ref) {
+            return new StoredAnchor((FileRef) ref);
+        }
+
+        @Override
+        public void close() {
+            while (!segments.isEmpty()) {
+                dropSegment(segments.peekFirst());
+            }
+            active = null;
+            try {
+                Files.deleteIfExists(directory);
+            } catch (IOException e) {
+                LOG.warn("Could not delete join state directory {}", directory, e);
+            }
+        }
+
+        private List<Object> read(FileRef ref) {
+            byte[] bytes = new byte[ref.length];
+            try {
+                ref.segment.read(ref.offset, bytes);
+                return deserializer.deserialize(bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read tuple from join state under " + directory, e);
+            }
+        }
+
+        int getSegmentCount() {
+            return segments.size();
+        }
+
+        private long append(byte[] bytes) throws IOException {
+            long offset = active.size;
+            if (bytes.length > writeBuffer.remaining())
+                flush();
+            if (bytes.length > writeBuffer.capacity()) {
+                active.write(ByteBuffer.wrap(bytes));
+            } else {
+                writeBuffer.put(bytes);
+            }
+            active.size += bytes.length;
+            return offset;
+        }
+
+        private void flush() throws IOException {
+            writeBuffer.flip();
+            active.write(writeBuffer);
+            writeBuffer.clear();
+        }
+
+        // flushes the active segment and starts a new one
+        private void rollSegment() throws IOException {
+            Segment sealed = active;
+            if (sealed != null)
+                flush();
+            active = new Segment(directory.resolve(String.format("%020d.seg", nextSegmentId++)));
+            segments.addLast(active);
+            if (sealed != null && sealed.live == 0)
+                dropSegment(sealed);
+        }
+
+        private void dropSegment(Segment segment) {
+            segments.remove(segment);
+            try {
+                segment.close();
+                Files.deleteIfExists(segment.file);
+            } catch (IOException e) {
+                LOG.warn("Could not delete join state segment {}", segment.file, e);
+            }
+        }
+
+        /**
+         * Anchor of a stored tuple, holding its message id and sharing the ack value of its reference, which storm
+         * updates with the ids of the emits anchored to it and sends to the ackers when it is acked.
+         */
+        private class StoredAnchor extends TupleImpl {
+            private final FileRef ref;
+
+            StoredAnchor(FileRef ref) {
+                super(context, new StoredValues(ref), ref.sourceTask, ref.sourceStreamId, messageId(ref.messageIds));
+                this.ref = ref;
+            }
+
+            @Override
+            public void updateAckVal(long val) {
+                ref.ackVal ^= val;
+            }
+
+            @Override
+            public long getAckVal() {
+                return ref.ackVal;
+            }
+        }
+
+        /**
+         * Values of the anchor of a stored tuple, read from the segment when asked for. Anchors are mostly used for
+         * their message id, the values being only needed by collectors which look into the anchors, such as the one
+         * correlating the events.
+         */
+        private class StoredValues extends AbstractList<Object> {
+            private final FileRef ref;
+
+            StoredValues(FileRef ref) {
+                this.ref = ref;
+            }
+
+            @Override
+            public Object get(int index) {
+                if (index < 0 || index >= ref.size)
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + ref.size);
+                return read(ref).get(index);
+            }
+
+            @Override
+            public int size() {
+                return ref.size;
+            }
+        }
+
+        /**
+         * A file of serialized tuples. The tuples of the active segment which are not flushed yet are in the write
+         * buffer of the state.
+         */
+        private class Segment {
+            final Path file;
+            FileChannel channel;         // null once closed
+            long size = 0;               // includes the buffered bytes
+            long flushed = 0;
+            int live = 0;                // number of tuples not yet released
+
+            Segment(Path file) throws IOException {
+                this.file = file;
+                this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+            }
+
+            void write(ByteBuffer buffer) throws IOException {
+                while (buffer.hasRemaining()) {
+                    flushed += channel.write(buffer, flushed);
+                }
+            }
+
+            void read(long offset, byte[] dest) throws IOException {
+                if (offset >= flushed) {
+                    System.arraycopy(writeBuffer.array(), (int) (offset - flushed), dest, 0, dest.length);
+                } else {
+                    ByteBuffer dst = ByteBuffer.wrap(dest);
+                    long position = offset;
+                    while (dst.hasRemaining()) {
+                        int read = channel.read(dst, position);
+                        if (read < 0)
+                            throw new EOFException("Unexpected end of join state segment " + file);
+                        position += read;
+                    }
+                }
+            }
+
+            void close() throws IOException {
+                if (channel != null) {
+                    channel.close();
+                    channel = null;
+                }
+            }
+        }
+    }
+
+    // root and id pairs of the message id, as its map of anchors to ids is larger than the tuple reference itself
+    static long[] messageIds(MessageId messageId) {
+        Map<Long, Long> anchorsToIds = messageId.getAnchorsToIds();
+        if (anchorsToIds.isEmpty())
+            return NO_MESSAGE_IDS;
+        long[] ids = new long[2 * anchorsToIds.size()];
+        int i = 0;
+        for (Map.Entry<Long, Long> entry : anchorsToIds.entrySet()) {
+            ids[i++] = entry.getKey();
+            ids[i++] = entry.getValue();
+        }
+        return ids;
+    }
+
+    static MessageId messageId(long[] ids) {
+        if (ids.length == 0)
+            return MessageId.makeUnanchored();
+        if (ids.length == 2)
+            return MessageId.makeId(Collections.singletonMap(ids[0], ids[1]));
+        Map<Long, Long> anchorsToIds = new HashMap<>(ids.length);
+        for (int i = 0; i < ids.length; i += 2) {
+            anchorsToIds.put(ids[i], ids[i + 1]);
+        }
+        return MessageId.makeId(anchorsToIds);
+    }
+
+    /**
+     * Reference of a stored tuple, the only state of the tuple kept on the heap.
+     */
+    static final class FileRef {
+        final SegmentedFileJoinState.Segment segment;
+        final long offset;
+        final int length;
+        final int size;                 // number of values of the tuple
+        final int sourceTask;
+        final String sourceStreamId;
+        final long[] messageIds;        // see messageIds(MessageId)
+        long ackVal;                    // shared by the anchors of the tuple, see TupleImpl.updateAckVal
+
+        FileRef(SegmentedFileJoinState.Segment segment, long offset, int length, int size, int sourceTask,
+                String sourceStreamId, long[] messageIds) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.size = size;
+            this.sourceTask = sourceTask;
+            this.sourceStreamId = sourceStreamId;
+            this.messageIds = messageIds;
+        }
+    }
+}
@@ -18,6 +18,8 @@ package com.hortonworks.streamline.streams.runtime.storm.bolt.query;
 
 
 import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.FieldIndex;
+import com.hortonworks.streamline.streams.common.IndexedFieldsAndValues;
 import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
 import com.hortonworks.streamline.streams.layout.component.rule.expression.Window;
 import com.hortonworks.streamline.streams.runtime.storm.event.correlation.EventCorrelatingWindowedOutputCollector;
@@ -32,7 +34,10 @@ import org.apache.storm.bolt.JoinBolt;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -52,8 +57,18 @@ public class WindowedQueryBolt extends JoinBolt {
     protected String[] aliasedOutputFieldNames;
 
     final static String EVENT_PREFIX = StreamlineEvent.STREAMLINE_EVENT + ".";
+    private static final Pattern ALIAS_PATTERN = Pattern.compile(" +as +(\\w+)");
+    private static final Pattern MISSING_ALIAS_PATTERN = Pattern.compile(".* +as\\b.*");
+    private static final int ANY_STREAM = -1;
+    private static final int UNKNOWN_STREAM = -2;
+
     private String[] rawCommaSeparatedOutputKeys;
 
+    // projection plan, computed once in prepare() from the select clause and the join criteria
+    private transient Map<String, Integer> streamSlots;
+    private transient ProjectionColumn[] projectionPlan;
+    private transient FieldIndex outputFieldIndex;
+
     public WindowedQueryBolt(String streamId, String key) {
         super(Selector.STREAM, streamId, EVENT_PREFIX + key);
     }
@@ -61,6 +76,7 @@ public class WindowedQueryBolt extends JoinBolt {
     @Override
     public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
         super.prepare(stormConf, context, new EventCorrelatingWindowedOutputCollector(context, collector));
+        buildProjectionPlan();
     }
 
     @Override
@@ -128,28 +144,104 @@ public class WindowedQueryBolt extends JoinBolt {
 
     // Overrides projection behavior to customize for handling of "streamline-event." prefix
     protected ArrayList<Object> doProjectionStreamLine(ArrayList<Tuple> tuplesRow, FieldSelector[] projectionKeys) {
-        String finalOutputFieldNames[] = new String[rawCommaSeparatedOutputKeys.length];
-        for ( int i = 0; i < rawCommaSeparatedOutputKeys.length; ++i) {
-            finalOutputFieldNames[i] = getAliasOrKeyName(rawCommaSeparatedOutputKeys[i]);
+        if (projectionPlan == null) {
+            buildProjectionPlan();
+        }
+
+        // place each tuple of the row in the slot of its stream, so that each column is a direct lookup
+        Tuple[] tuplesByStream = new Tuple[streamSlots.size()];
+        for (Tuple cell : tuplesRow) {
+            int slot = getStreamSlot(cell.getSourceStreamId());
+            if (slot >= 0 && tuplesByStream[slot] == null) {
+                tuplesByStream[slot] = cell;
+            }
         }
 
-        StreamlineEventImpl.Builder eventBuilder = StreamlineEventImpl.builder();
-        // Todo: note to self: may be able to optimize this ... perhaps inner loop can be outside to avoid rescanning tuples
-        for ( int i = 0; i < projectionKeys.length; i++ ) {
-            for ( Tuple cell : tuplesRow ) {
-                Object field = lookupField(projectionKeys[i], cell) ;
-                if (field != null) {
-                    eventBuilder.put(finalOutputFieldNames[i], field);
-                    break;
+        IndexedFieldsAndValues.Builder fieldsAndValues = IndexedFieldsAndValues.builder(outputFieldIndex);
+        for (ProjectionColumn column : projectionPlan) {
+            Object field = null;
+            if (column.streamSlot == ANY_STREAM) {
+                for (Tuple cell : tuplesRow) {
+                    field = lookupField(column.fieldPath, cell);
+                    if (field != null) {
+                        break;
+                    }
                 }
+            } else if (column.streamSlot >= 0 && tuplesByStream[column.streamSlot] != null) {
+                field = lookupField(column.fieldPath, tuplesByStream[column.streamSlot]);
+            }
+            if (field != null) {
+                fieldsAndValues.set(column.outputSlot, field);
             }
         }
         ArrayList<Object> resultRow = new ArrayList<>();
-        StreamlineEventImpl slEvent = eventBuilder.dataSourceId("multiple sources").build();
+        StreamlineEventImpl slEvent = StreamlineEventImpl.builder()
+                .fieldsAndValues(fieldsAndValues.build())
+                .dataSourceId("multiple sources")
+                .build();
         resultRow.add(slEvent);
         return resultRow;
     }
 
+    private void buildProjectionPlan() {
+        Map<String, Integer> slots = new HashMap<>();
+        for (String streamName : joinCriteria.keySet()) {
+            slots.putIfAbsent(streamName, slots.size());
+        }
+
+        String[] outputNames = new String[rawCommaSeparatedOutputKeys.length];
+        Set<String> distinctOutputNames = new LinkedHashSet<>();
+        for (int i = 0; i < rawCommaSeparatedOutputKeys.length; ++i) {
+            outputNames[i] = getAliasOrKeyName(rawCommaSeparatedOutputKeys[i]);
+            distinctOutputNames.add(outputNames[i]);
+        }
+        FieldIndex fieldIndex = FieldIndex.of(distinctOutputNames);
+
+        ProjectionColumn[] plan = new ProjectionColumn[outputFields.length];
+        for (int i = 0; i < outputFields.length; i++) {
+            String streamName = outputFields[i].getStreamName();
+            int streamSlot = ANY_STREAM;
+            if (streamName != null) {
+                Integer slot = getStreamSlot(slots, streamName);
+                streamSlot = slot != null ? slot : UNKNOWN_STREAM;
+            }
+            plan[i] = new ProjectionColumn(streamSlot, outputFields[i].getField(), fieldIndex.indexOf(outputNames[i]));
+        }
+
+        this.streamSlots = slots;
+        this.outputFieldIndex = fieldIndex;
+        this.projectionPlan = plan;
+    }
+
+    private int getStreamSlot(String streamName) {
+        Integer slot = getStreamSlot(streamSlots, streamName);
+        return slot != null ? slot : UNKNOWN_STREAM;
+    }
+
+    // stream names are matched ignoring case, like JoinBolt#lookupField
+    private static Integer getStreamSlot(Map<String, Integer> slots, String streamName) {
+        Integer slot = slots.get(streamName);
+        if (slot == null) {
+            for (Map.Entry<String, Integer> entry : slots.entrySet()) {
+                if (entry.getKey().equalsIgnoreCase(streamName)) {
+                    return entry.getValue();
+                }
+            }
+        }
+        return slot;
+    }
+
+    private static Object lookupField(String[] fieldPath, Tuple tuple) {
+        if (!tuple.contains(fieldPath[0])) {
+            return null;
+        }
+        Object curr = tuple.getValueByField(fieldPath[0]);
+        for (int i = 1; i < fieldPath.length && curr != null; i++) {
+            curr = ((Map) curr).get(fieldPath[i]);
+        }
+        return curr;
+    }
+
     /** Return the alias if any, or else the unaliased keyname
      *** Examples: ***
      *      -  "stream1:key1.innerkey as  inner"  => "inner"
@@ -160,11 +252,10 @@ public class WindowedQueryBolt extends JoinBolt {
      * @return
      */
     private static String getAliasOrKeyName(String keySpec) {
-        Pattern pattern =  Pattern.compile(" +as +(\\w+)");
-        Matcher result = pattern.matcher(keySpec);
+        Matcher result = ALIAS_PATTERN.matcher(keySpec);
         if(result.find())
             return result.group(1);
-        else  if (keySpec.matches(".* +as\\b.*"))
+        else  if (MISSING_ALIAS_PATTERN.matcher(keySpec).matches())
             throw new IllegalArgumentException(" 'as' clause missing the field alias: " + keySpec);
         return keySpec;
     }
@@ -216,5 +307,16 @@ public class WindowedQueryBolt extends JoinBolt {
             withLateTupleStream(windowConfig.getLateStream());
         }
     }
-}
 
+    private static final class ProjectionColumn {
+        private final int streamSlot;
+        private final String[] fieldPath;
+        private final int outputSlot;
+
+        private ProjectionColumn(int streamSlot, String[] fieldPath, int outputSlot) {
+            this.streamSlot = streamSlot;
+            this.fieldPath = fieldPath;
+            this.outputSlot = outputSlot;
+        }
+    }
+}
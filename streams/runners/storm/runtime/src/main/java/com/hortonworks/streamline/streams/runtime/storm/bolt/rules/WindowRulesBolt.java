@@ -38,11 +38,14 @@ import com.hortonworks.streamline.streams.runtime.storm.bolt.StreamlineWindowedB
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -54,6 +57,12 @@ import static com.hortonworks.streamline.streams.runtime.transform.AddHeaderTran
 
 /**
  * A windowed rules bolt
+ * <p>
+ * When the windows overlap (sliding windows) and the rules keep aggregates, the results of the rules are kept between
+ * the windows and updated rather than evaluated again. If the aggregates retract, the expired tuples are retracted and
+ * the new tuples processed. Otherwise, if the aggregates merge, the tuples are kept in panes, one per window slide,
+ * which expire as a whole; this needs the expired tuples to match the oldest panes, as for count windows whose length
+ * is a multiple of the sliding interval. In any other case, all the tuples of each window are processed.
  */
 public class WindowRulesBolt extends AbstractWindowedProcessorBolt {
     private static final Logger LOG = LoggerFactory.getLogger(WindowRulesBolt.class);
@@ -62,6 +71,13 @@ public class WindowRulesBolt extends AbstractWindowedProcessorBolt {
     private final RulesProcessor rulesProcessor;
     private final RuleProcessorRuntime.ScriptType scriptType;
     private long windowId;
+    private boolean supportsRetract;
+    private boolean supportsPanes;
+    // whether the rules keep the results of the previous window, and the window id of the events they were given
+    private boolean stateKept;
+    private long stateWindowId;
+    // the event ids of the panes kept by the rules, the oldest first
+    private final Deque<Set<String>> paneEventIds = new ArrayDeque<>();
 
     public WindowRulesBolt(RulesProcessor rulesProcessor, RuleProcessorRuntime.ScriptType scriptType) {
         this.rulesProcessor = rulesProcessor;
@@ -82,6 +98,8 @@ public class WindowRulesBolt extends AbstractWindowedProcessorBolt {
         ruleProcessorRuntime = new RuleProcessorRuntime(rulesProcessor, scriptType);
         Map<String, Object> config = Collections.emptyMap();
         ruleProcessorRuntime.initialize(config);
+        supportsRetract = ruleProcessorRuntime.supportsRetract();
+        supportsPanes = ruleProcessorRuntime.supportsPanes();
     }
 
     /**
@@ -96,16 +114,56 @@ public class WindowRulesBolt extends AbstractWindowedProcessorBolt {
 
         Map<String, Tuple> eventIdToTupleMap = new HashMap<>();
         try {
-            StreamlineEvent event;
-            for (Tuple input : inputWindow.get()) {
-                if ((event = getStreamlineEventFromTuple(input)) != null) {
-                    LOG.debug("++++++++ Executing tuple [{}] which contains StreamlineEvent [{}]", input, event);
-                    eventIdToTupleMap.put(event.getId(), input);
-                    processAndEmit(event, eventIdToTupleMap);
+            if (stateKept && updateWindow(inputWindow, eventIdToTupleMap)) {
+                return;
+            }
+            if (stateKept) {
+                ruleProcessorRuntime.reset();
+                paneEventIds.clear();
+                stateKept = false;
+            }
+            // the results are kept for the next window if it overlaps this one
+            boolean keepState = (supportsRetract || supportsPanes)
+                    && inputWindow.get().size() > inputWindow.getNew().size();
+            stateWindowId = windowId;
+            if (keepState && !supportsRetract) {
+                // the tuples already in the window make the first pane, the new ones the second
+                Set<String> newIds = eventIds(inputWindow.getNew());
+                Set<String> oldIds = new HashSet<>();
+                List<Tuple> added = new ArrayList<>();
+                StreamlineEvent event;
+                for (Tuple input : inputWindow.get()) {
+                    if ((event = getStreamlineEventFromTuple(input)) != null) {
+                        eventIdToTupleMap.put(event.getId(), input);
+                        if (newIds.contains(event.getId())) {
+                            added.add(input);
+                        } else {
+                            oldIds.add(event.getId());
+                            processAndEmit(event, eventIdToTupleMap);
+                        }
+                    }
+                }
+                ruleProcessorRuntime.nextPane(0);
+                process(added, eventIdToTupleMap);
+                paneEventIds.add(oldIds);
+                paneEventIds.add(newIds);
+            } else {
+                StreamlineEvent event;
+                for (Tuple input : inputWindow.get()) {
+                    if ((event = getStreamlineEventFromTuple(input)) != null) {
+                        LOG.debug("++++++++ Executing tuple [{}] which contains StreamlineEvent [{}]", input, event);
+                        eventIdToTupleMap.put(event.getId(), input);
+                        processAndEmit(event, eventIdToTupleMap);
+                    }
                 }
             }
-            // force evaluation of the last group by
-            processAndEmit(GROUP_BY_TRIGGER_EVENT, eventIdToTupleMap);
+            if (keepState) {
+                emit(ruleProcessorRuntime.snapshot(), eventIdToTupleMap);
+                stateKept = true;
+            } else {
+                // force evaluation of the last group by
+                processAndEmit(GROUP_BY_TRIGGER_EVENT, eventIdToTupleMap);
+            }
 
             // current group is processed and result emitted
             eventIdToTupleMap.clear();
@@ -115,8 +173,88 @@ public class WindowRulesBolt extends AbstractWindowedProcessorBolt {
         }
     }
 
+    /*
+     * Updates the results kept from the previous window with the expired and new tuples, and emits them. Returns false
+     * if the window is to be processed as a whole, when it is cheaper or the expired tuples are not the oldest panes.
+     */
+    private boolean updateWindow(TupleWindow inputWindow, Map<String, Tuple> curGroup) throws ProcessingException {
+        List<Tuple> expired = inputWindow.getExpired();
+        List<Tuple> added = inputWindow.getNew();
+        if (expired.size() + added.size() >= inputWindow.get().size()) {
+            return false;
+        }
+        LOG.debug("Updating window, {} expired tuples, {} new tuples", expired.size(), added.size());
+        if (supportsRetract) {
+            StreamlineEvent event;
+            for (Tuple input : expired) {
+                if ((event = getStreamlineEventFromTuple(input)) != null) {
+                    ruleProcessorRuntime.retract(eventWithWindowId(event));
+                }
+            }
+        } else {
+            int expiredPanes = expiredPanes(eventIds(expired));
+            if (expiredPanes < 0) {
+                LOG.debug("Expired tuples are not the oldest panes, processing the whole window");
+                return false;
+            }
+            ruleProcessorRuntime.nextPane(expiredPanes);
+            for (int i = 0; i < expiredPanes; i++) {
+                paneEventIds.removeFirst();
+            }
+            paneEventIds.add(eventIds(added));
+        }
+        StreamlineEvent event;
+        for (Tuple input : inputWindow.get()) {
+            if ((event = getStreamlineEventFromTuple(input)) != null) {
+                curGroup.put(event.getId(), input);
+            }
+        }
+        process(added, curGroup);
+        emit(ruleProcessorRuntime.snapshot(), curGroup);
+        return true;
+    }
+
+    // the number of the oldest panes made of the expired events, or -1 if the expired events are not whole panes
+    private int expiredPanes(Set<String> expiredIds) {
+        int panes = 0;
+        int events = 0;
+        Iterator<Set<String>> it = paneEventIds.iterator();
+        while (events < expiredIds.size() && it.hasNext()) {
+            Set<String> pane = it.next();
+            if (!expiredIds.containsAll(pane)) {
+                return -1;
+            }
+            events += pane.size();
+            panes++;
+        }
+        return events == expiredIds.size() ? panes : -1;
+    }
+
+    private Set<String> eventIds(List<Tuple> tuples) {
+        Set<String> res = new HashSet<>();
+        StreamlineEvent event;
+        for (Tuple tuple : tuples) {
+            if ((event = getStreamlineEventFromTuple(tuple)) != null) {
+                res.add(event.getId());
+            }
+        }
+        return res;
+    }
+
+    private void process(List<Tuple> tuples, Map<String, Tuple> curGroup) throws ProcessingException {
+        StreamlineEvent event;
+        for (Tuple input : tuples) {
+            if ((event = getStreamlineEventFromTuple(input)) != null) {
+                processAndEmit(event, curGroup);
+            }
+        }
+    }
+
     private void processAndEmit(StreamlineEvent event, Map<String, Tuple> curGroup) throws ProcessingException {
-        List<Result> results = ruleProcessorRuntime.process(eventWithWindowId(event));
+        emit(ruleProcessorRuntime.process(eventWithWindowId(event)), curGroup);
+    }
+
+    private void emit(List<Result> results, Map<String, Tuple> curGroup) {
         for (Result result : results) {
             for (StreamlineEvent e : result.events) {
                 // TODO: updateHeaders can be handled at ruleProcessorRuntime.process stage passing context info.
@@ -201,7 +339,7 @@ public class WindowRulesBolt extends AbstractWindowedProcessorBolt {
         if (event == GROUP_BY_TRIGGER_EVENT) {
             return event;
         }
-        StreamlineEvent newEvent = event.addFieldsAndValues(Collections.<String, Object>singletonMap(Window.WINDOW_ID, windowId));
+        StreamlineEvent newEvent = event.addFieldsAndValues(Collections.<String, Object>singletonMap(Window.WINDOW_ID, stateWindowId));
         return new IdPreservedStreamlineEvent(newEvent, event.getId());
     }
 }
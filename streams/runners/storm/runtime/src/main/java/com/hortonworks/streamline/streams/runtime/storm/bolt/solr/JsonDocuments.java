@@ -0,0 +1,78 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.solr;
+
+import org.apache.solr.common.util.ContentStream;
+import org.apache.solr.common.util.ContentStreamBase;
+import org.apache.storm.solr.mapper.SolrMapperException;
+import org.apache.storm.tuple.ITuple;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+/**
+ * A JSON array of documents, written in place into a buffer which is streamed as the content of an update request
+ * without being copied. The buffer is reused once cleared.
+ */
+class JsonDocuments extends ByteArrayOutputStream {
+    private static final String CONTENT_TYPE = "application/json";
+
+    private int documents;
+
+    /**
+     * Adds the event of the tuple, leaving the documents as they were if it cannot be written.
+     */
+    void add(StreamlineSolrJsonMapper mapper, ITuple tuple) throws SolrMapperException {
+        final int start = count;
+        write(documents == 0 ? '[' : ',');
+        try {
+            mapper.writeJson(tuple, this);
+        } catch (SolrMapperException e) {
+            count = start;
+            throw e;
+        }
+        ++documents;
+    }
+
+    int documents() {
+        return documents;
+    }
+
+    /**
+     * Returns the JSON array, valid until the documents are cleared.
+     */
+    ContentStream toContentStream() {
+        if (documents == 0) {
+            write('[');
+        }
+        write(']');
+        final ContentStreamBase stream = new ContentStreamBase() {
+            @Override
+            public InputStream getStream() {
+                return new ByteArrayInputStream(buf, 0, count);
+            }
+        };
+        stream.setContentType(CONTENT_TYPE);
+        stream.setSize((long) count);
+        return stream;
+    }
+
+    void clear() {
+        reset();
+        documents = 0;
+    }
+}
@@ -0,0 +1,177 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.solr;
+
+import com.hortonworks.streamline.streams.runtime.storm.bolt.BaseTickTupleAwareRichBolt;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.HttpClientUtil;
+import org.apache.solr.client.solrj.impl.Krb5HttpClientConfigurer;
+import org.apache.solr.client.solrj.request.ContentStreamUpdateRequest;
+import org.apache.solr.common.params.UpdateParams;
+import org.apache.storm.solr.config.SolrConfig;
+import org.apache.storm.solr.mapper.SolrMapperException;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.utils.TupleUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indexes the events in bulk, as an alternative to SolrUpdateBolt which sends an update request per tuple and
+ * commits explicitly. The documents are written into a JSON array until the batch reaches the maximum number of
+ * documents or bytes, or a tick tuple arrives, and the array is sent in one update request. The documents are
+ * committed by Solr within the commit within time rather than by explicit commits, and the tuples of a batch are
+ * acked once Solr accepted the request, or all failed.
+ */
+public class StreamlineSolrBulkUpdateBolt extends BaseTickTupleAwareRichBolt {
+    private static final Logger LOG = LoggerFactory.getLogger(StreamlineSolrBulkUpdateBolt.class);
+    private static final int DEFAULT_MAX_BATCH_DOCS = 1000;
+    private static final int DEFAULT_MAX_BATCH_BYTES = 4 * 1024 * 1024;
+    private static final int DEFAULT_COMMIT_WITHIN_MS = 10000;
+    private static final int DEFAULT_TICK_TUPLE_INTERVAL_SECS = 1;
+
+    private final SolrConfig solrConfig;
+    private final StreamlineSolrJsonMapper solrMapper;
+    private int maxBatchDocs = DEFAULT_MAX_BATCH_DOCS;
+    private int maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+    private int commitWithinMs = DEFAULT_COMMIT_WITHIN_MS;
+
+    private transient SolrClient solrClient;
+    private transient OutputCollector collector;
+    private transient JsonDocuments documents;
+    private transient List<Tuple> tuples;
+
+    public StreamlineSolrBulkUpdateBolt(SolrConfig solrConfig, StreamlineSolrJsonMapper solrMapper) {
+        this.solrConfig = solrConfig;
+        this.solrMapper = solrMapper;
+    }
+
+    public StreamlineSolrBulkUpdateBolt withMaxBatchDocs(int maxBatchDocs) {
+        if (maxBatchDocs < 1) {
+            throw new IllegalArgumentException("Max batch docs should be at least 1, got " + maxBatchDocs);
+        }
+        this.maxBatchDocs = maxBatchDocs;
+        return this;
+    }
+
+    public StreamlineSolrBulkUpdateBolt withMaxBatchBytes(int maxBatchBytes) {
+        if (maxBatchBytes < 1) {
+            throw new IllegalArgumentException("Max batch bytes should be at least 1, got " + maxBatchBytes);
+        }
+        this.maxBatchBytes = maxBatchBytes;
+        return this;
+    }
+
+    /**
+     * Sets the time within which Solr commits the documents, 0 to leave the commits to the Solr auto commit.
+     */
+    public StreamlineSolrBulkUpdateBolt withCommitWithinMs(int commitWithinMs) {
+        if (commitWithinMs < 0) {
+            throw new IllegalArgumentException("Commit within should not be negative, got " + commitWithinMs);
+        }
+        this.commitWithinMs = commitWithinMs;
+        return this;
+    }
+
+    @Override
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        this.collector = collector;
+        this.solrClient = createSolrClient();
+        this.documents = new JsonDocuments();
+        this.tuples = new ArrayList<>();
+    }
+
+    protected SolrClient createSolrClient() {
+        if (solrConfig.isKerberosEnabled()) {
+            HttpClientUtil.setConfigurer(new Krb5HttpClientConfigurer());
+        }
+        return new CloudSolrClient(solrConfig.getZkHostString());
+    }
+
+    @Override
+    protected void process(Tuple tuple) {
+        try {
+            documents.add(solrMapper, tuple);
+        } catch (SolrMapperException e) {
+            LOG.error("Failed to map tuple {} to a Solr document", tuple, e);
+            collector.reportError(e);
+            collector.fail(tuple);
+            return;
+        }
+        tuples.add(tuple);
+        if (documents.documents() >= maxBatchDocs || documents.size() >= maxBatchBytes) {
+            flush();
+        }
+    }
+
+    @Override
+    protected void onTickTuple(Tuple tuple) {
+        flush();
+    }
+
+    private void flush() {
+        if (tuples.isEmpty()) {
+            return;
+        }
+        final ContentStreamUpdateRequest request = new ContentStreamUpdateRequest(solrMapper.getJsonUpdateUrl());
+        request.addContentStream(documents.toContentStream());
+        if (commitWithinMs > 0) {
+            request.setParam(UpdateParams.COMMIT_WITHIN, String.valueOf(commitWithinMs));
+        }
+        try {
+            solrClient.request(request, solrMapper.getCollection());
+            tuples.forEach(collector::ack);
+        } catch (Exception e) {
+            LOG.error("Failed to index a batch of {} documents", tuples.size(), e);
+            collector.reportError(e);
+            tuples.forEach(collector::fail);
+        } finally {
+            documents.clear();
+            tuples.clear();
+        }
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        final int tickTupleInterval = solrConfig.getTickTupleInterval() > 0
+                ? solrConfig.getTickTupleInterval() : DEFAULT_TICK_TUPLE_INTERVAL_SECS;
+        return TupleUtils.putTickFrequencyIntoComponentConfig(super.getComponentConfiguration(), tickTupleInterval);
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+    }
+
+    @Override
+    public void cleanup() {
+        if (solrClient != null) {
+            try {
+                solrClient.close();
+            } catch (IOException e) {
+                LOG.error("Failed to close the Solr client", e);
+            }
+        }
+    }
+}
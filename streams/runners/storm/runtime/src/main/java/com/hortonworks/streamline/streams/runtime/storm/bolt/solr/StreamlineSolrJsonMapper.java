@@ -15,8 +15,10 @@
  **/
 package com.hortonworks.streamline.streams.runtime.storm.bolt.solr;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 import org.apache.solr.client.solrj.SolrRequest;
 import org.apache.solr.client.solrj.request.ContentStreamUpdateRequest;
@@ -30,6 +32,8 @@ import com.hortonworks.streamline.streams.StreamlineEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 /**
@@ -42,6 +46,7 @@ public class StreamlineSolrJsonMapper implements SolrMapper {
     private final String jsonUpdateUrl;
     private final String collection;
     private final ObjectMapper objectMapper;
+    private transient ObjectWriter objectWriter;
 
     public StreamlineSolrJsonMapper(String jsonUpdateUrl, String collection, ObjectMapper objectMapper) {
         this.jsonUpdateUrl = jsonUpdateUrl;
@@ -60,39 +65,56 @@ public class StreamlineSolrJsonMapper implements SolrMapper {
 
     @Override
     public SolrRequest toSolrRequest(List<? extends ITuple> tupleList) throws SolrMapperException {
-        return createSolrRequest(getJsonFromTuples(tupleList));
+        final JsonDocuments documents = new JsonDocuments();
+        for (ITuple tuple : tupleList) {
+            documents.add(this, tuple);
+        }
+        return createSolrRequest(documents.toContentStream());
     }
 
     @Override
     public SolrRequest toSolrRequest(ITuple tuple) throws SolrMapperException {
         final String json = getJsonFromTuple(tuple);
-        return createSolrRequest(json);
+        return createSolrRequest(new ContentStreamBase.StringStream(json, CONTENT_TYPE));
+    }
+
+    String getJsonUpdateUrl() {
+        return jsonUpdateUrl;
+    }
+
+    /**
+     * Writes the event of the tuple as a JSON document to the stream, leaving it open.
+     */
+    void writeJson(ITuple tuple, OutputStream out) throws SolrMapperException {
+        final StreamlineEvent event = (StreamlineEvent) tuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT);
+        try {
+            getObjectWriter().writeValue(out, event);
+        } catch (IOException e) {
+            throw new SolrMapperException(e.getMessage());
+        }
     }
 
     private String getJsonFromTuple(ITuple tuple) throws SolrMapperException {
         final StreamlineEvent event = (StreamlineEvent) tuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT);
         try {
-            return objectMapper.writeValueAsString(event);
+            return getObjectWriter().writeValueAsString(event);
         } catch (JsonProcessingException e) {
             throw new SolrMapperException(e.getMessage());
         }
     }
 
-    private String getJsonFromTuples(List<? extends ITuple> tuples) throws SolrMapperException {
-        final StringBuilder jsonListBuilder = new StringBuilder("[");
-        for (ITuple tuple : tuples) {
-            final String json = getJsonFromTuple(tuple);
-            jsonListBuilder.append(json).append(",");
+    // shared by all the documents, the writer is immutable and thread safe
+    private ObjectWriter getObjectWriter() {
+        if (objectWriter == null) {
+            objectWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
         }
-        jsonListBuilder.setCharAt(jsonListBuilder.length() - 1, ']');
-        return jsonListBuilder.toString();
+        return objectWriter;
     }
 
-    private SolrRequest<UpdateResponse> createSolrRequest(String json) {
+    private SolrRequest<UpdateResponse> createSolrRequest(ContentStream cs) {
         final ContentStreamUpdateRequest request = new ContentStreamUpdateRequest(jsonUpdateUrl);
-        final ContentStream cs = new ContentStreamBase.StringStream(json, CONTENT_TYPE);
         request.addContentStream(cs);
-        LOG.debug("Request generated with JSON: {}", json);
+        LOG.debug("Request generated with JSON of {} bytes", cs.getSize());
         return request;
     }
 }
@@ -16,13 +16,47 @@
 
 package com.hortonworks.streamline.streams.runtime.storm.cassandra;
 
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Statement;
 import org.apache.storm.cassandra.bolt.BatchCassandraWriterBolt;
+import org.apache.storm.cassandra.client.SimpleClientProvider;
+import org.apache.storm.cassandra.query.CQLStatementTupleMapper;
 import org.apache.storm.cassandra.query.builder.BoundCQLStatementMapperBuilder;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.tuple.Tuple;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
 
 /**
- *
+ * Writes the tuples to Cassandra with the statements bound by the mapper, the prepared statements being cached per
+ * query by the mapper.
+ * <p>
+ * By default, the tuples are queued and written in batches as {@link BatchCassandraWriterBolt} does. With a maximum
+ * number of in flight batches, the statements are instead grouped by partition key into unlogged batches of up to
+ * the configured batch size rows, so that a batch is applied by a single replica set. Each batch is executed
+ * asynchronously as soon as it is full or on the tick tuples, waiting while the maximum number of batches are in
+ * flight. The tuples of a batch are acked, or failed, when its execution completes. Statements with no known
+ * partition key are executed on their own.
  */
 public class StreamlineCassandraBolt extends BatchCassandraWriterBolt {
+    // the routing keys of bound statements are already serialized, only explicit routing keys use the registry
+    private static final ProtocolVersion PROTOCOL_VERSION = ProtocolVersion.NEWEST_SUPPORTED;
+    private static final CodecRegistry CODEC_REGISTRY = CodecRegistry.DEFAULT_INSTANCE;
+
+    private int maxInFlightBatches;
+
+    private transient Map<ByteBuffer, PartitionBatch> partitionBatches;
+    private transient Semaphore inFlightBatches;
 
     public StreamlineCassandraBolt(BoundCQLStatementMapperBuilder tupleMapper) {
         super(tupleMapper.build());
@@ -31,4 +65,115 @@ public class StreamlineCassandraBolt extends BatchCassandraWriterBolt {
     public StreamlineCassandraBolt(BoundCQLStatementMapperBuilder tupleMapper, int tickFrequencyInSeconds) {
         super(tupleMapper.build(), tickFrequencyInSeconds);
     }
+
+    StreamlineCassandraBolt(CQLStatementTupleMapper tupleMapper, SimpleClientProvider clientProvider) {
+        super(tupleMapper);
+        this.clientProvider = clientProvider;
+    }
+
+    /**
+     * Groups the statements by partition key and executes the batches asynchronously, with at most the given number
+     * of batches in flight. 0, the default, keeps the queued batches of {@link BatchCassandraWriterBolt}.
+     */
+    public StreamlineCassandraBolt withMaxInFlightBatches(int maxInFlightBatches) {
+        if (maxInFlightBatches < 0) {
+            throw new IllegalArgumentException("Max in flight batches should not be negative, got " + maxInFlightBatches);
+        }
+        this.maxInFlightBatches = maxInFlightBatches;
+        return this;
+    }
+
+    @Override
+    public void prepare(Map stormConfig, TopologyContext topologyContext, OutputCollector outputCollector) {
+        super.prepare(stormConfig, topologyContext, outputCollector);
+        if (maxInFlightBatches > 0) {
+            partitionBatches = new LinkedHashMap<>();
+            inFlightBatches = new Semaphore(maxInFlightBatches);
+        }
+    }
+
+    @Override
+    protected void process(Tuple input) {
+        if (maxInFlightBatches == 0) {
+            super.process(input);
+            return;
+        }
+        List<Statement> statements;
+        try {
+            statements = getMapper().map(stormConfig, session, input);
+        } catch (Exception e) {
+            getResultHandler().onThrowable(e, outputCollector, input);
+            return;
+        }
+        ByteBuffer partitionKey = partitionKey(statements);
+        if (partitionKey == null) {
+            executeAsync(statements, Collections.singletonList(input));
+            return;
+        }
+        PartitionBatch batch = partitionBatches.computeIfAbsent(partitionKey, k -> new PartitionBatch());
+        batch.statements.addAll(statements);
+        batch.tuples.add(input);
+        if (batch.statements.size() >= cassandraConf.getBatchSizeRows()) {
+            partitionBatches.remove(partitionKey);
+            executeAsync(batch.statements, batch.tuples);
+        }
+    }
+
+    @Override
+    protected void onTickTuple(Tuple tuple) {
+        if (maxInFlightBatches == 0) {
+            super.onTickTuple(tuple);
+            return;
+        }
+        for (PartitionBatch batch : partitionBatches.values()) {
+            executeAsync(batch.statements, batch.tuples);
+        }
+        partitionBatches.clear();
+    }
+
+    // the partition key shared by the statements, null if unknown or if they span partitions
+    private static ByteBuffer partitionKey(List<Statement> statements) {
+        ByteBuffer partitionKey = null;
+        for (Statement statement : statements) {
+            ByteBuffer routingKey = statement.getRoutingKey(PROTOCOL_VERSION, CODEC_REGISTRY);
+            if (routingKey == null || (partitionKey != null && !partitionKey.equals(routingKey))) {
+                return null;
+            }
+            partitionKey = routingKey;
+        }
+        return partitionKey;
+    }
+
+    private void executeAsync(List<Statement> statements, List<Tuple> tuples) {
+        Statement statement;
+        if (statements.size() == 1) {
+            statement = statements.get(0);
+        } else {
+            statement = new BatchStatement(BatchStatement.Type.UNLOGGED).addAll(statements);
+        }
+        inFlightBatches.acquireUninterruptibly();
+        ResultSetFuture future;
+        try {
+            future = session.executeAsync(statement);
+        } catch (Exception e) {
+            inFlightBatches.release();
+            getResultHandler().onThrowable(e, outputCollector, tuples);
+            return;
+        }
+        // completes on a driver thread, the results are acked or failed by the executor thread on the next tuple
+        future.addListener(() -> {
+            inFlightBatches.release();
+            try {
+                future.getUninterruptibly();
+                getAsyncHandler().success(tuples);
+            } catch (Exception e) {
+                getAsyncHandler().failure(e, tuples);
+            }
+        }, Runnable::run);
+    }
+
+    private static class PartitionBatch {
+        private final List<Statement> statements = new ArrayList<>();
+        private final List<Tuple> tuples = new ArrayList<>();
+    }
 }
@@ -22,11 +22,42 @@ import org.apache.storm.hbase.bolt.mapper.HBaseMapper;
 import org.apache.storm.hbase.common.ColumnList;
 import org.apache.storm.tuple.Tuple;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import static org.apache.storm.hbase.common.Utils.toBytes;
 
+/**
+ * Maps a {@link StreamlineEvent} to a row with a column per non null field of the event.
+ * <p>
+ * The row key is the value of the row key field, the values of the row key fields joined with '|' for a composite
+ * key, or the event id. In a composite key, the '|' and '\' bytes of the values are escaped with a '\' and a null
+ * value is written as '\' followed by a zero byte, so that different values cannot give the same key and a null
+ * value is told apart from an empty one. With salt buckets, the key is prefixed by a byte computed from the rest of
+ * the key, spreading sequential keys over that many regions; the table should be pre-split on the salt byte.
+ * Composite and salted keys are encoded into a buffer reused across tuples, and the column qualifiers are encoded once
+ * per field name.
+ */
 public class StreamlineEventHBaseMapper implements HBaseMapper {
+    static final byte ROW_KEY_DELIMITER = '|';
+    static final byte ROW_KEY_ESCAPE = '\\';
+    // follows the escape byte for a null value, where it is never found otherwise
+    static final byte ROW_KEY_NULL = 0;
+    static final int MAX_SALT_BUCKETS = 256;
+    // the field names come from the input schemas, the bound only guards against unexpected events
+    private static final int MAX_CACHED_QUALIFIERS = 1024;
+
     private final byte[] columnFamily;
     private final String rowKeyField;
+    private List<String> rowKeyFields;
+    private int saltBuckets;
+
+    private transient Map<String, byte[]> qualifiers;
+    private transient byte[] rowKeyBuffer;
+    private transient int rowKeyLength;
 
     public StreamlineEventHBaseMapper(String columnFamily) {
         this(columnFamily, null);
@@ -37,10 +68,57 @@ public class StreamlineEventHBaseMapper implements HBaseMapper {
         this.rowKeyField = rowKeyField;
     }
 
+    /**
+     * Builds the row key from the values of the fields, overriding the row key field.
+     */
+    public StreamlineEventHBaseMapper withRowKeyFields(List<String> rowKeyFields) {
+        this.rowKeyFields = new ArrayList<>(rowKeyFields);
+        return this;
+    }
+
+    public StreamlineEventHBaseMapper withSaltBuckets(int saltBuckets) {
+        if (saltBuckets < 0 || saltBuckets > MAX_SALT_BUCKETS) {
+            throw new IllegalArgumentException("Salt buckets should be between 0 and " + MAX_SALT_BUCKETS
+                    + ", got " + saltBuckets);
+        }
+        this.saltBuckets = saltBuckets;
+        return this;
+    }
+
     @Override
     public byte[] rowKey(Tuple tuple) {
         StreamlineEvent event = (StreamlineEvent) tuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT);
-        return toBytes((rowKeyField != null && !rowKeyField.isEmpty()) ? StreamlineRuntimeUtil.getFieldValue(event, rowKeyField) : event.getId());
+        boolean composite = rowKeyFields != null && !rowKeyFields.isEmpty();
+        if (!composite && saltBuckets == 0) {
+            return toBytes(rowKeyValue(event, rowKeyField));
+        }
+
+        rowKeyLength = saltBuckets > 0 ? 1 : 0;
+        ensureRowKeyCapacity(0);
+        if (composite) {
+            for (int i = 0; i < rowKeyFields.size(); i++) {
+                if (i > 0) {
+                    ensureRowKeyCapacity(1);
+                    rowKeyBuffer[rowKeyLength++] = ROW_KEY_DELIMITER;
+                }
+                Object value = StreamlineRuntimeUtil.getFieldValue(event, rowKeyFields.get(i));
+                if (value == null) {
+                    ensureRowKeyCapacity(2);
+                    rowKeyBuffer[rowKeyLength++] = ROW_KEY_ESCAPE;
+                    rowKeyBuffer[rowKeyLength++] = ROW_KEY_NULL;
+                } else {
+                    int start = rowKeyLength;
+                    writeRowKeyPart(value);
+                    escapeRowKeyPart(start);
+                }
+            }
+        } else {
+            writeRowKeyPart(rowKeyValue(event, rowKeyField));
+        }
+        if (saltBuckets > 0) {
+            rowKeyBuffer[0] = salt(rowKeyBuffer, 1, rowKeyLength, saltBuckets);
+        }
+        return Arrays.copyOf(rowKeyBuffer, rowKeyLength);
     }
 
     @Override
@@ -48,12 +126,126 @@ public class StreamlineEventHBaseMapper implements HBaseMapper {
         StreamlineEvent event = (StreamlineEvent) tuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT);
 
         ColumnList columnList = new ColumnList();
-        for (String key : event.keySet()) {
+        for (Map.Entry<String, Object> field : event.entrySet()) {
             //Hbase bolt can not handle null values.
-            if (event.get(key) != null) {
-                columnList.addColumn(columnFamily, key.getBytes(Charsets.UTF_8), toBytes(event.get(key)));
+            if (field.getValue() != null) {
+                columnList.addColumn(columnFamily, qualifier(field.getKey()), toBytes(field.getValue()));
             }
         }
         return columnList;
     }
+
+    /**
+     * Returns the salt byte of the key bytes from start to end, the same for the same key.
+     */
+    static byte salt(byte[] key, int start, int end, int saltBuckets) {
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + key[i];
+        }
+        // spreads the low bits, which sequential keys mostly share
+        hash ^= (hash >>> 16);
+        return (byte) Math.floorMod(hash, saltBuckets);
+    }
+
+    private static Object rowKeyValue(StreamlineEvent event, String rowKeyField) {
+        return (rowKeyField != null && !rowKeyField.isEmpty()) ? StreamlineRuntimeUtil.getFieldValue(event, rowKeyField) : event.getId();
+    }
+
+    private byte[] qualifier(String fieldName) {
+        if (qualifiers == null) {
+            qualifiers = new HashMap<>();
+        }
+        byte[] qualifier = qualifiers.get(fieldName);
+        if (qualifier == null) {
+            if (qualifiers.size() >= MAX_CACHED_QUALIFIERS) {
+                qualifiers.clear();
+            }
+            qualifier = fieldName.getBytes(Charsets.UTF_8);
+            qualifiers.put(fieldName, qualifier);
+        }
+        return qualifier;
+    }
+
+    // writes the value as Utils.toBytes encodes it, without an intermediate array for numbers and ascii strings
+    private void writeRowKeyPart(Object value) {
+        if (value instanceof String) {
+            writeRowKeyPart((String) value);
+        } else if (value instanceof Integer) {
+            writeRowKeyPart(((Integer) value).longValue(), Integer.BYTES);
+        } else if (value instanceof Long) {
+            writeRowKeyPart((Long) value, Long.BYTES);
+        } else if (value instanceof Short) {
+            writeRowKeyPart(((Short) value).longValue(), Short.BYTES);
+        } else if (value instanceof Float) {
+            writeRowKeyPart(Float.floatToRawIntBits((Float) value), Integer.BYTES);
+        } else if (value instanceof Double) {
+            writeRowKeyPart(Double.doubleToRawLongBits((Double) value), Long.BYTES);
+        } else {
+            writeRowKeyPart(toBytes(value));
+        }
+    }
+
+    private void writeRowKeyPart(String value) {
+        int length = value.length();
+        ensureRowKeyCapacity(length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                // not ascii, encoded as a whole
+                writeRowKeyPart(value.substring(i).getBytes(Charsets.UTF_8));
+                return;
+            }
+            rowKeyBuffer[rowKeyLength++] = (byte) c;
+        }
+    }
+
+    // big endian, as Bytes.toBytes
+    private void writeRowKeyPart(long value, int bytes) {
+        ensureRowKeyCapacity(bytes);
+        for (int i = bytes - 1; i >= 0; i--) {
+            rowKeyBuffer[rowKeyLength + i] = (byte) value;
+            value >>>= 8;
+        }
+        rowKeyLength += bytes;
+    }
+
+    private void writeRowKeyPart(byte[] value) {
+        ensureRowKeyCapacity(value.length);
+        System.arraycopy(value, 0, rowKeyBuffer, rowKeyLength, value.length);
+        rowKeyLength += value.length;
+    }
+
+    // escapes the delimiter and escape bytes of the part written from start, shifting it right in place.
+    // The keys stay unique but not ordered as the values: a value with an escaped byte sorts by the escape byte
+    // rather than the escaped one, just as the delimiter already made a part sort after most of its extensions.
+    private void escapeRowKeyPart(int start) {
+        int escapes = 0;
+        for (int i = start; i < rowKeyLength; i++) {
+            if (rowKeyBuffer[i] == ROW_KEY_DELIMITER || rowKeyBuffer[i] == ROW_KEY_ESCAPE) {
+                escapes++;
+            }
+        }
+        if (escapes == 0) {
+            return;
+        }
+        ensureRowKeyCapacity(escapes);
+        int to = rowKeyLength + escapes;
+        for (int from = rowKeyLength - 1; from >= start; from--) {
+            byte b = rowKeyBuffer[from];
+            rowKeyBuffer[--to] = b;
+            if (b == ROW_KEY_DELIMITER || b == ROW_KEY_ESCAPE) {
+                rowKeyBuffer[--to] = ROW_KEY_ESCAPE;
+            }
+        }
+        rowKeyLength += escapes;
+    }
+
+    private void ensureRowKeyCapacity(int bytes) {
+        if (rowKeyBuffer == null) {
+            rowKeyBuffer = new byte[Math.max(64, rowKeyLength + bytes)];
+        } else if (rowKeyLength + bytes > rowKeyBuffer.length) {
+            rowKeyBuffer = Arrays.copyOf(rowKeyBuffer, Math.max(2 * rowKeyBuffer.length, rowKeyLength + bytes));
+        }
+    }
 }
@@ -0,0 +1,222 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.runtime.storm.spout;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.hortonworks.streamline.streams.common.FieldIndex;
+import com.hortonworks.streamline.streams.common.IndexedFieldsAndValues;
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.ResolvingDecoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Decodes avro binary payloads of a writer schema straight into the values of events, without building generic
+ * records first. The schema is compiled once into a plan of value readers, records being read into field values
+ * bound to the field index of their schema, strings into strings, enums into their symbols, bytes and fixed into
+ * byte arrays, arrays and maps into immutable lists and maps. Null values are left out, as the events do not hold
+ * them.
+ * <p>
+ * When a reader schema different from the writer schema is given, the payload is read through a resolving decoder
+ * presenting the data as the reader schema, which is what the plan is compiled for.
+ * <p>
+ * A decoder is safe to share between threads, the avro decoders being kept per thread.
+ */
+class AvroEventDecoder {
+    private final Schema writerSchema;
+    private final Schema readerSchema;
+    private final ValueReader reader;
+    private final ThreadLocal<Decoders> decoders = ThreadLocal.withInitial(Decoders::new);
+
+    private interface ValueReader {
+        Object read(Decoder in) throws IOException;
+    }
+
+    private static final class Decoders {
+        private BinaryDecoder binaryDecoder;
+        private ResolvingDecoder resolvingDecoder;
+    }
+
+    /**
+     * Creates a decoder for the given writer schema, reading the data as the reader schema if not null.
+     */
+    AvroEventDecoder(Schema writerSchema, Schema readerSchema, Function<Schema, FieldIndex> fieldIndexes) {
+        this.writerSchema = writerSchema;
+        this.readerSchema = readerSchema == null || readerSchema.equals(writerSchema) ? null : readerSchema;
+        this.reader = compile(this.readerSchema != null ? this.readerSchema : writerSchema, this.readerSchema != null,
+                fieldIndexes, new IdentityHashMap<>());
+    }
+
+    Object decode(InputStream payloadInputStream) throws IOException {
+        Decoders state = decoders.get();
+        BinaryDecoder binaryDecoder = DecoderFactory.get().binaryDecoder(payloadInputStream, state.binaryDecoder);
+        state.binaryDecoder = binaryDecoder;
+        if (readerSchema == null) {
+            return reader.read(binaryDecoder);
+        }
+        // resolving the schemas is expensive, the resolving decoder is reused for the next payloads
+        if (state.resolvingDecoder == null) {
+            state.resolvingDecoder = DecoderFactory.get().resolvingDecoder(writerSchema, readerSchema, binaryDecoder);
+        } else {
+            state.resolvingDecoder.configure(binaryDecoder);
+        }
+        Object value = reader.read(state.resolvingDecoder);
+        state.resolvingDecoder.drain();
+        return value;
+    }
+
+    private static ValueReader compile(Schema schema, boolean resolving, Function<Schema, FieldIndex> fieldIndexes,
+                                       Map<Schema, ValueReader> records) {
+        switch (schema.getType()) {
+            case RECORD:
+                ValueReader recordReader = records.get(schema);
+                if (recordReader == null) {
+                    recordReader = compileRecord(schema, resolving, fieldIndexes, records);
+                }
+                return recordReader;
+            case ENUM:
+                final String[] symbols = schema.getEnumSymbols().toArray(new String[0]);
+                return in -> symbols[in.readEnum()];
+            case ARRAY:
+                final ValueReader elementReader = compile(schema.getElementType(), resolving, fieldIndexes, records);
+                return in -> {
+                    ImmutableList.Builder<Object> values = ImmutableList.builder();
+                    for (long n = in.readArrayStart(); n > 0; n = in.arrayNext()) {
+                        for (long i = 0; i < n; i++) {
+                            Object value = elementReader.read(in);
+                            if (value != null) {
+                                values.add(value);
+                            }
+                        }
+                    }
+                    return values.build();
+                };
+            case MAP:
+                final ValueReader valueReader = compile(schema.getValueType(), resolving, fieldIndexes, records);
+                return in -> {
+                    // the last value of a repeated key wins, as with generic records
+                    Map<String, Object> values = new HashMap<>();
+                    for (long n = in.readMapStart(); n > 0; n = in.mapNext()) {
+                        for (long i = 0; i < n; i++) {
+                            String key = in.readString();
+                            Object value = valueReader.read(in);
+                            if (value != null) {
+                                values.put(key, value);
+                            } else {
+                                values.remove(key);
+                            }
+                        }
+                    }
+                    return ImmutableMap.copyOf(values);
+                };
+            case UNION:
+                List<Schema> types = schema.getTypes();
+                final ValueReader[] branchReaders = new ValueReader[types.size()];
+                for (int i = 0; i < branchReaders.length; i++) {
+                    branchReaders[i] = compile(types.get(i), resolving, fieldIndexes, records);
+                }
+                return in -> branchReaders[in.readIndex()].read(in);
+            case FIXED:
+                final int size = schema.getFixedSize();
+                return in -> {
+                    byte[] bytes = new byte[size];
+                    in.readFixed(bytes);
+                    return bytes;
+                };
+            case STRING:
+                return Decoder::readString;
+            case BYTES:
+                return in -> toByteArray(in.readBytes(null));
+            case INT:
+                return Decoder::readInt;
+            case LONG:
+                return Decoder::readLong;
+            case FLOAT:
+                return Decoder::readFloat;
+            case DOUBLE:
+                return Decoder::readDouble;
+            case BOOLEAN:
+                return Decoder::readBoolean;
+            case NULL:
+                return in -> {
+                    in.readNull();
+                    return null;
+                };
+            default:
+                throw new IllegalArgumentException("Unsupported avro type " + schema.getType());
+        }
+    }
+
+    private static ValueReader compileRecord(Schema schema, boolean resolving, Function<Schema, FieldIndex> fieldIndexes,
+                                             Map<Schema, ValueReader> records) {
+        final FieldIndex fieldIndex = fieldIndexes.apply(schema);
+        final List<Schema.Field> fields = schema.getFields();
+        final ValueReader[] fieldReaders = new ValueReader[fields.size()];
+        final ValueReader recordReader;
+        if (resolving) {
+            // the resolving decoder gives the order of the fields, the reader fields missing from the writer last
+            recordReader = in -> {
+                IndexedFieldsAndValues.Builder values = IndexedFieldsAndValues.builder(fieldIndex);
+                for (Schema.Field field : ((ResolvingDecoder) in).readFieldOrder()) {
+                    Object value = fieldReaders[field.pos()].read(in);
+                    if (value != null) {
+                        values.set(field.pos(), value);
+                    }
+                }
+                return values.build();
+            };
+        } else {
+            recordReader = in -> {
+                IndexedFieldsAndValues.Builder values = IndexedFieldsAndValues.builder(fieldIndex);
+                for (int pos = 0; pos < fieldReaders.length; pos++) {
+                    Object value = fieldReaders[pos].read(in);
+                    if (value != null) {
+                        values.set(pos, value);
+                    }
+                }
+                return values.build();
+            };
+        }
+        // registered before its fields are compiled, for the recursive records
+        records.put(schema, recordReader);
+        for (Schema.Field field : fields) {
+            fieldReaders[field.pos()] = compile(field.schema(), resolving, fieldIndexes, records);
+        }
+        return recordReader;
+    }
+
+    private static byte[] toByteArray(ByteBuffer byteBuffer) {
+        if (byteBuffer.hasArray() && byteBuffer.arrayOffset() == 0 && byteBuffer.position() == 0
+                && byteBuffer.remaining() == byteBuffer.array().length) {
+            return byteBuffer.array();
+        }
+        byte[] bytes = new byte[byteBuffer.remaining()];
+        byteBuffer.get(bytes);
+        return bytes;
+    }
+}
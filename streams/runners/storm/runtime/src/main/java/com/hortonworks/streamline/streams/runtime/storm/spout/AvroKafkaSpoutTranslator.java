@@ -119,5 +119,18 @@ public class AvroKafkaSpoutTranslator implements RecordTranslator<Object, ByteBu
             buf.get(bytes, off, end);
             return end;
         }
+
+        public long skip (long n) {
+            if (n <= 0) {
+                return 0;
+            }
+            int skipped = (int) Math.min(n, buf.remaining());
+            buf.position(buf.position() + skipped);
+            return skipped;
+        }
+
+        public int available () {
+            return buf.remaining();
+        }
     }
 }
@@ -18,42 +18,97 @@ package com.hortonworks.streamline.streams.runtime.storm.spout;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
 import com.hortonworks.registries.schemaregistry.SchemaMetadata;
+import com.hortonworks.registries.schemaregistry.SchemaVersionKey;
 import com.hortonworks.registries.schemaregistry.serde.SerDesException;
 import com.hortonworks.registries.schemaregistry.serdes.avro.AvroSnapshotDeserializer;
+import com.hortonworks.registries.schemaregistry.serdes.avro.SerDesProtocolHandlerRegistry;
+import com.hortonworks.registries.schemaregistry.serdes.avro.exceptions.AvroException;
 import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.FieldIndex;
+import com.hortonworks.streamline.streams.common.IndexedFieldsAndValues;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericEnumSymbol;
 import org.apache.avro.generic.GenericFixed;
 import org.apache.avro.generic.IndexedRecord;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- *
+ * Deserializes avro payloads into the values of events. Unless specific records are asked for, the payloads are
+ * decoded straight into the values by an {@link AvroEventDecoder}, kept per writer and reader schema version.
  */
 public class AvroStreamsSnapshotDeserializer extends AvroSnapshotDeserializer {
+    private static final int MAX_DECODERS = 1024;
+
+    // field indexes shared by all the records of the same avro record schema
+    private final ConcurrentMap<Schema, FieldIndex> fieldIndexes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<DecoderKey, AvroEventDecoder> decoders = new ConcurrentHashMap<>();
 
     protected Object doDeserialize(InputStream payloadInputStream,
                                    byte protocolId,
                                    SchemaMetadata schemaMetadata,
                                    Integer writerSchemaVersion,
                                    Integer readerSchemaVersion) throws SerDesException {
-        Object deserializedObj = super.doDeserialize(payloadInputStream, protocolId, schemaMetadata, writerSchemaVersion, readerSchemaVersion);
+        Object values;
+        if (useSpecificAvroReader) {
+            Object deserializedObj = super.doDeserialize(payloadInputStream, protocolId, schemaMetadata, writerSchemaVersion, readerSchemaVersion);
+            values = convertValue(deserializedObj);
+        } else {
+            values = decode(payloadInputStream, protocolId, schemaMetadata.getName(), writerSchemaVersion, readerSchemaVersion);
+        }
 
-        ImmutableMap.Builder<String, Object> builder = ImmutableMap.builder();
-        Object values = convertValue(deserializedObj);
         if (values instanceof Map) {
-            builder.putAll((Map) values);
-        } else {
-            builder.put(StreamlineEvent.PRIMITIVE_PAYLOAD_FIELD, values);
+            // already immutable, either schema bound for records or an ImmutableMap for avro maps
+            return values;
         }
 
-        return builder.build();
+        return ImmutableMap.of(StreamlineEvent.PRIMITIVE_PAYLOAD_FIELD, values);
+    }
+
+    private Object decode(InputStream payloadInputStream,
+                          byte protocolId,
+                          String schemaName,
+                          Integer writerSchemaVersion,
+                          Integer readerSchemaVersion) throws SerDesException {
+        Schema writerSchema = getSchema(new SchemaVersionKey(schemaName, writerSchemaVersion));
+        try {
+            // bytes and strings are sent as is rather than avro encoded, except for strings of the confluent protocol
+            if (writerSchema.getType() == Schema.Type.BYTES) {
+                return ByteStreams.toByteArray(payloadInputStream);
+            } else if (writerSchema.getType() == Schema.Type.STRING
+                    && protocolId != SerDesProtocolHandlerRegistry.CONFLUENT_VERSION_PROTOCOL) {
+                return new String(ByteStreams.toByteArray(payloadInputStream), StandardCharsets.UTF_8);
+            }
+            return getDecoder(schemaName, writerSchema, writerSchemaVersion, readerSchemaVersion).decode(payloadInputStream);
+        } catch (IOException e) {
+            throw new AvroException(e);
+        }
+    }
+
+    private AvroEventDecoder getDecoder(String schemaName, Schema writerSchema, Integer writerSchemaVersion, Integer readerSchemaVersion) {
+        DecoderKey key = new DecoderKey(schemaName, writerSchemaVersion, readerSchemaVersion);
+        AvroEventDecoder decoder = decoders.get(key);
+        if (decoder == null) {
+            Schema readerSchema = readerSchemaVersion != null ? getSchema(new SchemaVersionKey(schemaName, readerSchemaVersion)) : null;
+            decoder = new AvroEventDecoder(writerSchema, readerSchema, this::getFieldIndex);
+            if (decoders.size() >= MAX_DECODERS) {
+                decoders.clear();
+            }
+            decoders.put(key, decoder);
+        }
+        return decoder;
     }
 
     private Object convertValue(Object deserializedObj) {
@@ -62,12 +117,12 @@ public class AvroStreamsSnapshotDeserializer extends AvroSnapshotDeserializer {
         //check for specific-record type and build a map from that
         if (deserializedObj instanceof IndexedRecord) { // record
             IndexedRecord indexedRecord = (IndexedRecord) deserializedObj;
-            List<Schema.Field> fields = indexedRecord.getSchema().getFields();
-            ImmutableMap.Builder<String, Object> keyValues = ImmutableMap.builder();
-            for (Schema.Field field : fields) {
-                Object currentValue = convertValue(indexedRecord.get(field.pos()));
+            FieldIndex fieldIndex = getFieldIndex(indexedRecord.getSchema());
+            IndexedFieldsAndValues.Builder keyValues = IndexedFieldsAndValues.builder(fieldIndex);
+            for (int pos = 0; pos < fieldIndex.size(); pos++) {
+                Object currentValue = convertValue(indexedRecord.get(pos));
                 if (currentValue != null) {
-                    keyValues.put(field.name(), currentValue);
+                    keyValues.set(pos, currentValue);
                 }
             }
             value = keyValues.build();
@@ -118,4 +173,47 @@ public class AvroStreamsSnapshotDeserializer extends AvroSnapshotDeserializer {
         return value;
     }
 
+    private FieldIndex getFieldIndex(Schema recordSchema) {
+        FieldIndex fieldIndex = fieldIndexes.get(recordSchema);
+        if (fieldIndex == null) {
+            List<String> fieldNames = new ArrayList<>();
+            for (Schema.Field field : recordSchema.getFields()) {
+                fieldNames.add(field.name());
+            }
+            fieldIndex = FieldIndex.of(fieldNames);
+            FieldIndex existing = fieldIndexes.putIfAbsent(recordSchema, fieldIndex);
+            if (existing != null) {
+                fieldIndex = existing;
+            }
+        }
+        return fieldIndex;
+    }
+
+    // a schema version of the writer, with the schema version of the reader if any
+    private static final class DecoderKey {
+        private final String schemaName;
+        private final Integer writerSchemaVersion;
+        private final Integer readerSchemaVersion;
+
+        DecoderKey(String schemaName, Integer writerSchemaVersion, Integer readerSchemaVersion) {
+            this.schemaName = schemaName;
+            this.writerSchemaVersion = writerSchemaVersion;
+            this.readerSchemaVersion = readerSchemaVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            DecoderKey that = (DecoderKey) o;
+            return Objects.equals(schemaName, that.schemaName)
+                    && Objects.equals(writerSchemaVersion, that.writerSchemaVersion)
+                    && Objects.equals(readerSchemaVersion, that.readerSchemaVersion);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(schemaName, writerSchemaVersion, readerSchemaVersion);
+        }
+    }
 }
@@ -17,47 +17,93 @@
 package com.hortonworks.streamline.streams.runtime.storm.spout;
 
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.storm.hdfs.spout.ByteOffsetFileReader;
 import org.apache.storm.hdfs.spout.ParseException;
 import org.apache.storm.hdfs.spout.TextFileReader;
 import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStream;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
- *  Converts each JSON line in the Text file into a SreamlineEvent based tuple
+ *  Converts each JSON document in the Text file into a SreamlineEvent based tuple.
+ *  <p>
+ *  The documents are parsed one after the other by a single streaming parser over a buffered stream of the file,
+ *  so they do not need to be on lines of their own. The offsets are the byte offset after the last document read
+ *  and the number of documents read, so that a reader started from a committed offset seeks to it rather than
+ *  rereading the file.
+ *  <p>
+ *  The offsets committed by the previous versions of this reader, which read a document per line, are in the format
+ *  of the text file reader: the reader then skips the lines already read and goes on from there.
  */
 
-public class JsonFileReader extends TextFileReader {
+public class JsonFileReader extends ByteOffsetFileReader {
+    private static final Logger LOG = LoggerFactory.getLogger(JsonFileReader.class);
+    private static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    private static final ObjectReader JSON_READER = new ObjectMapper().readerFor(HashMap.class);
+    private static final String TEXT_OFFSET_PREFIX = "{char=";
+
+    private final long startByteOffset;
+    private final JsonParser parser;
+    private long documentNumber;
+    private Offset offset;
+
     public JsonFileReader(FileSystem fs, Path file, Map conf) throws IOException {
-        super(fs, file, conf);
+        this(fs, file, conf, "0");
     }
 
     public JsonFileReader(FileSystem fs, Path file, Map conf, String startOffset) throws IOException {
-        super(fs, file, conf, startOffset);
+        super(fs, file);
+        FSDataInputStream in = fs.open(file);
+        try {
+            BufferedInputStream buffered = new BufferedInputStream(in, getBufferSize(conf));
+            if (startOffset != null && startOffset.startsWith(TEXT_OFFSET_PREFIX)) {
+                long lines = getLineNumber(new TextFileReader.Offset(startOffset));
+                LOG.debug("Skipping {} lines of {} to resume from offset {}", lines, file, startOffset);
+                startByteOffset = skipLines(buffered, lines);
+                documentNumber = lines;
+            } else {
+                Offset start = new Offset(startOffset);
+                startByteOffset = start.getByteOffset();
+                documentNumber = start.getRecordNumber();
+                if (startByteOffset > 0) {
+                    LOG.debug("Seeking to offset {} of {}", startOffset, file);
+                    in.seek(startByteOffset);
+                }
+            }
+            offset = new Offset(startByteOffset, documentNumber);
+            parser = JSON_READER.getFactory().createParser(buffered);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
     }
 
     //returns null when EOF is reached
     public List<Object> next() throws IOException, ParseException {
-        List<Object> lineTuple = super.next();
-        if (lineTuple==null)
-            return null;
-        String jsonLine = (String) lineTuple.get(0);
-        if ( jsonLine.trim().isEmpty() )
-            return next();
-
         try {
+            if (parser.nextToken() == null) {
+                return null;
+            }
+
             //1- convert Json to Map<>
-            HashMap<String, Object> jsonMap = new ObjectMapper().readValue(jsonLine, HashMap.class);
+            HashMap<String, Object> jsonMap = JSON_READER.readValue(parser);
+            offset = new Offset(startByteOffset + parser.getCurrentLocation().getByteOffset(), ++documentNumber);
 
             //2- make StreamlineEvent from map
             StreamlineEventImpl slEvent = StreamlineEventImpl.builder().putAll(jsonMap).dataSourceId("HdfsSpout").build();
@@ -67,6 +113,48 @@ public class JsonFileReader extends TextFileReader {
         } catch (JsonProcessingException e) {
             throw new ParseException("Json parsing error at location : " + getFileOffset().toString(), e);
         }
+    }
+
+    @Override
+    public Offset getFileOffset() {
+        return offset;
+    }
+
+    @Override
+    public void close() {
+        try {
+            parser.close();
+        } catch (IOException e) {
+            LOG.warn("Ignoring error when closing file " + getFilePath(), e);
+        }
+    }
+
+    // skips the lines ended by '\n', '\r' or "\r\n" as the text file reader reads them, returning the bytes skipped
+    private static long skipLines(InputStream in, long lines) throws IOException {
+        long bytes = 0;
+        for (long line = 0; line < lines; line++) {
+            int b;
+            while ((b = in.read()) != -1 && b != '\n' && b != '\r') {
+                bytes++;
+            }
+            if (b == -1) {
+                break;
+            }
+            bytes++;
+            if (b == '\r') {
+                in.mark(1);
+                if (in.read() == '\n') {
+                    bytes++;
+                } else {
+                    in.reset();
+                }
+            }
+        }
+        return bytes;
+    }
 
+    private static int getBufferSize(Map conf) {
+        return conf != null && conf.containsKey(TextFileReader.BUFFER_SIZE)
+                ? Integer.parseInt(conf.get(TextFileReader.BUFFER_SIZE).toString()) : DEFAULT_BUFFER_SIZE;
     }
 }
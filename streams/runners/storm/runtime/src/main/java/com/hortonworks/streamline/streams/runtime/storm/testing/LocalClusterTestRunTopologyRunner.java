@@ -0,0 +1,127 @@
+/**
+ * Copyright 2017 Hortonworks.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ *   http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+
+package com.hortonworks.streamline.streams.runtime.storm.testing;
+
+import com.hortonworks.streamline.streams.storm.common.TestRunTopologyRunner;
+import org.apache.storm.Config;
+import org.apache.storm.LocalCluster;
+import org.apache.storm.flux.FluxBuilder;
+import org.apache.storm.flux.model.ExecutionContext;
+import org.apache.storm.flux.model.TopologyDef;
+import org.apache.storm.flux.parser.FluxParser;
+import org.apache.storm.generated.KillOptions;
+import org.apache.storm.generated.StormTopology;
+import org.apache.storm.generated.TopologySummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs test run topologies in a LocalCluster which is started once and reused for all the runs, instead of starting
+ * a new JVM and a new local cluster per run through 'storm jar ... Flux --local'.
+ *
+ * The Flux definition is turned into a topology the same way Flux does, and the topology is killed (without waiting)
+ * once the duration of the test run is elapsed. The event logger of the run is then closed.
+ */
+public class LocalClusterTestRunTopologyRunner implements TestRunTopologyRunner {
+    private static final Logger LOG = LoggerFactory.getLogger(LocalClusterTestRunTopologyRunner.class);
+
+    private static final long POLL_INTERVAL_MS = 100;
+    private static final long KILL_WAIT_TIMEOUT_MS = 30_000;
+
+    private final AtomicInteger runCounter = new AtomicInteger();
+    private LocalCluster localCluster;
+
+    public LocalClusterTestRunTopologyRunner() {
+    }
+
+    @Override
+    public void runTopology(String fluxFilePath, String eventLogFilePath, long durationMillis,
+                            BooleanSupplier killRequested) throws Exception {
+        TopologyDef topologyDef = FluxParser.parseFile(fluxFilePath, false, true, null, false);
+        Config conf = FluxBuilder.buildConfig(topologyDef);
+        conf.put(Config.TOPOLOGY_METRICS_CONSUMER_REGISTER, Collections.emptyList());
+        StormTopology topology = FluxBuilder.buildTopology(new ExecutionContext(topologyDef, conf));
+
+        // the same topology can be tested concurrently
+        String topologyName = topologyDef.getName() + "-test-" + runCounter.incrementAndGet();
+        try {
+            LocalCluster cluster = getLocalCluster();
+            LOG.info("Submitting test run topology {} to the local cluster", topologyName);
+            cluster.submitTopology(topologyName, conf, topology);
+            try {
+                long deadline = System.currentTimeMillis() + durationMillis;
+                while (System.currentTimeMillis() < deadline) {
+                    if (killRequested.getAsBoolean()) {
+                        LOG.info("Received force kill for test run topology {}", topologyName);
+                        break;
+                    }
+                    TimeUnit.MILLISECONDS.sleep(POLL_INTERVAL_MS);
+                }
+            } finally {
+                kill(cluster, topologyName);
+            }
+        } finally {
+            // the runner outlives the runs: the event logger of the run (its writer thread and files) goes with it
+            TestRunEventLogger.close(eventLogFilePath);
+        }
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        if (localCluster != null) {
+            localCluster.shutdown();
+            localCluster = null;
+        }
+    }
+
+    private synchronized LocalCluster getLocalCluster() {
+        if (localCluster == null) {
+            localCluster = new LocalCluster();
+        }
+        return localCluster;
+    }
+
+    private void kill(LocalCluster cluster, String topologyName) throws InterruptedException {
+        KillOptions killOptions = new KillOptions();
+        killOptions.set_wait_secs(0);
+        cluster.killTopologyWithOpts(topologyName, killOptions);
+
+        long deadline = System.currentTimeMillis() + KILL_WAIT_TIMEOUT_MS;
+        while (isRunning(cluster, topologyName)) {
+            if (System.currentTimeMillis() > deadline) {
+                LOG.warn("Test run topology {} is still not removed from the local cluster", topologyName);
+                return;
+            }
+            TimeUnit.MILLISECONDS.sleep(POLL_INTERVAL_MS);
+        }
+        LOG.info("Test run topology {} is killed", topologyName);
+    }
+
+    private boolean isRunning(LocalCluster cluster, String topologyName) {
+        for (TopologySummary summary : cluster.getClusterInfo().get_topologies()) {
+            if (summary.get_name().equals(topologyName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
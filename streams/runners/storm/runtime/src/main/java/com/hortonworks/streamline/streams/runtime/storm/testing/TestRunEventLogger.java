@@ -20,66 +20,367 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hortonworks.streamline.streams.StreamlineEvent;
 import com.hortonworks.streamline.streams.common.event.EventInformation;
 import com.hortonworks.streamline.streams.common.event.EventInformationBuilder;
-import com.hortonworks.streamline.streams.common.event.correlation.EventCorrelationInjector;
+import com.hortonworks.streamline.streams.common.event.EventLogFileReader;
+import com.hortonworks.streamline.streams.common.event.EventLogIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.List;
+import java.io.OutputStream;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Writes the events emitted by the components of a test run to the event log file, one JSON line per event
+ * (read back by EventLogFileReader).
+ *
+ * Emitting threads only serialize the event and enqueue the line on a lock-free queue. A single writer thread per log
+ * file drains the queue into a long-lived buffered writer, which is flushed whenever its buffer fills up, when lines
+ * have been pending for FLUSH_INTERVAL_MS, on flush() (called when the test run components are shut down) and on JVM
+ * shutdown. The writer thread parks while the queue is empty, until the next line or the next flush when lines are
+ * pending, and the emitting threads only unpark it when it is parked, so it doesn't wake up while the log is idle.
+ *
+ * Once the event logger of a file is closed, the events still written to it are dropped and counted, and the event
+ * logger is not opened again for the file: the components of a test run may still emit while it is being killed.
+ *
+ * The writer thread also appends an entry per event to the side index of the log (see EventLogIndex), after the event
+ * line itself, so that readers can look up events without parsing the whole log. The index is not written when
+ * appending to an existing log which has no index, as it could only cover part of the log.
+ */
 public class TestRunEventLogger {
     private static final Logger LOG = LoggerFactory.getLogger(TestRunEventLogger.class);
 
+    static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    static final long FLUSH_INTERVAL_MS = 200;
+    private static final long FLUSH_WAIT_TIMEOUT_MS = 10_000;
+
     public static Map<String, TestRunEventLogger> eventLoggerMap = new ConcurrentHashMap<>();
+    // the files of the test runs which are over, each test run writing to a file of its own
+    private static final Set<String> closedEventLogFilePaths = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(TestRunEventLogger::closeAll, "test-run-event-logger-shutdown"));
+    }
 
+    /**
+     * Returns the event logger of the given file, opened by the first call for the file. Once the file is closed, a
+     * closed event logger is returned, which drops the events written to it.
+     */
     public static TestRunEventLogger getEventLogger(String eventLogFilePath) {
         TestRunEventLogger eventLogger;
         synchronized (TestRunEventLogger.class) {
+            if (closedEventLogFilePaths.contains(eventLogFilePath)) {
+                return new TestRunEventLogger(eventLogFilePath, false);
+            }
             eventLogger = eventLoggerMap.computeIfAbsent(eventLogFilePath, path -> new TestRunEventLogger(path));
         }
         return eventLogger;
     }
 
+    /**
+     * Writes out the pending events of the event logger of the given file, if any, closes the file and removes the
+     * event logger. Called once the test run writing to the file is over.
+     */
+    public static void close(String eventLogFilePath) {
+        TestRunEventLogger eventLogger;
+        synchronized (TestRunEventLogger.class) {
+            eventLogger = eventLoggerMap.remove(eventLogFilePath);
+            closedEventLogFilePaths.add(eventLogFilePath);
+        }
+        if (eventLogger != null) {
+            eventLogger.close();
+        }
+    }
+
+    /**
+     * Writes out the pending events of all the event loggers and closes their files.
+     */
+    public static void closeAll() {
+        synchronized (TestRunEventLogger.class) {
+            for (TestRunEventLogger eventLogger : eventLoggerMap.values()) {
+                eventLogger.close();
+            }
+            closedEventLogFilePaths.addAll(eventLoggerMap.keySet());
+            eventLoggerMap.clear();
+        }
+    }
+
     private final String eventLogFilePath;
     private final ObjectMapper objectMapper;
+    private final OutputStream writer;
+    private final OutputStream indexWriter;
+    private long offset;
+    private int indexBuffered;
+    private final Queue<Object> queue = new ConcurrentLinkedQueue<>(); // EventRecords, FlushRequests or STOP
+    private static final Object STOP = new Object();
+    private final Thread writerThread;
+    private volatile boolean writerParked;
+    private volatile boolean running;
+    // the threads between checking that the logger is running and enqueueing, which close() waits for
+    private final AtomicInteger enqueueing = new AtomicInteger();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private volatile IOException writeFailure;
 
     public TestRunEventLogger(String eventLogFilePath) {
+        this(eventLogFilePath, true);
+    }
+
+    private TestRunEventLogger(String eventLogFilePath, boolean open) {
         this.eventLogFilePath = eventLogFilePath;
         this.objectMapper = new ObjectMapper();
+        this.running = open;
+        if (!open) {
+            this.writer = null;
+            this.indexWriter = null;
+            this.writerThread = null;
+            return;
+        }
 
         LOG.debug("event log file path: " + eventLogFilePath);
-        try (FileWriter fw = new FileWriter(eventLogFilePath, true)) {
-            // no op
+        File eventLogFile = new File(eventLogFilePath);
+        File indexFile = EventLogIndex.indexFileOf(eventLogFile);
+        try {
+            this.offset = eventLogFile.length();
+            this.writer = new BufferedOutputStream(new FileOutputStream(eventLogFile, true), WRITE_BUFFER_SIZE);
+            if (offset == 0 || indexFile.exists()) {
+                this.indexWriter = new BufferedOutputStream(new FileOutputStream(indexFile, offset > 0),
+                        WRITE_BUFFER_SIZE);
+            } else {
+                this.indexWriter = null;
+            }
         } catch (IOException e) {
             LOG.error("Can't open file for preparing to write: " + eventLogFilePath);
             throw new RuntimeException(e);
         }
+
+        this.writerThread = new Thread(this::writeLoop, "test-run-event-logger-" + eventLogFilePath);
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
     }
 
-    // Writing event to file should be mutually exclusive.
-    // We don't need to worry about performance since it's just for testing topology locally.
-    public synchronized void writeEvent(long timestamp, String componentName,
-                                        String streamId, Set<String> targetComponents, StreamlineEvent event) {
-        try (FileWriter fw = new FileWriter(eventLogFilePath, true)) {
-            LOG.debug("writing event to file " + eventLogFilePath);
+    // Can be called concurrently by all the components: the event is serialized by the calling thread, and written
+    // out asynchronously by the writer thread.
+    public void writeEvent(long timestamp, String componentName,
+                           String streamId, Set<String> targetComponents, StreamlineEvent event) {
+        checkNoWriteFailure();
+        enqueueing.incrementAndGet();
+        try {
+            if (!running) {
+                if (droppedEvents.getAndIncrement() == 0) {
+                    LOG.warn("Event logger for " + eventLogFilePath + " is already closed, dropping the events "
+                            + "written to it from now on.");
+                }
+                return;
+            }
 
             EventInformationBuilder informationBuilder = new EventInformationBuilder();
             EventInformation eventInfo = informationBuilder.build(timestamp, componentName, streamId,
                     targetComponents, event);
-            fw.write(objectMapper.writeValueAsString(eventInfo) + "\n");
-            fw.flush();
-        } catch (FileNotFoundException e) {
-            LOG.error("Can't open file for write: " + eventLogFilePath);
-            throw new RuntimeException(e);
+            try {
+                enqueue(new EventRecord(objectMapper.writeValueAsBytes(eventInfo), eventInfo.getEventId(),
+                        eventInfo.getRootIds()));
+            } catch (IOException e) {
+                LOG.error("Fail to serialize event for output file " + eventLogFilePath + " : exception occurred.", e);
+                throw new RuntimeException(e);
+            }
+        } finally {
+            enqueueing.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of events dropped as they were written after the event logger was closed.
+     */
+    public long getDroppedEventCount() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * Waits until all the events written so far are flushed to the event log file.
+     */
+    public void flush() {
+        FlushRequest request = new FlushRequest();
+        enqueueing.incrementAndGet();
+        try {
+            if (!running) {
+                return;
+            }
+            enqueue(request);
+        } finally {
+            enqueueing.decrementAndGet();
+        }
+        try {
+            if (!request.done.await(FLUSH_WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                LOG.warn("Timed out waiting for events to be flushed to " + eventLogFilePath);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkNoWriteFailure();
+    }
+
+    /**
+     * Writes out the pending events and closes the event log file. Events written afterwards are rejected.
+     */
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        // the threads which saw the logger running enqueue before STOP, the others see it closed
+        while (enqueueing.get() > 0) {
+            Thread.yield();
+        }
+        // written out after the events already queued
+        enqueue(STOP);
+        try {
+            writerThread.join(FLUSH_WAIT_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        long lastFlush = System.currentTimeMillis();
+        boolean unflushed = false;
+        try {
+            while (true) {
+                Object item = queue.poll();
+                if (item == null) {
+                    if (unflushed) {
+                        long untilFlush = lastFlush + FLUSH_INTERVAL_MS - System.currentTimeMillis();
+                        if (untilFlush > 0) {
+                            park(TimeUnit.MILLISECONDS.toNanos(untilFlush));
+                        }
+                    } else {
+                        park(0);
+                    }
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+
+                if (item == STOP) {
+                    break;
+                } else if (item instanceof FlushRequest) {
+                    flushWriters();
+                    unflushed = false;
+                    lastFlush = System.currentTimeMillis();
+                    ((FlushRequest) item).done.countDown();
+                } else if (item != null) {
+                    write((EventRecord) item);
+                    unflushed = true;
+                }
+
+                long now = System.currentTimeMillis();
+                if (unflushed && now - lastFlush >= FLUSH_INTERVAL_MS) {
+                    flushWriters();
+                    unflushed = false;
+                    lastFlush = now;
+                }
+            }
+        } catch (InterruptedException e) {
+            LOG.warn("Writer of event log file " + eventLogFilePath + " interrupted, closing it.");
+            running = false;
         } catch (IOException e) {
             LOG.error("Fail to write event to output file " + eventLogFilePath + " : exception occurred.", e);
-            throw new RuntimeException(e);
+            writeFailure = e;
+            running = false;
+        } finally {
+            try {
+                writer.close();
+                if (indexWriter != null) {
+                    indexWriter.close();
+                }
+            } catch (IOException e) {
+                LOG.error("Fail to close output file " + eventLogFilePath, e);
+            }
+            // release any thread waiting on flush()
+            Object item;
+            while ((item = queue.poll()) != null) {
+                if (item instanceof FlushRequest) {
+                    ((FlushRequest) item).done.countDown();
+                }
+            }
+        }
+    }
+
+    private void enqueue(Object item) {
+        queue.offer(item);
+        if (writerParked) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    // parks the writer thread until an item is enqueued or the timeout elapses, 0 for no timeout. Either an
+    // enqueueing thread sees the writer parked and unparks it, or the writer sees the item before parking.
+    private void park(long timeoutNanos) {
+        writerParked = true;
+        if (queue.isEmpty()) {
+            if (timeoutNanos > 0) {
+                LockSupport.parkNanos(this, timeoutNanos);
+            } else {
+                LockSupport.park(this);
+            }
         }
+        writerParked = false;
     }
 
+    private void write(EventRecord record) throws IOException {
+        writer.write(record.line);
+        writer.write('\n');
+        if (indexWriter != null) {
+            byte[] indexLine = EventLogIndex.toIndexLine(record.eventId, offset, record.line.length, record.rootIds)
+                    .getBytes(EventLogFileReader.ENCODING_UTF_8);
+            if (indexBuffered + indexLine.length > WRITE_BUFFER_SIZE) {
+                // the index buffer would be written out by itself: write out the log first
+                flushWriters();
+            }
+            indexWriter.write(indexLine);
+            indexBuffered += indexLine.length;
+        }
+        offset += record.line.length + 1;
+    }
+
+    // the log is flushed before its index, so that the index never points to records which are not written yet
+    private void flushWriters() throws IOException {
+        writer.flush();
+        if (indexWriter != null) {
+            indexWriter.flush();
+            indexBuffered = 0;
+        }
+    }
+
+    private void checkNoWriteFailure() {
+        if (writeFailure != null) {
+            throw new RuntimeException("Fail to write event to output file " + eventLogFilePath, writeFailure);
+        }
+    }
+
+    private static class EventRecord {
+        final byte[] line;
+        final String eventId;
+        final Set<String> rootIds;
+
+        EventRecord(byte[] line, String eventId, Set<String> rootIds) {
+            this.line = line;
+            this.eventId = eventId;
+            this.rootIds = rootIds;
+        }
+    }
+
+    private static class FlushRequest {
+        final CountDownLatch done = new CountDownLatch(1);
+    }
 }
@@ -27,6 +27,7 @@ import java.util.Map;
 public class TestRunProcessorBolt extends BaseRichBolt {
     private final BaseRichBolt processorBolt;
     private final String eventLogFilePath;
+    private transient TestRunEventLogger eventLogger;
 
     public TestRunProcessorBolt(BaseRichBolt processorBolt, String eventLogFilePath) {
         this.processorBolt = processorBolt;
@@ -35,8 +36,9 @@ public class TestRunProcessorBolt extends BaseRichBolt {
 
     @Override
     public void prepare(Map map, TopologyContext topologyContext, OutputCollector outputCollector) {
+        eventLogger = TestRunEventLogger.getEventLogger(eventLogFilePath);
         EventLoggingOutputCollector collector = new EventLoggingOutputCollector(topologyContext, outputCollector,
-                TestRunEventLogger.getEventLogger(eventLogFilePath));
+                eventLogger);
         processorBolt.prepare(map, topologyContext, collector);
     }
 
@@ -58,6 +60,9 @@ public class TestRunProcessorBolt extends BaseRichBolt {
     @Override
     public void cleanup() {
         processorBolt.cleanup();
+        if (eventLogger != null) {
+            eventLogger.flush();
+        }
     }
 
 }
@@ -20,6 +20,8 @@ import com.google.common.util.concurrent.Uninterruptibles;
 import com.hortonworks.streamline.common.SchemaValueConverter;
 import com.hortonworks.streamline.common.util.Utils;
 import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.FieldIndex;
+import com.hortonworks.streamline.streams.common.IndexedFieldsAndValues;
 import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
 import com.hortonworks.streamline.streams.layout.component.Stream;
 import com.hortonworks.streamline.streams.layout.component.impl.testing.TestRunSource;
@@ -44,6 +46,7 @@ import static java.util.stream.Collectors.toList;
 public class TestRunSourceSpout extends BaseRichSpout {
     private static final Logger LOG = LoggerFactory.getLogger(TestRunSourceSpout.class);
     private EventCorrelatingSpoutOutputCollector collector;
+    private TestRunEventLogger eventLogger;
 
     private final TestRunSource testRunSource;
     private final Map<String, TestRecordsInformation> testRecordsInformationPerOutputStream;
@@ -61,8 +64,10 @@ public class TestRunSourceSpout extends BaseRichSpout {
             Map<String, List<Map<String, Object>>> testRecords = testRunSource.getTestRecordsForEachStream();
             for (Map.Entry<String, List<Map<String, Object>>> entry : testRecords.entrySet()) {
                 List<Map<String, Object>> values = entry.getValue();
+                Stream stream = getOutputStream(entry.getKey());
+                FieldIndex fieldIndex = FieldIndex.of(stream.getSchema());
                 List<Map<String, Object>> schemaConformedValues = values.stream()
-                        .map(v -> convertValueToConformStream(entry.getKey(), v))
+                        .map(v -> convertValueToConformStream(stream, fieldIndex, v))
                         .collect(toList());
 
                 TestRecordsInformation testRecordsInformation = new TestRecordsInformation(
@@ -80,12 +85,19 @@ public class TestRunSourceSpout extends BaseRichSpout {
         }
 
         // it should build the chain of output collector because we are not manipulating chaining of output collector for spouts
+        this.eventLogger = TestRunEventLogger.getEventLogger(testRunSource.getEventLogFilePath());
         this.collector = new EventCorrelatingSpoutOutputCollector(context,
-                new EventLoggingSpoutOutputCollector(context, collector,
-                        TestRunEventLogger.getEventLogger(testRunSource.getEventLogFilePath()))
+                new EventLoggingSpoutOutputCollector(context, collector, eventLogger)
         );
     }
 
+    @Override
+    public void close() {
+        if (eventLogger != null) {
+            eventLogger.flush();
+        }
+    }
+
     @Override
     public void nextTuple() {
         int emitCount = 0;
@@ -147,13 +159,17 @@ public class TestRunSourceSpout extends BaseRichSpout {
         return new Fields(StreamlineEvent.STREAMLINE_EVENT);
     }
 
-    private Map<String, Object> convertValueToConformStream(String streamId, Map<String, Object> value) {
+    private Stream getOutputStream(String streamId) {
         Stream stream = testRunSource.getOutputStream(streamId);
         if (stream == null) {
             throw new IllegalArgumentException("Stream " + streamId + " doesn't exist.");
         }
+        return stream;
+    }
 
-        return SchemaValueConverter.convertMap(stream.getSchema(), value);
+    private Map<String, Object> convertValueToConformStream(Stream stream, FieldIndex fieldIndex, Map<String, Object> value) {
+        // records are conformed to the stream schema, so they can be laid out by the schema's field index
+        return IndexedFieldsAndValues.copyOf(fieldIndex, SchemaValueConverter.convertMap(stream.getSchema(), value));
     }
 
 }
@@ -28,6 +28,7 @@ import java.util.Map;
 public class TestRunWindowProcessorBolt extends BaseWindowedBolt {
     private final BaseWindowedBolt processorBolt;
     private final String eventLogFilePath;
+    private transient TestRunEventLogger eventLogger;
 
     public TestRunWindowProcessorBolt(BaseWindowedBolt processorBolt, String eventLogFilePath) {
         this.processorBolt = processorBolt;
@@ -41,14 +42,18 @@ public class TestRunWindowProcessorBolt extends BaseWindowedBolt {
 
     @Override
     public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        eventLogger = TestRunEventLogger.getEventLogger(eventLogFilePath);
         EventLoggingOutputCollector outputCollector = new EventLoggingOutputCollector(context, collector,
-                TestRunEventLogger.getEventLogger(eventLogFilePath));
+                eventLogger);
         processorBolt.prepare(stormConf, context, outputCollector);
     }
 
     @Override
     public void cleanup() {
         processorBolt.cleanup();
+        if (eventLogger != null) {
+            eventLogger.flush();
+        }
     }
 
     @Override
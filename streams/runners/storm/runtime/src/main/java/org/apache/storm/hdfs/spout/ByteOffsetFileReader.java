@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.storm.hdfs.spout;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * A file reader whose offsets are the byte offset after the last record read and the number of records read, for the
+ * readers of other packages: {@link AbstractFileReader} and {@link FileOffset} are package private.
+ */
+public abstract class ByteOffsetFileReader extends AbstractFileReader {
+
+    public ByteOffsetFileReader(FileSystem fs, Path file) {
+        super(fs, file);
+    }
+
+    @Override
+    public abstract Offset getFileOffset();
+
+    /**
+     * Returns the number of lines read at an offset of the text file reader, for the readers resuming from an offset
+     * committed in that format.
+     */
+    protected static long getLineNumber(TextFileReader.Offset offset) {
+        return offset.lineNumber;
+    }
+
+    /**
+     * e.g. {byte=1024:record=10:}
+     */
+    public static class Offset implements FileOffset {
+        private final long byteOffset;
+        private final long recordNumber;
+
+        public Offset(long byteOffset, long recordNumber) {
+            this.byteOffset = byteOffset;
+            this.recordNumber = recordNumber;
+        }
+
+        public Offset(String offset) {
+            if (offset == null) {
+                throw new IllegalArgumentException("offset cannot be null");
+            }
+            try {
+                if ("0".equals(offset)) {
+                    this.byteOffset = 0;
+                    this.recordNumber = 0;
+                } else {
+                    String[] parts = offset.split(":");
+                    this.byteOffset = Long.parseLong(value(parts[0], "{byte"));
+                    this.recordNumber = Long.parseLong(value(parts[1], "record"));
+                }
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("'" + offset + "' cannot be interpreted. It is not in expected format"
+                        + " for ByteOffsetFileReader. Format e.g. {byte=1024:record=10:}", e);
+            }
+            if (byteOffset < 0 || recordNumber < 0) {
+                throw new IllegalArgumentException("Negative offset '" + offset + "'");
+            }
+        }
+
+        private static String value(String part, String name) {
+            String[] nameValue = part.split("=");
+            if (nameValue.length != 2 || !nameValue[0].equals(name)) {
+                throw new IllegalArgumentException("Expected " + name + "=<value>, got " + part);
+            }
+            return nameValue[1];
+        }
+
+        public long getByteOffset() {
+            return byteOffset;
+        }
+
+        public long getRecordNumber() {
+            return recordNumber;
+        }
+
+        @Override
+        public boolean isNextOffset(FileOffset rhs) {
+            if (rhs instanceof Offset) {
+                Offset other = (Offset) rhs;
+                return other.byteOffset > byteOffset && other.recordNumber == recordNumber + 1;
+            }
+            return false;
+        }
+
+        @Override
+        public int compareTo(FileOffset rhs) {
+            return Long.compare(recordNumber, ((Offset) rhs).recordNumber);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Offset)) {
+                return false;
+            }
+            Offset other = (Offset) o;
+            return byteOffset == other.byteOffset && recordNumber == other.recordNumber;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(byteOffset) + Long.hashCode(recordNumber);
+        }
+
+        @Override
+        public Offset clone() {
+            return new Offset(byteOffset, recordNumber);
+        }
+
+        @Override
+        public String toString() {
+            return "{byte=" + byteOffset + ":record=" + recordNumber + ":}";
+        }
+    }
+}
@@ -37,6 +37,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
 
@@ -101,6 +103,56 @@ public class AvroStreamsSnapshotDeserializerTest {
         }
     }
 
+    @Test
+    public void testReaderSchemaVersion() throws Exception {
+        final Schema writerSchema;
+        final Schema readerSchema;
+        try (InputStream writerSchemaStream = AvroStreamsSnapshotDeserializerTest.class.getResourceAsStream("/avro/complex.avsc");
+             InputStream readerSchemaStream = AvroStreamsSnapshotDeserializerTest.class.getResourceAsStream("/avro/complex-evolved.avsc")) {
+            writerSchema = new Schema.Parser().parse(writerSchemaStream);
+            readerSchema = new Schema.Parser().parse(readerSchemaStream);
+        }
+
+        CustomAvroSerializer customAvroSerializer = new CustomAvroSerializer();
+        customAvroSerializer.init(Collections.singletonMap("serdes.protocol.version", (byte) 1));
+        GenericRecord inputRecord = generateGenericRecord(writerSchema);
+        byte[] serializedBytes = customAvroSerializer.customSerialize(inputRecord);
+
+        SchemaMetadata schemaMetadata = new SchemaMetadata.Builder("topic-1").type("avro").schemaGroup("kafka").build();
+
+        new Expectations() {
+            {
+                mockSchemaRegistryClient.getSchemaVersionInfo(withEqual(SCHEMA_ID_VERSION));
+                result = new SchemaVersionInfo(1l, schemaMetadata.getName(), SCHEMA_ID_VERSION.getVersion(), "doesNotMatter",1l, "doesNotMatter");
+                mockSchemaRegistryClient.getSchemaMetadataInfo(withEqual(schemaMetadata.getName()));
+                result = new SchemaMetadataInfo(schemaMetadata);
+            }
+        };
+
+        AvroStreamsSnapshotDeserializer avroStreamsSnapshotDeserializer = new AvroStreamsSnapshotDeserializer() {
+            @Override
+            protected Schema getSchema(SchemaVersionKey schemaVersionKey) {
+                return schemaVersionKey.getVersion() == 1 ? writerSchema : readerSchema;
+            }
+        };
+
+        Map<String, String> config = Collections.singletonMap(SchemaRegistryClient.Configuration.SCHEMA_REGISTRY_URL.name(),
+                                                              "http://localhost:8080/api/v1");
+        avroStreamsSnapshotDeserializer.init(config);
+
+        // decoded twice, the second time with the decoder of the schema versions already resolved
+        for (int i = 0; i < 2; i++) {
+            Map<String, Object> map = (Map<String, Object>) avroStreamsSnapshotDeserializer.deserialize(new ByteArrayInputStream(serializedBytes), 2);
+
+            Assert.assertEquals(Arrays.asList("xid", "version", "model", "name", "suit"), new ArrayList<>(map.keySet()));
+            Assert.assertEquals(inputRecord.get("xid"), map.get("xid"));
+            Assert.assertEquals(1L, map.get("version"));
+            Assert.assertEquals("unknown", map.get("model"));
+            Assert.assertEquals(inputRecord.get("name"), map.get("name"));
+            Assert.assertEquals("SPADES", map.get("suit"));
+        }
+    }
+
     private GenericRecord generateGenericRecord(Schema schema) {
         GenericRecord addressRecord = new GenericData.Record(schema.getField("address").schema());
         long now = System.currentTimeMillis();
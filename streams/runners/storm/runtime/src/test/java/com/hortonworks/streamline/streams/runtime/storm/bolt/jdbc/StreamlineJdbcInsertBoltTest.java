@@ -0,0 +1,234 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.jdbc;
+
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.apache.storm.Config;
+import org.apache.storm.Constants;
+import org.apache.storm.jdbc.common.Column;
+import org.apache.storm.jdbc.common.ConnectionProvider;
+import org.apache.storm.jdbc.mapper.JdbcMapper;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.tuple.ITuple;
+import org.apache.storm.tuple.Tuple;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JMockit.class)
+public class StreamlineJdbcInsertBoltTest {
+    private static final String JDBC_URL = "jdbc:h2:mem:jdbcinsertbolttest";
+
+    private @Injectable OutputCollector mockOutputCollector;
+    private @Injectable TopologyContext mockTopologyContext;
+    private @Injectable Tuple tuple1;
+    private @Injectable Tuple tuple2;
+    private @Injectable Tuple tuple3;
+    private @Injectable Tuple tickTuple;
+
+    // keeps the in-memory database until the test is done
+    private Connection connection;
+    private H2ConnectionProvider connectionProvider;
+
+    @Before
+    public void setup() throws Exception {
+        connection = DriverManager.getConnection(JDBC_URL);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE users (id INT PRIMARY KEY, name VARCHAR(32))");
+        }
+        connectionProvider = new H2ConnectionProvider();
+        new Expectations() {{
+            tuple1.getValueByField("id"); result = 1; minTimes = 0;
+            tuple1.getValueByField("name"); result = "alice"; minTimes = 0;
+            tuple2.getValueByField("id"); result = 2; minTimes = 0;
+            tuple2.getValueByField("name"); result = null; minTimes = 0;
+            tuple3.getValueByField("id"); result = 3; minTimes = 0;
+            tuple3.getValueByField("name"); result = "carol"; minTimes = 0;
+            tickTuple.getSourceComponent(); result = Constants.SYSTEM_COMPONENT_ID; minTimes = 0;
+            tickTuple.getSourceStreamId(); result = Constants.SYSTEM_TICK_STREAM_ID; minTimes = 0;
+        }};
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE users");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void testWritesEachTupleByDefault() throws Exception {
+        StreamlineJdbcInsertBolt bolt = bolt();
+
+        bolt.execute(tuple1);
+        assertEquals(1, count());
+        bolt.execute(tuple2);
+        assertEquals(2, count());
+
+        new Verifications() {{
+            mockOutputCollector.ack(tuple1); times = 1;
+            mockOutputCollector.ack(tuple2); times = 1;
+            mockOutputCollector.fail((Tuple) any); times = 0;
+        }};
+        assertNull(bolt.getComponentConfiguration());
+        bolt.cleanup();
+    }
+
+    @Test
+    public void testWritesFullBatches() throws Exception {
+        StreamlineJdbcInsertBolt bolt = bolt().withBatchSize(2).withLingerMillis(60000);
+
+        bolt.execute(tuple1);
+        assertEquals(0, count());
+        bolt.execute(tuple2);
+        assertEquals(2, count());
+        bolt.execute(tuple3);
+        assertEquals(2, count());
+
+        new Verifications() {{
+            mockOutputCollector.ack(tuple1); times = 1;
+            mockOutputCollector.ack(tuple2); times = 1;
+            mockOutputCollector.ack(tuple3); times = 0;
+        }};
+        assertEquals(60, bolt.getComponentConfiguration().get(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS));
+        bolt.cleanup();
+    }
+
+    @Test
+    public void testWritesLingeringBatchOnTick() throws Exception {
+        StreamlineJdbcInsertBolt bolt = bolt().withBatchSize(10).withLingerMillis(50);
+
+        bolt.execute(tuple1);
+        bolt.execute(tickTuple);
+        assertEquals(0, count());
+        Thread.sleep(100);
+        bolt.execute(tickTuple);
+        assertEquals(1, count());
+
+        new Verifications() {{
+            mockOutputCollector.ack(tuple1); times = 1;
+        }};
+        assertEquals(1, bolt.getComponentConfiguration().get(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS));
+        bolt.cleanup();
+    }
+
+    @Test
+    public void testFailsWholeBatchOnError() throws Exception {
+        StreamlineJdbcInsertBolt bolt = bolt().withBatchSize(2).withLingerMillis(60000);
+
+        // the duplicate key fails the batch, rolling back the first row
+        bolt.execute(tuple1);
+        bolt.execute(tuple1);
+        assertEquals(0, count());
+        // the next batch is written on a new connection
+        bolt.execute(tuple2);
+        bolt.execute(tuple3);
+        assertEquals(2, count());
+
+        new Verifications() {{
+            mockOutputCollector.fail(tuple1); times = 2;
+            mockOutputCollector.reportError((Throwable) any); times = 1;
+            mockOutputCollector.ack(tuple2); times = 1;
+            mockOutputCollector.ack(tuple3); times = 1;
+        }};
+        bolt.cleanup();
+    }
+
+    @Test
+    public void testGivesConnectionBackAfterEachBatch() throws Exception {
+        StreamlineJdbcInsertBolt bolt = bolt();
+
+        bolt.execute(tuple1);
+        bolt.execute(tuple2);
+        // each batch takes a connection from the pool, which validates it, and closes it to give it back
+        assertEquals(2, connectionProvider.connections.size());
+        for (Connection connection : connectionProvider.connections) {
+            assertTrue(connection.isClosed());
+        }
+        assertEquals(2, count());
+        bolt.cleanup();
+    }
+
+    private StreamlineJdbcInsertBolt bolt() {
+        StreamlineJdbcInsertBolt bolt = new StreamlineJdbcInsertBolt(connectionProvider, new UserMapper())
+                .withTableName("users");
+        Map<String, Object> stormConf = new HashMap<>();
+        stormConf.put(Config.TOPOLOGY_MESSAGE_TIMEOUT_SECS, 30);
+        bolt.prepare(stormConf, mockTopologyContext, mockOutputCollector);
+        return bolt;
+    }
+
+    private int count() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM users")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static class H2ConnectionProvider implements ConnectionProvider {
+        private final List<Connection> connections = new ArrayList<>();
+
+        @Override
+        public void prepare() {
+        }
+
+        @Override
+        public Connection getConnection() {
+            try {
+                Connection connection = DriverManager.getConnection(JDBC_URL);
+                connections.add(connection);
+                return connection;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void cleanup() {
+        }
+    }
+
+    private static class UserMapper implements JdbcMapper {
+        @Override
+        public List<Column> getColumns(ITuple tuple) {
+            return Arrays.asList(new Column<>("id", tuple.getValueByField("id"), Types.INTEGER),
+                    new Column<>("name", tuple.getValueByField("name"), Types.VARCHAR));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hortonworks.registries.common.Schema;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.layout.component.Stream;
+import com.hortonworks.streamline.streams.layout.component.impl.model.ModelProcessor;
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.apache.commons.io.IOUtils;
+import org.apache.storm.Config;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.tuple.Values;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+@RunWith(JMockit.class)
+public class StreamlinePMMLPredictorBoltTest {
+    private static final String OUTPUT_STREAM = "scored";
+
+    private @Injectable OutputCollector mockOutputCollector;
+    private @Injectable TopologyContext mockTopologyContext;
+    private @Injectable Tuple tuple1;
+    private @Injectable Tuple tuple2;
+    private @Injectable Tuple tuple3;
+
+    private StreamlinePMMLPredictorBolt bolt;
+
+    @Before
+    public void setup() throws Exception {
+        ModelProcessor modelProcessor = new ModelProcessor();
+        modelProcessor.setId("1");
+        modelProcessor.setPmml(IOUtils.toString(getClass().getResourceAsStream("/model/linear-regression.pmml"),
+                StandardCharsets.UTF_8));
+        // passes x and a through, leaving out b
+        modelProcessor.addOutputStream(new Stream(OUTPUT_STREAM, Schema.of(
+                Schema.Field.of("x", Schema.Type.DOUBLE), Schema.Field.of("y", Schema.Type.DOUBLE),
+                Schema.Field.of("a", Schema.Type.STRING))));
+        String modelProcessorJson = new ObjectMapper().writeValueAsString(modelProcessor);
+        StreamlineEventModelOutputs modelOutputs = new StreamlineEventModelOutputs(modelProcessor);
+        bolt = new StreamlinePMMLPredictorBolt(
+                new StreamlineJPMMLModelRunnerFactory(modelProcessorJson, modelOutputs), modelOutputs);
+
+        new Expectations() {{
+            mockTopologyContext.getThisComponentId(); result = "1-pmml"; minTimes = 0;
+            tuple1.getValueByField(StreamlineEvent.STREAMLINE_EVENT); result = event(1.0, "a1"); minTimes = 0;
+            tuple1.contains(StreamlineEvent.STREAMLINE_EVENT); result = true; minTimes = 0;
+            tuple2.getValueByField(StreamlineEvent.STREAMLINE_EVENT); result = event(2.0, "a2"); minTimes = 0;
+            tuple2.contains(StreamlineEvent.STREAMLINE_EVENT); result = true; minTimes = 0;
+            tuple3.getValueByField(StreamlineEvent.STREAMLINE_EVENT); result = event(3.0, "a3"); minTimes = 0;
+            tuple3.contains(StreamlineEvent.STREAMLINE_EVENT); result = true; minTimes = 0;
+        }};
+    }
+
+    @Test
+    public void testScoreEachTuple() throws Exception {
+        assertNull(bolt.getComponentConfiguration());
+        bolt.prepare(new HashMap(), mockTopologyContext, mockOutputCollector);
+        bolt.execute(tuple1);
+        bolt.execute(tuple2);
+
+        List<Values> emitted = new ArrayList<>();
+        new Verifications() {{
+            mockOutputCollector.emit(OUTPUT_STREAM, withAny(tuple1), withCapture(emitted)); times = 2;
+            mockOutputCollector.ack(tuple1); times = 1;
+            mockOutputCollector.ack(tuple2); times = 1;
+        }};
+        assertScored(emitted.get(0), 1.0, "a1");
+        assertScored(emitted.get(1), 2.0, "a2");
+    }
+
+    @Test
+    public void testScoreBatches() throws Exception {
+        bolt.withBatchSize(2).withFlushIntervalSecs(5);
+        assertEquals(5, bolt.getComponentConfiguration().get(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS));
+        bolt.prepare(new HashMap(), mockTopologyContext, mockOutputCollector);
+        bolt.execute(tuple1);
+        new Verifications() {{
+            mockOutputCollector.emit(anyString, withAny(tuple1), withAny(new Values())); times = 0;
+            mockOutputCollector.ack(withAny(tuple1)); times = 0;
+        }};
+
+        bolt.execute(tuple2);
+        bolt.execute(tuple3);
+        new Verifications() {{
+            mockOutputCollector.ack(tuple3); times = 0;
+        }};
+        // the incomplete batch is scored on the tick tuple
+        bolt.onTickTuple(tuple3);
+
+        List<Values> emitted = new ArrayList<>();
+        new Verifications() {{
+            mockOutputCollector.emit(OUTPUT_STREAM, withAny(tuple1), withCapture(emitted)); times = 3;
+            mockOutputCollector.ack(tuple1); times = 1;
+            mockOutputCollector.ack(tuple2); times = 1;
+            mockOutputCollector.ack(tuple3); times = 1;
+        }};
+        assertScored(emitted.get(0), 1.0, "a1");
+        assertScored(emitted.get(1), 2.0, "a2");
+        assertScored(emitted.get(2), 3.0, "a3");
+    }
+
+    private static void assertScored(Values values, double x, String a) {
+        StreamlineEvent event = (StreamlineEvent) values.get(0);
+        assertEquals(2 * x + 1, (Double) event.get("y"), 0.0001);
+        assertEquals(x, event.get("x"));
+        assertEquals(a, event.get("a"));
+        assertFalse(event.containsKey("b"));
+    }
+
+    private static StreamlineEvent event(double x, String a) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("x", x);
+        fields.put("a", a);
+        fields.put("b", "not projected");
+        return StreamlineEventImpl.builder().fieldsAndValues(fields).dataSourceId("source").build();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.hortonworks.streamline.streams.runtime.storm.bolt.query;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestJoinKey {
+
+    @Test
+    public void testSingleIntegralKeys() throws Exception {
+        JoinKey intKey = JoinKey.of(21);
+        JoinKey longKey = JoinKey.of(21L);
+        Assert.assertTrue(intKey instanceof JoinKey.LongKey);
+        Assert.assertEquals(intKey, longKey);
+        Assert.assertEquals(intKey.hashCode(), longKey.hashCode());
+        Assert.assertNotEquals(JoinKey.of(21), JoinKey.of(22));
+    }
+
+    @Test
+    public void testStringAndNumericKeys() throws Exception {
+        // values with the same string representation join, as they did with string keys
+        Assert.assertEquals(JoinKey.of(21), JoinKey.of("21"));
+        Assert.assertEquals(JoinKey.of(21).hashCode(), JoinKey.of("21").hashCode());
+        Assert.assertEquals(JoinKey.of(-21L), JoinKey.of("-21"));
+        Assert.assertEquals(JoinKey.of(Long.MIN_VALUE), JoinKey.of(Long.toString(Long.MIN_VALUE)));
+        Assert.assertEquals(JoinKey.of(2.5), JoinKey.of("2.5"));
+        Assert.assertEquals(JoinKey.of(true), JoinKey.of("true"));
+        Assert.assertEquals(JoinKey.of(new Object[]{21, "book"}), JoinKey.of(new Object[]{"21", "book"}));
+        // and values with different string representations don't
+        Assert.assertNotEquals(JoinKey.of(21), JoinKey.of("021"));
+        Assert.assertNotEquals(JoinKey.of(0), JoinKey.of("-0"));
+        Assert.assertNotEquals(JoinKey.of(21), JoinKey.of(21.0));
+        Assert.assertEquals(JoinKey.of("9223372036854775808"), JoinKey.of("9223372036854775808"));
+        Assert.assertTrue(JoinKey.of("9223372036854775808") instanceof JoinKey.ObjectKey);
+    }
+
+    @Test
+    public void testFloatingPointKeys() throws Exception {
+        Assert.assertTrue(JoinKey.of(2.5) instanceof JoinKey.DoubleKey);
+        Assert.assertTrue(JoinKey.of("2.5") instanceof JoinKey.DoubleKey);
+        Assert.assertEquals(JoinKey.of(2.5).hashCode(), JoinKey.of("2.5").hashCode());
+        Assert.assertEquals(JoinKey.of(0.1f), JoinKey.of(0.1));
+        Assert.assertEquals(JoinKey.of(1.0E10), JoinKey.of("1.0E10"));
+        Assert.assertEquals(JoinKey.of(Double.NaN), JoinKey.of("NaN"));
+        Assert.assertEquals(JoinKey.of(new Object[]{2.5, "book"}), JoinKey.of(new Object[]{"2.5", "book"}));
+        // not the canonical string of the double
+        Assert.assertNotEquals(JoinKey.of(2.5), JoinKey.of("2.50"));
+        Assert.assertNotEquals(JoinKey.of(1.0E10), JoinKey.of("10000000000.0"));
+        Assert.assertTrue(JoinKey.of("1.2.3") instanceof JoinKey.ObjectKey);
+        Assert.assertNotEquals(JoinKey.of(0.0), JoinKey.of(-0.0));
+    }
+
+    @Test
+    public void testIgnoreCaseKeys() throws Exception {
+        Cmp.IgnoreCase cmp = Cmp.ignoreCase("a:x", "b:x");
+        Assert.assertEquals(JoinKey.of(cmp.getKeyValue("Book")), JoinKey.of(cmp.getKeyValue("bOOK")));
+        // equal ignoring case, while their lower cases differ
+        Assert.assertTrue("\u0130".equalsIgnoreCase("i"));
+        Assert.assertEquals(cmp.getKeyValue("\u0130"), cmp.getKeyValue("i"));
+        Assert.assertTrue("\u03a3".equalsIgnoreCase("\u03c2"));
+        Assert.assertEquals(cmp.getKeyValue("O\u03a3"), cmp.getKeyValue("o\u03c2"));
+        Assert.assertNotEquals(cmp.getKeyValue("book"), cmp.getKeyValue("books"));
+        String folded = "book";
+        Assert.assertSame(folded, Cmp.IgnoreCase.foldCase(folded));
+    }
+
+    @Test
+    public void testCompositeKeys() throws Exception {
+        Assert.assertEquals(JoinKey.of(new Object[]{21, "book"}), JoinKey.of(new Object[]{21L, "book"}));
+        Assert.assertEquals(JoinKey.of(new Object[]{21, "book"}).hashCode(), JoinKey.of(new Object[]{21L, "book"}).hashCode());
+        Assert.assertNotEquals(JoinKey.of(new Object[]{21, "book"}), JoinKey.of(new Object[]{"book", 21}));
+        Assert.assertEquals(JoinKey.of(new Object[]{"book"}), JoinKey.of("book"));
+    }
+
+    @Test
+    public void testDotCollision() throws Exception {
+        // these keys used to be concatenated to the same "a.b.c." string
+        JoinKey key1 = JoinKey.of(new Object[]{"a.b", "c"});
+        JoinKey key2 = JoinKey.of(new Object[]{"a", "b.c"});
+        Assert.assertNotEquals(key1, key2);
+        Assert.assertNotEquals(JoinKey.of(new Object[]{"a.", "b"}), JoinKey.of(new Object[]{"a", ".b"}));
+        Assert.assertNotEquals(JoinKey.of(new Object[]{1, "2.3"}), JoinKey.of(new Object[]{"1.2", 3}));
+    }
+}
@@ -58,6 +58,16 @@ public class TestRealtimeJoinBolt {
             {16, 31, "mattress" , 900},  //  this has no match whatsoever in adImpressions
     };
 
+    String[] userFields = {"userId", "name"};
+
+    Object[][] users = {
+            {21, "roshan"},
+            {22, "harsha"},
+            {30, "satish"},
+            {31, "arun"},     //  has an order but no adImpression
+            {40, "sriharsha"} //  has neither an order nor an adImpression
+    };
+
 
 
     @Test
@@ -146,6 +156,196 @@ public class TestRealtimeJoinBolt {
         Assert.assertEquals( 4, collector.actualResults.size() );
     }
 
+    @Test
+    public void testThreeWay_InnerJoin_TimeRetention() throws Exception {
+        ArrayList<Tuple> orderStream = makeStream("orders", orderFields, orders);
+        ArrayList<Tuple> adImpressionStream = makeStream("ads", adImpressionFields, adImpressions);
+        ArrayList<Tuple> userStream = makeStream("users", userFields, users);
+
+        RealtimeJoinBolt bolt = new RealtimeJoinBolt(RealtimeJoinBolt.StreamKind.STREAM)
+                .from("orders", Duration.ofSeconds(2), false)
+                .innerJoin("ads", Duration.ofSeconds(2), false, Cmp.equal("userId", "orders:userId"))
+                .innerJoin("users", Duration.ofSeconds(2), false, Cmp.equal("userId", "orders:userId"))
+                .select("orders:id, ads:id, users:name, orders:product, price");
+
+        MockTopologyContext context = new MockTopologyContext(bolt.getOutputFields());
+        MockCollector collector = new MockCollector(bolt.getOutputFields());
+        bolt.prepare(null, context, collector);
+
+        for (Tuple tuple : userStream) {
+            bolt.execute(tuple);
+        }
+        for (Tuple tuple : orderStream) {
+            bolt.execute(tuple);
+        }
+        Assert.assertEquals( 0, collector.actualResults.size() );
+        for (Tuple tuple : adImpressionStream) {
+            bolt.execute(tuple);
+        }
+
+        printResults(collector);
+        // users 21, 22 & 30 have both an order and an adImpression. Each match is emitted once with all the tuples as anchors
+        Assert.assertEquals( 3, collector.actualResults.size() );
+        Assert.assertEquals( Arrays.asList(11, 1, "roshan", "book", 71), collector.actualResults.get(0) );
+        for (Collection<Tuple> anchors : collector.actualAnchors) {
+            Assert.assertEquals( 3, anchors.size() );
+        }
+    }
+
+    @Test
+    public void testThreeWay_ChainedInnerJoin_CountRetention() throws Exception {
+        ArrayList<Tuple> orderStream = makeStream("orders", orderFields, orders);
+        ArrayList<Tuple> adImpressionStream = makeStream("ads", adImpressionFields, adImpressions);
+        ArrayList<Tuple> userStream = makeStream("users", userFields, users);
+
+        // users are joined to ads instead of orders
+        RealtimeJoinBolt bolt = new RealtimeJoinBolt(RealtimeJoinBolt.StreamKind.STREAM)
+                .from("orders", 10, false)
+                .innerJoin("ads", 10, false, Cmp.equal("ads:userId", "orders:userId"))
+                .innerJoin("users", 10, false, Cmp.equal("users:userId", "ads:userId"))
+                .select("orders:id, ads:id, users:name, orders:product, price");
+
+        MockTopologyContext context = new MockTopologyContext(bolt.getOutputFields());
+        MockCollector collector = new MockCollector(bolt.getOutputFields());
+        bolt.prepare(null, context, collector);
+
+        for (Tuple tuple : adImpressionStream) {
+            bolt.execute(tuple);
+        }
+        for (Tuple tuple : orderStream) {
+            bolt.execute(tuple);
+        }
+        for (Tuple tuple : userStream) {
+            bolt.execute(tuple);
+        }
+
+        printResults(collector);
+        Assert.assertEquals( 3, collector.actualResults.size() );
+    }
+
+    @Test
+    public void testThreeWay_LeftJoin_CountRetention() throws Exception {
+        ArrayList<Tuple> orderStream = makeStream("orders", orderFields, orders);
+        ArrayList<Tuple> adImpressionStream = makeStream("ads", adImpressionFields, adImpressions);
+        ArrayList<Tuple> userStream = makeStream("users", userFields, users);
+
+        RealtimeJoinBolt bolt = new RealtimeJoinBolt(RealtimeJoinBolt.StreamKind.STREAM)
+                .from("users", 1, false)
+                .leftJoin("orders", 10, false, Cmp.equal("orders:userId", "users:userId"))
+                .innerJoin("ads", 10, false, Cmp.equal("ads:userId", "orders:userId"))
+                .select("users:name, orders:id, ads:id");
+
+        MockTopologyContext context = new MockTopologyContext(bolt.getOutputFields());
+        MockCollector collector = new MockCollector(bolt.getOutputFields());
+        bolt.prepare(null, context, collector);
+
+        for (Tuple tuple : adImpressionStream) {
+            bolt.execute(tuple);
+        }
+        for (Tuple tuple : orderStream) {
+            bolt.execute(tuple);
+        }
+        for (Tuple tuple : userStream) {
+            bolt.execute(tuple);
+        }
+
+        printResults(collector);
+        // 3 complete matches and the unmatched user 31, expired by user 40 as 'users' retains only the latest user
+        Assert.assertEquals( 4, collector.actualResults.size() );
+        Assert.assertEquals( Arrays.asList("arun", null, null), collector.actualResults.get(3) );
+    }
+
+    @Test
+    public void testMultiKey_InnerJoin_DotsInKeyValues() throws Exception {
+        String[] fields = {"id", "k1", "k2"};
+        // ("a.b","c") and ("a","b.c") used to collide, as the key values were joined with '.'
+        Object[][] left = { {1, "a.b", "c"}, {2, "x", "y"} };
+        Object[][] right = { {3, "a", "b.c"}, {4, "x", "y"}, {5, "a.b.", ""} };
+        ArrayList<Tuple> leftStream = makeStream("left", fields, left);
+        ArrayList<Tuple> rightStream = makeStream("right", fields, right);
+
+        RealtimeJoinBolt bolt = new RealtimeJoinBolt(RealtimeJoinBolt.StreamKind.STREAM)
+                .from("left", 10, false)
+                .innerJoin("right", 10, false, Cmp.equal("right:k1", "left:k1"), Cmp.equal("right:k2", "left:k2"))
+                .select("left:id, right:id");
+
+        MockTopologyContext context = new MockTopologyContext(bolt.getOutputFields());
+        MockCollector collector = new MockCollector(bolt.getOutputFields());
+        bolt.prepare(null, context, collector);
+
+        for (Tuple tuple : leftStream) {
+            bolt.execute(tuple);
+        }
+        for (Tuple tuple : rightStream) {
+            bolt.execute(tuple);
+        }
+
+        printResults(collector);
+        Assert.assertEquals( 1, collector.actualResults.size() );
+        Assert.assertEquals( Arrays.asList(2, 4), collector.actualResults.get(0) );
+    }
+
+    @Test
+    public void testSingleKey_InnerJoin_StringAndIntegerKeys() throws Exception {
+        String[] fields = {"id", "userId"};
+        // the key is a String in one stream and an Integer in the other
+        ArrayList<Tuple> leftStream = makeStream("left", fields, new Object[][]{ {1, "7"}, {2, "08"} });
+        ArrayList<Tuple> rightStream = makeStream("right", fields, new Object[][]{ {3, 7}, {4, 8} });
+
+        RealtimeJoinBolt bolt = new RealtimeJoinBolt(RealtimeJoinBolt.StreamKind.STREAM)
+                .from("left", 10, false)
+                .innerJoin("right", 10, false, Cmp.equal("right:userId", "left:userId"))
+                .select("left:id, right:id");
+
+        MockTopologyContext context = new MockTopologyContext(bolt.getOutputFields());
+        MockCollector collector = new MockCollector(bolt.getOutputFields());
+        bolt.prepare(null, context, collector);
+
+        for (Tuple tuple : leftStream) {
+            bolt.execute(tuple);
+        }
+        for (Tuple tuple : rightStream) {
+            bolt.execute(tuple);
+        }
+
+        printResults(collector);
+        Assert.assertEquals( 1, collector.actualResults.size() );
+        Assert.assertEquals( Arrays.asList(1, 3), collector.actualResults.get(0) );
+    }
+
+    @Test
+    public void testSingleKey_InnerJoin_IgnoreCase() throws Exception {
+        String[] fields = {"id", "product"};
+        ArrayList<Tuple> leftStream = makeStream("left", fields, new Object[][]{ {1, "Book"}, {2, "tv"} });
+        ArrayList<Tuple> rightStream = makeStream("right", fields, new Object[][]{ {3, "BOOK"}, {4, "Tv"}, {5, "chair"} });
+
+        RealtimeJoinBolt bolt = new RealtimeJoinBolt(RealtimeJoinBolt.StreamKind.STREAM)
+                .from("left", 10, false)
+                .innerJoin("right", 10, false, Cmp.ignoreCase("right:product", "left:product"))
+                .select("left:id, right:id");
+
+        MockTopologyContext context = new MockTopologyContext(bolt.getOutputFields());
+        MockCollector collector = new MockCollector(bolt.getOutputFields());
+        bolt.prepare(null, context, collector);
+
+        for (Tuple tuple : leftStream) {
+            bolt.execute(tuple);
+        }
+        for (Tuple tuple : rightStream) {
+            bolt.execute(tuple);
+        }
+
+        printResults(collector);
+        Assert.assertEquals( 2, collector.actualResults.size() );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJoinWithUndeclaredStream() throws Exception {
+        new RealtimeJoinBolt(RealtimeJoinBolt.StreamKind.STREAM)
+                .from("orders", 10, false)
+                .innerJoin("ads", 10, false, Cmp.equal("ads:userId", "users:userId"));
+    }
+
     // adds rec to streamRecs
     private static void appendToStream(ArrayList<Tuple> streamRecs, Object[] rec, String[] fieldNames, String streamName) {
         streamRecs.add( new TupleImpl(new MockTopologyContext(fieldNames), Arrays.asList(rec), 0, streamName) );
@@ -452,6 +652,7 @@ public class TestRealtimeJoinBolt {
         private final String[] outputFields;
 
         public ArrayList<List<Object>> actualResults = new ArrayList<>();
+        public ArrayList<Collection<Tuple>> actualAnchors = new ArrayList<>();
 
         public MockCollector(String[] outputFields) {
             super(null);
@@ -462,6 +663,7 @@ public class TestRealtimeJoinBolt {
         @Override
         public List<Integer> emit(Collection<Tuple> anchors, List<Object> tuple) {
             actualResults.add(tuple);
+            actualAnchors.add(anchors);
             return Collections.singletonList(1);
         }
 
@@ -0,0 +1,403 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.hortonworks.streamline.streams.runtime.storm.bolt.query;
+
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.MessageId;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.tuple.TupleImpl;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class TestSegmentedFileJoinStateBackend {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    String[] adImpressionFields = {"id", "userId", "product"};
+
+    Object[][] adImpressions = {
+            {1, 21, "book" },
+            {2, 22, "watch" },
+            {3, 23, "chair" },
+            {4, 24, "tv" },
+            {5, 25, "watch" },
+            {6, 26, "camera" },
+            {7, 27, "book" },
+            {8, 28, "tv" },
+            {9, 29, "camera" },
+            {10,30, "tv" } };
+
+    String[] orderFields = {"id", "userId", "product", "price"};
+
+    Object[][] orders = {
+            {11, 21, "book"  , 71},
+            {12, 22, "watch" , 330},
+            {13, 23, "chair" , 500},
+            {14, 32, "tv"    , 2000},
+            {15, 30, "watch" , 400},
+            {16, 31, "mattress" , 900},
+    };
+
+    @Test
+    public void testInnerJoin_CountRetention_SameResultsAsHeap() throws Exception {
+        MockContext context = new MockContext();
+        ArrayList<Tuple> orderStream = makeStream(context, "orders", orderFields, orders);
+        ArrayList<Tuple> adImpressionStream = makeStream(context, "ads", adImpressionFields, adImpressions);
+
+        MockCollector heapCollector = run(makeInnerJoinBolt(), context, adImpressionStream, orderStream);
+
+        // tiny segments, so that segments are sealed and dropped while the test runs
+        RealtimeJoinBolt bolt = makeInnerJoinBolt()
+                .withStateBackend(new SegmentedFileJoinStateBackend(tmp.getRoot().getPath(), 64));
+        MockCollector fileCollector = run(bolt, context, adImpressionStream, orderStream);
+
+        Assert.assertEquals( 4, fileCollector.actualResults.size() );
+        Assert.assertEquals( heapCollector.actualResults, fileCollector.actualResults );
+        // results are anchored to the joined tuples, also when they are read back from disk
+        Assert.assertEquals( messageIds(heapCollector.anchors), messageIds(fileCollector.anchors) );
+        Assert.assertEquals( Arrays.asList(orderStream.get(0).getMessageId(), adImpressionStream.get(0).getMessageId()),
+                fileCollector.anchors.get(0).stream().map(Tuple::getMessageId).collect(Collectors.toList()) );
+
+        // tuples are held until they leave the retention window, as with the heap state
+        Assert.assertEquals( 0, heapCollector.acked.size() );
+        Assert.assertEquals( 0, fileCollector.acked.size() );
+        Assert.assertTrue( countSegmentFiles() <= 6 + 10 );
+
+        bolt.cleanup();
+        Assert.assertEquals( 0, countSegmentFiles() );
+    }
+
+    @Test
+    public void testLeftJoin_TimeRetention_EmitsUnmatchedFromDisk() throws Exception {
+        MockContext context = new MockContext();
+        ArrayList<Tuple> orderStream = makeStream(context, "orders", orderFields, orders);
+        ArrayList<Tuple> adImpressionStream = makeStream(context, "ads", adImpressionFields, adImpressions);
+
+        RealtimeJoinBolt bolt = new RealtimeJoinBolt(RealtimeJoinBolt.StreamKind.STREAM)
+                .from("ads", Duration.ofSeconds(1), false)
+                .leftJoin("orders", Duration.ofSeconds(2), false, Cmp.equal("userId", "ads:userId"))
+                .select("ads:id, orders:id, ads:userId, ads:product, orders:product, price")
+                .withStateBackend(new SegmentedFileJoinStateBackend(tmp.getRoot().getPath(), 128));
+        MockCollector collector = run(bolt, context, orderStream, adImpressionStream);
+        Assert.assertEquals( 4, collector.actualResults.size() );
+
+        Thread.sleep( Duration.ofSeconds(2).toMillis() );
+        bolt.execute(new TestRealtimeJoinBolt().makeTickTuple());
+
+        // every ad is emitted once, either joined or on its own after expiring
+        Assert.assertEquals( adImpressionStream.size(), collector.actualResults.size() );
+        Assert.assertEquals( Arrays.asList(4, null, 24, "tv", null, null), collector.actualResults.get(4) );
+        Assert.assertEquals( Collections.singletonList(adImpressionStream.get(3).getMessageId()),
+                collector.anchors.get(4).stream().map(Tuple::getMessageId).collect(Collectors.toList()) );
+
+        // all the tuples are acked once expired
+        Assert.assertEquals( messageIds(Arrays.asList(orderStream, adImpressionStream)).stream()
+                        .flatMap(List::stream).sorted().collect(Collectors.toList()),
+                collector.acked.stream().map(t -> t.getMessageId().toString()).sorted().collect(Collectors.toList()) );
+        Assert.assertEquals( 0, countSegmentFiles() );
+        bolt.cleanup();
+    }
+
+    @Test
+    public void testInnerJoin_CountRetention_AcksOnExpiry() throws Exception {
+        MockContext context = new MockContext();
+        ArrayList<Tuple> orderStream = makeStream(context, "orders", orderFields, orders);
+        ArrayList<Tuple> adImpressionStream = makeStream(context, "ads", adImpressionFields, adImpressions);
+
+        RealtimeJoinBolt bolt = new RealtimeJoinBolt(RealtimeJoinBolt.StreamKind.STREAM)
+                .from("orders", 2, false )
+                .innerJoin("ads", 10, false, Cmp.equal("userId", "orders:userId") )
+                .select("ads:id,orders:id")
+                .withStateBackend(new SegmentedFileJoinStateBackend(tmp.getRoot().getPath(), 64));
+        MockCollector collector = run(bolt, context, adImpressionStream, orderStream);
+
+        // the 2 last orders are retained, the others acked when pushed out of the window
+        Assert.assertEquals( orderStream.subList(0, 4).stream().map(Tuple::getMessageId).collect(Collectors.toList()),
+                collector.acked.stream().map(Tuple::getMessageId).collect(Collectors.toList()) );
+        Assert.assertEquals( Arrays.asList(Arrays.asList(1, 11), Arrays.asList(2, 12), Arrays.asList(3, 13),
+                Arrays.asList(10, 15)), collector.actualResults );
+        // the ads are read back from disk, and anchor the results along with the orders
+        Assert.assertEquals( Arrays.asList(orderStream.get(4).getMessageId(), adImpressionStream.get(9).getMessageId()),
+                collector.anchors.get(3).stream().map(Tuple::getMessageId).collect(Collectors.toList()) );
+        bolt.cleanup();
+        Assert.assertEquals( 0, countSegmentFiles() );
+    }
+
+    @Test
+    public void testStreamlineEvents_LargeTuplesKeptOffHeap() throws Exception {
+        MockContext context = new MockContext();
+        String payload = new String(new char[32 * 1024]).replace('\0', 'x');
+        int count = 500;
+        Object[][] events = new Object[count][];
+        for (int i = 0; i < count; i++) {
+            events[i] = new Object[]{i, i % 50, payload};
+        }
+        ArrayList<Tuple> eventStream = makeStreamLineEventStream(context, "events", new String[]{"id", "userId", "payload"}, events);
+        ArrayList<Tuple> userStream = makeStreamLineEventStream(context, "users", new String[]{"userId", "name"},
+                new Object[][]{ {7, "roshan"}, {49, "arun"}, {99, "satish"} });
+
+        SLRealtimeJoinBolt bolt = new SLRealtimeJoinBolt()
+                .from("events", count, false)
+                .innerJoin("users", 10, false, SLCmp.equal("users:userId", "events:userId"))
+                .select("events:id as id, users:name as name, events:payload as payload")
+                .withStateBackend(new SegmentedFileJoinStateBackend(tmp.getRoot().getPath(), 1024 * 1024));
+        MockCollector collector = run(bolt, context, eventStream, userStream);
+
+        // events of user 7 then of user 49, in the order they were received
+        Assert.assertEquals( 20, collector.actualResults.size() );
+        for (int i = 0; i < 20; i++) {
+            StreamlineEvent event = (StreamlineEvent) collector.actualResults.get(i).get(0);
+            Assert.assertEquals( (i < 10 ? 7 : 49) + 50 * (i % 10), event.get("id") );
+            Assert.assertEquals( i < 10 ? "roshan" : "arun", event.get("name") );
+            Assert.assertEquals( payload, event.get("payload") );
+        }
+
+        // the buffer only holds keys and references, the payloads are in the segment files
+        Assert.assertTrue( countSegmentFiles() > 1 );
+        Assert.assertEquals( 0, collector.acked.size() );
+        bolt.cleanup();
+        Assert.assertEquals( 0, countSegmentFiles() );
+    }
+
+    @Test
+    public void testAnchorsShareAckValue() throws Exception {
+        MockContext context = new MockContext();
+        Tuple order = makeStream(context, "orders", orderFields, orders).get(0);
+        JoinState state = new SegmentedFileJoinStateBackend(tmp.getRoot().getPath(), 64)
+                .createState("orders", null, context);
+        Object ref = state.put(order, 0);
+
+        // storm xors the ids of the emits anchored to a tuple into its anchor, and sends the result when acking it
+        TupleImpl anchor = (TupleImpl) state.getAnchor(ref);
+        anchor.updateAckVal(42);
+        TupleImpl ackedAnchor = (TupleImpl) state.getAnchor(ref);
+        Assert.assertEquals( 42, ackedAnchor.getAckVal() );
+        Assert.assertEquals( order.getMessageId(), ackedAnchor.getMessageId() );
+        Assert.assertEquals( order.getSourceStreamId(), ackedAnchor.getSourceStreamId() );
+        Assert.assertEquals( order.getValues(), ackedAnchor.getValues() );
+        Assert.assertEquals( order.getValues(), state.get(ref).getValues() );
+        state.close();
+    }
+
+    /**
+     * Retains 4 times the heap of a child JVM: the heap only holds the keys and references of the tuples, and the
+     * heap state would run out of memory.
+     */
+    @Test
+    public void testRetentionLargerThanHeap() throws Exception {
+        Process process = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx" + BoundedHeapJoin.HEAP_MB + "m", "-cp", System.getProperty("java.class.path"),
+                BoundedHeapJoin.class.getName(), tmp.getRoot().getPath())
+                .inheritIO()
+                .start();
+        Assert.assertTrue( process.waitFor(5, TimeUnit.MINUTES) );
+        Assert.assertEquals( 0, process.exitValue() );
+        Assert.assertEquals( 0, countSegmentFiles() );
+    }
+
+    public static class BoundedHeapJoin {
+        static final int HEAP_MB = 64;
+        static final int PAYLOAD_CHARS = 64 * 1024;
+        static final int COUNT = 4 * HEAP_MB * 1024 * 1024 / PAYLOAD_CHARS;
+
+        // args: directory of the join state, "heap" to check that the heap state runs out of memory
+        public static void main(String[] args) {
+            MockContext context = new MockContext();
+            context.declare("events", "id", "userId", "payload");
+            context.declare("users", "userId", "name");
+            RealtimeJoinBolt bolt = new RealtimeJoinBolt(RealtimeJoinBolt.StreamKind.STREAM)
+                    .from("events", COUNT, false)
+                    .innerJoin("users", 10, false, Cmp.equal("users:userId", "events:userId"))
+                    .select("events:id, users:name, events:payload");
+            if (args.length < 2 || !args[1].equals("heap"))
+                bolt.withStateBackend(new SegmentedFileJoinStateBackend(args[0], 16 * 1024 * 1024));
+            MockCollector collector = new MockCollector();
+            bolt.prepare(null, context, collector);
+
+            // a distinct payload per event, which the heap state would all retain
+            char[] chars = new char[PAYLOAD_CHARS];
+            List<Integer> expectedIds = new ArrayList<>();
+            for (int i = 0; i < COUNT; i++) {
+                Arrays.fill(chars, (char) ('a' + i % 26));
+                bolt.execute(new TupleImpl(context, Arrays.asList(i, i % 1000, new String(chars)), 0, "events",
+                        nextMessageId()));
+                if (i % 1000 == 7)
+                    expectedIds.add(i);
+            }
+            bolt.execute(new TupleImpl(context, Arrays.asList(7, "roshan"), 0, "users", nextMessageId()));
+
+            List<Integer> ids = new ArrayList<>();
+            for (List<Object> result : collector.actualResults) {
+                int id = (Integer) result.get(0);
+                if (((String) result.get(2)).charAt(PAYLOAD_CHARS - 1) == (char) ('a' + id % 26))
+                    ids.add(id);
+            }
+            bolt.cleanup();
+            if (!ids.equals(expectedIds) || !collector.acked.isEmpty()) {
+                System.err.println("Expected results of events " + expectedIds + ", got " + ids);
+                System.exit(1);
+            }
+        }
+    }
+
+    private RealtimeJoinBolt makeInnerJoinBolt() {
+        return new RealtimeJoinBolt(RealtimeJoinBolt.StreamKind.STREAM)
+                .from("orders", 6, false )
+                .innerJoin("ads", 10, false, Cmp.equal("userId", "orders:userId") )
+                .select("ads:id,orders:id,ads:userId,ads:product,orders:product,price");
+    }
+
+    @SafeVarargs
+    private static MockCollector run(RealtimeJoinBolt bolt, TopologyContext context, List<Tuple>... streams) {
+        MockCollector collector = new MockCollector();
+        bolt.prepare(null, context, collector);
+        for (List<Tuple> stream : streams) {
+            for (Tuple tuple : stream) {
+                bolt.execute(tuple);
+            }
+        }
+        return collector;
+    }
+
+    // message ids of each list of tuples, as strings
+    private static List<List<String>> messageIds(List<? extends List<Tuple>> tupleLists) {
+        return tupleLists.stream()
+                .map(tuples -> tuples.stream().map(t -> t.getMessageId().toString()).collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+
+    private long countSegmentFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(tmp.getRoot().toPath())) {
+            return files.filter(p -> p.toString().endsWith(".seg")).count();
+        }
+    }
+
+    private static long nextRootId = 1;
+
+    private static MessageId nextMessageId() {
+        long rootId = nextRootId++;
+        return MessageId.makeRootId(rootId, rootId);
+    }
+
+    private static ArrayList<Tuple> makeStream(MockContext context, String streamName, String[] fieldNames, Object[][] data) {
+        context.declare(streamName, fieldNames);
+        ArrayList<Tuple> result = new ArrayList<>();
+        for (Object[] record : data) {
+            result.add(new TupleImpl(context, Arrays.asList(record), 0, streamName, nextMessageId()));
+        }
+        return result;
+    }
+
+    private static ArrayList<Tuple> makeStreamLineEventStream(MockContext context, String streamName, String[] fieldNames, Object[][] records) {
+        context.declare(streamName, StreamlineEvent.STREAMLINE_EVENT);
+        ArrayList<Tuple> result = new ArrayList<>(records.length);
+        for (Object[] record : records) {
+            HashMap<String,Object> recordMap = new HashMap<>(fieldNames.length);
+            for (int i = 0; i < fieldNames.length; i++) {
+                recordMap.put(fieldNames[i], record[i]);
+            }
+            StreamlineEvent event = StreamlineEventImpl.builder()
+                    .fieldsAndValues(recordMap)
+                    .dataSourceId("multiple sources")
+                    .build();
+            result.add(new TupleImpl(context, Collections.singletonList(event), 0, streamName, nextMessageId()));
+        }
+        return result;
+    }
+
+    private static class MockCollector extends OutputCollector {
+        public ArrayList<List<Object>> actualResults = new ArrayList<>();
+        public ArrayList<List<Tuple>> anchors = new ArrayList<>();
+        public ArrayList<Tuple> acked = new ArrayList<>();
+
+        public MockCollector() {
+            super(null);
+        }
+
+        @Override
+        public List<Integer> emit(Collection<Tuple> anchors, List<Object> tuple) {
+            actualResults.add(tuple);
+            this.anchors.add(new ArrayList<>(anchors));
+            return Collections.singletonList(1);
+        }
+
+        @Override
+        public List<Integer> emit(Tuple anchor, List<Object> tuple) {
+            actualResults.add(tuple);
+            anchors.add(Collections.singletonList(anchor));
+            return Collections.singletonList(1);
+        }
+
+        @Override
+        public void ack(Tuple input) {
+            acked.add(input);
+        }
+    } // class MockCollector
+
+    // provides the fields of each of the input streams, which are needed to read the tuples back from the state
+    static class MockContext extends TopologyContext {
+        private final Map<String, Fields> fieldsByStream = new HashMap<>();
+
+        public MockContext() {
+            super(null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null);
+        }
+
+        void declare(String streamName, String... fieldNames) {
+            fieldsByStream.put(streamName, new Fields(fieldNames));
+        }
+
+        @Override
+        public String getThisComponentId() {
+            return "join-component";
+        }
+
+        @Override
+        public String getComponentId(int taskId) {
+            return "1-component";
+        }
+
+        @Override
+        public Fields getComponentOutputFields(String componentId, String streamId) {
+            return fieldsByStream.get(streamId);
+        }
+    }
+}
@@ -95,6 +95,35 @@ public class TestWindowedQueryBolt {
         Assert.assertEquals( cityStream.size(), collector.actualResults.size() );
     }
 
+    @Test
+    public void testProjectionWithAliases() throws Exception {
+        ArrayList<Tuple> userStream = makeStreamLineEventStream("users", userFields, users);
+        ArrayList<Tuple> cityStream = makeStreamLineEventStream("cities", cityFields, cities);
+        TupleWindow window = makeTupleWindow(userStream, cityStream);
+        WindowedQueryBolt bolt = new WindowedQueryBolt("users", "city")
+                .leftJoin("cities", "cityName", "users")
+                .selectStreamLine("name,users:city as city,cities:country as country,cities:cityId");
+        MockTopologyContext context = new MockTopologyContext(new String[]{StreamlineEvent.STREAMLINE_EVENT});
+        MockCollector collector = new MockCollector();
+        bolt.prepare(null, context, collector);
+        bolt.execute(window);
+        Assert.assertEquals(userStream.size(), collector.actualResults.size());
+
+        Map<String, StreamlineEvent> resultsByName = new HashMap<>();
+        for (List<Object> rec : collector.actualResults) {
+            StreamlineEvent event = (StreamlineEvent) rec.get(0);
+            resultsByName.put((String) event.get("name"), event);
+        }
+        StreamlineEvent arun = resultsByName.get("arun");
+        Assert.assertEquals("bengaluru", arun.get("city"));
+        Assert.assertEquals("India", arun.get("country"));
+        Assert.assertEquals(7, arun.get("cities:cityId"));
+        // seattle is not in the cities stream, hence only the fields of users stream are projected
+        StreamlineEvent priyank = resultsByName.get("priyank");
+        Assert.assertEquals(2, priyank.size());
+        Assert.assertEquals("seattle", priyank.get("city"));
+    }
+
     @Test
     public void testTimeStampExtraction() throws Exception {
         ArrayList<Tuple> usersAndCities  = makeStreamLineEventStream("users", userFields, users);
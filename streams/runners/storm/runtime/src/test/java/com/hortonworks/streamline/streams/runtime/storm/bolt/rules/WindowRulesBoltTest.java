@@ -23,6 +23,9 @@ import com.hortonworks.streamline.streams.layout.component.impl.RulesProcessor;
 import com.hortonworks.streamline.streams.layout.component.rule.expression.Window;
 import com.hortonworks.streamline.streams.runtime.processor.RuleProcessorRuntime;
 import mockit.Expectations;
+import mockit.Invocation;
+import mockit.Mock;
+import mockit.MockUp;
 import mockit.Mocked;
 import mockit.Verifications;
 import mockit.integration.junit4.JMockit;
@@ -35,6 +38,7 @@ import org.apache.storm.tuple.Tuple;
 import org.apache.storm.tuple.TupleImpl;
 import org.apache.storm.tuple.Values;
 import org.apache.storm.windowing.TupleWindow;
+import org.apache.storm.windowing.TupleWindowImpl;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -42,8 +46,10 @@ import org.junit.runner.RunWith;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
@@ -247,6 +253,115 @@ public class WindowRulesBoltTest {
         };
     }
 
+    @Test
+    public void testSlidingWindowIsUpdated() throws Exception {
+        // the sums of the windows sliding by 2 tuples are updated with the expired and new tuples from the third one
+        doSlidingTest(readFile("/window-rule-sum.json"), this::getTupleForSum);
+        new Verifications() {
+            {
+                List<List<Object>> tuples = new ArrayList<>();
+                mockCollector.emit(anyString, (Collection<Tuple>) any, withCapture(tuples));
+                Assert.assertEquals(5, tuples.size());
+                String[] sums = {"55", "75", "95", "115", "155"};
+                for (int i = 0; i < sums.length; i++) {
+                    Assert.assertEquals("longSum is " + sums[i] + ", doubleSum is " + sums[i] + ".0, intSum is " + sums[i],
+                            ((StreamlineEvent) tuples.get(i).get(0)).get("body"));
+                }
+            }
+        };
+    }
+
+    @Test
+    public void testSlidingWindowIsRecomputedWithoutRetract() throws Exception {
+        // min and max can't be retracted, and the expired tuples are not the whole pane kept for the previous window
+        doSlidingTest(readFile("/window-rule-count.json"), this::getNextTuple);
+        new Verifications() {
+            {
+                List<List<Object>> tuples = new ArrayList<>();
+                mockCollector.emit(anyString, (Collection<Tuple>) any, withCapture(tuples));
+                Assert.assertEquals(5, tuples.size());
+                String[] minMax = {"30, max salary is 100", "30, max salary is 120", "50, max salary is 140",
+                        "70, max salary is 160", "110, max salary is 200"};
+                for (int i = 0; i < minMax.length; i++) {
+                    Assert.assertEquals("min salary is " + minMax[i], ((StreamlineEvent) tuples.get(i).get(0)).get("body"));
+                }
+            }
+        };
+    }
+
+    @Test
+    public void testSlidingWindowIsUpdatedByPanes() throws Exception {
+        // min and max merge, the windows growing then sliding by 2 tuples are updated a pane of 2 tuples at a time
+        List<Integer> expiredPanes = new ArrayList<>();
+        new MockUp<RuleProcessorRuntime>() {
+            @Mock
+            public void nextPane(Invocation invocation, int expired) {
+                expiredPanes.add(expired);
+                invocation.proceed();
+            }
+        };
+        String rulesJson = readFile("/window-rule-count.json");
+        WindowRulesBolt wb = new WindowRulesBolt(rulesJson, RuleProcessorRuntime.ScriptType.SQL);
+        wb.prepare(new HashMap(), mockContext, mockCollector);
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            tuples.add(getNextTuple(i));
+        }
+        for (int i = 2; i <= 20; i += 2) {
+            int start = Math.max(0, i - 10);
+            wb.execute(new TupleWindowImpl(tuples.subList(start, i), tuples.subList(i - 2, i),
+                    i > 10 ? tuples.subList(start - 2, start) : Collections.emptyList()));
+        }
+        Assert.assertEquals(Arrays.asList(0, 0, 0, 0, 1, 1, 1, 1, 1), expiredPanes);
+        new Verifications() {
+            {
+                List<List<Object>> tuples = new ArrayList<>();
+                mockCollector.emit(anyString, (Collection<Tuple>) any, withCapture(tuples));
+                // the first window has no tuple with empid > 2
+                String[] minMax = {"30, max salary is 40", "30, max salary is 60", "30, max salary is 80",
+                        "30, max salary is 100", "30, max salary is 120", "50, max salary is 140",
+                        "70, max salary is 160", "90, max salary is 180", "110, max salary is 200"};
+                Assert.assertEquals(minMax.length, tuples.size());
+                for (int i = 0; i < minMax.length; i++) {
+                    Assert.assertEquals("min salary is " + minMax[i], ((StreamlineEvent) tuples.get(i).get(0)).get("body"));
+                }
+            }
+        };
+    }
+
+    @Test
+    public void testSlidingWindowWithoutAggregateCallIsUpdated() throws Exception {
+        // the groups of the whole windows are emitted, not only the groups of the new tuples
+        doSlidingTest(readFile("/window-rule-groupby-noaggregate.json"), this::getNextTuple);
+        new Verifications() {
+            {
+                List<List<Object>> tuples = new ArrayList<>();
+                mockCollector.emit(anyString, (Collection<Tuple>) any, withCapture(tuples));
+                List<Object> deptids = new ArrayList<>();
+                for (List<Object> tuple : tuples) {
+                    deptids.add(((StreamlineEvent) tuple.get(0)).get("deptid"));
+                }
+                Assert.assertEquals(Arrays.asList(0, 1, 2, 0, 1, 2, 1, 2, 1, 2, 3, 2, 3, 4), deptids);
+            }
+        };
+    }
+
+    private void doSlidingTest(String rulesJson, Function<Integer, Tuple> tupleGen) {
+        WindowRulesBolt wb = new WindowRulesBolt(rulesJson, RuleProcessorRuntime.ScriptType.SQL);
+        wb.prepare(new HashMap(), mockContext, mockCollector);
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            tuples.add(tupleGen.apply(i));
+        }
+        wb.execute(new TupleWindowImpl(tuples.subList(0, 10), tuples.subList(0, 10), Collections.emptyList()));
+        for (int i = 2; i <= 6; i += 2) {
+            wb.execute(new TupleWindowImpl(tuples.subList(i, i + 10), tuples.subList(i + 8, i + 10),
+                    tuples.subList(i - 2, i)));
+        }
+        // not overlapping the previous window
+        wb.execute(new TupleWindowImpl(tuples.subList(10, 20), tuples.subList(10, 20), tuples.subList(0, 10)));
+    }
+
     private boolean doTest(String rulesJson, int expectedExecuteCount) throws Exception {
         return doTest(rulesJson, expectedExecuteCount, this::getNextTuple);
     }
@@ -0,0 +1,189 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.bolt.solr;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.sun.net.httpserver.HttpServer;
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.impl.XMLResponseParser;
+import org.apache.storm.Config;
+import org.apache.storm.Constants;
+import org.apache.storm.solr.config.SolrConfig;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.tuple.Tuple;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JMockit.class)
+public class StreamlineSolrBulkUpdateBoltTest {
+    private static final String RESPONSE = "<response><lst name=\"responseHeader\">"
+            + "<int name=\"status\">0</int><int name=\"QTime\">1</int></lst></response>";
+
+    private @Injectable OutputCollector mockOutputCollector;
+    private @Injectable TopologyContext mockTopologyContext;
+    private @Injectable Tuple tuple1;
+    private @Injectable Tuple tuple2;
+    private @Injectable Tuple tuple3;
+    private @Injectable Tuple tickTuple;
+
+    // local stub of the solr update handler, recording the requests
+    private HttpServer server;
+    private final List<String> queries = Collections.synchronizedList(new ArrayList<>());
+    private final List<JsonNode> bodies = Collections.synchronizedList(new ArrayList<>());
+    private volatile int status = 200;
+
+    @Before
+    public void setup() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/solr", exchange -> {
+            queries.add(exchange.getRequestURI().getQuery());
+            bodies.add(new ObjectMapper().readTree(exchange.getRequestBody()));
+            byte[] response = RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/xml; charset=UTF-8");
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+        new Expectations() {{
+            tuple1.getValueByField(StreamlineEvent.STREAMLINE_EVENT); result = event("1"); minTimes = 0;
+            tuple2.getValueByField(StreamlineEvent.STREAMLINE_EVENT); result = event("2"); minTimes = 0;
+            tuple3.getValueByField(StreamlineEvent.STREAMLINE_EVENT); result = event("3"); minTimes = 0;
+            tickTuple.getSourceComponent(); result = Constants.SYSTEM_COMPONENT_ID; minTimes = 0;
+            tickTuple.getSourceStreamId(); result = Constants.SYSTEM_TICK_STREAM_ID; minTimes = 0;
+        }};
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testSendsDocumentsInBulk() throws Exception {
+        StreamlineSolrBulkUpdateBolt bolt = bolt().withMaxBatchDocs(2).withCommitWithinMs(5000);
+
+        bolt.execute(tuple1);
+        assertEquals(0, bodies.size());
+        bolt.execute(tuple2);
+        assertEquals(1, bodies.size());
+        bolt.execute(tuple3);
+        bolt.execute(tickTuple);
+        assertEquals(2, bodies.size());
+        // nothing to send
+        bolt.execute(tickTuple);
+        assertEquals(2, bodies.size());
+
+        assertEquals(2, bodies.get(0).size());
+        assertEquals("1", bodies.get(0).get(0).get("id").asText());
+        assertEquals("2", bodies.get(0).get(1).get("id").asText());
+        assertEquals(1, bodies.get(1).size());
+        assertEquals("3", bodies.get(1).get(0).get("id").asText());
+        for (String query : queries) {
+            assertTrue(query, query.contains("commitWithin=5000"));
+            assertTrue(query, !query.contains("commit=true"));
+        }
+        new Verifications() {{
+            mockOutputCollector.ack(tuple1); times = 1;
+            mockOutputCollector.ack(tuple2); times = 1;
+            mockOutputCollector.ack(tuple3); times = 1;
+            mockOutputCollector.fail((Tuple) any); times = 0;
+        }};
+        assertEquals(5, bolt.getComponentConfiguration().get(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS));
+        bolt.cleanup();
+    }
+
+    @Test
+    public void testSendsBatchOnceMaxBytesReached() throws Exception {
+        StreamlineSolrBulkUpdateBolt bolt = bolt().withMaxBatchBytes(1).withCommitWithinMs(0);
+
+        bolt.execute(tuple1);
+        bolt.execute(tuple2);
+        assertEquals(2, bodies.size());
+        assertEquals(1, bodies.get(0).size());
+        assertEquals(1, bodies.get(1).size());
+        assertTrue(queries.get(0), !queries.get(0).contains("commitWithin"));
+        bolt.cleanup();
+    }
+
+    @Test
+    public void testFailsBatchOnError() throws Exception {
+        StreamlineSolrBulkUpdateBolt bolt = bolt().withMaxBatchDocs(2);
+
+        status = 500;
+        bolt.execute(tuple1);
+        bolt.execute(tuple2);
+        status = 200;
+        bolt.execute(tuple3);
+        bolt.execute(tickTuple);
+
+        assertEquals(2, bodies.size());
+        assertEquals(1, bodies.get(1).size());
+        new Verifications() {{
+            mockOutputCollector.fail(tuple1); times = 1;
+            mockOutputCollector.fail(tuple2); times = 1;
+            mockOutputCollector.reportError((Throwable) any); times = 1;
+            mockOutputCollector.ack(tuple3); times = 1;
+        }};
+        bolt.cleanup();
+    }
+
+    private StreamlineSolrBulkUpdateBolt bolt() {
+        final String baseUrl = "http://localhost:" + server.getAddress().getPort() + "/solr";
+        StreamlineSolrBulkUpdateBolt bolt = new StreamlineSolrBulkUpdateBolt(new SolrConfig("localhost:2181", 5),
+                new StreamlineSolrJsonMapper("test")) {
+            @Override
+            protected SolrClient createSolrClient() {
+                HttpSolrClient client = new HttpSolrClient(baseUrl);
+                client.setParser(new XMLResponseParser());
+                return client;
+            }
+        };
+        bolt.prepare(new HashMap(), mockTopologyContext, mockOutputCollector);
+        return bolt;
+    }
+
+    private static StreamlineEvent event(String id) {
+        return StreamlineEventImpl.builder()
+                .put("id", id)
+                .put("name", "n\u00fc" + id)
+                .dataSourceId("dsrcid1")
+                .build();
+    }
+}
@@ -0,0 +1,330 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.runtime.storm.cassandra;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.CloseFuture;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.ListenableFuture;
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Verifications;
+import mockit.integration.junit4.JMockit;
+import org.apache.storm.Constants;
+import org.apache.storm.cassandra.client.CassandraConf;
+import org.apache.storm.cassandra.client.SimpleClient;
+import org.apache.storm.cassandra.query.CQLStatementTupleMapper;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.tuple.ITuple;
+import org.apache.storm.tuple.Tuple;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JMockit.class)
+public class StreamlineCassandraBoltTest {
+    private @Injectable OutputCollector mockOutputCollector;
+    private @Injectable TopologyContext mockTopologyContext;
+    private @Injectable Tuple tuple1;
+    private @Injectable Tuple tuple2;
+    private @Injectable Tuple tuple3;
+    private @Injectable Tuple tickTuple;
+
+    private FakeSession session;
+
+    @Before
+    public void setup() {
+        session = new FakeSession();
+        new Expectations() {{
+            mockTopologyContext.getThisComponentId(); result = "cassandra"; minTimes = 0;
+            tuple1.getValueByField("station"); result = "a"; minTimes = 0;
+            tuple2.getValueByField("station"); result = "b"; minTimes = 0;
+            tuple3.getValueByField("station"); result = "a"; minTimes = 0;
+            tickTuple.getSourceComponent(); result = Constants.SYSTEM_COMPONENT_ID; minTimes = 0;
+            tickTuple.getSourceStreamId(); result = Constants.SYSTEM_TICK_STREAM_ID; minTimes = 0;
+        }};
+    }
+
+    @Test
+    public void testGroupsStatementsByPartition() throws Exception {
+        StreamlineCassandraBolt bolt = bolt(4);
+
+        bolt.execute(tuple1);
+        bolt.execute(tuple2);
+        assertEquals(0, session.executed.size());
+        // the batch of partition a is full
+        bolt.execute(tuple3);
+        assertEquals(1, session.executed.size());
+        BatchStatement batch = (BatchStatement) session.executed.get(0);
+        assertEquals(2, batch.size());
+        // the partial batch of partition b on tick, as a single statement
+        bolt.execute(tickTuple);
+        assertEquals(2, session.executed.size());
+        assertTrue(session.executed.get(1) instanceof SimpleStatement);
+
+        new Verifications() {{
+            mockOutputCollector.ack((Tuple) any); times = 0;
+        }};
+
+        session.futures.forEach(FakeResultSetFuture::succeed);
+        bolt.execute(tickTuple);
+
+        new Verifications() {{
+            mockOutputCollector.ack(tuple1); times = 1;
+            mockOutputCollector.ack(tuple2); times = 1;
+            mockOutputCollector.ack(tuple3); times = 1;
+        }};
+    }
+
+    @Test
+    public void testFailsTuplesOfFailedBatch() throws Exception {
+        StreamlineCassandraBolt bolt = bolt(4);
+
+        bolt.execute(tuple1);
+        bolt.execute(tuple2);
+        bolt.execute(tuple3);
+        bolt.execute(tickTuple);
+        session.futures.get(0).fail(new RuntimeException("write failed"));
+        session.futures.get(1).succeed();
+        bolt.execute(tickTuple);
+
+        new Verifications() {{
+            mockOutputCollector.fail(tuple1); times = 1;
+            mockOutputCollector.fail(tuple3); times = 1;
+            mockOutputCollector.ack(tuple2); times = 1;
+        }};
+    }
+
+    @Test
+    public void testCapsInFlightBatches() throws Exception {
+        StreamlineCassandraBolt bolt = bolt(1);
+
+        bolt.execute(tuple1);
+        bolt.execute(tuple3);
+        assertEquals(1, session.executed.size());
+        bolt.execute(tuple2);
+        Thread tick = new Thread(() -> bolt.execute(tickTuple));
+        tick.start();
+        // the batch of partition b waits for the batch in flight
+        tick.join(200);
+        assertTrue(tick.isAlive());
+        assertEquals(1, session.executed.size());
+
+        session.futures.get(0).succeed();
+        tick.join(TimeUnit.SECONDS.toMillis(10));
+        assertEquals(2, session.executed.size());
+    }
+
+    private StreamlineCassandraBolt bolt(int maxInFlightBatches) {
+        StreamlineCassandraBolt bolt = new StreamlineCassandraBolt(new StationMapper(), conf -> new FakeClient(session))
+                .withMaxInFlightBatches(maxInFlightBatches);
+        Map<String, Object> cassandraConfig = new HashMap<>();
+        cassandraConfig.put(CassandraConf.CASSANDRA_KEYSPACE, "ks");
+        cassandraConfig.put(CassandraConf.CASSANDRA_BATCH_SIZE_ROWS, 2);
+        bolt.withCassandraConfig(cassandraConfig);
+        bolt.prepare(new HashMap(), mockTopologyContext, mockOutputCollector);
+        return bolt;
+    }
+
+    // binds the station, which is the partition key
+    private static class StationMapper implements CQLStatementTupleMapper {
+        @Override
+        public List<Statement> map(Map conf, Session session, ITuple tuple) {
+            String station = (String) tuple.getValueByField("station");
+            return Collections.singletonList(new SimpleStatement("INSERT INTO temperature (station) VALUES (?)", station)
+                    .setRoutingKey(ByteBuffer.wrap(station.getBytes(StandardCharsets.UTF_8))));
+        }
+    }
+
+    private static class FakeClient implements SimpleClient {
+        private final Session session;
+
+        FakeClient(Session session) {
+            this.session = session;
+        }
+
+        @Override
+        public Session connect() {
+            return session;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean isClose() {
+            return false;
+        }
+    }
+
+    private static class FakeResultSetFuture extends AbstractFuture<ResultSet> implements ResultSetFuture {
+        void succeed() {
+            set(null);
+        }
+
+        void fail(Throwable t) {
+            setException(t);
+        }
+
+        @Override
+        public ResultSet getUninterruptibly() {
+            try {
+                return get();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public ResultSet getUninterruptibly(long timeout, TimeUnit unit) {
+            try {
+                return get(timeout, unit);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    // records the executed statements, completed by the test
+    private static class FakeSession implements Session {
+        private final List<Statement> executed = Collections.synchronizedList(new ArrayList<>());
+        private final List<FakeResultSetFuture> futures = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public ResultSetFuture executeAsync(Statement statement) {
+            FakeResultSetFuture future = new FakeResultSetFuture();
+            executed.add(statement);
+            futures.add(future);
+            return future;
+        }
+
+        @Override
+        public String getLoggedKeyspace() {
+            return "ks";
+        }
+
+        @Override
+        public Session init() {
+            return this;
+        }
+
+        @Override
+        public ListenableFuture<Session> initAsync() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSet execute(String query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSet execute(String query, Object... values) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSet execute(String query, Map<String, Object> values) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSet execute(Statement statement) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSetFuture executeAsync(String query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSetFuture executeAsync(String query, Object... values) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSetFuture executeAsync(String query, Map<String, Object> values) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public PreparedStatement prepare(String query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public PreparedStatement prepare(RegularStatement statement) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ListenableFuture<PreparedStatement> prepareAsync(String query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ListenableFuture<PreparedStatement> prepareAsync(RegularStatement statement) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CloseFuture closeAsync() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+
+        @Override
+        public Cluster getCluster() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public State getState() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
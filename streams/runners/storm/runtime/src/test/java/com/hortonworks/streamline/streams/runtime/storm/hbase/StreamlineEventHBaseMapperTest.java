@@ -18,9 +18,11 @@ package com.hortonworks.streamline.streams.runtime.storm.hbase;
 import com.google.common.base.Charsets;
 import com.hortonworks.streamline.streams.StreamlineEvent;
 import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import mockit.Delegate;
 import mockit.Expectations;
 import mockit.Mocked;
 import mockit.integration.junit4.JMockit;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.storm.hbase.common.ColumnList;
 import org.apache.storm.tuple.Tuple;
 import org.junit.Assert;
@@ -30,7 +32,10 @@ import org.junit.runner.RunWith;
 
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 import static com.google.common.base.Charsets.UTF_8;
 
@@ -49,12 +54,18 @@ public class StreamlineEventHBaseMapperTest {
 
 
     private StreamlineEventHBaseMapper mapper = new StreamlineEventHBaseMapper(COLUMN_FAMILY);
+    private StreamlineEvent event = TEST_EVENT;
     private @Mocked Tuple mockTuple;
 
     @Before
     public void setup() {
         new Expectations() {{
-            mockTuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT); returns(TEST_EVENT);
+            mockTuple.getValueByField(StreamlineEvent.STREAMLINE_EVENT);
+            result = new Delegate<Object>() {
+                Object getValueByField(String field) {
+                    return event;
+                }
+            };
         }};
     }
 
@@ -71,4 +82,86 @@ public class StreamlineEventHBaseMapperTest {
         Assert.assertTrue(Arrays.equals(COLUMN_FIELD.getBytes(Charsets.UTF_8), column.getValue()));
     }
 
+    @Test
+    public void testCompositeRowKey() {
+        event = eventOf("host", "h1", "ts", 42L, "count", 7);
+        mapper.withRowKeyFields(Arrays.asList("host", "ts"));
+
+        byte[] expected = Bytes.add(Bytes.toBytes("h1|"), Bytes.toBytes(42L));
+        Assert.assertArrayEquals(expected, mapper.rowKey(mockTuple));
+        // the buffer is reused, a shorter key is not padded with the previous one
+        event = eventOf("host", "h", "ts", 1L);
+        Assert.assertArrayEquals(Bytes.add(Bytes.toBytes("h|"), Bytes.toBytes(1L)), mapper.rowKey(mockTuple));
+    }
+
+    @Test
+    public void testSaltedRowKey() {
+        mapper = new StreamlineEventHBaseMapper(COLUMN_FAMILY, COLUMN_FIELD).withSaltBuckets(16);
+
+        byte[] rowKey = mapper.rowKey(mockTuple);
+        Assert.assertEquals(COLUMN_FIELD.length() + 1, rowKey.length);
+        Assert.assertTrue(rowKey[0] >= 0 && rowKey[0] < 16);
+        Assert.assertArrayEquals(COLUMN_FIELD.getBytes(UTF_8), Arrays.copyOfRange(rowKey, 1, rowKey.length));
+        Assert.assertArrayEquals(rowKey, mapper.rowKey(mockTuple));
+    }
+
+    @Test
+    public void testSaltSpreadsSequentialKeys() {
+        Set<Byte> salts = new HashSet<>();
+        for (long i = 0; i < 1000; i++) {
+            byte[] key = Bytes.toBytes(i);
+            salts.add(StreamlineEventHBaseMapper.salt(key, 0, key.length, 8));
+        }
+        Assert.assertEquals(8, salts.size());
+    }
+
+    @Test
+    public void testNonAsciiRowKey() {
+        event = eventOf("city", "Z\u00fcrich", "zip", 8000);
+        mapper.withRowKeyFields(Arrays.asList("city", "zip"));
+
+        byte[] expected = Bytes.add(Bytes.toBytes("Z\u00fcrich|"), Bytes.toBytes(8000));
+        Assert.assertArrayEquals(expected, mapper.rowKey(mockTuple));
+    }
+
+    @Test
+    public void testCompositeRowKeyPartsDoNotCollide() {
+        mapper.withRowKeyFields(Arrays.asList("a", "b"));
+
+        byte[] key1 = rowKeyOf("a", "x|", "b", "y");
+        byte[] key2 = rowKeyOf("a", "x", "b", "|y");
+        Assert.assertFalse(Arrays.equals(key1, key2));
+        Assert.assertArrayEquals("x\\||y".getBytes(UTF_8), key1);
+        Assert.assertArrayEquals("x|\\|y".getBytes(UTF_8), key2);
+        // the escape byte is escaped too
+        Assert.assertFalse(Arrays.equals(rowKeyOf("a", "x\\", "b", "|y"), rowKeyOf("a", "x", "b", "\\|y")));
+        Assert.assertArrayEquals("x\\\\|\\|y".getBytes(UTF_8), rowKeyOf("a", "x\\", "b", "|y"));
+        // and the delimiter bytes of binary values
+        Assert.assertArrayEquals(Bytes.add(Bytes.toBytes("x|"), new byte[] {0, 0, 0, '\\', '|'}),
+                rowKeyOf("a", "x", "b", (int) '|'));
+    }
+
+    @Test
+    public void testCompositeRowKeyNullValue() {
+        mapper.withRowKeyFields(Arrays.asList("a", "b"));
+
+        byte[] nullKey = rowKeyOf("a", "x");
+        byte[] emptyKey = rowKeyOf("a", "x", "b", "");
+        Assert.assertArrayEquals("x|".getBytes(UTF_8), emptyKey);
+        Assert.assertArrayEquals(Bytes.add(Bytes.toBytes("x|"), new byte[] {'\\', 0}), nullKey);
+        Assert.assertFalse(Arrays.equals(rowKeyOf("a", "x", "b", "\\\u0000"), nullKey));
+    }
+
+    private byte[] rowKeyOf(Object... fieldsAndValues) {
+        event = eventOf(fieldsAndValues);
+        return mapper.rowKey(mockTuple);
+    }
+
+    private static StreamlineEvent eventOf(Object... fieldsAndValues) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        for (int i = 0; i < fieldsAndValues.length; i += 2) {
+            fields.put((String) fieldsAndValues[i], fieldsAndValues[i + 1]);
+        }
+        return StreamlineEventImpl.builder().fieldsAndValues(fields).dataSourceId("dsrcid1").build();
+    }
 }
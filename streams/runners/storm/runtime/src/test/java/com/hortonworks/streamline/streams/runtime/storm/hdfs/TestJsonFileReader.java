@@ -22,6 +22,7 @@ import com.hortonworks.streamline.streams.runtime.storm.spout.JsonFileReader;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.LocalFileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.storm.hdfs.spout.ByteOffsetFileReader;
 import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Rule;
@@ -29,9 +30,13 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 
 public class TestJsonFileReader {
 
@@ -65,8 +70,64 @@ public class TestJsonFileReader {
         Assert.assertEquals(7, lineCount);
     }
 
+    @Test
+    public void testResumeFromOffset() throws Exception {
+        String file = tmp.newFile().getAbsolutePath();
+        dumpToFile("{ \"truckId\" : 10, \"driver\" : \"\u00e9mile\" }\n" +
+                   "\n" +
+                   "{ \"truckId\" : 11, \"driver\" : \"bob\" } { \"truckId\" : 12, \"driver\" : \"carol\" }\n" +
+                   "{ \"truckId\" : 13,\n  \"driver\" : \"dave\" }\n", file);
+
+        JsonFileReader reader = new JsonFileReader(LocalFileSystem.get(new Configuration()), new Path(file), null);
+        Assert.assertEquals(10, ((Map) reader.next().get(0)).get("truckId"));
+        Assert.assertEquals(11, ((Map) reader.next().get(0)).get("truckId"));
+        String offset = reader.getFileOffset().toString();
+        reader.close();
+
+        // resumes after the second document, which ends after 77 bytes
+        Assert.assertEquals("{byte=77:record=2:}", offset);
+        reader = new JsonFileReader(LocalFileSystem.get(new Configuration()), new Path(file), null, offset);
+        Assert.assertEquals("carol", ((Map) reader.next().get(0)).get("driver"));
+        Assert.assertTrue(new ByteOffsetFileReader.Offset(offset).isNextOffset(reader.getFileOffset()));
+        Assert.assertEquals("dave", ((Map) reader.next().get(0)).get("driver"));
+        Assert.assertNull(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void testResumeFromTextOffset() throws Exception {
+        String file = tmp.newFile().getAbsolutePath();
+        dumpToFile("{ \"truckId\" : 10 }\r\n" +
+                   "\n" +
+                   "{ \"truckId\" : 11 }\n" +
+                   "{ \"truckId\" : 12 }\n" +
+                   "{ \"truckId\" : 13 }", file);
+
+        // committed by the reader reading a document per line, after the blank line and the second document
+        JsonFileReader reader = new JsonFileReader(LocalFileSystem.get(new Configuration()), new Path(file), null,
+                "{char=40:line=3:}");
+        Assert.assertEquals("{byte=40:record=3:}", reader.getFileOffset().toString());
+        Assert.assertEquals(12, ((Map) reader.next().get(0)).get("truckId"));
+        Assert.assertEquals("{byte=58:record=4:}", reader.getFileOffset().toString());
+        Assert.assertEquals(13, ((Map) reader.next().get(0)).get("truckId"));
+        Assert.assertNull(reader.next());
+        reader.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedOffset() throws Exception {
+        String file = tmp.newFile().getAbsolutePath();
+        new JsonFileReader(LocalFileSystem.get(new Configuration()), new Path(file), null, "{byte=77}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedTextOffset() throws Exception {
+        String file = tmp.newFile().getAbsolutePath();
+        new JsonFileReader(LocalFileSystem.get(new Configuration()), new Path(file), null, "{char=77}");
+    }
+
     private static void dumpToFile(String jsonStr, String file) throws IOException {
-        FileWriter fw = new FileWriter(file);
+        Writer fw = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
         BufferedWriter out = new BufferedWriter(fw);
         out.write(jsonStr);
         out.close();
@@ -54,6 +54,19 @@ public class AvroKafkaSpoutTranslatorTest {
         assertEquals(100, res);
     }
 
+    @Test
+    public void testByteBufferInputStreamSkipAndAvailable() throws Exception {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5});
+        AvroKafkaSpoutTranslator.ByteBufferInputStream is = new AvroKafkaSpoutTranslator.ByteBufferInputStream(byteBuffer);
+        assertEquals(5, is.available());
+        assertEquals(2, is.skip(2));
+        assertEquals(3, is.read());
+        assertEquals(2, is.available());
+        assertEquals(2, is.skip(10));
+        assertEquals(0, is.available());
+        assertEquals(-1, is.read());
+    }
+
     private int read(int bufSize, int destSize, int offset, int length) throws IOException {
         ByteBuffer byteBuffer = ByteBuffer.allocate(bufSize);
         AvroKafkaSpoutTranslator.ByteBufferInputStream is = new AvroKafkaSpoutTranslator.ByteBufferInputStream(byteBuffer);
@@ -0,0 +1,84 @@
+package com.hortonworks.streamline.streams.runtime.storm.testing;
+
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.common.event.EventLogFileReader;
+import com.hortonworks.streamline.streams.common.event.EventLogIndex;
+import com.hortonworks.streamline.streams.common.event.correlation.EventCorrelationInjector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LocalClusterTestRunTopologyRunnerTest {
+    private static final String TOPOLOGY_YAML = String.join("\n", Arrays.asList(
+            "name: \"test-run-runner\"",
+            "spouts:",
+            "  - id: \"spout\"",
+            "    className: \"org.apache.storm.testing.TestWordSpout\"",
+            "    parallelism: 1",
+            "bolts:",
+            "  - id: \"bolt\"",
+            "    className: \"org.apache.storm.testing.TestWordCounter\"",
+            "    parallelism: 1",
+            "streams:",
+            "  - from: \"spout\"",
+            "    to: \"bolt\"",
+            "    grouping:",
+            "      type: SHUFFLE"));
+
+    private LocalClusterTestRunTopologyRunner runner;
+    private File fluxFile;
+    private File eventLogFile;
+
+    @Before
+    public void setUp() throws Exception {
+        runner = new LocalClusterTestRunTopologyRunner();
+        fluxFile = File.createTempFile("test-run-topology", ".yaml");
+        Files.write(fluxFile.toPath(), TOPOLOGY_YAML.getBytes(StandardCharsets.UTF_8));
+        eventLogFile = File.createTempFile("test-run-event-log", ".log");
+    }
+
+    @After
+    public void tearDown() {
+        runner.shutdown();
+        TestRunEventLogger.closeAll();
+        fluxFile.delete();
+        eventLogFile.delete();
+        EventLogIndex.indexFileOf(eventLogFile).delete();
+    }
+
+    @Test
+    public void testEventLoggerIsClosedAfterRun() throws Exception {
+        // the components of the run write to the event logger of its file
+        TestRunEventLogger eventLogger = TestRunEventLogger.getEventLogger(eventLogFile.getAbsolutePath());
+        StreamlineEvent event = StreamlineEventImpl.builder().put("a", 1).dataSourceId("dataSource").build();
+        eventLogger.writeEvent(System.currentTimeMillis(), "spout", "default", Collections.emptySet(),
+                new EventCorrelationInjector().injectCorrelationInformation(event, Collections.emptyList(), "spout"));
+
+        runner.runTopology(fluxFile.getAbsolutePath(), eventLogFile.getAbsolutePath(), 1000, () -> false);
+
+        assertFalse(TestRunEventLogger.eventLoggerMap.containsKey(eventLogFile.getAbsolutePath()));
+        assertEquals(1, new EventLogFileReader().loadEventLogFile(eventLogFile).size());
+    }
+
+    @Test
+    public void testEventLoggerIsClosedAfterKilledRun() throws Exception {
+        TestRunEventLogger.getEventLogger(eventLogFile.getAbsolutePath());
+
+        long start = System.currentTimeMillis();
+        runner.runTopology(fluxFile.getAbsolutePath(), eventLogFile.getAbsolutePath(), 600_000, () -> true);
+
+        assertTrue(System.currentTimeMillis() - start < 600_000);
+        assertFalse(TestRunEventLogger.eventLoggerMap.containsKey(eventLogFile.getAbsolutePath()));
+    }
+}
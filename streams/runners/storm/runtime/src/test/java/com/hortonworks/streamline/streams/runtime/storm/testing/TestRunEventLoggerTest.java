@@ -0,0 +1,188 @@
+package com.hortonworks.streamline.streams.runtime.storm.testing;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
+import com.hortonworks.streamline.streams.common.event.EventInformation;
+import com.hortonworks.streamline.streams.common.event.EventLogFileReader;
+import com.hortonworks.streamline.streams.common.event.EventLogIndex;
+import com.hortonworks.streamline.streams.common.event.correlation.EventCorrelationInjector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TestRunEventLoggerTest {
+    private File eventLogFile;
+
+    @Before
+    public void setUp() throws Exception {
+        eventLogFile = File.createTempFile("test-run-event-log", ".log");
+        eventLogFile.deleteOnExit();
+    }
+
+    @After
+    public void tearDown() {
+        TestRunEventLogger.closeAll();
+        eventLogFile.delete();
+        EventLogIndex.indexFileOf(eventLogFile).delete();
+    }
+
+    @Test
+    public void testConcurrentWritesAreReadableAfterFlush() throws Exception {
+        TestRunEventLogger eventLogger = TestRunEventLogger.getEventLogger(eventLogFile.getAbsolutePath());
+        int threadCount = 4;
+        int eventsPerThread = 1000;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            String componentName = "component" + t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < eventsPerThread; i++) {
+                    StreamlineEvent event = makeEvent(componentName, "seq", i);
+                    eventLogger.writeEvent(System.currentTimeMillis(), componentName, "default",
+                            Collections.singleton("target"), event);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        eventLogger.flush();
+
+        List<EventInformation> events = new EventLogFileReader().loadEventLogFile(eventLogFile);
+        assertEquals(threadCount * eventsPerThread, events.size());
+
+        // events of a component are written in emit order
+        for (int t = 0; t < threadCount; t++) {
+            int expectedSeq = 0;
+            for (EventInformation event : events) {
+                if (event.getComponentName().equals("component" + t)) {
+                    assertEquals(expectedSeq++, event.getFieldsAndValues().get("seq"));
+                }
+            }
+            assertEquals(eventsPerThread, expectedSeq);
+        }
+    }
+
+    @Test
+    public void testEventsAreFlushedPeriodically() throws Exception {
+        TestRunEventLogger eventLogger = TestRunEventLogger.getEventLogger(eventLogFile.getAbsolutePath());
+        StreamlineEvent event = makeEvent("component", "a", 1);
+        Set<String> targets = new HashSet<>();
+        eventLogger.writeEvent(System.currentTimeMillis(), "component", "default", targets, event);
+
+        EventLogFileReader reader = new EventLogFileReader();
+        long deadline = System.currentTimeMillis() + 10 * TestRunEventLogger.FLUSH_INTERVAL_MS;
+        while (reader.loadEventLogFile(eventLogFile).isEmpty() && System.currentTimeMillis() < deadline) {
+            Uninterruptibles.sleepUninterruptibly(TestRunEventLogger.FLUSH_INTERVAL_MS / 2, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(1, reader.loadEventLogFile(eventLogFile).size());
+    }
+
+    @Test
+    public void testCloseWritesPendingEvents() throws Exception {
+        TestRunEventLogger eventLogger = TestRunEventLogger.getEventLogger(eventLogFile.getAbsolutePath());
+        StreamlineEvent event = makeEvent("component", "a", 1);
+        for (int i = 0; i < 10; i++) {
+            eventLogger.writeEvent(System.currentTimeMillis(), "component", "default", Collections.emptySet(), event);
+        }
+        TestRunEventLogger.closeAll();
+
+        assertEquals(10, new EventLogFileReader().loadEventLogFile(eventLogFile).size());
+        assertNotSame(eventLogger, TestRunEventLogger.getEventLogger(eventLogFile.getAbsolutePath()));
+    }
+
+    @Test
+    public void testEventsWrittenAfterCloseAreDropped() throws Exception {
+        String path = eventLogFile.getAbsolutePath();
+        TestRunEventLogger eventLogger = TestRunEventLogger.getEventLogger(path);
+        StreamlineEvent event = makeEvent("component", "a", 1);
+        eventLogger.writeEvent(System.currentTimeMillis(), "component", "default", Collections.emptySet(), event);
+        TestRunEventLogger.close(path);
+
+        eventLogger.writeEvent(System.currentTimeMillis(), "component", "default", Collections.emptySet(), event);
+        assertEquals(1, eventLogger.getDroppedEventCount());
+        // a component of the run opening the logger late doesn't start a new writer
+        TestRunEventLogger closedEventLogger = TestRunEventLogger.getEventLogger(path);
+        closedEventLogger.writeEvent(System.currentTimeMillis(), "component", "default", Collections.emptySet(), event);
+        closedEventLogger.flush();
+        assertEquals(1, closedEventLogger.getDroppedEventCount());
+        assertFalse(TestRunEventLogger.eventLoggerMap.containsKey(path));
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            assertNotEquals("test-run-event-logger-" + path, thread.getName());
+        }
+        assertEquals(1, new EventLogFileReader().loadEventLogFile(eventLogFile).size());
+    }
+
+    @Test
+    public void testEventsRacingCloseAreWrittenOrDropped() throws Exception {
+        TestRunEventLogger eventLogger = TestRunEventLogger.getEventLogger(eventLogFile.getAbsolutePath());
+        int threadCount = 4;
+        int eventsPerThread = 2000;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            String componentName = "component" + t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < eventsPerThread; i++) {
+                    eventLogger.writeEvent(System.currentTimeMillis(), componentName, "default",
+                            Collections.emptySet(), makeEvent(componentName, "seq", i));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        Thread.sleep(5);
+        TestRunEventLogger.close(eventLogFile.getAbsolutePath());
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        int written = new EventLogFileReader().loadEventLogFile(eventLogFile).size();
+        assertEquals(threadCount * eventsPerThread, written + eventLogger.getDroppedEventCount());
+    }
+
+    @Test
+    public void testIndexIsWrittenWithEvents() throws Exception {
+        TestRunEventLogger eventLogger = TestRunEventLogger.getEventLogger(eventLogFile.getAbsolutePath());
+        EventCorrelationInjector injector = new EventCorrelationInjector();
+        StreamlineEvent root = makeEvent("source", "a", 1);
+        StreamlineEvent child = injector.injectCorrelationInformation(
+                StreamlineEventImpl.builder().put("b", 2).dataSourceId("dataSource").build(),
+                Collections.singletonList(root), "processor");
+        StreamlineEvent other = makeEvent("source", "a", 3);
+        eventLogger.writeEvent(System.currentTimeMillis(), "source", "default", Collections.singleton("processor"), root);
+        eventLogger.writeEvent(System.currentTimeMillis(), "processor", "default", Collections.emptySet(), child);
+        eventLogger.writeEvent(System.currentTimeMillis(), "source", "default", Collections.singleton("processor"), other);
+        eventLogger.flush();
+
+        EventLogIndex index = new EventLogIndex(eventLogFile);
+        index.refresh();
+        assertEquals(3, index.size());
+        assertEquals(eventLogFile.length(), index.getIndexedLength());
+
+        EventLogFileReader reader = new EventLogFileReader();
+        List<EventInformation> events = reader.loadEventsOfRootEvent(eventLogFile, root.getId());
+        assertEquals(2, events.size());
+        assertEquals(root.getId(), events.get(0).getEventId());
+        assertEquals(child.getId(), events.get(1).getEventId());
+        assertEquals(2, events.get(1).getFieldsAndValues().get("b"));
+    }
+
+    private static StreamlineEvent makeEvent(String componentName, String field, Object value) {
+        StreamlineEvent event = StreamlineEventImpl.builder().put(field, value).dataSourceId("dataSource").build();
+        return new EventCorrelationInjector().injectCorrelationInformation(event, Collections.emptyList(), componentName);
+    }
+}
@@ -53,6 +53,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 import static com.hortonworks.streamline.streams.common.StreamlineEventImpl.GROUP_BY_TRIGGER_EVENT;
 import static com.hortonworks.streamline.streams.layout.component.rule.expression.Window.WINDOW_ID;
@@ -94,13 +95,72 @@ public class RuleProcessorRuntime implements Serializable, ProcessorRuntime {
 
     @Override
     public List<Result> process(StreamlineEvent event) throws ProcessingException {
+        List<RuleRuntime> ruleRuntimes = getRulesRuntime(event);
+        LOG.debug("Process event {}, rule runtimes {}", event, ruleRuntimes);
+        return process(ruleRuntimes, rr -> rr.evaluate(event));
+    }
+
+    /**
+     * Whether the rules can retract the events they evaluated, so that the results they keep (e.g. the aggregates of
+     * a window) can be updated rather than evaluated again. It is the case when every rule is a SQL query with an
+     * aggregate whose functions all retract.
+     */
+    public boolean supportsRetract() {
+        return !allRuleRuntimes.isEmpty() && allRuleRuntimes.stream().allMatch(RuleRuntime::supportsRetract);
+    }
+
+    /**
+     * Whether the rules can split the events they evaluated in panes, so that the results they keep are updated by
+     * expiring the oldest panes rather than evaluated again. It is the case when every rule is a SQL query with an
+     * aggregate whose functions all merge.
+     */
+    public boolean supportsPanes() {
+        return !allRuleRuntimes.isEmpty() && allRuleRuntimes.stream().allMatch(RuleRuntime::supportsPanes);
+    }
+
+    /**
+     * Retracts an event previously processed from the results kept by the rules.
+     */
+    public void retract(StreamlineEvent event) throws ProcessingException {
+        for (RuleRuntime rr : getRulesRuntime(event)) {
+            rr.retract(event);
+        }
+    }
+
+    /**
+     * The events processed from now on go to a new pane of the results kept by the rules, and the given number of the
+     * oldest panes are expired.
+     */
+    public void nextPane(int expiredPanes) {
+        for (RuleRuntime rr : allRuleRuntimes) {
+            rr.nextPane(expiredPanes);
+        }
+    }
+
+    /**
+     * Processes the results kept by the rules, like the {@code GROUP_BY_TRIGGER_EVENT}, but keeping them so that they
+     * are updated by the next events processed and retracted.
+     */
+    public List<Result> snapshot() throws ProcessingException {
+        return process(allRuleRuntimes, RuleRuntime::snapshot);
+    }
+
+    /**
+     * Discards the results kept by the rules.
+     */
+    public void reset() {
+        for (RuleRuntime rr : allRuleRuntimes) {
+            rr.reset();
+        }
+    }
+
+    private List<Result> process(List<RuleRuntime> ruleRuntimes,
+                                 Function<RuleRuntime, Collection<StreamlineEvent>> evaluator) throws ProcessingException {
         List<Result> results = new ArrayList<>();
         try {
-            List<RuleRuntime> ruleRuntimes = getRulesRuntime(event);
-            LOG.debug("Process event {}, rule runtimes {}", event, ruleRuntimes);
             for (RuleRuntime rr : ruleRuntimes) {
                 boolean succeeded = false;
-                for (StreamlineEvent result : rr.evaluate(event)) {
+                for (StreamlineEvent result : evaluator.apply(rr)) {
                     if (result != null) {
                         results.addAll(rr.process(result));
                         succeeded = true;
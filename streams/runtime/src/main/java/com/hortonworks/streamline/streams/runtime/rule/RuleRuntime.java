@@ -24,6 +24,7 @@ import com.hortonworks.streamline.streams.layout.component.rule.Rule;
 import com.hortonworks.streamline.streams.layout.component.rule.exception.ConditionEvaluationException;
 import com.hortonworks.streamline.streams.runtime.ProcessorRuntime;
 import com.hortonworks.streamline.streams.runtime.rule.action.ActionRuntime;
+import com.hortonworks.streamline.streams.runtime.rule.sql.SqlScript;
 import com.hortonworks.streamline.streams.runtime.script.Script;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,6 +61,56 @@ public class RuleRuntime implements Serializable, ProcessorRuntime {
         }
     }
 
+    /**
+     * Whether the inputs evaluated can be retracted, which only the SQL scripts keeping results support.
+     */
+    public boolean supportsRetract() {
+        return script instanceof SqlScript && ((SqlScript) script).supportsRetract();
+    }
+
+    /**
+     * Whether the inputs evaluated can be split in panes, which only the SQL scripts keeping results support.
+     */
+    public boolean supportsPanes() {
+        return script instanceof SqlScript && ((SqlScript) script).supportsPanes();
+    }
+
+    /**
+     * Retracts an input previously evaluated.
+     */
+    public void retract(StreamlineEvent input) {
+        LOG.debug("Retract {} with script {}", input, script);
+        sqlScript().retract(input);
+    }
+
+    /**
+     * The inputs evaluated from now on go to a new pane, and the given number of the oldest panes are expired.
+     */
+    public void nextPane(int expiredPanes) {
+        sqlScript().nextPane(expiredPanes);
+    }
+
+    /**
+     * Evaluates the results kept by the script, keeping them.
+     */
+    public Collection<StreamlineEvent> snapshot() {
+        return sqlScript().snapshot();
+    }
+
+    /**
+     * Discards the results kept by the script.
+     */
+    public void reset() {
+        sqlScript().reset();
+    }
+
+    private SqlScript sqlScript() {
+        if (!(script instanceof SqlScript)) {
+            throw new UnsupportedOperationException("Script " + script + " does not keep results");
+        }
+        return (SqlScript) script;
+    }
+
     /**
      * Executes a {@link Rule}'s Action
      *
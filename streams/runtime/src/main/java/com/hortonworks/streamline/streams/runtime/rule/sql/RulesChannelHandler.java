@@ -34,6 +34,12 @@ public class RulesChannelHandler implements ChannelHandler {
         result.add(data);
     }
 
+    @Override
+    public void dataRetracted(ChannelContext ctx, CorrelatedValues data) {
+        // the results are handed out as they come, there is nothing to retract them from
+        LOG.debug("SQL query result retracted {}", data);
+    }
+
     @Override
     public void channelInactive(ChannelContext ctx) {
     }
@@ -46,6 +52,14 @@ public class RulesChannelHandler implements ChannelHandler {
     public void flush(ChannelContext channelContext) {
     }
 
+    @Override
+    public void snapshot(ChannelContext channelContext) {
+    }
+
+    @Override
+    public void nextPane(ChannelContext channelContext, int expiredPanes) {
+    }
+
     @Override
     public void setSource(ChannelContext channelContext, Object o) {
     }
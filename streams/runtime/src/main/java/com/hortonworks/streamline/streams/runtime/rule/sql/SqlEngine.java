@@ -20,6 +20,7 @@ package com.hortonworks.streamline.streams.runtime.rule.sql;
 
 import com.hortonworks.streamline.streams.runtime.script.engine.ScriptEngine;
 import com.hortonworks.streamline.streams.sql.StreamlineSql;
+import com.hortonworks.streamline.streams.sql.runtime.AbstractValuesProcessor;
 import com.hortonworks.streamline.streams.sql.runtime.ChannelContext;
 import com.hortonworks.streamline.streams.sql.runtime.CorrelatedValues;
 import org.slf4j.Logger;
@@ -40,6 +41,8 @@ public class SqlEngine implements ScriptEngine<SqlEngine> {
 
     private volatile ChannelContext channelContext;
     private final RulesChannelHandler channelHandler;
+    private volatile boolean supportsRetract;
+    private volatile boolean supportsPanes;
 
     public SqlEngine() {
         channelHandler = new RulesChannelHandler();
@@ -49,8 +52,12 @@ public class SqlEngine implements ScriptEngine<SqlEngine> {
         try {
             LOG.info("Compiling query statements {}", statements);
             StreamlineSql streamlineSql = StreamlineSql.construct();
-            streamlineSql.execute(statements, channelHandler);
+            List<AbstractValuesProcessor> processors = streamlineSql.execute(statements, channelHandler);
             channelContext = RulesDataSourcesProvider.getDataSource().getChannelContext();
+            supportsRetract = !processors.isEmpty()
+                    && processors.stream().allMatch(AbstractValuesProcessor::supportsRetract);
+            supportsPanes = !processors.isEmpty()
+                    && processors.stream().allMatch(AbstractValuesProcessor::supportsPanes);
             LOG.info("Query statements successfully compiled, channelContext set to {}", channelContext);
         } catch (Exception e) {
             throw new RuntimeException(String.format("Error compiling query. Statements [%s]", statements), e);
@@ -74,6 +81,61 @@ public class SqlEngine implements ScriptEngine<SqlEngine> {
         return res;
     }
 
+    /*
+     * whether the inputs evaluated can be retracted from the pending results, see AbstractValuesProcessor
+     */
+    public boolean supportsRetract() {
+        return supportsRetract;
+    }
+
+    /*
+     * whether the inputs evaluated can be split in panes of pending results, see AbstractValuesProcessor
+     */
+    public boolean supportsPanes() {
+        return supportsPanes;
+    }
+
+    /*
+     * retract an input previously evaluated from the pending results, e.g. a value leaving a sliding window
+     */
+    public void retract(CorrelatedValues input) {
+        if (!supportsRetract) {
+            throw new IllegalStateException("The query does not support retract");
+        }
+        channelContext.retract(input);
+        channelHandler.clearResult();
+    }
+
+    /*
+     * the inputs evaluated from now on go to a new pane of pending results, and the oldest panes are expired,
+     * e.g. the parts of a sliding window that left it
+     */
+    public void nextPane(int expiredPanes) {
+        if (!supportsPanes) {
+            throw new IllegalStateException("The query does not support panes");
+        }
+        channelContext.nextPane(expiredPanes);
+        channelHandler.clearResult();
+    }
+
+    /*
+     * like flush, but the pending results are kept so that they can be updated with the next inputs and retractions
+     */
+    public List<CorrelatedValues> snapshot() {
+        channelContext.snapshot();
+        List<CorrelatedValues> res = channelHandler.getResult();
+        channelHandler.clearResult();
+        return res;
+    }
+
+    /*
+     * discard the pending results
+     */
+    public void reset() {
+        channelContext.flush();
+        channelHandler.clearResult();
+    }
+
     @Override
     public String toString() {
         return "SqlEngine{" +
@@ -128,6 +128,65 @@ public class SqlScript extends Script<StreamlineEvent, Collection<StreamlineEven
         return convert(result, event);
     }
 
+    /**
+     * Whether the events evaluated can be retracted from the results kept by the engine.
+     */
+    public boolean supportsRetract() {
+        return scriptEngine.supportsRetract();
+    }
+
+    /**
+     * Whether the events evaluated can be split in panes of the results kept by the engine.
+     */
+    public boolean supportsPanes() {
+        return scriptEngine.supportsPanes();
+    }
+
+    /**
+     * Retracts an event previously evaluated from the results kept by the engine, e.g. the aggregates of a window.
+     */
+    public void retract(StreamlineEvent event) {
+        LOG.debug("Retracting [{}] with script engine [{}]", event, scriptEngine);
+        if (stormSqlFields != null && !stormSqlFields.isEmpty()) {
+            try {
+                scriptEngine.retract(createValues(event));
+            } catch (ConditionEvaluationException ex) {
+                // not evaluated either
+                LOG.error("Got exception {} while retracting StreamlineEvent {}", ex, event);
+            }
+        }
+    }
+
+    /**
+     * The events evaluated from now on go to a new pane of the results kept by the engine, and the given number of the
+     * oldest panes are expired, e.g. the parts of a sliding window that left it.
+     */
+    public void nextPane(int expiredPanes) {
+        if (stormSqlFields != null && !stormSqlFields.isEmpty()) {
+            scriptEngine.nextPane(expiredPanes);
+        }
+    }
+
+    /**
+     * Returns the results pending in the engine, like the {@code GROUP_BY_TRIGGER_EVENT}, but keeping them so that
+     * they are updated by the next evaluations and retractions.
+     */
+    public Collection<StreamlineEvent> snapshot() {
+        if (stormSqlFields == null || stormSqlFields.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return convert(scriptEngine.snapshot(), GROUP_BY_TRIGGER_EVENT);
+    }
+
+    /**
+     * Discards the results pending in the engine.
+     */
+    public void reset() {
+        if (stormSqlFields != null && !stormSqlFields.isEmpty()) {
+            scriptEngine.reset();
+        }
+    }
+
     private CorrelatedValues createValues(StreamlineEvent event) {
         Values values = new Values();
         for (Schema.Field field : stormSqlFields) {
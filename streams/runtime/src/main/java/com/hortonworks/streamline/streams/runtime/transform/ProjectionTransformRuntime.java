@@ -17,6 +17,8 @@
 package com.hortonworks.streamline.streams.runtime.transform;
 
 import com.hortonworks.streamline.streams.StreamlineEvent;
+import com.hortonworks.streamline.streams.common.FieldIndex;
+import com.hortonworks.streamline.streams.common.IndexedFieldsAndValues;
 import com.hortonworks.streamline.streams.common.StreamlineEventImpl;
 import com.hortonworks.streamline.streams.layout.component.rule.action.transform.ProjectionTransform;
 import com.hortonworks.streamline.streams.runtime.RuntimeService;
@@ -30,6 +32,7 @@ import java.util.List;
  */
 public class ProjectionTransformRuntime implements TransformRuntime {
     private final ProjectionTransform projectionTransform;
+    private final FieldIndex projectionFieldIndex;
 
     /**
      * Selects the fields from the event matching the input fields.
@@ -38,6 +41,7 @@ public class ProjectionTransformRuntime implements TransformRuntime {
      */
     public ProjectionTransformRuntime(ProjectionTransform projectionTransform) {
         this.projectionTransform = projectionTransform;
+        this.projectionFieldIndex = FieldIndex.of(projectionTransform.getProjectionFields());
     }
 
     @Override
@@ -46,11 +50,15 @@ public class ProjectionTransformRuntime implements TransformRuntime {
     }
 
     private List<StreamlineEvent> doTransform(StreamlineEvent input) {
-        StreamlineEventImpl.Builder builder = StreamlineEventImpl.builder();
-        for (String field : projectionTransform.getProjectionFields()) {
-            builder.put(field, input.get(field));
+        IndexedFieldsAndValues.Builder fieldsAndValues = IndexedFieldsAndValues.builder(projectionFieldIndex);
+        for (int i = 0; i < projectionFieldIndex.size(); i++) {
+            fieldsAndValues.set(i, input.get(projectionFieldIndex.nameAt(i)));
         }
-        return Collections.<StreamlineEvent>singletonList(builder.dataSourceId(input.getDataSourceId()).build());
+        StreamlineEvent event = StreamlineEventImpl.builder()
+                .fieldsAndValues(fieldsAndValues.build())
+                .dataSourceId(input.getDataSourceId())
+                .build();
+        return Collections.singletonList(event);
     }
 
     @Override
@@ -0,0 +1,37 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.rule;
+
+/**
+ * A {@link UDAF} or {@link UDAF2} which can combine the aggregates of disjoint groups of values, e.g. the aggregates
+ * of the panes of a sliding window.
+ * <p>
+ * Merging the aggregates of groups of values into the initial aggregate should produce a result equivalent to the
+ * aggregate of all the values.
+ *
+ * @param <A> the aggregate type
+ */
+public interface MergeableUDAF<A> {
+    /**
+     * Return a new aggregate by combining two aggregates of disjoint groups of values. The current aggregate can be
+     * updated and returned, but the other aggregate must be left as it is, since it is merged again later.
+     *
+     * @param aggregate the current aggregate
+     * @param other     the aggregate to merge into the current aggregate
+     * @return the new aggregate
+     */
+    A merge(A aggregate, A other);
+}
@@ -0,0 +1,37 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.rule;
+
+/**
+ * A {@link UDAF} which can remove a value previously added to an aggregate, e.g. the value leaving a sliding window.
+ * <p>
+ * Retracting the values added to an aggregate, in any order, should produce a result equivalent to the aggregate of
+ * the values left.
+ *
+ * @param <A> the aggregate type
+ * @param <V> the value type
+ * @param <R> the result type
+ */
+public interface RetractableUDAF<A, V, R> extends UDAF<A, V, R> {
+    /**
+     * Return a new aggregate by removing a value previously added to the accumulated value.
+     *
+     * @param aggregate the current aggregate
+     * @param val       the value to remove
+     * @return the new aggregate
+     */
+    A retract(A aggregate, V val);
+}
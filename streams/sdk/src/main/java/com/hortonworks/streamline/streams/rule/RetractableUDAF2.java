@@ -0,0 +1,36 @@
+/**
+  * Copyright 2017 Hortonworks.
+  *
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+
+  *   http://www.apache.org/licenses/LICENSE-2.0
+
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+ **/
+package com.hortonworks.streamline.streams.rule;
+
+/**
+ * A {@link UDAF2} which can remove the values previously added to an aggregate, like {@link RetractableUDAF}.
+ *
+ * @param <A> the aggregate type
+ * @param <V1> the value type of first argument
+ * @param <V2> the value type of second argument
+ * @param <R> the result type
+ */
+public interface RetractableUDAF2<A, V1, V2, R> extends UDAF2<A, V1, V2, R> {
+    /**
+     * Return a new aggregate by removing a value previously added to the accumulated value.
+     *
+     * @param aggregate the current aggregate
+     * @param val1       the value of the first argument to remove
+     * @param val2       the value of the second argument to remove
+     * @return the new aggregate
+     */
+    A retract(A aggregate, V1 val1, V2 val2);
+}
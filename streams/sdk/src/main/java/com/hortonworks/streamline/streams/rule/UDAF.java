@@ -30,6 +30,10 @@ package com.hortonworks.streamline.streams.rule;
  *   }
  *   R result = udafObj.result(aggregate);
  * </pre>
+ * <p>
+ * The aggregations that can undo an {@code add} or combine two partial aggregates can also implement
+ * {@link RetractableUDAF} or {@link MergeableUDAF}, so that for instance the aggregate of a sliding window is updated
+ * with the values entering and leaving the window instead of being recomputed.
  *
  * @param <A> the aggregate type
  * @param <V> the value type
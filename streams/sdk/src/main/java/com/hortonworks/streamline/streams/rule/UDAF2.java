@@ -30,6 +30,7 @@ package com.hortonworks.streamline.streams.rule;
  *   }
  *   R result = udafObj.result(aggregate);
  * </pre>
+ * Like in {@link UDAF}, the aggregations can also implement {@link RetractableUDAF2} or {@link MergeableUDAF}.
  * @param <A> the aggregate type
  * @param <V1> the value type of first argument
  * @param <V2> the value type of second argument
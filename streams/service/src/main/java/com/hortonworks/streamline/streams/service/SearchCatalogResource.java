@@ -1,6 +1,9 @@
 package com.hortonworks.streamline.streams.service;
 
 import com.codahale.metrics.annotation.Timed;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.hortonworks.streamline.common.util.ReflectionHelper;
 import com.hortonworks.streamline.common.util.WSUtils;
 import com.hortonworks.registries.storage.Storable;
@@ -9,6 +12,7 @@ import com.hortonworks.streamline.streams.actions.topology.service.TopologyActio
 import com.hortonworks.streamline.streams.cluster.catalog.Cluster;
 import com.hortonworks.streamline.streams.cluster.catalog.Namespace;
 import com.hortonworks.streamline.streams.catalog.Topology;
+import com.hortonworks.streamline.streams.catalog.service.SearchIndex;
 import com.hortonworks.streamline.streams.catalog.service.StreamCatalogService;
 import com.hortonworks.streamline.streams.cluster.resource.ClusterResourceUtil;
 import com.hortonworks.streamline.streams.cluster.service.EnvironmentService;
@@ -29,10 +33,21 @@ import javax.ws.rs.core.SecurityContext;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.hortonworks.streamline.streams.security.Permission.READ;
 import static javax.ws.rs.core.Response.Status.OK;
@@ -42,11 +57,22 @@ import static javax.ws.rs.core.Response.Status.OK;
 public class SearchCatalogResource {
     private static final Logger LOG = LoggerFactory.getLogger(SearchCatalogResource.class);
 
+    // entities are enriched on a dedicated pool so that slow Storm REST calls (topology metrics) or storage reads
+    // (namespace mappings, cluster services) don't hold the common fork join pool, and within a bounded time
+    private static final int ENRICH_THREADS = 10;
+    private static final int ENRICH_QUEUE_SIZE = 1000;
+    private static final long ENRICH_TIMEOUT_MS = 10_000;
+    // enriched topologies are served from a snapshot for a short time, when searches are repeated (e.g. paging)
+    private static final long TOPOLOGY_SNAPSHOT_EXPIRY_MS = 5_000;
+    private static final int TOPOLOGY_SNAPSHOT_CACHE_SIZE = 1000;
+
     private final StreamlineAuthorizer authorizer;
     private final StreamCatalogService catalogService;
     private final EnvironmentService environmentService;
     private final TopologyActionsService actionsService;
     private final TopologyMetricsService metricsService;
+    private final ExecutorService enrichExecutor;
+    private final Cache<String, CatalogResourceUtil.TopologyDashboardResponse> topologySnapshots;
 
     public SearchCatalogResource(StreamlineAuthorizer authorizer,
                                  StreamCatalogService catalogService,
@@ -58,6 +84,15 @@ public class SearchCatalogResource {
         this.environmentService = environmentService;
         this.actionsService = actionsService;
         this.metricsService = metricsService;
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(ENRICH_THREADS, ENRICH_THREADS,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(ENRICH_QUEUE_SIZE),
+                new ThreadFactoryBuilder().setNameFormat("search-enrich-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        this.enrichExecutor = executor;
+        this.topologySnapshots = CacheBuilder.newBuilder()
+                .maximumSize(TOPOLOGY_SNAPSHOT_CACHE_SIZE)
+                .expireAfterWrite(TOPOLOGY_SNAPSHOT_EXPIRY_MS, TimeUnit.MILLISECONDS)
+                .build();
     }
 
     // used internally to execute the different list commands in a seamless way
@@ -92,26 +127,36 @@ public class SearchCatalogResource {
                                                                         Integer latencyTopN) {
         switch (namespace) {
             case Topology.NAMESPACE:
-                return (Collection<Storable> storables) -> storables
-                        .parallelStream()
-                        .map(s -> CatalogResourceUtil.enrichTopology((Topology) s, asUser, latencyTopN,
-                                environmentService, actionsService, metricsService, catalogService))
-                        .collect(Collectors.toList());
+                return (Collection<Storable> storables) -> enrich(storables,
+                        s -> () -> topologySnapshots.get(snapshotKey((Topology) s, asUser, latencyTopN),
+                                () -> CatalogResourceUtil.enrichTopology((Topology) s, asUser, latencyTopN,
+                                        environmentService, actionsService, metricsService, catalogService)),
+                        s -> unknownStatus((Topology) s));
             case Namespace.NAMESPACE:
-                return (Collection<Storable> storables) -> storables
-                        .parallelStream()
-                        .map(s -> CatalogResourceUtil.enrichNamespace((Namespace) s, environmentService))
-                        .collect(Collectors.toList());
+                // a namespace that could not be enriched is returned without its mappings
+                return (Collection<Storable> storables) -> enrich(storables,
+                        s -> () -> CatalogResourceUtil.enrichNamespace((Namespace) s, environmentService),
+                        s -> new CatalogResourceUtil.NamespaceWithMapping((Namespace) s));
             case Cluster.NAMESPACE:
-                return (Collection<Storable> storables) -> storables
-                        .parallelStream()
-                        .map(s -> ClusterResourceUtil.enrichCluster((Cluster) s, environmentService))
-                        .collect(Collectors.toList());
+                // a cluster that could not be enriched is returned without its services
+                return (Collection<Storable> storables) -> enrich(storables,
+                        s -> () -> ClusterResourceUtil.enrichCluster((Cluster) s, environmentService),
+                        s -> new ClusterResourceUtil.ClusterServicesImportResult((Cluster) s));
             default:
                 throw new UnsupportedOperationException("Not implemented for " + namespace);
         }
     }
 
+    /**
+     * Searches the entities of the namespace matching the query string.
+     * <p>
+     * Topologies are searched by the words of their name and description: each word of the query matches the words
+     * starting with it, case insensitively, and the topologies matching all the words of the query are returned, the
+     * best matches (the name over the description, whole words over prefixes) first unless a sort is given. The query
+     * is not a regular expression, and does not match the middle of a word nor the topology config. The other
+     * namespaces, and the queries without any word, are matched as a case insensitive regular expression found in any
+     * searchable field.
+     */
     @GET
     @Path("/search")
     @Timed
@@ -121,7 +166,36 @@ public class SearchCatalogResource {
                                    @javax.ws.rs.QueryParam("queryString") String queryString,
                                    @javax.ws.rs.QueryParam("detail") Boolean detail,
                                    @javax.ws.rs.QueryParam("latencyTopN") Integer latencyTopN,
+                                   @javax.ws.rs.QueryParam("offset") Integer offset,
+                                   @javax.ws.rs.QueryParam("limit") Integer limit,
                                    @Context SecurityContext securityContext) {
+        Collection<Storable> searchResult = new ArrayList<>();
+        if (Topology.NAMESPACE.equals(namespace) && !SearchIndex.tokenize(queryString).isEmpty()) {
+            // topologies are looked up in the search index, and ordered by relevance unless a sort is requested
+            Collection<Storable> storables = SecurityUtil.filter(authorizer, securityContext, namespace,
+                    new ArrayList<Storable>(catalogService.searchTopologies(queryString)), READ);
+            Stream<Storable> matches = storables.stream();
+            if (sortType != null) {
+                String sortFieldName = getSortFieldName(sortType);
+                matches = matches.sorted((s1, s2) -> compare(s1, s2, sortFieldName, desc));
+            }
+            searchResult.addAll(matches
+                    .skip(offset != null && offset > 0 ? offset : 0)
+                    .limit(limit != null && limit >= 0 ? limit : Long.MAX_VALUE)
+                    .collect(Collectors.toList()));
+        } else {
+            searchResult.addAll(scan(namespace, queryString, sortType, desc, offset, limit, securityContext));
+        }
+        if (detail != null && detail) {
+            String asUser = WSUtils.getUserFromSecurityContext(securityContext);
+            return WSUtils.respondEntities(enrichCommand(namespace, asUser, latencyTopN).apply(searchResult), OK);
+        } else {
+            return WSUtils.respondEntities(searchResult, OK);
+        }
+    }
+
+    private Collection<Storable> scan(String namespace, String queryString, String sortType, Boolean desc,
+                                      Integer offset, Integer limit, SecurityContext securityContext) {
         Collection<Storable> storables = SecurityUtil.filter(authorizer, securityContext, namespace,
                 listCommand(namespace).get(), READ);
         Collection<Storable> searchResult = new ArrayList<>();
@@ -131,14 +205,62 @@ public class SearchCatalogResource {
                     .filter(s -> StringUtils.isEmpty(queryString)
                             || matches(s, Pattern.compile(queryString, Pattern.CASE_INSENSITIVE)))
                     .sorted((s1, s2) -> compare(s1, s2, sortFieldName, desc))
+                    .skip(offset != null && offset > 0 ? offset : 0)
+                    .limit(limit != null && limit >= 0 ? limit : Long.MAX_VALUE)
                     .collect(Collectors.toList()));
         }
-        if (detail != null && detail) {
-            String asUser = WSUtils.getUserFromSecurityContext(securityContext);
-            return WSUtils.respondEntities(enrichCommand(namespace, asUser, latencyTopN).apply(searchResult), OK);
-        } else {
-            return WSUtils.respondEntities(searchResult, OK);
+        return searchResult;
+    }
+
+    /**
+     * Enriches the storables on the enrich pool, in their order. A storable whose enrichment fails, times out or
+     * can't be queued is returned as given by the fallback.
+     */
+    private <T> List<T> enrich(Collection<Storable> storables, Function<Storable, Callable<T>> enricher,
+                               Function<Storable, T> fallback) {
+        List<Future<T>> futures = new ArrayList<>();
+        for (Storable storable : storables) {
+            try {
+                futures.add(enrichExecutor.submit(enricher.apply(storable)));
+            } catch (RejectedExecutionException e) {
+                LOG.warn("Too many pending enrichments, not enriching {} {}", storable.getNameSpace(), storable.getId());
+                futures.add(null);
+            }
         }
+
+        List<T> responses = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + ENRICH_TIMEOUT_MS;
+        int i = 0;
+        for (Storable storable : storables) {
+            Future<T> future = futures.get(i++);
+            T response = null;
+            if (future != null) {
+                try {
+                    response = future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    LOG.warn("Timed out enriching {} {}", storable.getNameSpace(), storable.getId());
+                    future.cancel(true);
+                } catch (ExecutionException e) {
+                    LOG.error("Error enriching " + storable.getNameSpace() + " " + storable.getId(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+            responses.add(response != null ? response : fallback.apply(storable));
+        }
+        return responses;
+    }
+
+    private CatalogResourceUtil.TopologyDashboardResponse unknownStatus(Topology topology) {
+        Namespace namespace = environmentService.getNamespace(topology.getNamespaceId());
+        return new CatalogResourceUtil.TopologyDashboardResponse(topology,
+                CatalogResourceUtil.TopologyRunningStatus.UNKNOWN, namespace != null ? namespace.getName() : null);
+    }
+
+    private static String snapshotKey(Topology topology, String asUser, Integer latencyTopN) {
+        return topology.getId() + ":" + topology.getVersionId() + ":" + topology.getVersionTimestamp() + ":"
+                + asUser + ":" + latencyTopN;
     }
 
     private String getSortFieldName(String sortType) {
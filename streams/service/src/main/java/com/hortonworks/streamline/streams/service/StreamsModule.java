@@ -34,6 +34,7 @@ import com.hortonworks.streamline.streams.actions.topology.service.TopologyActio
 import com.hortonworks.streamline.streams.catalog.TopologyVersion;
 import com.hortonworks.streamline.streams.catalog.service.CatalogService;
 import com.hortonworks.streamline.streams.catalog.service.StreamCatalogService;
+import com.hortonworks.streamline.streams.catalog.storage.ListenableTransactionManager;
 import com.hortonworks.streamline.streams.cluster.catalog.Namespace;
 import com.hortonworks.streamline.streams.cluster.resource.ClusterCatalogResource;
 import com.hortonworks.streamline.streams.cluster.resource.ComponentCatalogResource;
@@ -82,7 +83,12 @@ public class StreamsModule implements ModuleRegistration, StorageManagerAware, T
         String catalogRootUrl = (String) config.get(Constants.CONFIG_CATALOG_ROOT_URL);
         final Subject subject = (Subject) config.get(Constants.CONFIG_SUBJECT);  // Authorized subject
         MLModelRegistryClient modelRegistryClient = new MLModelRegistryClient(catalogRootUrl, subject);
-        final StreamCatalogService streamcatalogService = new StreamCatalogService(storageManager, fileStorage, modelRegistryClient);
+        // the search index of the catalog is updated once the transactions commit, when they are known
+        ListenableTransactionManager catalogTransactionManager =
+                transactionManager instanceof ListenableTransactionManager
+                        ? (ListenableTransactionManager) transactionManager : null;
+        final StreamCatalogService streamcatalogService = new StreamCatalogService(storageManager, fileStorage,
+                modelRegistryClient, catalogTransactionManager);
         final EnvironmentService environmentService = new EnvironmentService(storageManager);
         TagClient tagClient = new TagClient(catalogRootUrl);
         final CatalogService catalogService = new CatalogService(storageManager, fileStorage, tagClient);
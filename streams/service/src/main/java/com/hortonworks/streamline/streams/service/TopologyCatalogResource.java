@@ -17,7 +17,6 @@
 package com.hortonworks.streamline.streams.service;
 
 import com.codahale.metrics.annotation.Timed;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hortonworks.streamline.common.exception.service.exception.request.BadRequestException;
 import com.hortonworks.streamline.common.exception.service.exception.request.EntityNotFoundException;
 import com.hortonworks.streamline.common.exception.service.exception.server.StreamingEngineNotReachableException;
@@ -30,7 +29,6 @@ import com.hortonworks.streamline.streams.catalog.TopologySink;
 import com.hortonworks.streamline.streams.catalog.TopologySource;
 import com.hortonworks.streamline.streams.catalog.TopologyVersion;
 import com.hortonworks.streamline.streams.catalog.service.StreamCatalogService;
-import com.hortonworks.streamline.streams.catalog.topology.TopologyData;
 import com.hortonworks.streamline.streams.cluster.service.EnvironmentService;
 import com.hortonworks.streamline.streams.exception.TopologyNotAliveException;
 import com.hortonworks.streamline.streams.security.Permission;
@@ -56,10 +54,9 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
-import java.io.ByteArrayInputStream;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -379,14 +376,19 @@ public class TopologyCatalogResource {
                 NAMESPACE, topologyId, READ, EXECUTE);
         Topology topology = catalogService.getTopology(topologyId);
         if (topology != null) {
-            String exportedTopology = catalogService.exportTopology(topology);
-            if (!StringUtils.isEmpty(exportedTopology)) {
-                InputStream is = new ByteArrayInputStream(exportedTopology.getBytes(StandardCharsets.UTF_8));
-                return Response.status(OK)
-                        .entity(is)
-                        .header("Content-Disposition", "attachment; filename=\"" + topology.getName() + ".json\"")
-                        .build();
-            }
+            StreamingOutput exportedTopology = os -> {
+                try {
+                    catalogService.exportTopology(topology, os);
+                } catch (IOException | RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            };
+            return Response.status(OK)
+                    .entity(exportedTopology)
+                    .header("Content-Disposition", "attachment; filename=\"" + topology.getName() + ".json\"")
+                    .build();
         }
 
         throw EntityNotFoundException.byId(topologyId.toString());
@@ -425,11 +427,7 @@ public class TopologyCatalogResource {
         if (namespaceId == null) {
             throw new IllegalArgumentException("Missing namespaceId");
         }
-        TopologyData topologyData = new ObjectMapper().readValue(inputStream, TopologyData.class);
-        if (topologyName != null && !topologyName.isEmpty()) {
-            topologyData.setTopologyName(topologyName);
-        }
-        Topology importedTopology = catalogService.importTopology(namespaceId, topologyData);
+        Topology importedTopology = catalogService.importTopology(namespaceId, inputStream, topologyName);
         return WSUtils.respondEntity(importedTopology, OK);
     }
 
@@ -20,6 +20,8 @@ import com.codahale.metrics.annotation.Timed;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.hortonworks.registries.common.Schema;
 import com.hortonworks.streamline.common.SchemaValueConverter;
 import com.hortonworks.streamline.common.exception.SchemaValidationFailedException;
@@ -92,12 +94,15 @@ public class TopologyTestRunResource {
     private static final Logger LOG = LoggerFactory.getLogger(TopologyTestRunResource.class);
 
     private static final Integer DEFAULT_LIST_ENTITIES_COUNT = 5;
+    private static final int EVENT_LOG_CACHE_SIZE = 10;
 
     private final StreamlineAuthorizer authorizer;
     private final StreamCatalogService catalogService;
     private final TopologyActionsService actionsService;
     private final EventLogFileReader eventLogFileReader;
     private final ObjectMapper objectMapper;
+    // event log file path -> events loaded from the file, invalidated when the file changes
+    private final Cache<String, CachedEventLog> eventLogCache;
 
     public TopologyTestRunResource(StreamlineAuthorizer authorizer, StreamCatalogService catalogService,
                                    TopologyActionsService actionsService) {
@@ -106,6 +111,7 @@ public class TopologyTestRunResource {
         this.actionsService = actionsService;
         this.eventLogFileReader = new EventLogFileReader();
         this.objectMapper = new ObjectMapper();
+        this.eventLogCache = CacheBuilder.newBuilder().maximumSize(EVENT_LOG_CACHE_SIZE).build();
     }
 
     @JsonIgnoreProperties(ignoreUnknown = true)
@@ -272,14 +278,14 @@ public class TopologyTestRunResource {
                 Topology.NAMESPACE, topologyId, READ);
 
         File eventLogFile = getEventLogFile(topologyId, historyId);
-        List<EventInformation> events = eventLogFileReader.loadEventLogFile(eventLogFile);
+        CorrelatedEventsGrouper eventsGrouper = getCachedEventLog(eventLogFile).eventsGrouper;
         List<com.hortonworks.registries.common.QueryParam> qps = com.hortonworks.registries.common.QueryParam.params(
                 TopologySource.TOPOLOGYID, topologyId.toString(),
                 TopologySource.VERSIONID, catalogService.getCurrentVersionId(topologyId).toString());
         Set<String> sourceNames = catalogService.listTopologySources(qps).stream()
                 .map(TopologyComponent::getName)
                 .collect(Collectors.toSet());
-        return WSUtils.respondEntities(new CorrelatedEventsGrouper(events).groupByRelatedSourceEvents(sourceNames), OK);
+        return WSUtils.respondEntities(eventsGrouper.groupByRelatedSourceEvents(sourceNames), OK);
     }
 
     @GET
@@ -293,7 +299,9 @@ public class TopologyTestRunResource {
                 Topology.NAMESPACE, topologyId, READ);
 
         File eventLogFile = getEventLogFile(topologyId, historyId);
-        List<EventInformation> events = eventLogFileReader.loadEventLogFile(eventLogFile);
+        // The root event, the events derived from it, and their ancestors which are not derived from it
+        // (e.g. the other inputs of a join): the events CorrelatedEventsGrouper needs to group the root event.
+        List<EventInformation> events = eventLogFileReader.loadEventsOfRootEventWithAncestors(eventLogFile, rootEventId);
 
         GroupedCorrelationEvents groupedEvents = new CorrelatedEventsGrouper(events).groupByComponent(rootEventId);
         if (!groupedEvents.getAllEvents().containsKey(rootEventId)) {
@@ -313,7 +321,7 @@ public class TopologyTestRunResource {
                 Topology.NAMESPACE, topologyId, READ);
 
         File eventLogFile = getEventLogFile(topologyId, historyId);
-        List<EventInformation> events = eventLogFileReader.loadEventLogFile(eventLogFile);
+        List<EventInformation> events = eventLogFileReader.loadEventsOfRootEvent(eventLogFile, rootEventId);
 
         EventInformationTreeNode rootEventNode = new EventInformationTreeBuilder(events).constructEventTree(rootEventId);
 
@@ -335,7 +343,7 @@ public class TopologyTestRunResource {
                 Topology.NAMESPACE, topologyId, READ);
 
         File eventLogFile = getEventLogFile(topologyId, historyId);
-        List<EventInformation> events = eventLogFileReader.loadEventLogFile(eventLogFile);
+        List<EventInformation> events = eventLogFileReader.loadEventsOfRootEvent(eventLogFile, rootEventId);
 
         EventInformationTreeNode subRootEventNode = new EventInformationTreeBuilder(events).constructEventTree(rootEventId, subRootEventId);
 
@@ -391,16 +399,47 @@ public class TopologyTestRunResource {
                 Topology.NAMESPACE, topologyId, READ);
 
         File eventLogFile = getEventLogFile(topologyId, historyId);
-        Stream<EventInformation> eventsStream = eventLogFileReader.loadEventLogFileAsStream(eventLogFile);
+        try (Stream<EventInformation> allEvents = eventLogFileReader.loadEventLogFileAsStream(eventLogFile)) {
+            Stream<EventInformation> eventsStream = allEvents;
+            if (!StringUtils.isEmpty(componentName)) {
+                eventsStream = eventsStream.filter(event -> {
+                    String eventComponentName = event.getComponentName();
+                    return eventComponentName != null && eventComponentName.equals(componentName);
+                });
+            }
+
+            return WSUtils.respondEntities(eventsStream.collect(toList()), OK);
+        }
+    }
 
-        if (!StringUtils.isEmpty(componentName)) {
-            eventsStream = eventsStream.filter(event -> {
-                String eventComponentName = event.getComponentName();
-                return eventComponentName != null && eventComponentName.equals(componentName);
-            });
+    // The grouper of the whole log, kept until the log file changes so that listing the root events again does not
+    // read and group the log again.
+    private CachedEventLog getCachedEventLog(File eventLogFile) throws IOException {
+        String path = eventLogFile.getAbsolutePath();
+        long lastModified = eventLogFile.lastModified();
+        long length = eventLogFile.length();
+
+        CachedEventLog cached = eventLogCache.getIfPresent(path);
+        if (cached == null || cached.lastModified != lastModified || cached.length != length) {
+            List<EventInformation> events = eventLogFileReader.loadEventLogFile(eventLogFile);
+            cached = new CachedEventLog(lastModified, length, events);
+            eventLogCache.put(path, cached);
         }
+        return cached;
+    }
 
-        return WSUtils.respondEntities(eventsStream.collect(toList()), OK);
+    private static class CachedEventLog {
+        // the length is also compared since the modification time may have a coarse granularity,
+        // and the log is appended while the test run is in progress
+        private final long lastModified;
+        private final long length;
+        private final CorrelatedEventsGrouper eventsGrouper;
+
+        CachedEventLog(long lastModified, long length, List<EventInformation> events) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.eventsGrouper = new CorrelatedEventsGrouper(events);
+        }
     }
 
     private File getEventLogFile(Long topologyId, Long historyId) {
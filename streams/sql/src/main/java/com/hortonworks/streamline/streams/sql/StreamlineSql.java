@@ -17,8 +17,11 @@
  */
 package com.hortonworks.streamline.streams.sql;
 
+import com.hortonworks.streamline.streams.sql.runtime.AbstractValuesProcessor;
 import com.hortonworks.streamline.streams.sql.runtime.ChannelHandler;
 
+import java.util.List;
+
 /**
  * The StreamlineSql class provides standalone, interactive interfaces to execute
  * SQL statements over streaming data.
@@ -31,9 +34,11 @@ public abstract class StreamlineSql {
   /**
    * Execute the SQL statements in stand-alone mode. The user can retrieve the result by passing in an instance
    * of {@see ChannelHandler}.
+   *
+   * @return the processors of the queries, which tell what the queries support
    */
-  public abstract void execute(Iterable<String> statements,
-                               ChannelHandler handler) throws Exception;
+  public abstract List<AbstractValuesProcessor> execute(Iterable<String> statements,
+                                                        ChannelHandler handler) throws Exception;
 
   public static StreamlineSql construct() {
     return new StreamlineSqlImpl();
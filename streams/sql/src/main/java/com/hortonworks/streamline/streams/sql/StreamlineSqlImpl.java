@@ -65,10 +65,11 @@ class StreamlineSqlImpl extends StreamlineSql {
   private boolean hasUdf = false;
 
   @Override
-  public void execute(
+  public List<AbstractValuesProcessor> execute(
       Iterable<String> statements, ChannelHandler result)
       throws Exception {
     Map<String, DataSource> dataSources = new HashMap<>();
+    List<AbstractValuesProcessor> processors = new ArrayList<>();
     for (String sql : statements) {
       StreamlineParser parser = new StreamlineParser(sql);
       SqlNode node = parser.impl().parseSqlStmtEof();
@@ -85,8 +86,10 @@ class StreamlineSqlImpl extends StreamlineSql {
         PlanCompiler compiler = new PlanCompiler(typeFactory);
         AbstractValuesProcessor proc = compiler.compile(tree);
         proc.initialize(dataSources, result);
+        processors.add(proc);
       }
     }
+    return processors;
   }
 
   private void handleCreateTable(
@@ -29,6 +29,8 @@ import java.util.Map;
  * Built-in implementations for some of the standard aggregation operations.
  * Aggregations can be implemented as a class with the following methods viz. init, add and result.
  * The class could contain only static methods, only non-static methods or be generic.
+ * The aggregations that can undo an add also have a retract method taking the same arguments as add, and the ones
+ * that can combine two accumulators have a merge method taking them, which must not change the second one.
  */
 public class BuiltinAggregateFunctions {
     // binds the type information and the class implementing the aggregation
@@ -60,6 +62,14 @@ public class BuiltinAggregateFunctions {
             return (byte) (accumulator + val);
         }
 
+        public static Byte retract(Byte accumulator, Byte val) {
+            return (byte) (accumulator - val);
+        }
+
+        public static Byte merge(Byte accumulator, Byte other) {
+            return (byte) (accumulator + other);
+        }
+
         public static Byte result(Byte accumulator) {
             return accumulator;
         }
@@ -74,6 +84,14 @@ public class BuiltinAggregateFunctions {
             return (short) (accumulator + val);
         }
 
+        public static Short retract(Short accumulator, Short val) {
+            return (short) (accumulator - val);
+        }
+
+        public static Short merge(Short accumulator, Short other) {
+            return (short) (accumulator + other);
+        }
+
         public static Short result(Short accumulator) {
             return accumulator;
         }
@@ -88,6 +106,14 @@ public class BuiltinAggregateFunctions {
             return accumulator + val;
         }
 
+        public static Integer retract(Integer accumulator, Integer val) {
+            return accumulator - val;
+        }
+
+        public static Integer merge(Integer accumulator, Integer other) {
+            return accumulator + other;
+        }
+
         public static Integer result(Integer accumulator) {
             return accumulator;
         }
@@ -102,6 +128,14 @@ public class BuiltinAggregateFunctions {
             return accumulator + val;
         }
 
+        public static Long retract(Long accumulator, Long val) {
+            return accumulator - val;
+        }
+
+        public static Long merge(Long accumulator, Long other) {
+            return accumulator + other;
+        }
+
         public static Long result(Long accumulator) {
             return accumulator;
         }
@@ -116,6 +150,14 @@ public class BuiltinAggregateFunctions {
             return accumulator + val;
         }
 
+        public static Float retract(Float accumulator, Float val) {
+            return accumulator - val;
+        }
+
+        public static Float merge(Float accumulator, Float other) {
+            return accumulator + other;
+        }
+
         public static Float result(Float accumulator) {
             return accumulator;
         }
@@ -130,6 +172,14 @@ public class BuiltinAggregateFunctions {
             return accumulator + val;
         }
 
+        public static Double retract(Double accumulator, Double val) {
+            return accumulator - val;
+        }
+
+        public static Double merge(Double accumulator, Double other) {
+            return accumulator + other;
+        }
+
         public static Double result(Double accumulator) {
             return accumulator;
         }
@@ -144,6 +194,10 @@ public class BuiltinAggregateFunctions {
             return (accumulator == null || accumulator.compareTo(val) < 0) ? val : accumulator;
         }
 
+        public T merge(T accumulator, T other) {
+            return other == null ? accumulator : add(accumulator, other);
+        }
+
         public T result(T accumulator) {
             return accumulator;
         }
@@ -158,6 +212,10 @@ public class BuiltinAggregateFunctions {
             return (accumulator == null || accumulator.compareTo(val) > 0) ? val : accumulator;
         }
 
+        public T merge(T accumulator, T other) {
+            return other == null ? accumulator : add(accumulator, other);
+        }
+
         public T result(T accumulator) {
             return accumulator;
         }
@@ -175,10 +233,13 @@ public class BuiltinAggregateFunctions {
             return accumulator + val;
         }
 
+        public Integer retract(Integer accumulator, Integer val) {
+            --count;
+            return accumulator - val;
+        }
+
         public Integer result(Integer accumulator) {
-            Integer result = accumulator / count;
-            count = 0;
-            return result;
+            return accumulator / count;
         }
     }
 
@@ -194,10 +255,13 @@ public class BuiltinAggregateFunctions {
             return accumulator + val;
         }
 
+        public Double retract(Double accumulator, Double val) {
+            --count;
+            return accumulator - val;
+        }
+
         public Double result(Double accumulator) {
-            Double result = accumulator / count;
-            count = 0;
-            return result;
+            return accumulator / count;
         }
     }
 
@@ -215,6 +279,19 @@ public class BuiltinAggregateFunctions {
             return accumulator + 1;
         }
 
+        public static Long retract(Long accumulator, Values vals) {
+            for (Object val : vals) {
+                if (val == null) {
+                    return accumulator;
+                }
+            }
+            return accumulator - 1;
+        }
+
+        public static Long merge(Long accumulator, Long other) {
+            return accumulator + other;
+        }
+
         public static Long result(Long accumulator) {
             return accumulator;
         }
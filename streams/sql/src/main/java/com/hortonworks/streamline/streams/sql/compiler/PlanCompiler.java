@@ -42,6 +42,8 @@ public class PlanCompiler {
       "import java.util.List;", "import java.util.ArrayList;",
       "import java.util.Set;", "import java.util.HashSet;",
       "import java.util.LinkedHashMap;",
+      "import java.util.Deque;",
+      "import java.util.ArrayDeque;",
       "import java.util.Collections;",
       "import com.hortonworks.streamline.streams.sql.runtime.AbstractChannelHandler;",
       "import com.hortonworks.streamline.streams.sql.runtime.Channels;",
@@ -60,6 +62,18 @@ public class PlanCompiler {
       "public final class Processor extends AbstractValuesProcessor {",
       "  public final static DataContext dataContext = new StreamlineDataContext();",
       "");
+  private static final String CAPABILITIES = NEW_LINE_JOINER.join(
+      "  @Override",
+      "  public boolean supportsRetract() {",
+      "    return %1$b;",
+      "  }",
+      "",
+      "  @Override",
+      "  public boolean supportsPanes() {",
+      "    return %2$b;",
+      "  }",
+      ""
+  );
   private static final String INITIALIZER_PROLOGUE = NEW_LINE_JOINER.join(
       "  @Override",
       "  public void initialize(Map<String, DataSource> data,",
@@ -80,6 +94,7 @@ public class PlanCompiler {
       RelNodeCompiler compiler = new RelNodeCompiler(pw, typeFactory);
       printPrologue(pw);
       compiler.traverse(root);
+      pw.print(String.format(CAPABILITIES, compiler.supportsRetract(), compiler.supportsPanes()));
       printMain(pw, root);
       printEpilogue(pw);
     }
@@ -18,6 +18,7 @@
 package com.hortonworks.streamline.streams.sql.compiler;
 
 import com.google.common.base.Joiner;
+import com.hortonworks.streamline.streams.sql.runtime.AbstractValuesProcessor;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.rel.RelNode;
@@ -32,7 +33,6 @@ import org.apache.calcite.rel.stream.Delta;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.rex.RexNode;
-import org.apache.calcite.schema.AggregateFunction;
 import org.apache.calcite.schema.impl.AggregateFunctionImpl;
 import org.apache.calcite.sql.SqlAggFunction;
 import org.apache.calcite.sql.validate.SqlUserDefinedAggFunction;
@@ -43,6 +43,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -69,8 +70,8 @@ public class RelNodeCompiler extends PostOrderRelNodeVisitor<Void> {
           "  private static final ChannelHandler %1$s = ",
           "    new AbstractChannelHandler() {",
           "    private final CorrelatedValues EMPTY_VALUES = new CorrelatedValues(Collections.emptyList());",
-          "    private final Map<List<Object>, List<CorrelatedValues>> correlatedGroupedValues = new LinkedHashMap<>();",
-          "    private final Map<List<Object>, Map<String, Object>> state = new LinkedHashMap<>();",
+          "    private Map<List<Object>, Deque<CorrelatedValues>> correlatedGroupedValues = new LinkedHashMap<>();",
+          "    private Map<List<Object>, Map<String, Object>> state = new LinkedHashMap<>();",
           "    private final int[] groupIndices = new int[] {%2$s};",
           "    private List<Object> getGroupValues(CorrelatedValues _data) {",
           "      List<Object> res = new ArrayList<>();",
@@ -84,13 +85,24 @@ public class RelNodeCompiler extends PostOrderRelNodeVisitor<Void> {
           "    public void flush(ChannelContext ctx) {",
           "      emitAggregateResults(ctx);",
           "      super.flush(ctx);",
-          "      state.clear();",
+          "      clearState();",
           "    }",
           "",
-          "    private void emitAggregateResults(ChannelContext ctx) {",
-          "        for (Map.Entry<List<Object>, Map<String, Object>> entry: state.entrySet()) {",
+          "    @Override",
+          "    public void snapshot(ChannelContext ctx) {",
+          "      emitAggregateResults(ctx);",
+          "      super.snapshot(ctx);",
+          "    }",
+          "",
+          "%4$s",
+          "",
+          "%5$s",
+          "",
+          "    private void emitAggregateResults(ChannelContext ctx, Map<List<Object>, Map<String, Object>> results,",
+          "                                      Map<List<Object>, Deque<CorrelatedValues>> resultCorrelatedValues) {",
+          "        for (Map.Entry<List<Object>, Map<String, Object>> entry: results.entrySet()) {",
           "          List<Object> groupValues = entry.getKey();",
-          "          List<CorrelatedValues> correlatedValues = correlatedGroupedValues.get(groupValues);",
+          "          Deque<CorrelatedValues> correlatedValues = resultCorrelatedValues.get(groupValues);",
           "          Set<StreamlineEvent> correlatedEventSet = new HashSet<>();",
           "          for (CorrelatedValues correlatedValue : correlatedValues) {",
           "              correlatedEventSet.addAll(correlatedValue.getCorrelated());",
@@ -106,6 +118,110 @@ public class RelNodeCompiler extends PostOrderRelNodeVisitor<Void> {
           ""
   );
 
+  private static final String AGGREGATE_RETRACT = NEW_LINE_JOINER.join(
+          "    // the data is retracted in the order it was received, so it is usually the oldest of its group",
+          "    private boolean removeSame(Deque<CorrelatedValues> values, CorrelatedValues data) {",
+          "      if (!values.isEmpty() && values.peekFirst().isSameAs(data)) {",
+          "        values.removeFirst();",
+          "        return true;",
+          "      }",
+          "      for (Iterator<CorrelatedValues> it = values.iterator(); it.hasNext(); ) {",
+          "        if (it.next().isSameAs(data)) {",
+          "          it.remove();",
+          "          return true;",
+          "        }",
+          "      }",
+          "      return false;",
+          "    }",
+          "",
+          "    @Override",
+          "    public void dataRetracted(ChannelContext ctx, CorrelatedValues _data) {",
+          "      List<Object> curGroupValues = getGroupValues(_data);",
+          "      Deque<CorrelatedValues> groupedValues = correlatedGroupedValues.get(curGroupValues);",
+          "      if (groupedValues == null || !removeSame(groupedValues, _data)) {",
+          "        return;",
+          "      }",
+          "      if (groupedValues.isEmpty()) {",
+          "        correlatedGroupedValues.remove(curGroupValues);",
+          "        state.remove(curGroupValues);",
+          "        return;",
+          "      }",
+          "      Map<String, Object> accumulators = state.get(curGroupValues);",
+          "%1$s",
+          "    }"
+  );
+
+  private static final String AGGREGATE_SINGLE_PANE = NEW_LINE_JOINER.join(
+          "    private void clearState() {",
+          "      state.clear();",
+          "      correlatedGroupedValues.clear();",
+          "    }",
+          "",
+          "    private void emitAggregateResults(ChannelContext ctx) {",
+          "      emitAggregateResults(ctx, state, correlatedGroupedValues);",
+          "    }"
+  );
+
+  // the state of the current pane is in state and correlatedGroupedValues, the older panes are kept aside and
+  // merged with it when emitting the results
+  private static final String AGGREGATE_PANES = NEW_LINE_JOINER.join(
+          "    private final Deque<Map<List<Object>, Map<String, Object>>> statePanes = new ArrayDeque<>();",
+          "    private final Deque<Map<List<Object>, Deque<CorrelatedValues>>> correlatedPanes = new ArrayDeque<>();",
+          "",
+          "    @Override",
+          "    public void nextPane(ChannelContext ctx, int expiredPanes) {",
+          "      statePanes.addLast(state);",
+          "      correlatedPanes.addLast(correlatedGroupedValues);",
+          "      state = new LinkedHashMap<>();",
+          "      correlatedGroupedValues = new LinkedHashMap<>();",
+          "      for (int i = 0; i < expiredPanes && !statePanes.isEmpty(); i++) {",
+          "        statePanes.removeFirst();",
+          "        correlatedPanes.removeFirst();",
+          "      }",
+          "      super.nextPane(ctx, expiredPanes);",
+          "    }",
+          "",
+          "    private void clearState() {",
+          "      state.clear();",
+          "      correlatedGroupedValues.clear();",
+          "      statePanes.clear();",
+          "      correlatedPanes.clear();",
+          "    }",
+          "",
+          "    private void emitAggregateResults(ChannelContext ctx) {",
+          "      if (statePanes.isEmpty()) {",
+          "        emitAggregateResults(ctx, state, correlatedGroupedValues);",
+          "        return;",
+          "      }",
+          "      Map<List<Object>, Map<String, Object>> mergedState = new LinkedHashMap<>();",
+          "      Map<List<Object>, Deque<CorrelatedValues>> mergedCorrelatedValues = new LinkedHashMap<>();",
+          "      Iterator<Map<List<Object>, Deque<CorrelatedValues>>> correlatedPane = correlatedPanes.iterator();",
+          "      for (Map<List<Object>, Map<String, Object>> statePane : statePanes) {",
+          "        mergePane(statePane, correlatedPane.next(), mergedState, mergedCorrelatedValues);",
+          "      }",
+          "      mergePane(state, correlatedGroupedValues, mergedState, mergedCorrelatedValues);",
+          "      emitAggregateResults(ctx, mergedState, mergedCorrelatedValues);",
+          "    }",
+          "",
+          "    private void mergePane(Map<List<Object>, Map<String, Object>> paneState,",
+          "                           Map<List<Object>, Deque<CorrelatedValues>> paneCorrelatedValues,",
+          "                           Map<List<Object>, Map<String, Object>> mergedState,",
+          "                           Map<List<Object>, Deque<CorrelatedValues>> mergedCorrelatedValues) {",
+          "      for (Map.Entry<List<Object>, Map<String, Object>> entry : paneState.entrySet()) {",
+          "        List<Object> groupValues = entry.getKey();",
+          "        Map<String, Object> paneAccumulators = entry.getValue();",
+          "        Map<String, Object> accumulators = mergedState.get(groupValues);",
+          "        if (accumulators == null) {",
+          "          accumulators = new HashMap<>();",
+          "          mergedState.put(groupValues, accumulators);",
+          "          mergedCorrelatedValues.put(groupValues, new ArrayDeque<CorrelatedValues>());",
+          "        }",
+          "        mergedCorrelatedValues.get(groupValues).addAll(paneCorrelatedValues.get(groupValues));",
+          "%1$s",
+          "      }",
+          "    }"
+  );
+
   private static final String JOIN_STAGE_PROLOGUE = NEW_LINE_JOINER.join(
           "  private static final ChannelHandler %1$s = ",
           "    new AbstractChannelHandler() {",
@@ -205,6 +321,11 @@ public class RelNodeCompiler extends PostOrderRelNodeVisitor<Void> {
 
   private int nameCount;
   private Map<AggregateCall, String> aggregateCallVarNames = new HashMap<>();
+  // what the stages compiled so far support, see AbstractValuesProcessor
+  private int aggregateStages;
+  private boolean hasJoin;
+  private boolean aggregatesRetract = true;
+  private boolean aggregatesMerge = true;
 
   public RelNodeCompiler(PrintWriter pw, JavaTypeFactory typeFactory) {
     this.pw = pw;
@@ -277,7 +398,7 @@ public class RelNodeCompiler extends PostOrderRelNodeVisitor<Void> {
     pw.println("        if (_data != null) {");
     pw.println("        List<Object> curGroupValues = getGroupValues(_data);");
     pw.println("        if (!correlatedGroupedValues.containsKey(curGroupValues)) {");
-    pw.println("          correlatedGroupedValues.put(curGroupValues, new ArrayList<CorrelatedValues>());");
+    pw.println("          correlatedGroupedValues.put(curGroupValues, new ArrayDeque<CorrelatedValues>());");
     pw.println("        }");
     pw.println("        correlatedGroupedValues.get(curGroupValues).add(_data);");
     pw.println("        if (!state.containsKey(curGroupValues)) {");
@@ -294,6 +415,7 @@ public class RelNodeCompiler extends PostOrderRelNodeVisitor<Void> {
 
   @Override
   public Void visitJoin(Join join, List<Void> inputStreams) {
+    hasJoin = true;
     beginJoinStage(join);
     pw.println("        if (source == left) {");
     pw.println("            leftRows.add(_data);");
@@ -322,29 +444,144 @@ public class RelNodeCompiler extends PostOrderRelNodeVisitor<Void> {
     for (AggregateCall call : aggregate.getAggCallList()) {
       res.add(aggregateResult(call, new PrintWriter(sw)));
     }
+    // either part is empty when there is no group by (other than the window) or no aggregate call
+    res.add(0, groupValueEmitStr("groupValues", aggregate.getGroupSet().cardinality()));
+    res.removeIf(String::isEmpty);
     return NEW_LINE_JOINER.join(sw.toString(),
-                                String.format("          ctx.emit(new CorrelatedValues(correlatedEvents, %s, %s));",
-                                              groupValueEmitStr("groupValues", aggregate.getGroupSet().cardinality()),
+                                String.format("          ctx.emit(new CorrelatedValues(correlatedEvents, %s));",
                                               Joiner.on(", ").join(res)));
   }
 
   private String aggregateResult(AggregateCall call, PrintWriter pw) {
+    Type ty = typeFactory.getJavaClass(call.getType());
+    return doAggregateResult(aggregateFunction(call), reserveAggVarName(call), ty, pw);
+  }
+
+  private AggregateFunctionImpl aggregateFunction(AggregateCall call) {
     SqlAggFunction aggFunction = call.getAggregation();
     String aggregationName = call.getAggregation().getName();
     Type ty = typeFactory.getJavaClass(call.getType());
-    String result;
     if (aggFunction instanceof SqlUserDefinedAggFunction) {
-      AggregateFunction aggregateFunction = ((SqlUserDefinedAggFunction) aggFunction).function;
-      result = doAggregateResult((AggregateFunctionImpl) aggregateFunction, reserveAggVarName(call), ty, pw);
+      return (AggregateFunctionImpl) ((SqlUserDefinedAggFunction) aggFunction).function;
     } else {
       List<BuiltinAggregateFunctions.TypeClass> typeClasses = BuiltinAggregateFunctions.TABLE.get(aggregationName);
       if (typeClasses == null) {
         throw new UnsupportedOperationException(aggregationName + " Not implemented");
       }
-      result = doAggregateResult(AggregateFunctionImpl.create(findMatchingClass(aggregationName, typeClasses, ty)),
-                                 reserveAggVarName(call), ty, pw);
+      return AggregateFunctionImpl.create(findMatchingClass(aggregationName, typeClasses, ty));
+    }
+  }
+
+  /*
+   * The retract method of the aggregation, null if it has none. It takes the same arguments as the add method.
+   */
+  private static Method findRetractMethod(AggregateFunctionImpl aggFn) {
+    return findMethod(aggFn, "retract", aggFn.addMethod.getParameterTypes());
+  }
+
+  /*
+   * The merge method of the aggregation, null if it has none. It takes two accumulators.
+   */
+  private static Method findMergeMethod(AggregateFunctionImpl aggFn) {
+    return findMethod(aggFn, "merge", new Class<?>[] {aggFn.accumulatorType, aggFn.accumulatorType});
+  }
+
+  private static Method findMethod(AggregateFunctionImpl aggFn, String name, Class<?>[] parameterTypes) {
+    for (Method method : aggFn.initMethod.getDeclaringClass().getMethods()) {
+      if (method.getName().equals(name) && !method.isBridge()
+          && Modifier.isStatic(method.getModifiers()) == aggFn.isStatic
+          && Arrays.equals(method.getParameterTypes(), parameterTypes)) {
+        return method;
+      }
+    }
+    return null;
+  }
+
+  /*
+   * The retraction of the values from the accumulators, or nothing if an aggregation can't retract them.
+   */
+  private String emitRetractStmts(Aggregate aggregate) {
+    StringWriter sw = new StringWriter();
+    PrintWriter retractPw = new PrintWriter(sw);
+    for (AggregateCall call : aggregate.getAggCallList()) {
+      AggregateFunctionImpl aggFn = aggregateFunction(call);
+      Method retractMethod = findRetractMethod(aggFn);
+      if (retractMethod == null) {
+        aggregatesRetract = false;
+        return "";
+      }
+      doRetract(aggFn, retractMethod, reserveAggVarName(call), call.getArgList(), retractPw);
+    }
+    retractPw.flush();
+    return String.format(AGGREGATE_RETRACT, sw.toString());
+  }
+
+  /*
+   * The panes of state and their merge, or a single pane if an aggregation can't merge the accumulators.
+   */
+  private String emitPaneStmts(Aggregate aggregate) {
+    StringWriter sw = new StringWriter();
+    PrintWriter mergePw = new PrintWriter(sw);
+    for (AggregateCall call : aggregate.getAggCallList()) {
+      AggregateFunctionImpl aggFn = aggregateFunction(call);
+      Method mergeMethod = findMergeMethod(aggFn);
+      if (mergeMethod == null) {
+        aggregatesMerge = false;
+        return AGGREGATE_SINGLE_PANE;
+      }
+      doMerge(aggFn, mergeMethod, reserveAggVarName(call), mergePw);
+    }
+    mergePw.flush();
+    return String.format(AGGREGATE_PANES, sw.toString());
+  }
+
+  private void doMerge(AggregateFunctionImpl aggFn, Method mergeMethod, String varName, PrintWriter pw) {
+    List<String> args = new ArrayList<>();
+    if (!aggFn.isStatic) {
+      // the aggregation objects are stateless, the one of the pane merges the accumulators
+      String aggObjName = String.format("%s_obj", varName);
+      String aggObjClassName = aggFn.initMethod.getDeclaringClass().getCanonicalName();
+      pw.println(String.format("        if (!accumulators.containsKey(\"%1$s\")) {", aggObjName));
+      pw.println(String.format("          accumulators.put(\"%1$s\", paneAccumulators.get(\"%1$s\"));", aggObjName));
+      pw.println("        }");
+      pw.println("        @SuppressWarnings(\"unchecked\")");
+      pw.println(String.format("        final %1$s %2$s = (%1$s) accumulators.get(\"%2$s\");", aggObjClassName,
+              aggObjName));
+      args.add(aggObjName);
+    }
+    String accumulatorClassName = aggFn.accumulatorType.getCanonicalName();
+    args.add(String.format("%1$s == null ? %2$s : (%3$s) %1$s",
+                           "accumulators.get(\"" + varName + "\")",
+                           printMethodCall(aggFn.initMethod, args),
+                           accumulatorClassName));
+    args.add(String.format("(%s) paneAccumulators.get(\"%s\")", accumulatorClassName, varName));
+    pw.println(String.format("        accumulators.put(\"%s\", %s);", varName, printMethodCall(mergeMethod, args)));
+  }
+
+  private void doRetract(AggregateFunctionImpl aggFn, Method retractMethod, String varName, List<Integer> argList,
+                         PrintWriter pw) {
+    List<String> args = new ArrayList<>();
+    if (!aggFn.isStatic) {
+      String aggObjName = String.format("%s_obj", varName);
+      String aggObjClassName = aggFn.initMethod.getDeclaringClass().getCanonicalName();
+      pw.println("      @SuppressWarnings(\"unchecked\")");
+      pw.println(String.format("      final %1$s %2$s = (%1$s) accumulators.get(\"%2$s\");", aggObjClassName,
+              aggObjName));
+      args.add(aggObjName);
+    }
+    args.add(String.format("(%s) accumulators.get(\"%s\")", aggFn.accumulatorType.getCanonicalName(), varName));
+    addValueArgs(aggFn, argList, args);
+    pw.println(String.format("      accumulators.put(\"%s\", %s);", varName, printMethodCall(retractMethod, args)));
+  }
+
+  private static void addValueArgs(AggregateFunctionImpl aggFn, List<Integer> argList, List<String> args) {
+    if (argList.isEmpty()) {
+      args.add("EMPTY_VALUES");
+    } else {
+      for (int i = 0; i < aggFn.valueTypes.size(); i++) {
+        args.add(String.format("(%s) %s", aggFn.valueTypes.get(i).getCanonicalName(), "_data.get(" + argList.get(i) + ")"));
+      }
     }
-    return result;
   }
 
   private String doAggregateResult(AggregateFunctionImpl aggFn, String varName, Type ty, PrintWriter pw) {
@@ -368,7 +605,6 @@ public class RelNodeCompiler extends PostOrderRelNodeVisitor<Void> {
   }
 
   private void aggregate(AggregateCall call) {
-    SqlAggFunction aggFunction = call.getAggregation();
     String aggregationName = call.getAggregation().getName();
     Type ty = typeFactory.getJavaClass(call.getType());
     if (call.getArgList().size() != 1) {
@@ -378,17 +614,7 @@ public class RelNodeCompiler extends PostOrderRelNodeVisitor<Void> {
         }
       }
     }
-    if (aggFunction instanceof SqlUserDefinedAggFunction) {
-      AggregateFunction aggregateFunction = ((SqlUserDefinedAggFunction) aggFunction).function;
-      doAggregate((AggregateFunctionImpl) aggregateFunction, reserveAggVarName(call), ty, call.getArgList());
-    } else {
-      List<BuiltinAggregateFunctions.TypeClass> typeClasses = BuiltinAggregateFunctions.TABLE.get(aggregationName);
-      if (typeClasses == null) {
-        throw new UnsupportedOperationException(aggregationName + " Not implemented");
-      }
-      doAggregate(AggregateFunctionImpl.create(findMatchingClass(aggregationName, typeClasses, ty)),
-                  reserveAggVarName(call), ty, call.getArgList());
-    }
+    doAggregate(aggregateFunction(call), reserveAggVarName(call), ty, call.getArgList());
   }
 
   private Class<?> findMatchingClass(String aggregationName, List<BuiltinAggregateFunctions.TypeClass> typeClasses, Type ty) {
@@ -418,13 +644,7 @@ public class RelNodeCompiler extends PostOrderRelNodeVisitor<Void> {
                            "accumulators.get(\"" + varName + "\")",
                            printMethodCall(aggFn.initMethod, args),
                            accumulatorType.getCanonicalName()));
-    if (argList.isEmpty()) {
-      args.add("EMPTY_VALUES");
-    } else {
-      for (int i = 0; i < aggFn.valueTypes.size(); i++) {
-        args.add(String.format("(%s) %s", aggFn.valueTypes.get(i).getCanonicalName(), "_data.get(" + argList.get(i) + ")"));
-      }
-    }
+    addValueArgs(aggFn, argList, args);
     pw.print(String.format("          accumulators.put(\"%s\", %s);\n",
                            varName,
                            printMethodCall(aggFn.addMethod, args)));
@@ -444,7 +664,9 @@ public class RelNodeCompiler extends PostOrderRelNodeVisitor<Void> {
   }
 
   private void beginAggregateStage(Aggregate n) {
-    pw.print(String.format(AGGREGATE_STAGE_PROLOGUE, getStageName(n), getGroupByIndices(n), emitAggregateStmts(n)));
+    ++aggregateStages;
+    pw.print(String.format(AGGREGATE_STAGE_PROLOGUE, getStageName(n), getGroupByIndices(n), emitAggregateStmts(n),
+                           emitRetractStmts(n), emitPaneStmts(n)));
   }
 
   private void beginJoinStage(Join join) {
@@ -464,6 +686,21 @@ public class RelNodeCompiler extends PostOrderRelNodeVisitor<Void> {
     pw.print("  }\n  };\n");
   }
 
+  /**
+   * Whether the stages compiled can retract the data received, see {@link AbstractValuesProcessor#supportsRetract()}.
+   */
+  boolean supportsRetract() {
+    return aggregateStages == 1 && !hasJoin && aggregatesRetract;
+  }
+
+  /**
+   * Whether the stages compiled can split the data received in panes, see
+   * {@link AbstractValuesProcessor#supportsPanes()}.
+   */
+  boolean supportsPanes() {
+    return aggregateStages == 1 && !hasJoin && aggregatesMerge;
+  }
+
   static String getStageName(RelNode n) {
     return n.getClass().getSimpleName().toUpperCase() + "_" + n.getId();
   }
@@ -21,6 +21,15 @@ public abstract class AbstractChannelHandler implements ChannelHandler {
   @Override
   public abstract void dataReceived(ChannelContext ctx, CorrelatedValues data);
 
+  /**
+   * Handles the retracted data as received data whose output is retracted, which is what the stages not keeping
+   * state (filters, projections) do. The stages keeping state override it, or are never given retracted data.
+   */
+  @Override
+  public void dataRetracted(ChannelContext ctx, CorrelatedValues data) {
+    dataReceived(Channels.retracting(ctx), data);
+  }
+
   @Override
   public void channelInactive(ChannelContext ctx) {
 
@@ -36,6 +45,16 @@ public abstract class AbstractChannelHandler implements ChannelHandler {
     ctx.flush();
   }
 
+  @Override
+  public void snapshot(ChannelContext ctx) {
+    ctx.snapshot();
+  }
+
+  @Override
+  public void nextPane(ChannelContext ctx, int expiredPanes) {
+    ctx.nextPane(expiredPanes);
+  }
+
   @Override
   public void setSource(ChannelContext ctx, Object source) {
 
@@ -39,4 +39,18 @@ public abstract class AbstractValuesProcessor {
    */
   public abstract void initialize(Map<String, DataSource> data, ChannelHandler
       result);
+
+  /**
+   * Whether the data received can be retracted, so that the state of the stages (e.g. the aggregates of a sliding
+   * window) is updated rather than computed again. It is the case when the processor has a single aggregate stage,
+   * whose aggregate functions all retract, and no join.
+   */
+  public abstract boolean supportsRetract();
+
+  /**
+   * Whether the data received can be split in panes, which are expired as a whole, the state of the stages being
+   * computed by merging the state of each pane. It is the case when the processor has a single aggregate stage,
+   * whose aggregate functions all merge, and no join.
+   */
+  public abstract boolean supportsPanes();
 }
@@ -22,7 +22,23 @@ public interface ChannelContext {
    * Emit data to the next stage of the data pipeline.
    */
   void emit(CorrelatedValues data);
+
+  /**
+   * Retract data previously emitted to the next stage of the data pipeline.
+   */
+  void retract(CorrelatedValues data);
   void fireChannelInactive();
   void flush();
+
+  /**
+   * Like {@link #flush()}, but the stages keep their state, e.g. the aggregates of a window updated as it slides.
+   */
+  void snapshot();
+
+  /**
+   * Start a new pane of data, expiring the given number of the oldest panes, e.g. the parts of a sliding window that
+   * left it.
+   */
+  void nextPane(int expiredPanes);
   void setSource(Object source);
 }
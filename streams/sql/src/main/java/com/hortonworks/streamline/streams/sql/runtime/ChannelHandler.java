@@ -24,6 +24,12 @@ package com.hortonworks.streamline.streams.sql.runtime;
 public interface ChannelHandler {
   void dataReceived(ChannelContext ctx, CorrelatedValues data);
 
+  /**
+   * Data previously received is retracted, the stages keeping state undo what they did with it. Only called when the
+   * processor supports it, see {@link AbstractValuesProcessor#supportsRetract()}.
+   */
+  void dataRetracted(ChannelContext ctx, CorrelatedValues data);
+
   /**
    * The producer of the data has indicated that the channel is no longer
    * active.
@@ -35,5 +41,13 @@ public interface ChannelHandler {
 
   void flush(ChannelContext ctx);
 
+  void snapshot(ChannelContext ctx);
+
+  /**
+   * The data received from now on belongs to a new pane, and the given number of the oldest panes are expired. Only
+   * called when the processor supports it, see {@link AbstractValuesProcessor#supportsPanes()}.
+   */
+  void nextPane(ChannelContext ctx, int expiredPanes);
+
   void setSource(ChannelContext ctx, Object source);
 }
@@ -22,6 +22,9 @@ public class Channels {
     @Override
     public void emit(CorrelatedValues data) {}
 
+    @Override
+    public void retract(CorrelatedValues data) {}
+
     @Override
     public void fireChannelInactive() {}
 
@@ -30,6 +33,16 @@ public class Channels {
 
     }
 
+    @Override
+    public void snapshot() {
+
+    }
+
+    @Override
+    public void nextPane(int expiredPanes) {
+
+    }
+
     @Override
     public void setSource(Object source) {
 
@@ -51,6 +64,11 @@ public class Channels {
       handler.dataReceived(next, data);
     }
 
+    @Override
+    public void retract(CorrelatedValues data) {
+      handler.dataRetracted(next, data);
+    }
+
     @Override
     public void fireChannelInactive() {
       handler.channelInactive(next);
@@ -61,6 +79,16 @@ public class Channels {
       handler.flush(next);
     }
 
+    @Override
+    public void snapshot() {
+      handler.snapshot(next);
+    }
+
+    @Override
+    public void nextPane(int expiredPanes) {
+      handler.nextPane(next, expiredPanes);
+    }
+
     @Override
     public void setSource(Object source) {
       handler.setSource(next, source);
@@ -80,6 +108,11 @@ public class Channels {
       next.emit(data);
     }
 
+    @Override
+    public void retract(CorrelatedValues data) {
+      next.retract(data);
+    }
+
     @Override
     public void fireChannelInactive() {
       next.fireChannelInactive();
@@ -90,6 +123,16 @@ public class Channels {
       next.flush();
     }
 
+    @Override
+    public void snapshot() {
+      next.snapshot();
+    }
+
+    @Override
+    public void nextPane(int expiredPanes) {
+      next.nextPane(expiredPanes);
+    }
+
     @Override
     public void setSource(Object source) {
       next.setSource(source);
@@ -101,6 +144,18 @@ public class Channels {
     return new ChannelContextAdapter(next, handler);
   }
 
+  /**
+   * A context retracting what is emitted to it from the next stage.
+   */
+  public static ChannelContext retracting(ChannelContext next) {
+    return new ForwardingChannelContext(next) {
+      @Override
+      public void emit(CorrelatedValues data) {
+        retract(data);
+      }
+    };
+  }
+
   public static ChannelContext voidContext() {
     return VOID_CTX;
   }
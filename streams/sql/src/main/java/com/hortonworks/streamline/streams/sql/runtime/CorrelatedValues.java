@@ -4,6 +4,7 @@ import com.hortonworks.streamline.streams.StreamlineEvent;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * This class extends Values to track correlated (in fact, parent) Streamline events.
@@ -35,6 +36,22 @@ public class CorrelatedValues extends Values {
         return correlated;
     }
 
+    /**
+     * Whether the other values are equal to these values and correlated with the same events, the events being
+     * compared by id since they could have been copied.
+     */
+    public boolean isSameAs(CorrelatedValues other) {
+        if (!equals(other) || correlated.size() != other.correlated.size()) {
+            return false;
+        }
+        for (int i = 0; i < correlated.size(); i++) {
+            if (!Objects.equals(correlated.get(i).getId(), other.correlated.get(i).getId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public static CorrelatedValues of(List<StreamlineEvent> correlated, Values vals) {
         return new CorrelatedValues(correlated, vals.toArray());
     }
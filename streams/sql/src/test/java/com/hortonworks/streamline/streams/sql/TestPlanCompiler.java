@@ -20,6 +20,7 @@ package com.hortonworks.streamline.streams.sql;
 import com.google.common.collect.ImmutableMap;
 import com.hortonworks.streamline.streams.sql.compiler.PlanCompiler;
 import com.hortonworks.streamline.streams.sql.runtime.AbstractValuesProcessor;
+import com.hortonworks.streamline.streams.sql.runtime.ChannelContext;
 import com.hortonworks.streamline.streams.sql.runtime.ChannelHandler;
 import com.hortonworks.streamline.streams.sql.runtime.CorrelatedValues;
 import com.hortonworks.streamline.streams.sql.runtime.DataSource;
@@ -31,6 +32,7 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -120,4 +122,129 @@ public class TestPlanCompiler {
     Assert.assertEquals(1, values.get(0).size());
     Assert.assertEquals(5, values.get(0).get(0));
   }
+
+  @Test
+  public void testAggregateRetract() throws Exception {
+    String sql = "SELECT NAME, SUM(ID), COUNT(*), AVG(ID) FROM FOO WHERE ID > 0 GROUP BY NAME";
+    List<CorrelatedValues> values = new ArrayList<>();
+    ChannelContext ctx = open(sql, values);
+
+    ctx.emit(row(0, "a"));
+    ctx.emit(row(1, "a"));
+    ctx.emit(row(3, "a"));
+    ctx.emit(row(5, "b"));
+    ctx.snapshot();
+    Assert.assertEquals(Arrays.asList(Arrays.asList("a", 4, 2L, 2), Arrays.asList("b", 5, 1L, 5)), values);
+
+    // slides: the values leaving are retracted, the filtered out ones included
+    values.clear();
+    ctx.retract(row(0, "a"));
+    ctx.retract(row(1, "a"));
+    ctx.retract(row(5, "b"));
+    ctx.emit(row(7, "a"));
+    ctx.snapshot();
+    Assert.assertEquals(Collections.singletonList(Arrays.asList("a", 10, 2L, 5)), values);
+
+    // flush resets the aggregates
+    values.clear();
+    ctx.flush();
+    ctx.emit(row(2, "b"));
+    ctx.flush();
+    Assert.assertEquals(Arrays.asList(Arrays.asList("a", 10, 2L, 5), Arrays.asList("b", 2, 1L, 2)), values);
+  }
+
+  @Test
+  public void testAggregatePanes() throws Exception {
+    String sql = "SELECT NAME, MAX(ID), SUM(ID), COUNT(*) FROM FOO GROUP BY NAME";
+    List<CorrelatedValues> values = new ArrayList<>();
+    ChannelContext ctx = open(sql, values);
+
+    ctx.emit(row(9, "a"));
+    ctx.emit(row(1, "b"));
+    ctx.nextPane(0);
+    ctx.emit(row(3, "a"));
+    ctx.snapshot();
+    Assert.assertEquals(Arrays.asList(Arrays.asList("a", 9, 12, 2L), Arrays.asList("b", 1, 1, 1L)), values);
+
+    // slides: the oldest pane leaves
+    values.clear();
+    ctx.nextPane(1);
+    ctx.emit(row(5, "a"));
+    ctx.emit(row(2, "b"));
+    ctx.snapshot();
+    Assert.assertEquals(Arrays.asList(Arrays.asList("a", 5, 8, 2L), Arrays.asList("b", 2, 2, 1L)), values);
+
+    // the merged panes are left as they were
+    values.clear();
+    ctx.nextPane(1);
+    ctx.snapshot();
+    Assert.assertEquals(Arrays.asList(Arrays.asList("a", 5, 5, 1L), Arrays.asList("b", 2, 2, 1L)), values);
+
+    // flush resets all the panes
+    values.clear();
+    ctx.flush();
+    ctx.emit(row(4, "b"));
+    ctx.flush();
+    Assert.assertEquals(Arrays.asList(Arrays.asList("a", 5, 5, 1L), Arrays.asList("b", 2, 2, 1L),
+        Arrays.asList("b", 4, 4, 1L)), values);
+  }
+
+  @Test
+  public void testAggregateWithoutAggregateCall() throws Exception {
+    String sql = "SELECT NAME FROM FOO GROUP BY NAME";
+    List<CorrelatedValues> values = new ArrayList<>();
+    ChannelContext ctx = open(sql, values);
+
+    ctx.emit(row(1, "a"));
+    ctx.emit(row(2, "b"));
+    ctx.emit(row(3, "a"));
+    ctx.snapshot();
+    Assert.assertEquals(Arrays.asList(Collections.singletonList("a"), Collections.singletonList("b")), values);
+
+    // a group is left out once all its values are retracted
+    values.clear();
+    ctx.retract(row(1, "a"));
+    ctx.retract(row(2, "b"));
+    ctx.snapshot();
+    Assert.assertEquals(Collections.singletonList(Collections.singletonList("a")), values);
+  }
+
+  @Test
+  public void testSupportsRetractAndPanes() throws Exception {
+    AbstractValuesProcessor proc = compile("SELECT NAME, SUM(ID), COUNT(*), AVG(ID) FROM FOO GROUP BY NAME");
+    Assert.assertTrue(proc.supportsRetract());
+    // the average keeps its count aside from the accumulator
+    Assert.assertFalse(proc.supportsPanes());
+
+    proc = compile("SELECT NAME, MAX(ID), MIN(ID) FROM FOO GROUP BY NAME");
+    Assert.assertFalse(proc.supportsRetract());
+    Assert.assertTrue(proc.supportsPanes());
+
+    proc = compile("SELECT NAME, SUM(ID) FROM FOO GROUP BY NAME");
+    Assert.assertTrue(proc.supportsRetract());
+    Assert.assertTrue(proc.supportsPanes());
+
+    // without an aggregate, every value gives its own result
+    proc = compile("SELECT ID FROM FOO WHERE ID > 0");
+    Assert.assertFalse(proc.supportsRetract());
+    Assert.assertFalse(proc.supportsPanes());
+  }
+
+  private AbstractValuesProcessor compile(String sql) throws Exception {
+    TestCompilerUtils.CalciteState state = TestCompilerUtils.sqlOverDummyTable(sql);
+    return new PlanCompiler(typeFactory).compile(state.tree());
+  }
+
+  private ChannelContext open(String sql, List<CorrelatedValues> values) throws Exception {
+    AbstractValuesProcessor proc = compile(sql);
+    Map<String, DataSource> data = new HashMap<>();
+    ChannelContext[] ctx = new ChannelContext[1];
+    data.put("FOO", channelContext -> ctx[0] = channelContext);
+    proc.initialize(data, new TestUtils.CollectDataChannelHandler(values));
+    return ctx[0];
+  }
+
+  private static CorrelatedValues row(int id, String name) {
+    return new CorrelatedValues(Collections.emptyList(), id, name, null);
+  }
 }
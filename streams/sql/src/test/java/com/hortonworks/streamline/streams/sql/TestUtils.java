@@ -78,6 +78,11 @@ public class TestUtils {
       values.add(data);
     }
 
+    @Override
+    public void dataRetracted(ChannelContext ctx, CorrelatedValues data) {
+      values.remove(data);
+    }
+
     @Override
     public void channelInactive(ChannelContext ctx) {}
 
@@ -89,6 +94,12 @@ public class TestUtils {
     @Override
     public void flush(ChannelContext ctx) {}
 
+    @Override
+    public void snapshot(ChannelContext ctx) {}
+
+    @Override
+    public void nextPane(ChannelContext ctx, int expiredPanes) {}
+
     @Override
     public void setSource(ChannelContext ctx, Object source) {}
   }
@@ -31,6 +31,8 @@ import com.hortonworks.streamline.common.Constants;
 import com.hortonworks.streamline.common.ModuleRegistration;
 import com.hortonworks.streamline.common.exception.ConfigException;
 import com.hortonworks.streamline.common.util.ReflectionHelper;
+import com.hortonworks.streamline.streams.catalog.storage.CachingStorageManager;
+import com.hortonworks.streamline.streams.catalog.storage.ListenableTransactionManager;
 import com.hortonworks.streamline.streams.security.StreamlineAuthorizer;
 import com.hortonworks.streamline.streams.security.authentication.StreamlineKerberosRequestFilter;
 import com.hortonworks.streamline.streams.security.impl.DefaultStreamlineAuthorizer;
@@ -212,6 +214,11 @@ public class StreamlineApplication extends Application<StreamlineConfiguration>
         }
         storageManager.init(storageProviderConfiguration.getProperties());
 
+        Map<String, CachingStorageManager.NamespaceCacheConfig> cache = storageProviderConfiguration.getCache();
+        if (cache != null && !cache.isEmpty()) {
+            storageManager = new CachingStorageManager(storageManager, cache);
+        }
+
         return storageManager;
     }
 
@@ -234,9 +241,9 @@ public class StreamlineApplication extends Application<StreamlineConfiguration>
         StorageManager storageManager = getDao(configuration);
         TransactionManager transactionManager;
         if (storageManager instanceof TransactionManager) {
-            transactionManager = (TransactionManager) storageManager;
+            transactionManager = new ListenableTransactionManager((TransactionManager) storageManager);
         } else {
-            transactionManager = new NOOPTransactionManager();
+            transactionManager = new ListenableTransactionManager(new NOOPTransactionManager());
         }
         environment.jersey().register(new TransactionEventListener(transactionManager, true));
         Collection<Class<? extends Storable>> streamlineEntities = getStorableEntities();
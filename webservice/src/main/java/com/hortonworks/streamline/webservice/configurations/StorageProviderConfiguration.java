@@ -16,6 +16,8 @@
 
 package com.hortonworks.streamline.webservice.configurations;
 
+import com.hortonworks.streamline.streams.catalog.storage.CachingStorageManager;
+
 import java.util.Map;
 
 /**
@@ -26,6 +28,9 @@ public class StorageProviderConfiguration {
 
     private Map<String, Object> properties;
 
+    // cache settings per storage namespace, the namespaces not listed are not cached
+    private Map<String, CachingStorageManager.NamespaceCacheConfig> cache;
+
     public StorageProviderConfiguration() {
     }
     public String getProviderClass() {
@@ -43,4 +48,12 @@ public class StorageProviderConfiguration {
     public void setProperties(Map<String, Object> properties) {
         this.properties = properties;
     }
+
+    public Map<String, CachingStorageManager.NamespaceCacheConfig> getCache() {
+        return cache;
+    }
+
+    public void setCache(Map<String, CachingStorageManager.NamespaceCacheConfig> cache) {
+        this.cache = cache;
+    }
 }